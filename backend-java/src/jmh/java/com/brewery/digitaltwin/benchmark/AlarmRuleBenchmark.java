@@ -0,0 +1,78 @@
+package com.brewery.digitaltwin.benchmark;
+
+import com.brewery.digitaltwin.entity.Pit;
+import com.brewery.digitaltwin.entity.PitSensorData;
+import com.brewery.digitaltwin.service.AlarmRuleEngine;
+import com.brewery.digitaltwin.service.LiveStateService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 告警规则求值：一个仿真周期内全部窖池读数过一遍规则引擎 (默认规则集，含滞回状态更新)
+ *
+ * 读数按仿真模型预先生成 SAMPLES 组轮换使用，约两成读数越限，触发与恢复都会走到。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class AlarmRuleBenchmark {
+
+    private static final int SAMPLES = 8;
+
+    @Param({"1000", "10000"})
+    public int pits;
+
+    private TwinContext twin;
+    private AlarmRuleEngine ruleEngine;
+    private List<Pit> pitList;
+    private PitSensorData[][] readings;
+    private final List<AlarmRuleEngine.Transition> transitions = new ArrayList<>();
+    private int round;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        twin = TwinContext.start(pits, pits / 2);
+        ruleEngine = twin.bean(AlarmRuleEngine.class);
+        pitList = twin.bean(LiveStateService.class).getPits();
+        Random random = new Random(42);
+        readings = new PitSensorData[SAMPLES][pitList.size()];
+        for (int s = 0; s < SAMPLES; s++) {
+            for (int i = 0; i < pitList.size(); i++) {
+                Pit pit = pitList.get(i);
+                PitSensorData data = new PitSensorData();
+                data.setPitId(pit.getId());
+                data.setTemperature(25 + Math.sin(pit.getFermentationDay() * 0.1) * 10 + (random.nextDouble() - 0.5) * 4);
+                data.setHumidity(65 + (random.nextDouble() - 0.5) * 20);
+                data.setPhValue(3.5 + (random.nextDouble() - 0.5) * 1);
+                data.setAcidity(0.5 + random.nextDouble() * 0.5);
+                data.setMoisture(55 + (random.nextDouble() - 0.5) * 10);
+                data.setAlcohol(random.nextDouble() * 15);
+                readings[s][i] = data;
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        twin.close();
+    }
+
+    @Benchmark
+    public int evaluateAllPits() {
+        PitSensorData[] sample = readings[round++ % SAMPLES];
+        long now = System.currentTimeMillis();
+        transitions.clear();
+        int alarms = 0;
+        for (int i = 0; i < sample.length; i++) {
+            if (!"normal".equals(ruleEngine.evaluatePit(pitList.get(i), sample[i], now, transitions))) alarms++;
+        }
+        return alarms + transitions.size();
+    }
+}
@@ -0,0 +1,102 @@
+package com.brewery.digitaltwin.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * 对比两次 JMH JSON 结果 (-rf json)：逐个基准与参数组合比较主指标和每次操作分配字节数 (gc.alloc.rate.norm)，
+ * 任一项退化超过阈值 (百分比) 时以退出码 1 结束，可直接用在 CI 中
+ *
+ * 用法: BenchmarkCompare baseline.json current.json [threshold%]
+ */
+public final class BenchmarkCompare {
+
+    private static final String ALLOC_METRIC = "gc.alloc.rate.norm";
+    // 每次操作分配量低于该字节数时视为无分配，忽略比例变化
+    private static final double ALLOC_NOISE_BYTES = 64;
+
+    private record Result(String mode, double score, double error, String unit, Double alloc) {
+    }
+
+    private BenchmarkCompare() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("用法: BenchmarkCompare <baseline.json> <current.json> [threshold%]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+        Map<String, Result> baseline = load(new File(args[0]));
+        Map<String, Result> current = load(new File(args[1]));
+
+        int regressions = 0;
+        System.out.printf("%-70s %14s %14s %9s %12s%n", "基准", "基线", "当前", "变化", "分配变化");
+        for (Map.Entry<String, Result> entry : current.entrySet()) {
+            Result now = entry.getValue();
+            Result before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-70s %14s %14.3f %9s %12s  (新增)%n", entry.getKey(), "-", now.score(), "-", "-");
+                continue;
+            }
+            // 吞吐量越大越好，其余模式为耗时，越小越好
+            boolean higherIsBetter = "thrpt".equals(now.mode());
+            double change = percent(before.score(), now.score());
+            double worse = higherIsBetter ? -change : change;
+            // 变化落在两次结果的误差区间内不算退化
+            boolean significant = Math.abs(now.score() - before.score()) > nanToZero(now.error()) + nanToZero(before.error());
+            boolean timeRegressed = significant && worse > threshold;
+
+            String allocText = "-";
+            boolean allocRegressed = false;
+            if (before.alloc() != null && now.alloc() != null) {
+                double allocChange = percent(before.alloc(), now.alloc());
+                allocText = String.format("%+.1f%%", allocChange);
+                allocRegressed = Math.max(before.alloc(), now.alloc()) > ALLOC_NOISE_BYTES && allocChange > threshold;
+            }
+            String flag = timeRegressed || allocRegressed ? "  <-- 退化" : "";
+            if (!flag.isEmpty()) regressions++;
+            System.out.printf("%-70s %14.3f %14.3f %+8.1f%% %12s  %s%s%n", entry.getKey(), before.score(),
+                    now.score(), change, allocText, now.unit(), flag);
+        }
+        for (String key : baseline.keySet()) {
+            if (!current.containsKey(key)) System.out.printf("%-70s  (本次未运行)%n", key);
+        }
+        System.out.printf("%d 项超过阈值 %.1f%%%n", regressions, threshold);
+        System.exit(regressions > 0 ? 1 : 0);
+    }
+
+    private static Map<String, Result> load(File file) throws IOException {
+        Map<String, Result> results = new TreeMap<>();
+        for (JsonNode node : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(node.path("benchmark").asText()
+                    .replace(BenchmarkCompare.class.getPackageName() + ".", ""));
+            JsonNode params = node.path("params");
+            if (params.isObject()) {
+                List<String> names = new ArrayList<>();
+                params.fieldNames().forEachRemaining(names::add);
+                Collections.sort(names);
+                for (String name : names) key.append(' ').append(name).append('=').append(params.get(name).asText());
+            }
+            JsonNode primary = node.path("primaryMetric");
+            JsonNode alloc = node.path("secondaryMetrics").path(ALLOC_METRIC);
+            results.put(key.toString(), new Result(node.path("mode").asText(), primary.path("score").asDouble(),
+                    primary.path("scoreError").asDouble(Double.NaN), primary.path("scoreUnit").asText(),
+                    alloc.isMissingNode() ? null : alloc.path("score").asDouble()));
+        }
+        return results;
+    }
+
+    private static double percent(double before, double now) {
+        if (before == 0) return now == 0 ? 0 : 100;
+        return (now - before) / before * 100;
+    }
+
+    private static double nanToZero(double value) {
+        return Double.isNaN(value) ? 0 : value;
+    }
+}
@@ -0,0 +1,168 @@
+package com.brewery.digitaltwin.benchmark;
+
+import com.brewery.digitaltwin.dto.DashboardStats;
+import com.brewery.digitaltwin.entity.Device;
+import com.brewery.digitaltwin.entity.Pit;
+import com.brewery.digitaltwin.entity.ProductionBatch;
+import com.brewery.digitaltwin.service.*;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 二级缓存与查询缓存对数据库往返次数的影响：REST 接口背后的读调用与一个完整仿真周期
+ *
+ * cache=off 关闭二级缓存；sized 为默认配置 (实体区域容纳全部实体)；undersized 把实体区域上限设为窖池数的一半，
+ * 检查实体区域不足时查询缓存命中是否退化为逐条回表、按 ID 加载是否反复回表。除耗时外以辅助计数器输出 JDBC 语句数
+ * (roundTrips)、缓存命中数 (cacheHits，二级缓存 + 查询缓存) 与调用次数 (calls)；语句数取自 Hibernate 统计，
+ * 不含 JdbcTemplate 直接执行的语句 (仿真周期中的状态批量写回)。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class CacheRoundTripBenchmark {
+
+    private static final int TICKS = 3;
+
+    @Param({"1000", "20000"})
+    public int pits;
+
+    @Param({"off", "sized", "undersized"})
+    public String cache;
+
+    private TwinContext twin;
+    private Statistics statistics;
+    private PitService pitService;
+    private DeviceService deviceService;
+    private ProductionService productionService;
+    private DashboardService dashboardService;
+    private SimulatorService simulator;
+    private long[] pitIds;
+    private int nextPit;
+
+    /**
+     * 调用次数、JDBC 语句数与缓存命中数；JMH 按迭代累加 EVENTS 计数，每次调用的往返数 = roundTrips / calls
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class RoundTrips {
+        public long calls;
+        public long roundTrips;
+        public long cacheHits;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            calls = roundTrips = cacheHits = 0;
+        }
+
+        void record(long statementDelta, long hitDelta) {
+            calls++;
+            roundTrips += statementDelta;
+            cacheHits += hitDelta;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        twin = switch (cache) {
+            case "off" -> TwinContext.start(pits, pits / 2, "--app.cache.enabled=false");
+            case "undersized" -> TwinContext.start(pits, pits / 2, "--app.cache.entity-max-entries=" + pits / 2);
+            default -> TwinContext.start(pits, pits / 2);
+        };
+        statistics = twin.bean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+        pitService = twin.bean(PitService.class);
+        deviceService = twin.bean(DeviceService.class);
+        productionService = twin.bean(ProductionService.class);
+        dashboardService = twin.bean(DashboardService.class);
+        simulator = twin.bean(SimulatorService.class);
+        for (int i = 0; i < TICKS; i++) simulator.generateData();
+        pitIds = pitService.getAllPits().stream().mapToLong(Pit::getId).toArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        twin.close();
+    }
+
+    private long hits() {
+        return statistics.getSecondLevelCacheHitCount() + statistics.getQueryCacheHitCount();
+    }
+
+    @Benchmark
+    public List<Pit> allPits(RoundTrips counters) {
+        long statements = statistics.getPrepareStatementCount();
+        long hits = hits();
+        List<Pit> result = pitService.getAllPits();
+        counters.record(statistics.getPrepareStatementCount() - statements, hits() - hits);
+        return result;
+    }
+
+    @Benchmark
+    public List<Pit> pitsByZone(RoundTrips counters) {
+        long statements = statistics.getPrepareStatementCount();
+        long hits = hits();
+        List<Pit> result = pitService.getPitsByZone("A");
+        counters.record(statistics.getPrepareStatementCount() - statements, hits() - hits);
+        return result;
+    }
+
+    /**
+     * 依次按 ID 加载全部窖池 (如逐个打开窖池详情)，实体区域小于窖池数时每次都被淘汰后回表
+     */
+    @Benchmark
+    public Optional<Pit> pitById(RoundTrips counters) {
+        long statements = statistics.getPrepareStatementCount();
+        long hits = hits();
+        Optional<Pit> result = pitService.getPitById(pitIds[nextPit]);
+        nextPit = (nextPit + 1) % pitIds.length;
+        counters.record(statistics.getPrepareStatementCount() - statements, hits() - hits);
+        return result;
+    }
+
+    @Benchmark
+    public List<Device> allDevices(RoundTrips counters) {
+        long statements = statistics.getPrepareStatementCount();
+        long hits = hits();
+        List<Device> result = deviceService.getAllDevices();
+        counters.record(statistics.getPrepareStatementCount() - statements, hits() - hits);
+        return result;
+    }
+
+    @Benchmark
+    public List<ProductionBatch> allBatches(RoundTrips counters) {
+        long statements = statistics.getPrepareStatementCount();
+        long hits = hits();
+        List<ProductionBatch> result = productionService.getAllBatches();
+        counters.record(statistics.getPrepareStatementCount() - statements, hits() - hits);
+        return result;
+    }
+
+    @Benchmark
+    public DashboardStats dashboardStats(RoundTrips counters) {
+        long statements = statistics.getPrepareStatementCount();
+        long hits = hits();
+        DashboardStats result = dashboardService.getStats();
+        counters.record(statistics.getPrepareStatementCount() - statements, hits() - hits);
+        return result;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, batchSize = 1)
+    @Measurement(iterations = 10, batchSize = 1)
+    public void simulatorTick(RoundTrips counters) {
+        long statements = statistics.getPrepareStatementCount();
+        long hits = hits();
+        simulator.generateData();
+        counters.record(statistics.getPrepareStatementCount() - statements, hits() - hits);
+    }
+}
@@ -0,0 +1,39 @@
+package com.brewery.digitaltwin.benchmark;
+
+import com.brewery.digitaltwin.service.PitControlLoop;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 窖池温控闭环一步：全部窖池的 PID 计算与被控对象积分，被控对象与增益取 PitControlService 的默认配置
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ControlLoopBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int pits;
+
+    private final PitControlLoop.Gains gains = new PitControlLoop.Gains(0.2, 0.002, 0.0);
+    private PitControlLoop loop;
+    private double[] equilibrium;
+
+    @Setup
+    public void setUp() {
+        loop = new PitControlLoop(new PitControlLoop.Plant(600, 3.0, 1.0, 15, 22));
+        equilibrium = new double[pits];
+        for (int i = 0; i < pits; i++) equilibrium[i] = 25 + Math.sin(i % 90 * 0.1) * 10;
+        loop.resize(pits, equilibrium);
+    }
+
+    @Benchmark
+    public PitControlLoop step() {
+        loop.step(equilibrium, 30.0, gains, 5.0);
+        return loop;
+    }
+}
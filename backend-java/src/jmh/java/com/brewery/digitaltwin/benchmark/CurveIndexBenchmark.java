@@ -0,0 +1,72 @@
+package com.brewery.digitaltwin.benchmark;
+
+import com.brewery.digitaltwin.service.CurveIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 发酵曲线相似检索：curves 条 30 段嵌入 (90 天 / 3 天一段，粗粒度 5 段一组) 中取 top-10
+ *
+ * fullCurve 比较全部段，partialCurve 模拟发酵进行到第 30 天的窖池只比较前 10 段。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CurveIndexBenchmark {
+
+    private static final int DIMS = 30;
+    private static final int GROUP = 5;
+    private static final int K = 10;
+
+    @Param({"10000", "100000"})
+    public int curves;
+
+    private CurveIndex index;
+    private float[] query;
+    private final boolean[] fullMask = new boolean[DIMS];
+    private final boolean[] partialMask = new boolean[DIMS];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        index = new CurveIndex(DIMS, GROUP);
+        for (int i = 0; i < curves; i++) {
+            index.add(i + 1, 60 + random.nextDouble() * 40, curve(random));
+        }
+        query = curve(random);
+        for (int d = 0; d < DIMS; d++) {
+            fullMask[d] = true;
+            partialMask[d] = d < 10;
+        }
+    }
+
+    private static float[] curve(Random random) {
+        // 升温、保温、降温三段，峰值温度与各段时长随机
+        float[] embedding = new float[DIMS];
+        double peak = 30 + random.nextDouble() * 8;
+        int rise = 3 + random.nextInt(5);
+        int hold = 8 + random.nextInt(8);
+        for (int d = 0; d < DIMS; d++) {
+            double t = d < rise ? 18 + (peak - 18) * d / rise
+                    : d < rise + hold ? peak : peak - (d - rise - hold) * 0.6;
+            embedding[d] = (float) (t + random.nextGaussian() * 0.5);
+        }
+        return embedding;
+    }
+
+    @Benchmark
+    public List<CurveIndex.Match> fullCurve() {
+        return index.search(query, fullMask, K, Double.NaN);
+    }
+
+    @Benchmark
+    public List<CurveIndex.Match> partialCurve() {
+        return index.search(query, partialMask, K, Double.NaN);
+    }
+}
@@ -0,0 +1,58 @@
+package com.brewery.digitaltwin.benchmark;
+
+import com.brewery.digitaltwin.service.Downsampler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 历史曲线降采样：一天 ROWS 行窖池读数 (6 列) 流式降到 500 点，不含数据库读取
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DownsamplerBenchmark {
+
+    private static final int ROWS = 100_000;
+    private static final int COLUMNS = 6;
+    private static final int MAX_POINTS = 500;
+
+    @Param({"MINMAX", "LTTB"})
+    public Downsampler.Mode mode;
+
+    private long from;
+    private long to;
+    private long[] times;
+    private double[][] values;
+    private int[] metrics;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        from = 1_700_000_000_000L;
+        to = from + 86_400_000L;
+        times = new long[ROWS];
+        values = new double[ROWS][COLUMNS];
+        for (int i = 0; i < ROWS; i++) {
+            times[i] = from + (long) i * (to - from) / ROWS;
+            for (int c = 0; c < COLUMNS; c++) {
+                values[i][c] = 20 + c * 10 + Math.sin(i / 500.0 + c) * 5 + random.nextGaussian();
+            }
+        }
+        metrics = mode == Downsampler.Mode.LTTB ? new int[]{0} : new int[]{0, 1, 2};
+    }
+
+    @Benchmark
+    public List<Downsampler.Row> downsample() {
+        Downsampler downsampler = new Downsampler(mode, COLUMNS, metrics, from, to, MAX_POINTS);
+        for (int i = 0; i < ROWS; i++) {
+            downsampler.accept(i, times[i], values[i]);
+        }
+        return downsampler.finish();
+    }
+}
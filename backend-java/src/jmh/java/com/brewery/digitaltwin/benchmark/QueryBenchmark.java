@@ -0,0 +1,131 @@
+package com.brewery.digitaltwin.benchmark;
+
+import com.brewery.digitaltwin.dto.AlarmFilter;
+import com.brewery.digitaltwin.dto.CursorPage;
+import com.brewery.digitaltwin.dto.DashboardStats;
+import com.brewery.digitaltwin.dto.HeatmapData;
+import com.brewery.digitaltwin.entity.Alarm;
+import com.brewery.digitaltwin.entity.DeviceData;
+import com.brewery.digitaltwin.entity.PitSensorData;
+import com.brewery.digitaltwin.repository.DeviceDataRepository;
+import com.brewery.digitaltwin.repository.PitSensorDataRepository;
+import com.brewery.digitaltwin.service.AlarmService;
+import com.brewery.digitaltwin.service.DashboardService;
+import com.brewery.digitaltwin.service.SimulatorService;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 仪表盘与查询接口背后的读路径：统计、热力图、各窖池/设备最近读数、告警键集分页 (首页与深翻页)
+ *
+ * 准备阶段先跑若干个仿真周期填充读数表与热力图缓存，再按 SEED_CHUNK 条一批写入 alarmRows 条历史告警
+ * (均匀分布在最近 30 天内)。千万级告警: -p alarmRows=10000000 -jvmArgsAppend -Xmx8g
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class QueryBenchmark {
+
+    private static final int TICKS = 5;
+    private static final int SEED_CHUNK = 10_000;
+    private static final long SEED_SPAN_MS = TimeUnit.DAYS.toMillis(30);
+    private static final int PAGE_SIZE = 50;
+    private static final int DEEP_PAGE = 100;
+
+    @Param({"1000", "10000"})
+    public int pits;
+
+    @Param({"100000"})
+    public int alarmRows;
+
+    private TwinContext twin;
+    private DashboardService dashboardService;
+    private AlarmService alarmService;
+    private PitSensorDataRepository pitSensorDataRepository;
+    private DeviceDataRepository deviceDataRepository;
+    private final AlarmFilter allAlarms = new AlarmFilter();
+    private String deepCursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        twin = TwinContext.start(pits, pits / 2);
+        dashboardService = twin.bean(DashboardService.class);
+        alarmService = twin.bean(AlarmService.class);
+        pitSensorDataRepository = twin.bean(PitSensorDataRepository.class);
+        deviceDataRepository = twin.bean(DeviceDataRepository.class);
+        SimulatorService simulator = twin.bean(SimulatorService.class);
+        for (int i = 0; i < TICKS; i++) simulator.generateData();
+        seedAlarms();
+
+        String cursor = null;
+        for (int page = 0; page < DEEP_PAGE; page++) {
+            cursor = alarmService.getAlarmsByCursor(allAlarms, cursor, PAGE_SIZE).getNextCursor();
+        }
+        deepCursor = cursor;
+    }
+
+    private void seedAlarms() {
+        String[] levels = {"info", "warning", "error", "critical"};
+        String[] types = {"temperature", "humidity", "ph", "device", "system"};
+        String[] statuses = {"resolved", "resolved", "acknowledged", "active"};
+        String[] zones = {"A", "B", "C", "D"};
+        Random random = new Random(42);
+        long base = System.currentTimeMillis() - SEED_SPAN_MS;
+        List<Object[]> rows = new ArrayList<>(SEED_CHUNK);
+        for (int i = 0; i < alarmRows; i++) {
+            String zone = zones[random.nextInt(zones.length)];
+            Timestamp at = new Timestamp(base + SEED_SPAN_MS * i / alarmRows);
+            rows.add(new Object[]{levels[random.nextInt(levels.length)], types[random.nextInt(types.length)],
+                    "pit-" + zone + "-" + (1 + random.nextInt(pits / zones.length + 1)), "基准测试告警 " + i,
+                    statuses[random.nextInt(statuses.length)], zone, 1, at, false, 1, at});
+            if (rows.size() == SEED_CHUNK || i == alarmRows - 1) {
+                twin.jdbc().batchUpdate("INSERT INTO alarms (level, type, source, message, status, zone, occurrence_count,"
+                        + " last_occurred_at, incident, affected_count, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+                rows.clear();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        twin.close();
+    }
+
+    @Benchmark
+    public DashboardStats dashboardStats() {
+        return dashboardService.getStats();
+    }
+
+    @Benchmark
+    public List<HeatmapData> heatmap() {
+        return dashboardService.getHeatmap();
+    }
+
+    @Benchmark
+    public List<PitSensorData> latestPitReadings() {
+        return pitSensorDataRepository.findLatestForAllPitsFast();
+    }
+
+    @Benchmark
+    public List<DeviceData> latestDeviceReadings() {
+        return deviceDataRepository.findLatestForAllDevicesFast();
+    }
+
+    @Benchmark
+    public CursorPage<Alarm> alarmFirstPage() {
+        return alarmService.getAlarmsByCursor(allAlarms, null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public CursorPage<Alarm> alarmDeepPage() {
+        return alarmService.getAlarmsByCursor(allAlarms, deepCursor, PAGE_SIZE);
+    }
+}
@@ -0,0 +1,203 @@
+package com.brewery.digitaltwin.benchmark;
+
+import com.brewery.digitaltwin.dto.RealtimeMessage;
+import com.brewery.digitaltwin.service.MetricsRegistry;
+import com.brewery.digitaltwin.service.RealtimeSnapshotService;
+import com.brewery.digitaltwin.websocket.RealtimeWebSocketHandler;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.socket.*;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 实时推送路径：pit_data 帧的 JSON 序列化，以及 RealtimeWebSocketHandler 向 N 个会话广播
+ *
+ * 不启动 Spring 上下文；会话为只统计字节数的空实现，测得的是序列化、重放日志与会话装饰器的开销，不含网络。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class RealtimeBenchmark {
+
+    /**
+     * 一帧 pit_data，字段与 SimulatorService 推送的一致
+     */
+    @State(Scope.Benchmark)
+    public static class Frame {
+
+        @Param({"100", "1000", "10000"})
+        public int pits;
+
+        ObjectMapper objectMapper;
+        List<Map<String, Object>> data;
+
+        @Setup
+        public void setUp() {
+            objectMapper = Jackson2ObjectMapperBuilder.json().build();
+            String[] zones = {"A", "B", "C", "D"};
+            String[] statuses = {"normal", "normal", "normal", "warning", "alarm"};
+            Random random = new Random(42);
+            data = new ArrayList<>(pits);
+            for (int i = 0; i < pits; i++) {
+                Map<String, Object> item = new HashMap<>();
+                item.put("pitId", (long) i + 1);
+                item.put("pitNo", String.format("%s-%03d", zones[i % zones.length], i / zones.length + 1));
+                item.put("temperature", 20 + random.nextDouble() * 15);
+                item.put("humidity", 60 + random.nextDouble() * 20);
+                item.put("phValue", 3.5 + random.nextDouble());
+                item.put("status", statuses[random.nextInt(statuses.length)]);
+                data.add(item);
+            }
+        }
+    }
+
+    /**
+     * 已注册 sessions 个会话的处理器
+     */
+    @State(Scope.Benchmark)
+    public static class Broadcast {
+
+        @Param({"1", "100", "1000"})
+        public int sessions;
+
+        RealtimeWebSocketHandler handler;
+        final List<CountingSession> registered = new ArrayList<>();
+
+        @Setup
+        public void setUp(Frame frame) {
+            RealtimeSnapshotService snapshots = new RealtimeSnapshotService(null, null) {
+                @Override
+                public Map<String, Object> capture() {
+                    return new HashMap<>();
+                }
+            };
+            handler = new RealtimeWebSocketHandler(frame.objectMapper, snapshots, new MetricsRegistry(), 256, 5000);
+            for (int i = 0; i < sessions; i++) {
+                CountingSession session = new CountingSession("bench-" + i);
+                handler.afterConnectionEstablished(session);
+                registered.add(session);
+            }
+        }
+
+        @TearDown
+        public void tearDown() {
+            for (CountingSession session : registered) handler.afterConnectionClosed(session, CloseStatus.NORMAL);
+        }
+    }
+
+    @Benchmark
+    public String serializePitData(Frame frame) throws JsonProcessingException {
+        return frame.objectMapper.writeValueAsString(new RealtimeMessage("pit_data", frame.data));
+    }
+
+    @Benchmark
+    public long broadcastPitData(Frame frame, Broadcast broadcast) {
+        broadcast.handler.publish(new RealtimeMessage("pit_data", frame.data));
+        return broadcast.handler.getCurrentSeq();
+    }
+
+    /**
+     * 只累计发送字节数的会话
+     */
+    static final class CountingSession implements WebSocketSession {
+
+        private final String id;
+        private final Map<String, Object> attributes = new HashMap<>();
+        long bytes;
+
+        CountingSession(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) {
+            bytes += message.getPayloadLength();
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public URI getUri() {
+            return null;
+        }
+
+        @Override
+        public HttpHeaders getHandshakeHeaders() {
+            return new HttpHeaders();
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return attributes;
+        }
+
+        @Override
+        public Principal getPrincipal() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return null;
+        }
+
+        @Override
+        public String getAcceptedProtocol() {
+            return null;
+        }
+
+        @Override
+        public void setTextMessageSizeLimit(int messageSizeLimit) {
+        }
+
+        @Override
+        public int getTextMessageSizeLimit() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+        }
+
+        @Override
+        public int getBinaryMessageSizeLimit() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public List<WebSocketExtension> getExtensions() {
+            return List.of();
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void close(CloseStatus status) {
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.brewery.digitaltwin.benchmark;
+
+import com.brewery.digitaltwin.service.BatchScheduler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批次排产：pits 个窖池、pits/10 个待排批次 (3 种原料、4 个区域)
+ *
+ * greedy 为贪心构造耗时；search 在固定 SEARCH_BUDGET_MS 预算内做单线程局部搜索，
+ * 耗时恒定没有意义，看辅助计数 iterations (每秒完成的搜索步数)。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class SchedulerBenchmark {
+
+    private static final int GRAINS = 3;
+    private static final int ZONES = 4;
+    private static final long SEARCH_BUDGET_MS = 100;
+
+    @Param({"1000", "10000"})
+    public int pits;
+
+    private BatchScheduler.Problem problem;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        int[] pitGrain = new int[pits];
+        int[] pitAge = new int[pits];
+        int[] pitZone = new int[pits];
+        double[] pitQuality = new double[pits];
+        for (int p = 0; p < pits; p++) {
+            pitGrain[p] = random.nextInt(GRAINS);
+            pitAge[p] = 10 + random.nextInt(90);
+            pitZone[p] = p % ZONES;
+            pitQuality[p] = 60 + random.nextDouble() * 40;
+        }
+        int[] zoneCapacity = new int[ZONES];
+        for (int z = 0; z < ZONES; z++) zoneCapacity[z] = pits / ZONES / 2;
+        int batches = pits / 10;
+        int[] batchGrain = new int[batches];
+        int[] batchMinAge = new int[batches];
+        int[] batchPits = new int[batches];
+        double[] batchVolume = new double[batches];
+        for (int b = 0; b < batches; b++) {
+            batchGrain[b] = random.nextInt(GRAINS);
+            batchMinAge[b] = random.nextInt(4) * 20;
+            batchPits[b] = 2 + random.nextInt(6);
+            batchVolume[b] = batchPits[b] * 20.0;
+        }
+        problem = new BatchScheduler.Problem(pitGrain, pitAge, pitZone, pitQuality, zoneCapacity,
+                batchGrain, batchMinAge, batchPits, batchVolume, 5.0);
+    }
+
+    /**
+     * 局部搜索步数，按吞吐量模式折算为每秒步数
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class SearchCounters {
+        public long iterations;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            iterations = 0;
+        }
+    }
+
+    @Benchmark
+    public BatchScheduler.Plan greedy() {
+        return new BatchScheduler(problem).solve(null, 0, 42);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public BatchScheduler.Plan search(SearchCounters counters) {
+        BatchScheduler.Plan plan = new BatchScheduler(problem).solve(null, SEARCH_BUDGET_MS, 42);
+        counters.iterations += plan.iterations();
+        return plan;
+    }
+}
@@ -0,0 +1,51 @@
+package com.brewery.digitaltwin.benchmark;
+
+import com.brewery.digitaltwin.service.SimulatorService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一个完整仿真周期：全部窖池与设备的读数生成、规则求值、批量写入、实时状态更新与 WebSocket 推送
+ *
+ * 每轮迭代结束清空读数表，避免表随调用次数增长使后面的迭代越跑越慢。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SimulatorTickBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int pits;
+
+    private TwinContext twin;
+    private SimulatorService simulator;
+    private JdbcTemplate jdbc;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        twin = TwinContext.start(pits, pits / 2);
+        simulator = twin.bean(SimulatorService.class);
+        jdbc = twin.jdbc();
+    }
+
+    @TearDown(Level.Iteration)
+    public void truncateReadings() {
+        jdbc.execute("TRUNCATE TABLE pit_sensor_data");
+        jdbc.execute("TRUNCATE TABLE device_data");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        twin.close();
+    }
+
+    @Benchmark
+    public void tick() {
+        simulator.generateData();
+    }
+}
@@ -0,0 +1,61 @@
+package com.brewery.digitaltwin.benchmark;
+
+import com.brewery.digitaltwin.service.SpectrumAnalyzer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 振动波形单块分析：加窗 FFT、故障频带能量与包络，参数与 WaveformService 的默认配置一致
+ *
+ * 信号为 1500 rpm 下外圈故障频率的冲击序列叠加白噪声；分析器与结果对象复用，稳态下不应有分配。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpectrumBenchmark {
+
+    private static final double SAMPLE_RATE = 25_600;
+
+    @Param({"4096", "8192", "16384"})
+    public int samples;
+
+    private final double[] faultHz = new double[SpectrumAnalyzer.BANDS];
+    private SpectrumAnalyzer analyzer;
+    private SpectrumAnalyzer.Features features;
+    private float[] block;
+
+    @Setup
+    public void setUp() {
+        double shaftHz = 1500 / 60.0;
+        double balls = 9;
+        double ratio = 0.2;
+        faultHz[SpectrumAnalyzer.BAND_SHAFT] = shaftHz;
+        faultHz[SpectrumAnalyzer.BAND_BPFO] = balls / 2 * shaftHz * (1 - ratio);
+        faultHz[SpectrumAnalyzer.BAND_BPFI] = balls / 2 * shaftHz * (1 + ratio);
+        faultHz[SpectrumAnalyzer.BAND_BSF] = shaftHz / (2 * ratio) * (1 - ratio * ratio);
+        faultHz[SpectrumAnalyzer.BAND_FTF] = shaftHz / 2 * (1 - ratio);
+
+        analyzer = new SpectrumAnalyzer(16384);
+        features = new SpectrumAnalyzer.Features(64);
+        block = new float[samples];
+        Random random = new Random(42);
+        double period = SAMPLE_RATE / faultHz[SpectrumAnalyzer.BAND_BPFO];
+        for (int i = 0; i < samples; i++) {
+            double sinceImpact = (i % period) / SAMPLE_RATE;
+            double impact = Math.exp(-sinceImpact * 800) * Math.sin(2 * Math.PI * 3000 * sinceImpact);
+            block[i] = (float) (0.3 * Math.sin(2 * Math.PI * shaftHz * i / SAMPLE_RATE) + impact
+                    + 0.1 * random.nextGaussian());
+        }
+    }
+
+    @Benchmark
+    public SpectrumAnalyzer.Features analyze() {
+        analyzer.analyze(block, samples, SAMPLE_RATE, faultHz, 0.03, 3, features);
+        return features;
+    }
+}
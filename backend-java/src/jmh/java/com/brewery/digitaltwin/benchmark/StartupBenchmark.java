@@ -0,0 +1,29 @@
+package com.brewery.digitaltwin.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 冷启动：从空库建表、批量初始化拓扑与种子曲线、加载实时状态到上下文就绪，再关闭
+ *
+ * 每次调用是一次完整启动，用单次计时模式；同一 JVM 内的后续启动类已加载，fork 间的差异才反映真正的冷启动。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 3, jvmArgsAppend = "-Xmx2g")
+public class StartupBenchmark {
+
+    @Param({"1000", "100000"})
+    public int pits;
+
+    @Benchmark
+    public void startAndClose() {
+        try (TwinContext twin = TwinContext.start(pits, pits / 2)) {
+            twin.jdbc();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.brewery.digitaltwin.benchmark;
+
+import com.brewery.digitaltwin.BrewingDigitalTwinApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 基准测试用的完整应用上下文：独立的内存 H2、不启动 Web 服务，关闭定时仿真、自动排产与所有落盘文件，
+ * 窖池与设备规模由参数指定；需要推进仿真时由基准方法直接调用 SimulatorService.generateData
+ */
+final class TwinContext implements AutoCloseable {
+
+    private final ConfigurableApplicationContext context;
+
+    private TwinContext(ConfigurableApplicationContext context) {
+        this.context = context;
+    }
+
+    static TwinContext start(int pits, int devices, String... extraArgs) {
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;MODE=LEGACY",
+                "--app.total-pits=" + pits,
+                "--app.total-devices=" + devices,
+                "--app.simulator.interval=86400000",
+                "--app.scheduler.auto=false",
+                "--app.snapshot.file=",
+                "--app.event-log.dir=",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN"));
+        args.addAll(Arrays.asList(extraArgs));
+        SpringApplication application = new SpringApplication(BrewingDigitalTwinApplication.class);
+        application.setWebApplicationType(WebApplicationType.NONE);
+        application.setLogStartupInfo(false);
+        return new TwinContext(application.run(args.toArray(new String[0])));
+    }
+
+    <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    JdbcTemplate jdbc() {
+        return context.getBean(JdbcTemplate.class);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
@@ -0,0 +1,151 @@
+package com.brewery.digitaltwin.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.cfg.spi.DomainDataRegionBuildingContext;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.cache.spi.support.RegionFactoryTemplate;
+import org.hibernate.cache.spi.support.StorageAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hibernate 二级缓存区域工厂 - 进程内有界 LRU
+ *
+ * 实体区域与查询结果区域各自是一个按访问顺序淘汰的 LinkedHashMap，上限分别配置：实体区域
+ * (hibernate.cache.bounded.entity_max_entries) 应不小于实体总数，按 ID 加载 (findById、关联) 在全部实体间
+ * 轮流访问时，区域偏小会持续淘汰、每次都回表；查询区域 (hibernate.cache.bounded.max_entries) 只按缓存的
+ * 查询条数设限。当前 Hibernate 的查询缓存保存整行数据，命中不依赖实体区域；若改为只存 ID 的布局，
+ * 实体区域不足时查询缓存命中会逐条回表。实体区域一旦发生淘汰记一次警告。更新时间戳区域只有表名级别的少量键，且丢失时间戳
+ * 会让过期的查询结果被当作有效，因此不设上限。并发策略 (READ_WRITE 软锁等) 由 Hibernate 在
+ * 存储之上实现，这里只负责存取。
+ */
+@Slf4j
+public class BoundedRegionFactory extends RegionFactoryTemplate {
+
+    public static final String MAX_ENTRIES = "hibernate.cache.bounded.max_entries";
+    public static final String ENTITY_MAX_ENTRIES = "hibernate.cache.bounded.entity_max_entries";
+
+    private int maxEntries;
+    private int entityMaxEntries;
+    private final Map<String, StorageAccess> storages = new ConcurrentHashMap<>();
+
+    @Override
+    protected void prepareForUse(SessionFactoryOptions settings, Map<String, Object> configValues) {
+        maxEntries = ConfigurationHelper.getInt(MAX_ENTRIES, configValues, 10_000);
+        entityMaxEntries = ConfigurationHelper.getInt(ENTITY_MAX_ENTRIES, configValues, 1_000_000);
+    }
+
+    @Override
+    protected void releaseFromUse() {
+        storages.values().forEach(StorageAccess::release);
+        storages.clear();
+    }
+
+    @Override
+    protected DomainDataStorageAccess createDomainDataStorageAccess(DomainDataRegionConfig regionConfig,
+                                                                   DomainDataRegionBuildingContext buildingContext) {
+        String region = regionConfig.getRegionName();
+        return register(region, new LruStorage(entityMaxEntries, () -> log.warn(
+                "二级缓存实体区域 {} 超过 {} 条开始淘汰，按 ID 加载将反复回表，应调大 app.cache.entity-max-entries",
+                region, entityMaxEntries)));
+    }
+
+    @Override
+    protected StorageAccess createQueryResultsRegionStorageAccess(String regionName,
+                                                                  SessionFactoryImplementor sessionFactory) {
+        return register(regionName, new LruStorage(maxEntries, null));
+    }
+
+    @Override
+    protected StorageAccess createTimestampsRegionStorageAccess(String regionName,
+                                                                SessionFactoryImplementor sessionFactory) {
+        return register(regionName, new LruStorage(Integer.MAX_VALUE, null));
+    }
+
+    /**
+     * 各区域当前条目数
+     */
+    public Map<String, Integer> sizes() {
+        Map<String, Integer> result = new TreeMap<>();
+        storages.forEach((name, storage) -> result.put(name, ((LruStorage) storage).size()));
+        return result;
+    }
+
+    /**
+     * 各区域累计淘汰条数
+     */
+    public Map<String, Long> evictions() {
+        Map<String, Long> result = new TreeMap<>();
+        storages.forEach((name, storage) -> result.put(name, ((LruStorage) storage).evictions()));
+        return result;
+    }
+
+    private LruStorage register(String regionName, LruStorage storage) {
+        storages.put(regionName, storage);
+        return storage;
+    }
+
+    private static final class LruStorage implements DomainDataStorageAccess {
+
+        private final Map<Object, Object> map;
+        private long evictions;
+
+        /**
+         * @param firstEviction 首次淘汰时执行一次，可为 null
+         */
+        LruStorage(int maxEntries, Runnable firstEviction) {
+            this.map = new LinkedHashMap<>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+                    if (size() <= maxEntries) return false;
+                    if (evictions++ == 0 && firstEviction != null) firstEviction.run();
+                    return true;
+                }
+            };
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+
+        synchronized long evictions() {
+            return evictions;
+        }
+
+        @Override
+        public synchronized Object getFromCache(Object key, SharedSessionContractImplementor session) {
+            return map.get(key);
+        }
+
+        @Override
+        public synchronized void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+            map.put(key, value);
+        }
+
+        @Override
+        public synchronized boolean contains(Object key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        public synchronized void evictData() {
+            map.clear();
+        }
+
+        @Override
+        public synchronized void evictData(Object key) {
+            map.remove(key);
+        }
+
+        @Override
+        public void release() {
+            evictData();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.brewery.digitaltwin.config;
+
+import com.brewery.digitaltwin.websocket.ClusterTransport;
+import com.brewery.digitaltwin.websocket.HttpClusterTransport;
+import com.brewery.digitaltwin.websocket.LocalClusterTransport;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+/**
+ * 集群通道：app.cluster.transport=local 为进程内总线 (测试/单机多节点)，http 为节点间 HTTP 转发
+ */
+@Configuration
+public class ClusterConfig {
+
+    @Bean
+    public ClusterTransport clusterTransport(ObjectMapper objectMapper,
+                                             @Value("${app.cluster.transport:local}") String transport,
+                                             @Value("${app.cluster.name:brewery}") String clusterName,
+                                             @Value("${app.cluster.peers:}") List<String> peers,
+                                             @Value("${app.cluster.token:}") String token,
+                                             @Value("${app.cluster.queue-size:10000}") int queueSize,
+                                             @Value("${app.cluster.timeout:2000}") long timeoutMs) {
+        return switch (transport) {
+            case "local" -> new LocalClusterTransport(clusterName, queueSize);
+            case "http" -> new HttpClusterTransport(objectMapper, peers, token, queueSize, timeoutMs);
+            default -> throw new IllegalArgumentException("不支持的集群通道: " + transport + "，可选 local / http");
+        };
+    }
+}
@@ -2,20 +2,36 @@ package com.brewery.digitaltwin.config;
 
 import com.brewery.digitaltwin.entity.*;
 import com.brewery.digitaltwin.repository.*;
+import com.brewery.digitaltwin.dto.CurveImportRequest;
+import com.brewery.digitaltwin.service.AlarmRuleService;
+import com.brewery.digitaltwin.service.CurveSimilarityService;
+import com.brewery.digitaltwin.service.EntityCacheService;
+import com.brewery.digitaltwin.service.LineageService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
 import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 /**
  * 数据初始化器 - 在应用启动后初始化演示数据
+ *
+ * 窖池与设备用 JDBC 批量插入 (每批 BULK_CHUNK 行)，大规模拓扑 (app.total-pits 十万级) 也能在数秒内完成；
+ * 批量插入绕过了 Hibernate，提交后清空二级缓存。
  */
 @Slf4j
 @Component
@@ -23,9 +39,22 @@ import java.util.Random;
 @RequiredArgsConstructor
 public class DataInitializer implements ApplicationRunner {
     
+    private static final int BULK_CHUNK = 1000;
+    private static final String INSERT_PIT =
+            "INSERT INTO pits (pit_no, zone, pit_row, pit_col, status, pit_age, fermentation_day, grape_type, " +
+            "created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_DEVICE =
+            "INSERT INTO devices (device_no, name, type, location, status, running_hours, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    
     private final PitRepository pitRepository;
     private final DeviceRepository deviceRepository;
     private final ProductionBatchRepository batchRepository;
+    private final AlarmRuleService alarmRuleService;
+    private final CurveSimilarityService curveService;
+    private final LineageService lineageService;
+    private final EntityCacheService cacheService;
+    private final JdbcTemplate jdbcTemplate;
     
     @Value("${app.total-pits:100}")
     private int totalPits;
@@ -33,6 +62,9 @@ public class DataInitializer implements ApplicationRunner {
     @Value("${app.total-devices:50}")
     private int totalDevices;
     
+    @Value("${app.curves.seed-count:500}")
+    private int seedCurves;
+    
     private final Random random = new Random();
     
     @Override
@@ -42,41 +74,55 @@ public class DataInitializer implements ApplicationRunner {
             long count = pitRepository.count();
             if (count == 0) {
                 log.info("初始化演示数据...");
-                initPits();
+                long start = System.currentTimeMillis();
+                List<String> pitNos = initPits();
                 initDevices();
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        cacheService.evictAll();
+                    }
+                });
+                log.info("窖池与设备批量写入完成: {} ms", System.currentTimeMillis() - start);
                 initBatches();
-                log.info("演示数据初始化完成: {} 窖池, {} 设备", totalPits, totalDevices);
+                initCurves(pitNos);
+                log.info("演示数据初始化完成: {} 窖池, {} 设备, 用时 {} ms",
+                        pitNos.size(), totalDevices, System.currentTimeMillis() - start);
             } else {
                 log.info("数据库已有数据 ({} 窖池)，跳过初始化", count);
             }
+            alarmRuleService.initDefaultRules();
         } catch (Exception e) {
             log.error("数据初始化失败: {}", e.getMessage(), e);
         }
     }
     
-    private void initPits() {
+    /**
+     * 窖池均分到 A-D 四个区域，每个区域至少 5 × 5，更多时按近似方阵排布行列
+     *
+     * @return 写入的窖池编号
+     */
+    private List<String> initPits() {
         String[] zones = {"A", "B", "C", "D"};
-        int pitIndex = 1;
-        for (String zone : zones) {
-            for (int row = 1; row <= 5; row++) {
-                for (int col = 1; col <= 5; col++) {
-                    if (pitIndex > totalPits) return;
-                    
-                    Pit pit = new Pit();
-                    pit.setPitNo(String.format("%s-%03d", zone, pitIndex));
-                    pit.setZone(zone);
-                    pit.setRow(row);
-                    pit.setCol(col);
-                    pit.setStatus("normal");
-                    pit.setPitAge(random.nextInt(100) + 10);
-                    pit.setFermentationDay(random.nextInt(60));
-                    pit.setGrapeType(random.nextBoolean() ? "高粱" : "小麦");
-                    
-                    pitRepository.save(pit);
-                    pitIndex++;
-                }
+        int perZone = Math.max(25, (totalPits + zones.length - 1) / zones.length);
+        int cols = (int) Math.ceil(Math.sqrt(perZone));
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<String> pitNos = new ArrayList<>(totalPits);
+        List<Object[]> rows = new ArrayList<>(BULK_CHUNK);
+        for (int i = 0; i < totalPits; i++) {
+            int position = i % perZone;
+            String zone = zones[i / perZone];
+            String pitNo = String.format("%s-%03d", zone, i + 1);
+            pitNos.add(pitNo);
+            rows.add(new Object[]{pitNo, zone, position / cols + 1, position % cols + 1, "normal",
+                    random.nextInt(100) + 10, random.nextInt(60), random.nextBoolean() ? "高粱" : "小麦", now, now});
+            if (rows.size() == BULK_CHUNK) {
+                jdbcTemplate.batchUpdate(INSERT_PIT, rows);
+                rows.clear();
             }
         }
+        if (!rows.isEmpty()) jdbcTemplate.batchUpdate(INSERT_PIT, rows);
+        return pitNos;
     }
     
     private void initDevices() {
@@ -84,21 +130,28 @@ public class DataInitializer implements ApplicationRunner {
         String[] typeNames = {"泵", "电机", "传感器", "机器人", "输送带"};
         String[] locations = {"A区", "B区", "C区", "D区", "中控室"};
         
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(BULK_CHUNK);
         for (int i = 1; i <= totalDevices; i++) {
             int typeIndex = random.nextInt(types.length);
-            Device device = new Device();
-            device.setDeviceNo(String.format("%s-%03d", types[typeIndex].substring(0, 1).toUpperCase(), i));
-            device.setName(typeNames[typeIndex] + "-" + i);
-            device.setType(types[typeIndex]);
-            device.setLocation(locations[random.nextInt(locations.length)]);
-            device.setStatus("running");
-            device.setRunningHours((double) random.nextInt(10000));
-            
-            deviceRepository.save(device);
+            rows.add(new Object[]{
+                    String.format("%s-%03d", types[typeIndex].substring(0, 1).toUpperCase(), i),
+                    typeNames[typeIndex] + "-" + i,
+                    types[typeIndex],
+                    locations[random.nextInt(locations.length)],
+                    "running",
+                    (double) random.nextInt(10000),
+                    now, now});
+            if (rows.size() == BULK_CHUNK) {
+                jdbcTemplate.batchUpdate(INSERT_DEVICE, rows);
+                rows.clear();
+            }
         }
+        if (!rows.isEmpty()) jdbcTemplate.batchUpdate(INSERT_DEVICE, rows);
     }
     
     private void initBatches() {
+        List<Pit> pits = pitRepository.findAll(PageRequest.of(0, 10, Sort.by("id"))).getContent();
         for (int i = 1; i <= 5; i++) {
             ProductionBatch batch = new ProductionBatch();
             batch.setBatchNo(String.format("BATCH-%s-%03d", 
@@ -110,6 +163,34 @@ public class DataInitializer implements ApplicationRunner {
                 batch.setStartDate(LocalDateTime.now().minusDays(random.nextInt(10)));
             }
             batchRepository.save(batch);
+            if (i <= 2) {
+                // 进行中的批次各占用一组窖池
+                for (int p = (i - 1) * 5; p < Math.min(pits.size(), i * 5); p++) {
+                    lineageService.assign(pits.get(p), batch);
+                }
+            }
+        }
+    }
+    
+    /**
+     * 历史发酵曲线：与仿真相同的温度模型加上幅值、基线和噪声扰动，偏离越大质量评分越低
+     */
+    private void initCurves(List<String> pitNos) {
+        for (int i = 0; i < seedCurves; i++) {
+            double amplitude = 10 + random.nextGaussian() * 2;
+            double base = 25 + random.nextGaussian() * 1.5;
+            int days = 60 + random.nextInt(31);
+            List<Double> daily = new ArrayList<>(days);
+            for (int day = 0; day < days; day++) {
+                daily.add(base + Math.sin(day * 0.1) * amplitude + random.nextGaussian() * 0.8);
+            }
+            double score = 95 - 3 * Math.abs(amplitude - 10) - 2 * Math.abs(base - 25) + random.nextGaussian() * 2;
+            
+            CurveImportRequest curve = new CurveImportRequest();
+            curve.setPitNo(pitNos.get(random.nextInt(pitNos.size())));
+            curve.setQualityScore(Math.max(60.0, Math.min(100.0, Math.round(score * 10) / 10.0)));
+            curve.setDailyTemperatures(daily);
+            curveService.importCurve(curve);
         }
     }
 }
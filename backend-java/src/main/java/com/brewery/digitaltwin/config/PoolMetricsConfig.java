@@ -0,0 +1,67 @@
+package com.brewery.digitaltwin.config;
+
+import com.brewery.digitaltwin.service.MetricsRegistry;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 连接池指标：获取连接的等待时间、连接占用时间、获取超时次数，以及活跃/空闲连接数与等待线程数
+ *
+ * HikariCP 只在连接池启动前接受 MetricsTrackerFactory，因此在数据源 Bean 初始化前注入；
+ * 连接池在首次取连接时才启动，此时再从容器取 MetricsRegistry，不提前初始化其他 Bean。
+ */
+@Configuration
+public class PoolMetricsConfig {
+
+    @Bean
+    public static BeanPostProcessor poolMetricsPostProcessor(ObjectProvider<MetricsRegistry> metrics) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource dataSource && dataSource.getMetricRegistry() == null) {
+                    dataSource.setMetricsTrackerFactory((poolName, stats) -> new Tracker(metrics.getObject(), poolName, stats));
+                }
+                return bean;
+            }
+        };
+    }
+
+    private static final class Tracker implements IMetricsTracker {
+
+        private final MetricsRegistry.Histogram acquire;
+        private final MetricsRegistry.Histogram usage;
+        private final MetricsRegistry.Counter timeouts;
+
+        Tracker(MetricsRegistry metrics, String pool, PoolStats stats) {
+            acquire = metrics.histogram("twin_db_pool_acquire_seconds", "从连接池获取连接的等待时间",
+                    MetricsRegistry.SECONDS_BUCKETS, "pool", pool);
+            usage = metrics.histogram("twin_db_pool_usage_seconds", "连接从借出到归还的占用时间",
+                    MetricsRegistry.SECONDS_BUCKETS, "pool", pool);
+            timeouts = metrics.counter("twin_db_pool_timeouts_total", "获取连接超时次数", "pool", pool);
+            metrics.gauge("twin_db_pool_connections", "连接池连接数", stats::getActiveConnections, "pool", pool, "state", "active");
+            metrics.gauge("twin_db_pool_connections", "连接池连接数", stats::getIdleConnections, "pool", pool, "state", "idle");
+            metrics.gauge("twin_db_pool_max_connections", "连接池最大连接数", stats::getMaxConnections, "pool", pool);
+            metrics.gauge("twin_db_pool_pending_threads", "等待连接的线程数", stats::getPendingThreads, "pool", pool);
+        }
+
+        @Override
+        public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+            acquire.observeNanos(elapsedAcquiredNanos);
+        }
+
+        @Override
+        public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+            usage.observe(elapsedBorrowedMillis / 1000.0);
+        }
+
+        @Override
+        public void recordConnectionTimeout() {
+            timeouts.increment();
+        }
+    }
+}
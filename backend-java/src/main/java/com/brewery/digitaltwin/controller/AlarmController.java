@@ -1,12 +1,19 @@
 package com.brewery.digitaltwin.controller;
 
+import com.brewery.digitaltwin.dto.AlarmBulkRequest;
+import com.brewery.digitaltwin.dto.AlarmFilter;
 import com.brewery.digitaltwin.dto.ApiResponse;
+import com.brewery.digitaltwin.dto.CursorPage;
 import com.brewery.digitaltwin.entity.Alarm;
 import com.brewery.digitaltwin.service.AlarmService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -60,6 +67,32 @@ public class AlarmController {
         return ApiResponse.success(alarmService.getAlarmsByStatus(status, page, size));
     }
     
+    @GetMapping("/cursor")
+    public ApiResponse<CursorPage<Alarm>> getAlarmsByCursor(
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String level,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String source,
+            @RequestParam(required = false) String zone,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        AlarmFilter filter = new AlarmFilter();
+        filter.setLevel(level);
+        filter.setType(type);
+        filter.setSource(source);
+        filter.setZone(zone);
+        filter.setFrom(from);
+        filter.setTo(to);
+        if (status != null) filter.setStatuses(List.of(status));
+        try {
+            return ApiResponse.success(alarmService.getAlarmsByCursor(filter, cursor, size));
+        } catch (IllegalArgumentException | DateTimeException e) {
+            return ApiResponse.error("无效的分页游标");
+        }
+    }
+    
     @GetMapping("/{id}")
     public ApiResponse<Alarm> getAlarmById(@PathVariable Long id) {
         return alarmService.getAlarmById(id)
@@ -98,13 +131,47 @@ public class AlarmController {
 
     @PostMapping("/batch-resolve")
     public ApiResponse<Map<String, Integer>> batchResolve(@RequestBody Map<String, Object> body) {
-        @SuppressWarnings("unchecked")
-        List<Long> ids = (List<Long>) body.get("ids");
-        String resolvedBy = (String) body.getOrDefault("resolvedBy", "system");
+        if (!(body.get("ids") instanceof List<?> rawIds) || rawIds.isEmpty()) {
+            return ApiResponse.error("ids 须为非空的告警 ID 数组");
+        }
+        List<Long> ids = new ArrayList<>(rawIds.size());
+        for (Object id : rawIds) {
+            if (!(id instanceof Integer || id instanceof Long)) {
+                return ApiResponse.error("无效的告警 ID: " + id);
+            }
+            ids.add(((Number) id).longValue());
+        }
+        String resolvedBy = body.get("resolvedBy") instanceof String name ? name : "system";
         int count = alarmService.batchResolve(ids, resolvedBy);
         return ApiResponse.success(Map.of("resolved", count));
     }
 
+    @PostMapping("/bulk/resolve")
+    public ApiResponse<Map<String, Integer>> bulkResolve(@RequestBody AlarmBulkRequest request) {
+        if (!hasCriteria(request)) {
+            return ApiResponse.error("需指定 ids 或筛选条件");
+        }
+        return ApiResponse.success(Map.of("resolved", alarmService.bulkResolve(request)));
+    }
+
+    @PostMapping("/bulk/acknowledge")
+    public ApiResponse<Map<String, Integer>> bulkAcknowledge(@RequestBody AlarmBulkRequest request) {
+        if (!hasCriteria(request)) {
+            return ApiResponse.error("需指定 ids 或筛选条件");
+        }
+        return ApiResponse.success(Map.of("acknowledged", alarmService.bulkAcknowledge(request)));
+    }
+
+    @PostMapping("/zones/{zone}/resolve")
+    public ApiResponse<Map<String, Integer>> resolveZone(
+            @PathVariable String zone,
+            @RequestParam(name = "resolved_by", required = false) String resolvedBy) {
+        AlarmBulkRequest request = new AlarmBulkRequest();
+        request.setZone(zone);
+        if (resolvedBy != null) request.setResolvedBy(resolvedBy);
+        return ApiResponse.success(Map.of("resolved", alarmService.bulkResolve(request)));
+    }
+
     @PutMapping("/resolve-batch")
     public ApiResponse<Map<String, Integer>> resolveBatch(
             @RequestParam(name = "alarm_ids", required = false) List<Long> ids,
@@ -118,4 +185,10 @@ public class AlarmController {
         int count = alarmService.batchResolve(resolvedIds, resolvedUser);
         return ApiResponse.success(Map.of("resolved", count));
     }
+
+    private boolean hasCriteria(AlarmBulkRequest request) {
+        return request.getIds() != null || request.getLevel() != null || request.getType() != null
+                || request.getSource() != null || request.getZone() != null
+                || request.getFrom() != null || request.getTo() != null;
+    }
 }
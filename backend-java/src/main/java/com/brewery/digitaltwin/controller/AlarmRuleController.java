@@ -0,0 +1,62 @@
+package com.brewery.digitaltwin.controller;
+
+import com.brewery.digitaltwin.dto.AlarmRuleRequest;
+import com.brewery.digitaltwin.dto.ApiResponse;
+import com.brewery.digitaltwin.entity.AlarmRule;
+import com.brewery.digitaltwin.service.AlarmRuleService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/v1/alarm-rules")
+@RequiredArgsConstructor
+public class AlarmRuleController {
+    
+    private final AlarmRuleService ruleService;
+    
+    @GetMapping
+    public ApiResponse<List<AlarmRule>> getRules(
+            @RequestParam(name = "target_type", required = false) String targetType) {
+        if (targetType != null) {
+            return ApiResponse.success(ruleService.getRulesByTargetType(targetType));
+        }
+        return ApiResponse.success(ruleService.getAllRules());
+    }
+    
+    @GetMapping("/{id}")
+    public ApiResponse<AlarmRule> getRuleById(@PathVariable Long id) {
+        return ruleService.getRuleById(id)
+                .map(ApiResponse::success)
+                .orElse(ApiResponse.error("规则不存在"));
+    }
+    
+    @PostMapping
+    public ApiResponse<AlarmRule> createRule(@RequestBody AlarmRule rule) {
+        try {
+            return ApiResponse.success(ruleService.createRule(rule));
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+    
+    @PutMapping("/{id}")
+    public ApiResponse<AlarmRule> updateRule(@PathVariable Long id, @RequestBody AlarmRuleRequest rule) {
+        try {
+            return ruleService.updateRule(id, rule)
+                    .map(ApiResponse::success)
+                    .orElse(ApiResponse.error("规则不存在"));
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+    
+    @DeleteMapping("/{id}")
+    public ApiResponse<Boolean> deleteRule(@PathVariable Long id) {
+        if (!ruleService.deleteRule(id)) {
+            return ApiResponse.error("规则不存在");
+        }
+        return ApiResponse.success(true);
+    }
+}
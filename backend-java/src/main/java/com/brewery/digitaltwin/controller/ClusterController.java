@@ -0,0 +1,44 @@
+package com.brewery.digitaltwin.controller;
+
+import com.brewery.digitaltwin.dto.ApiResponse;
+import com.brewery.digitaltwin.dto.ClusterEnvelope;
+import com.brewery.digitaltwin.service.ClusterService;
+import com.brewery.digitaltwin.websocket.ClusterTransport;
+import com.brewery.digitaltwin.websocket.HttpClusterTransport;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/v1/cluster")
+@RequiredArgsConstructor
+public class ClusterController {
+
+    private final ClusterService clusterService;
+    private final ClusterTransport transport;
+
+    @GetMapping
+    public ApiResponse<Map<String, Object>> getStatus() {
+        return ApiResponse.success(clusterService.getStatus());
+    }
+
+    /**
+     * 节点间消息入口，仅 HTTP 通道使用；发送方按状态码判断成功与否
+     */
+    @PostMapping(HttpClusterTransport.RELAY_PATH_SUFFIX)
+    public ResponseEntity<ApiResponse<Void>> relay(
+            @RequestHeader(value = HttpClusterTransport.TOKEN_HEADER, required = false) String token,
+            @RequestBody List<ClusterEnvelope> envelopes) {
+        if (!clusterService.isEnabled() || !(transport instanceof HttpClusterTransport http)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ApiResponse.error("未启用 HTTP 集群通道"));
+        }
+        if (!http.receive(token, envelopes)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(ApiResponse.error("集群令牌无效"));
+        }
+        return ResponseEntity.ok(ApiResponse.success(null));
+    }
+}
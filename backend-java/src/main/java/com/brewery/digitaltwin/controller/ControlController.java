@@ -0,0 +1,50 @@
+package com.brewery.digitaltwin.controller;
+
+import com.brewery.digitaltwin.dto.ApiResponse;
+import com.brewery.digitaltwin.service.PitControlService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/v1/control")
+@RequiredArgsConstructor
+public class ControlController {
+    
+    private final PitControlService controlService;
+    
+    /**
+     * 窖温控制汇总：设定值、增益、跟踪误差与控制量
+     */
+    @GetMapping("/stats")
+    public ApiResponse<Map<String, Object>> getStats() {
+        return ApiResponse.success(controlService.getStats());
+    }
+    
+    @GetMapping("/pits/{id}")
+    public ApiResponse<Map<String, Object>> getPitState(@PathVariable Long id) {
+        return controlService.getPitState(id)
+                .map(ApiResponse::success)
+                .orElse(ApiResponse.error("窖池不存在或控制器尚未运行"));
+    }
+    
+    /**
+     * 离线调参：用候选增益仿真，如 ?kp=0.3&ki=0.001&hours=12&pits=10000
+     */
+    @PostMapping("/simulate")
+    public ApiResponse<Map<String, Object>> simulate(
+            @RequestParam(required = false, defaultValue = "100") Integer pits,
+            @RequestParam(required = false, defaultValue = "6") Double hours,
+            @RequestParam(required = false, defaultValue = "5") Double stepSeconds,
+            @RequestParam(required = false) Double kp,
+            @RequestParam(required = false) Double ki,
+            @RequestParam(required = false) Double kd,
+            @RequestParam(required = false) Double setpoint) {
+        try {
+            return ApiResponse.success(controlService.simulate(pits, hours, stepSeconds, kp, ki, kd, setpoint));
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.brewery.digitaltwin.controller;
+
+import com.brewery.digitaltwin.dto.ApiResponse;
+import com.brewery.digitaltwin.service.CorrelationEngine;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/v1/correlations")
+@RequiredArgsConstructor
+public class CorrelationController {
+    
+    private final CorrelationEngine correlationEngine;
+    
+    @GetMapping("/recent")
+    public ApiResponse<List<CorrelationEngine.RootCause>> getRecent() {
+        return ApiResponse.success(correlationEngine.getRecent());
+    }
+    
+    @GetMapping("/stats")
+    public ApiResponse<Map<String, Object>> getStats() {
+        return ApiResponse.success(correlationEngine.getStats());
+    }
+}
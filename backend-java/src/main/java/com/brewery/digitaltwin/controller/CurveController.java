@@ -0,0 +1,62 @@
+package com.brewery.digitaltwin.controller;
+
+import com.brewery.digitaltwin.dto.ApiResponse;
+import com.brewery.digitaltwin.dto.CurveImportRequest;
+import com.brewery.digitaltwin.entity.FermentationCurve;
+import com.brewery.digitaltwin.service.CurveSimilarityService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/v1/curves")
+@RequiredArgsConstructor
+public class CurveController {
+    
+    private final CurveSimilarityService curveService;
+    
+    /**
+     * 与窖池当前发酵曲线最相似的历史曲线，如 ?pitNo=A-017&k=10&minQuality=85
+     */
+    @GetMapping("/similar")
+    public ApiResponse<Map<String, Object>> findSimilar(
+            @RequestParam String pitNo,
+            @RequestParam(required = false, defaultValue = "10") Integer k,
+            @RequestParam(required = false) Double minQuality) {
+        try {
+            return ApiResponse.success(curveService.findSimilar(pitNo, Math.min(Math.max(k, 1), 100), minQuality));
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+    
+    /**
+     * 窖池一轮发酵结束，归档当前曲线
+     */
+    @PostMapping("/archive")
+    public ApiResponse<FermentationCurve> archive(
+            @RequestParam String pitNo,
+            @RequestParam(required = false) Long batchId,
+            @RequestParam(required = false) Double qualityScore) {
+        try {
+            return ApiResponse.success(curveService.archive(pitNo, batchId, qualityScore));
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+    
+    @PostMapping
+    public ApiResponse<FermentationCurve> importCurve(@RequestBody CurveImportRequest request) {
+        try {
+            return ApiResponse.success(curveService.importCurve(request));
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+    
+    @GetMapping("/stats")
+    public ApiResponse<Map<String, Object>> getStats() {
+        return ApiResponse.success(curveService.getStats());
+    }
+}
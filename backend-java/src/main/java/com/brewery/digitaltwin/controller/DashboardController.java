@@ -4,10 +4,13 @@ import com.brewery.digitaltwin.dto.ApiResponse;
 import com.brewery.digitaltwin.dto.DashboardStats;
 import com.brewery.digitaltwin.dto.HeatmapData;
 import com.brewery.digitaltwin.service.DashboardService;
+import com.brewery.digitaltwin.service.EntityCacheService;
 import com.brewery.digitaltwin.websocket.RealtimeWebSocketHandler;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.*;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.RuntimeMXBean;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -18,6 +21,7 @@ import java.util.Map;
 public class DashboardController {
     
     private final DashboardService dashboardService;
+    private final EntityCacheService cacheService;
     private final RealtimeWebSocketHandler webSocketHandler;
     
     @GetMapping("/stats")
@@ -53,9 +57,19 @@ public class DashboardController {
         Map<String, Object> info = new HashMap<>();
         info.put("wsConnections", webSocketHandler.getConnectionCount());
         info.put("javaVersion", System.getProperty("java.version"));
-        info.put("uptime", System.currentTimeMillis());
+        RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+        info.put("startTime", runtime.getStartTime());
+        info.put("uptime", runtime.getUptime());
         info.put("freeMemory", Runtime.getRuntime().freeMemory() / 1024 / 1024 + "MB");
         info.put("totalMemory", Runtime.getRuntime().totalMemory() / 1024 / 1024 + "MB");
         return ApiResponse.success(info);
     }
+    
+    /**
+     * 二级缓存命中率与累计数据库语句数
+     */
+    @GetMapping("/cache-stats")
+    public ApiResponse<Map<String, Object>> getCacheStats() {
+        return ApiResponse.success(cacheService.getStats());
+    }
 }
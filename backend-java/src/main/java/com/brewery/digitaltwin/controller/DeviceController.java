@@ -3,14 +3,20 @@ package com.brewery.digitaltwin.controller;
 import com.brewery.digitaltwin.dto.ApiResponse;
 import com.brewery.digitaltwin.entity.Device;
 import com.brewery.digitaltwin.entity.DeviceData;
+import com.brewery.digitaltwin.entity.VibrationFeature;
+import com.brewery.digitaltwin.service.DeviceAnomalyDetector;
 import com.brewery.digitaltwin.service.DeviceService;
+import com.brewery.digitaltwin.service.EntityStatsService;
+import com.brewery.digitaltwin.service.SensorHistoryService;
+import com.brewery.digitaltwin.service.WaveformService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/v1/devices")
@@ -18,6 +24,10 @@ import java.util.stream.Collectors;
 public class DeviceController {
     
     private final DeviceService deviceService;
+    private final DeviceAnomalyDetector anomalyDetector;
+    private final EntityStatsService statsService;
+    private final SensorHistoryService historyService;
+    private final WaveformService waveformService;
     
     @GetMapping
     public ApiResponse<List<Device>> getAllDevices(
@@ -36,26 +46,12 @@ public class DeviceController {
     
     @GetMapping("/stats")
     public ApiResponse<Map<String, Object>> getDeviceStats() {
-        Map<String, Object> stats = new HashMap<>();
-        List<Device> allDevices = deviceService.getAllDevices();
-        long runningCount = allDevices.stream().filter(d -> "running".equals(d.getStatus())).count();
-        long stoppedCount = allDevices.stream().filter(d -> "stopped".equals(d.getStatus())).count();
-        long faultCount = allDevices.stream().filter(d -> "fault".equals(d.getStatus())).count();
-        stats.put("total", allDevices.size());
-        stats.put("running", runningCount);
-        stats.put("stopped", stoppedCount);
-        stats.put("fault", faultCount);
-        return ApiResponse.success(stats);
+        return ApiResponse.success(statsService.getDeviceStats());
     }
     
     @GetMapping("/types")
     public ApiResponse<List<String>> getDeviceTypes() {
-        List<Device> allDevices = deviceService.getAllDevices();
-        List<String> types = allDevices.stream()
-                .map(Device::getType)
-                .distinct()
-                .collect(Collectors.toList());
-        return ApiResponse.success(types);
+        return ApiResponse.success(statsService.getDeviceTypes());
     }
     
     @GetMapping("/{id}")
@@ -92,8 +88,18 @@ public class DeviceController {
     @GetMapping("/{id}/data")
     public ApiResponse<List<DeviceData>> getDeviceData(
             @PathVariable Long id,
-            @RequestParam(required = false, defaultValue = "24") Integer hours) {
-        return ApiResponse.success(deviceService.getDeviceData(id, hours));
+            @RequestParam(required = false, defaultValue = "24") Integer hours,
+            @RequestParam(required = false) Integer maxPoints,
+            @RequestParam(required = false) String metric,
+            @RequestParam(required = false) String mode) {
+        if (maxPoints == null) {
+            return ApiResponse.success(deviceService.getDeviceData(id, hours));
+        }
+        try {
+            return ApiResponse.success(historyService.getDeviceData(id, hours, maxPoints, metric, mode));
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(e.getMessage());
+        }
     }
     
     @GetMapping("/{id}/data/latest")
@@ -109,4 +115,54 @@ public class DeviceController {
     public ApiResponse<List<DeviceData>> getAllLatestDeviceData() {
         return ApiResponse.success(deviceService.getLatestDeviceData());
     }
+    
+    @GetMapping("/{id}/health")
+    public ApiResponse<Map<String, Object>> getDeviceHealth(@PathVariable Long id) {
+        Map<String, Object> health = anomalyDetector.getHealth(id);
+        if (health == null) {
+            return ApiResponse.error("暂无设备健康数据");
+        }
+        return ApiResponse.success(health);
+    }
+    
+    @GetMapping("/health")
+    public ApiResponse<Map<Long, Double>> getAllDeviceHealth() {
+        return ApiResponse.success(anomalyDetector.getAllHealth());
+    }
+    
+    /**
+     * 上传一块原始振动波形 (小端 float32)，返回提取的特征
+     */
+    @PostMapping(value = "/{id}/waveform", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ApiResponse<VibrationFeature> ingestWaveform(
+            @PathVariable Long id,
+            @RequestParam double sampleRate,
+            @RequestParam(required = false) Double rpm,
+            @RequestParam(required = false, defaultValue = "false") boolean envelope,
+            InputStream body) throws IOException {
+        try {
+            return ApiResponse.success(waveformService.ingest(id, body, sampleRate, rpm, envelope));
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+    
+    @GetMapping("/{id}/waveform/features")
+    public ApiResponse<List<VibrationFeature>> getWaveformFeatures(
+            @PathVariable Long id,
+            @RequestParam(required = false, defaultValue = "20") Integer limit) {
+        return ApiResponse.success(waveformService.getFeatures(id, Math.min(Math.max(limit, 1), 1000)));
+    }
+    
+    @GetMapping("/{id}/waveform/raw")
+    public ApiResponse<Map<String, Object>> getLatestRawWaveform(@PathVariable Long id) throws IOException {
+        if (!waveformService.isRingFileEnabled()) {
+            return ApiResponse.error("未启用原始波形环形文件");
+        }
+        Map<String, Object> raw = waveformService.getLatestRaw(id);
+        if (raw == null) {
+            return ApiResponse.error("暂无原始波形");
+        }
+        return ApiResponse.success(raw);
+    }
 }
@@ -0,0 +1,118 @@
+package com.brewery.digitaltwin.controller;
+
+import com.brewery.digitaltwin.dto.ApiResponse;
+import com.brewery.digitaltwin.entity.Device;
+import com.brewery.digitaltwin.entity.Pit;
+import com.brewery.digitaltwin.service.LiveStateService;
+import com.brewery.digitaltwin.service.SensorExportService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 传感器历史批量导出 - 响应体流式写出，format 可选 csv / ndjson / binary
+ */
+@RestController
+@RequestMapping("/api/v1/export")
+@RequiredArgsConstructor
+public class ExportController {
+
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMddHHmm");
+
+    private final SensorExportService exportService;
+    private final LiveStateService liveStateService;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 窖池传感器历史，时间窗口 (from, to]，默认最近 24 小时
+     *
+     * @param pitIds 窖池 ID 列表 (逗号分隔)，为空时按 zone 筛选，都为空导出全部窖池
+     */
+    @GetMapping("/pits")
+    public ResponseEntity<StreamingResponseBody> exportPits(
+            @RequestParam(required = false) List<Long> pitIds,
+            @RequestParam(required = false) String zone,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "csv") String format) {
+        List<Long> ids = pitIds != null && !pitIds.isEmpty() ? pitIds : liveStateService.getPits().stream()
+                .filter(pit -> zone == null || zone.equals(pit.getZone()))
+                .map(Pit::getId)
+                .sorted(Comparator.naturalOrder())
+                .toList();
+        return export("pit-history", ids, from, to, format, (start, end, fmt, out) ->
+                exportService.exportPits(ids, start, end, fmt, out));
+    }
+
+    /**
+     * 设备运行历史，时间窗口 (from, to]，默认最近 24 小时
+     *
+     * @param deviceIds 设备 ID 列表 (逗号分隔)，为空时按 type 筛选，都为空导出全部设备
+     */
+    @GetMapping("/devices")
+    public ResponseEntity<StreamingResponseBody> exportDevices(
+            @RequestParam(required = false) List<Long> deviceIds,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "csv") String format) {
+        List<Long> ids = deviceIds != null && !deviceIds.isEmpty() ? deviceIds : liveStateService.getDevices().stream()
+                .filter(device -> type == null || type.equals(device.getType()))
+                .map(Device::getId)
+                .sorted(Comparator.naturalOrder())
+                .toList();
+        return export("device-history", ids, from, to, format, (start, end, fmt, out) ->
+                exportService.exportDevices(ids, start, end, fmt, out));
+    }
+
+    private interface Exporter {
+        void export(LocalDateTime from, LocalDateTime to, SensorExportService.Format format,
+                    OutputStream out) throws IOException;
+    }
+
+    private ResponseEntity<StreamingResponseBody> export(String name, List<Long> ids, LocalDateTime from, LocalDateTime to,
+                                     String format, Exporter exporter) {
+        SensorExportService.Format fmt;
+        try {
+            fmt = SensorExportService.Format.parse(format);
+        } catch (IllegalArgumentException e) {
+            return badRequest(e.getMessage());
+        }
+        LocalDateTime end = to != null ? to : LocalDateTime.now();
+        LocalDateTime start = from != null ? from : end.minusHours(24);
+        if (!start.isBefore(end)) {
+            return badRequest("from 必须早于 to");
+        }
+        if (ids.isEmpty()) {
+            return badRequest("没有匹配的导出对象");
+        }
+        StreamingResponseBody body = out -> exporter.export(start, end, fmt, out);
+        String filename = String.format("%s-%s-%s.%s", name, start.format(FILE_TIME), end.format(FILE_TIME), fmt.extension());
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .contentType(MediaType.parseMediaType(fmt.contentType()))
+                .body(body);
+    }
+
+    /**
+     * 流式返回类型只能携带 StreamingResponseBody，参数错误时同样以它写出 ApiResponse JSON
+     */
+    private ResponseEntity<StreamingResponseBody> badRequest(String message) {
+        ApiResponse<Void> error = ApiResponse.error(message);
+        return ResponseEntity.badRequest()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> objectMapper.writeValue(out, error));
+    }
+}
@@ -0,0 +1,87 @@
+package com.brewery.digitaltwin.controller;
+
+import com.brewery.digitaltwin.dto.ApiResponse;
+import com.brewery.digitaltwin.service.FlightRecorderService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JFR 持续录制 - 状态查询、导出最近 N 分钟的 .jfr 文件、以及慢周期与 JVM 停顿的对照
+ */
+@RestController
+@RequestMapping("/api/v1/jfr")
+@RequiredArgsConstructor
+public class FlightRecorderController {
+
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    private final FlightRecorderService recorderService;
+    private final ObjectMapper objectMapper;
+
+    @GetMapping("/status")
+    public ApiResponse<Map<String, Object>> getStatus() {
+        return ApiResponse.success(recorderService.getStatus());
+    }
+
+    /**
+     * 导出最近 minutes 分钟的录制，可用 JDK Mission Control 或 jfr print 查看
+     */
+    @GetMapping("/dump")
+    public ResponseEntity<StreamingResponseBody> dump(@RequestParam(defaultValue = "5") int minutes) {
+        if (minutes <= 0) {
+            return error(HttpStatus.BAD_REQUEST, "minutes 必须大于 0");
+        }
+        if (!recorderService.isRecording()) {
+            return error(HttpStatus.SERVICE_UNAVAILABLE, "JFR 持续录制未运行");
+        }
+        Duration last = Duration.ofMinutes(minutes);
+        String filename = String.format("twin-%s-%dm.jfr", LocalDateTime.now().format(FILE_TIME), minutes);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(out -> recorderService.dump(last, out));
+    }
+
+    /**
+     * 最近 minutes 分钟内耗时不少于 minTickMs 的仿真周期，以及与之重叠的 GC / 安全点停顿
+     */
+    @GetMapping("/stalls")
+    public ApiResponse<List<Map<String, Object>>> getStalls(
+            @RequestParam(defaultValue = "5") int minutes,
+            @RequestParam(defaultValue = "1000") long minTickMs) {
+        if (minutes <= 0) {
+            return ApiResponse.error("minutes 必须大于 0");
+        }
+        if (!recorderService.isRecording()) {
+            return ApiResponse.error("JFR 持续录制未运行");
+        }
+        try {
+            return ApiResponse.success(recorderService.findStalls(Duration.ofMinutes(minutes), Duration.ofMillis(minTickMs)));
+        } catch (IOException e) {
+            return ApiResponse.error("读取录制失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 流式返回类型只能携带 StreamingResponseBody，出错时同样以它写出 ApiResponse JSON
+     */
+    private ResponseEntity<StreamingResponseBody> error(HttpStatus status, String message) {
+        ApiResponse<Void> error = ApiResponse.error(message);
+        return ResponseEntity.status(status)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> objectMapper.writeValue(out, error));
+    }
+}
@@ -0,0 +1,60 @@
+package com.brewery.digitaltwin.controller;
+
+import com.brewery.digitaltwin.dto.ApiResponse;
+import com.brewery.digitaltwin.service.HistoryImportService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/v1/import")
+@RequiredArgsConstructor
+public class ImportController {
+
+    private final HistoryImportService importService;
+
+    /**
+     * 导入窖池传感器历史，file 为导入目录下的相对路径；同一文件中断后再次提交即从检查点继续
+     */
+    @PostMapping("/pits")
+    public ApiResponse<Map<String, Object>> importPits(@RequestParam String file) {
+        try {
+            return ApiResponse.success(importService.importPits(file));
+        } catch (IllegalArgumentException | IOException e) {
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
+    @PostMapping("/devices")
+    public ApiResponse<Map<String, Object>> importDevices(@RequestParam String file) {
+        try {
+            return ApiResponse.success(importService.importDevices(file));
+        } catch (IllegalArgumentException | IOException e) {
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
+    @GetMapping("/jobs")
+    public ApiResponse<List<Map<String, Object>>> getJobs() {
+        return ApiResponse.success(importService.getJobs());
+    }
+
+    @GetMapping("/jobs/{id}")
+    public ApiResponse<Map<String, Object>> getJob(@PathVariable Long id) {
+        return importService.getJob(id)
+                .map(ApiResponse::success)
+                .orElse(ApiResponse.error("导入任务不存在"));
+    }
+
+    @PostMapping("/jobs/{id}/cancel")
+    public ApiResponse<Map<String, Object>> cancel(@PathVariable Long id) {
+        try {
+            return ApiResponse.success(importService.cancel(id));
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.brewery.digitaltwin.controller;
+
+import com.brewery.digitaltwin.service.MetricsRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 运行指标抓取接口，Prometheus 文本格式
+ */
+@RestController
+@RequestMapping("/api/v1/metrics")
+@RequiredArgsConstructor
+public class MetricsController {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final MetricsRegistry metrics;
+
+    @GetMapping
+    public ResponseEntity<String> scrape() {
+        return ResponseEntity.ok().header("Content-Type", CONTENT_TYPE).body(metrics.scrape());
+    }
+}
@@ -2,14 +2,19 @@ package com.brewery.digitaltwin.controller;
 
 import com.brewery.digitaltwin.dto.ApiResponse;
 import com.brewery.digitaltwin.dto.HeatmapData;
+import com.brewery.digitaltwin.entity.BatchPitAssignment;
 import com.brewery.digitaltwin.entity.Pit;
 import com.brewery.digitaltwin.entity.PitSensorData;
 import com.brewery.digitaltwin.service.DashboardService;
+import com.brewery.digitaltwin.service.EntityStatsService;
+import com.brewery.digitaltwin.service.LineageService;
 import com.brewery.digitaltwin.service.PitService;
+import com.brewery.digitaltwin.service.SensorHistoryService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.HashMap;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
@@ -20,6 +25,9 @@ public class PitController {
     
     private final PitService pitService;
     private final DashboardService dashboardService;
+    private final EntityStatsService statsService;
+    private final SensorHistoryService historyService;
+    private final LineageService lineageService;
     
     @GetMapping
     public ApiResponse<List<Pit>> getAllPits(
@@ -38,16 +46,7 @@ public class PitController {
     
     @GetMapping("/stats")
     public ApiResponse<Map<String, Object>> getPitStats() {
-        Map<String, Object> stats = new HashMap<>();
-        List<Pit> allPits = pitService.getAllPits();
-        long normalCount = allPits.stream().filter(p -> "normal".equals(p.getStatus())).count();
-        long warningCount = allPits.stream().filter(p -> "warning".equals(p.getStatus())).count();
-        long alarmCount = allPits.stream().filter(p -> "alarm".equals(p.getStatus())).count();
-        stats.put("total", allPits.size());
-        stats.put("normal", normalCount);
-        stats.put("warning", warningCount);
-        stats.put("alarm", alarmCount);
-        return ApiResponse.success(stats);
+        return ApiResponse.success(statsService.getPitStats());
     }
     
     @GetMapping("/heatmap")
@@ -88,17 +87,47 @@ public class PitController {
             @RequestParam(required = false) String batch_code) {
         return pitService.getPitById(id)
                 .map(pit -> {
+                    if (batch_code != null && !batch_code.isBlank()) {
+                        try {
+                            lineageService.assignByBatchNo(id, batch_code);
+                        } catch (IllegalArgumentException e) {
+                            return ApiResponse.<Pit>error(e.getMessage());
+                        }
+                    }
                     pit.setStatus(status);
                     return ApiResponse.success(pitService.updatePit(id, pit).get());
                 })
                 .orElse(ApiResponse.error("窖池不存在"));
     }
     
+    /**
+     * 窖池的批次血缘；指定 at 时只返回该时刻在窖池中发酵的批次
+     */
+    @GetMapping("/{id}/batches")
+    public ApiResponse<List<BatchPitAssignment>> getPitBatches(
+            @PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        if (at != null) {
+            return ApiResponse.success(lineageService.findBatchAt(id, at).map(List::of).orElse(List.of()));
+        }
+        return ApiResponse.success(lineageService.getBatchesForPit(id));
+    }
+    
     @GetMapping("/{id}/sensors")
     public ApiResponse<List<PitSensorData>> getPitSensors(
             @PathVariable Long id,
-            @RequestParam(required = false, defaultValue = "24") Integer hours) {
-        return ApiResponse.success(pitService.getPitSensorData(id, hours));
+            @RequestParam(required = false, defaultValue = "24") Integer hours,
+            @RequestParam(required = false) Integer maxPoints,
+            @RequestParam(required = false) String metric,
+            @RequestParam(required = false) String mode) {
+        if (maxPoints == null) {
+            return ApiResponse.success(pitService.getPitSensorData(id, hours));
+        }
+        try {
+            return ApiResponse.success(historyService.getPitSensorData(id, hours, maxPoints, metric, mode));
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(e.getMessage());
+        }
     }
     
     @GetMapping("/{id}/sensors/latest")
@@ -1,13 +1,20 @@
 package com.brewery.digitaltwin.controller;
 
 import com.brewery.digitaltwin.dto.ApiResponse;
+import com.brewery.digitaltwin.entity.BatchPitAssignment;
+import com.brewery.digitaltwin.entity.ProcessParamChange;
 import com.brewery.digitaltwin.entity.ProductionBatch;
+import com.brewery.digitaltwin.service.LineageService;
+import com.brewery.digitaltwin.service.ParamStore;
 import com.brewery.digitaltwin.service.ProductionParam;
 import com.brewery.digitaltwin.service.ProductionService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -17,6 +24,8 @@ import java.util.Map;
 public class ProductionController {
     
     private final ProductionService productionService;
+    private final LineageService lineageService;
+    private final ParamStore paramStore;
     
     @GetMapping("/batches")
     public ApiResponse<List<ProductionBatch>> getAllBatches(
@@ -101,6 +110,43 @@ public class ProductionController {
                 .orElse(ApiResponse.error("批次不存在"));
     }
 
+    /**
+     * 批次入窖，记录批次-窖池血缘
+     */
+    @PostMapping("/batches/{id}/pits")
+    public ApiResponse<BatchPitAssignment> assignPit(@PathVariable Long id, @RequestParam Long pitId) {
+        try {
+            return ApiResponse.success(lineageService.assignToBatch(id, pitId));
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+    
+    /**
+     * 质量追溯报告：批次汇总、经过的窖池与时间窗口、窗口内影响该批次的告警
+     */
+    @GetMapping("/batches/{id}/trace")
+    public ApiResponse<Map<String, Object>> getTrace(@PathVariable Long id) {
+        return lineageService.getTrace(id)
+                .map(ApiResponse::success)
+                .orElse(ApiResponse.error("批次不存在"));
+    }
+    
+    @GetMapping("/batches/{id}/trace/sensors")
+    public ApiResponse<List<Map<String, Object>>> getTraceSensors(
+            @PathVariable Long id,
+            @RequestParam(required = false, defaultValue = "500") Integer maxPoints,
+            @RequestParam(required = false) String metric,
+            @RequestParam(required = false) String mode) {
+        try {
+            return lineageService.getTraceSensors(id, maxPoints, metric, mode)
+                    .map(ApiResponse::success)
+                    .orElse(ApiResponse.error("批次不存在"));
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
     @GetMapping("/trends")
     public ApiResponse<List<Map<String, Object>>> getTrends(
             @RequestParam(required = false, defaultValue = "7") Integer days) {
@@ -118,12 +164,39 @@ public class ProductionController {
         return ApiResponse.success(params);
     }
 
+    /**
+     * 修改工艺参数；与集群中其他节点的修改冲突时返回 409，客户端刷新后重试
+     */
     @PutMapping("/params/{id}")
-    public ApiResponse<ProductionParam> updateParam(
+    public ResponseEntity<ApiResponse<ProductionParam>> updateParam(
             @PathVariable Long id,
-            @RequestParam Double value) {
-        return productionService.updateParam(id, value)
-                .map(ApiResponse::success)
-                .orElse(ApiResponse.error("参数不存在"));
+            @RequestParam Double value,
+            @RequestParam(name = "updated_by", required = false, defaultValue = "operator") String updatedBy) {
+        try {
+            return ResponseEntity.ok(productionService.updateParam(id, value, updatedBy)
+                    .map(ApiResponse::success)
+                    .orElse(ApiResponse.error("参数不存在")));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.ok(ApiResponse.error(e.getMessage()));
+        } catch (ParamStore.VersionConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/params/{id}/history")
+    public ApiResponse<List<ProcessParamChange>> getParamHistory(
+            @PathVariable Long id,
+            @RequestParam(required = false, defaultValue = "50") Integer limit) {
+        return ApiResponse.success(paramStore.getHistory(id, Math.min(Math.max(limit, 1), 1000)));
+    }
+
+    @GetMapping("/params/changes")
+    public ApiResponse<Map<String, Object>> getParamChanges(
+            @RequestParam(required = false, defaultValue = "0") Long sinceVersion,
+            @RequestParam(required = false, defaultValue = "100") Integer limit) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("version", paramStore.snapshot().version());
+        result.put("changes", paramStore.getChanges(sinceVersion, Math.min(Math.max(limit, 1), 1000)));
+        return ApiResponse.success(result);
     }
 }
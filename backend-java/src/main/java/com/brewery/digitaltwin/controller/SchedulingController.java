@@ -0,0 +1,50 @@
+package com.brewery.digitaltwin.controller;
+
+import com.brewery.digitaltwin.dto.ApiResponse;
+import com.brewery.digitaltwin.service.SchedulingService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/v1/scheduling")
+@RequiredArgsConstructor
+public class SchedulingController {
+    
+    private final SchedulingService schedulingService;
+    
+    /**
+     * 对全部待排批次求解排产计划，上一版计划中仍可行的分配作为初始解
+     *
+     * @param budgetMs 搜索时间预算 (毫秒)，超过 app.scheduler.max-budget-ms 时按上限截断
+     */
+    @PostMapping("/solve")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> solve(@RequestParam(required = false) Long budgetMs) {
+        try {
+            return ResponseEntity.ok(ApiResponse.success(schedulingService.solve(budgetMs)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+    
+    @GetMapping("/plan")
+    public ApiResponse<Map<String, Object>> getPlan() {
+        return schedulingService.getPlan()
+                .map(ApiResponse::success)
+                .orElse(ApiResponse.error("尚未生成排产计划"));
+    }
+    
+    /**
+     * 下发计划：批次开工并记录入窖，可只下发单个批次
+     */
+    @PostMapping("/apply")
+    public ApiResponse<Map<String, Object>> apply(@RequestParam(required = false) Long batchId) {
+        try {
+            return ApiResponse.success(schedulingService.apply(batchId));
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+}
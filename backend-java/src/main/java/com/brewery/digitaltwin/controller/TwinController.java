@@ -0,0 +1,37 @@
+package com.brewery.digitaltwin.controller;
+
+import com.brewery.digitaltwin.dto.ApiResponse;
+import com.brewery.digitaltwin.service.TwinHistoryService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/v1/twin")
+@RequiredArgsConstructor
+public class TwinController {
+
+    private final TwinHistoryService historyService;
+
+    /**
+     * 指定时刻的孪生状态 (窖池状态与发酵天数、设备状态与运行小时、批次状态、工艺参数)，默认当前
+     */
+    @GetMapping("/state")
+    public ApiResponse<Map<String, Object>> getState(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        try {
+            return ApiResponse.success(historyService.stateAt(at != null ? at : LocalDateTime.now()));
+        } catch (IllegalArgumentException | IOException e) {
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
+    @GetMapping("/event-log")
+    public ApiResponse<Map<String, Object>> getEventLog() {
+        return ApiResponse.success(historyService.getStats());
+    }
+}
@@ -0,0 +1,15 @@
+package com.brewery.digitaltwin.dto;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import java.util.List;
+
+/**
+ * 批量处理告警请求：指定 ids 时按 id 处理，否则按筛选条件处理
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class AlarmBulkRequest extends AlarmFilter {
+    private List<Long> ids;
+    private String resolvedBy = "system";
+}
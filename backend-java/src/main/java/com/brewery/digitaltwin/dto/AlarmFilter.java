@@ -0,0 +1,19 @@
+package com.brewery.digitaltwin.dto;
+
+import lombok.Data;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 告警筛选条件，各字段为空表示不限
+ */
+@Data
+public class AlarmFilter {
+    private String level;
+    private String type;
+    private String source;
+    private String zone;
+    private List<String> statuses;
+    private LocalDateTime from;
+    private LocalDateTime to;
+}
@@ -0,0 +1,27 @@
+package com.brewery.digitaltwin.dto;
+
+import lombok.Data;
+import java.util.Optional;
+
+/**
+ * 修改告警规则请求：只覆盖请求中出现的字段，不带默认值。
+ * 可清空的字段使用 Optional：未出现为 null (保持原值)，显式传 null 为 Optional.empty() (清空)
+ */
+@Data
+public class AlarmRuleRequest {
+    private String name;
+    private String metric;
+    private String operator;
+    private String conditionType;
+    private Double threshold;
+    private Optional<Double> clearThreshold;
+    private Integer durationSeconds;
+    private String level;
+    private String targetStatus;
+    private Boolean enabled;
+    private Optional<String> zone;
+    private Optional<String> deviceType;
+    private Optional<String> thresholdParam;
+    private Optional<Integer> minPitAge;
+    private Optional<Integer> maxPitAge;
+}
@@ -0,0 +1,26 @@
+package com.brewery.digitaltwin.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * 集群节点之间传递的消息
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClusterEnvelope {
+    public static final String HEARTBEAT = "heartbeat";
+    public static final String LEAVE = "leave";
+    public static final String REALTIME = "realtime";
+
+    private String kind;              // heartbeat/leave/realtime
+    private String nodeId;            // 发送节点
+    private String url;               // 心跳：节点对外地址
+    private long sentAt;
+    private Map<String, Object> load; // 心跳：本节点负责的窖池/设备数与 WebSocket 连接数
+    private String payload;           // realtime：发送节点发布的 RealtimeMessage JSON
+}
@@ -0,0 +1,16 @@
+package com.brewery.digitaltwin.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import java.util.List;
+
+/**
+ * 键集分页结果，nextCursor 为空表示没有更多数据
+ */
+@Data
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> items;
+    private String nextCursor;
+    private boolean hasMore;
+}
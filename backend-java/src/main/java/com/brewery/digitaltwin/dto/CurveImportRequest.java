@@ -0,0 +1,15 @@
+package com.brewery.digitaltwin.dto;
+
+import lombok.Data;
+import java.util.List;
+
+/**
+ * 导入一条已完成的发酵曲线：按发酵天数排列的日均温度，缺失的天用 null
+ */
+@Data
+public class CurveImportRequest {
+    private String pitNo;
+    private Long batchId;
+    private Double qualityScore;
+    private List<Double> dailyTemperatures;
+}
@@ -5,7 +5,8 @@ import java.time.LocalDateTime;
 
 @Data
 public class RealtimeMessage {
-    private String type;  // pit_data, device_data, alarm, system
+    private long seq;     // 单调递增序号，由 RealtimeWebSocketHandler 发布时分配
+    private String type;  // pit_data, device_data, alarm, system, snapshot
     private Object data;
     private LocalDateTime timestamp = LocalDateTime.now();
     
@@ -9,7 +9,17 @@ import java.time.LocalDateTime;
  */
 @Data
 @Entity
-@Table(name = "alarms")
+@Table(
+    name = "alarms",
+    indexes = {
+        @Index(name = "idx_alarms_status_created", columnList = "status, created_at DESC, id DESC"),
+        @Index(name = "idx_alarms_status_level", columnList = "status, level"),
+        @Index(name = "idx_alarms_created", columnList = "created_at DESC, id DESC"),
+        @Index(name = "idx_alarms_zone_status", columnList = "zone, status"),
+        @Index(name = "idx_alarms_parent", columnList = "parent_id"),
+        @Index(name = "idx_alarms_source_last", columnList = "source, last_occurred_at")
+    }
+)
 public class Alarm {
     
     @Id
@@ -31,6 +41,18 @@ public class Alarm {
     @Column(nullable = false)
     private String status = "active"; // active/acknowledged/resolved
     
+    private String zone;   // 所属区域，用于风暴聚合
+    
+    private Integer occurrenceCount = 1;  // 去重窗口内重复发生次数
+    
+    private LocalDateTime lastOccurredAt = LocalDateTime.now();
+    
+    private Boolean incident = false;     // 是否为区域聚合事件
+    
+    private Integer affectedCount = 1;    // 聚合事件涉及的来源数
+    
+    private Long parentId;                // 所属聚合事件 id
+    
     private String resolvedBy;
     
     private LocalDateTime resolvedAt;
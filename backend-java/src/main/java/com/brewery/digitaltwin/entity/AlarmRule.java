@@ -0,0 +1,62 @@
+package com.brewery.digitaltwin.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 告警规则 - 由 AlarmRuleEngine 编译后对每条读数求值
+ */
+@Data
+@Entity
+@Table(name = "alarm_rules")
+public class AlarmRule {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false)
+    private String name;
+    
+    @Column(nullable = false)
+    private String targetType;  // pit/device
+    
+    @Column(nullable = false)
+    private String metric;      // 窖池: temperature/humidity/ph/acidity/moisture/alcohol; 设备: power/speed/vibration/temperature/current
+    
+    private String zone;        // 适用区域 (窖池 zone 或设备 location 前缀)，为空表示全部
+    
+    private String deviceType;  // 适用设备类型，为空表示全部
+    
+    private Integer minPitAge;  // 适用窖龄下限(含)
+    
+    private Integer maxPitAge;  // 适用窖龄上限(含)
+    
+    @Column(nullable = false)
+    private String operator = "gt";         // gt/lt
+    
+    @Column(nullable = false)
+    private String conditionType = "value"; // value: 读数本身; rate: 每分钟变化率
+    
+    @Column(nullable = false)
+    private Double threshold;
+    
+    private Double clearThreshold;  // 恢复阈值(滞回)，为空时与 threshold 相同
+    
+    private String thresholdParam;  // 工艺参数 code，设置后两个阈值均为相对该设定值的偏差，设定值修改后即时生效
+    
+    private Integer durationSeconds = 0;  // 持续超限多久才触发
+    
+    @Column(nullable = false)
+    private String level = "warning";        // 生成告警的级别 info/warning/error/critical
+    
+    @Column(nullable = false)
+    private String targetStatus = "warning"; // 触发期间实体状态 窖池 warning/alarm，设备 warning/fault
+    
+    private Boolean enabled = true;
+    
+    private LocalDateTime createdAt = LocalDateTime.now();
+    
+    private LocalDateTime updatedAt = LocalDateTime.now();
+}
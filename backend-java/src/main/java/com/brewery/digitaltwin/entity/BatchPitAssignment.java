@@ -0,0 +1,58 @@
+package com.brewery.digitaltwin.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 批次-窖池血缘：某批次在某窖池中发酵的时间窗口，批次完工时写入该窗口的发酵统计
+ */
+@Data
+@Entity
+@Table(
+    name = "batch_pit_assignments",
+    indexes = {
+        @Index(name = "idx_assignments_batch", columnList = "batch_id, started_at"),
+        @Index(name = "idx_assignments_pit", columnList = "pit_id, started_at")
+    }
+)
+public class BatchPitAssignment {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "batch_id", nullable = false)
+    private Long batchId;
+    
+    private String batchNo;
+    
+    @Column(name = "pit_id", nullable = false)
+    private Long pitId;
+    
+    private String pitNo;
+    
+    private String zone;
+    
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt = LocalDateTime.now();
+    
+    private LocalDateTime endedAt;      // 为空表示仍在发酵
+    
+    // 以下为完工时预计算的窗口统计
+    private Integer sampleCount;
+    
+    private Double avgTemperature;
+    
+    private Double minTemperature;
+    
+    private Double maxTemperature;
+    
+    private Double avgHumidity;
+    
+    private Double avgPhValue;
+    
+    private Integer alarmCount;
+    
+    private Integer criticalAlarmCount;
+}
@@ -0,0 +1,43 @@
+package com.brewery.digitaltwin.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 批次发酵汇总 - 完工时由各窖池窗口统计合并而成，追溯报告直接读取
+ */
+@Data
+@Entity
+@Table(name = "batch_summaries")
+public class BatchSummary {
+    
+    @Id
+    private Long batchId;
+    
+    private String batchNo;
+    
+    private Integer pitCount;
+    
+    private Double fermentationHours;  // 最早入窖到最晚出窖
+    
+    private Integer sampleCount;
+    
+    private Double avgTemperature;
+    
+    private Double minTemperature;
+    
+    private Double maxTemperature;
+    
+    private Double avgHumidity;
+    
+    private Double avgPhValue;
+    
+    private Integer alarmCount;
+    
+    private Integer criticalAlarmCount;
+    
+    private Double qualityScore;
+    
+    private LocalDateTime computedAt = LocalDateTime.now();
+}
@@ -0,0 +1,43 @@
+package com.brewery.digitaltwin.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 已完成的发酵温度曲线 - 按发酵天数分段的定长嵌入，用于相似曲线检索
+ */
+@Data
+@Entity
+@Table(
+    name = "fermentation_curves",
+    indexes = {
+        @Index(name = "idx_fermentation_curves_pit", columnList = "pit_id")
+    }
+)
+public class FermentationCurve {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "pit_id")
+    private Long pitId;
+    
+    private String pitNo;
+    
+    private Long batchId;            // 对应生产批次
+    
+    private Double qualityScore;     // 批次质量评分
+    
+    private Integer fermentationDays; // 曲线覆盖的发酵天数
+    
+    private Integer segmentDays;     // 每段天数，与当前配置不一致的嵌入不加载
+    
+    @Lob
+    @JsonIgnore
+    private byte[] embedding;        // 各段平均温度 float32 小端
+    
+    private LocalDateTime completedAt = LocalDateTime.now();
+}
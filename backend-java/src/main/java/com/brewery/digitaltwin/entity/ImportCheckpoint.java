@@ -0,0 +1,52 @@
+package com.brewery.digitaltwin.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 历史数据导入检查点 - 每个文件区域一行，与该区域的数据批次在同一事务中推进
+ */
+@Data
+@Entity
+@Table(
+    name = "import_checkpoints",
+    uniqueConstraints = {
+        @UniqueConstraint(name = "uk_import_checkpoint_region", columnNames = {"job_key", "region_index"})
+    }
+)
+public class ImportCheckpoint {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "job_key", nullable = false, length = 1024)
+    private String jobKey;       // 目标表 + 文件路径 + 大小 + 修改时间，文件变化后旧检查点失效
+
+    @Column(nullable = false, length = 1024)
+    private String filePath;
+
+    @Column(nullable = false)
+    private String target;       // pit/device
+
+    @Column(name = "region_index", nullable = false)
+    private Integer regionIndex;
+
+    @Column(nullable = false)
+    private Long nextOffset;     // 下一个待解析行的起始字节
+
+    @Column(nullable = false)
+    private Long endOffset;      // 起始字节小于该值的行属于本区域
+
+    @Column(nullable = false)
+    private Long rowsImported = 0L;
+
+    @Column(nullable = false)
+    private Long rowsRejected = 0L;
+
+    @Column(nullable = false)
+    private Boolean done = false;
+
+    private LocalDateTime updatedAt = LocalDateTime.now();
+}
@@ -0,0 +1,42 @@
+package com.brewery.digitaltwin.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 工艺参数变更记录 - 全局版本单调递增，既是单个参数的历史，也是按版本续读的变更流
+ */
+@Data
+@Entity
+@Table(
+    name = "process_param_changes",
+    indexes = {
+        @Index(name = "idx_param_changes_version", columnList = "version"),
+        @Index(name = "idx_param_changes_param", columnList = "param_id, version")
+    }
+)
+public class ProcessParamChange {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false, unique = true)
+    private Long version;
+    
+    @Column(name = "param_id", nullable = false)
+    private Long paramId;
+    
+    @Column(nullable = false)
+    private String code;
+    
+    private Double oldValue;
+    
+    @Column(nullable = false)
+    private Double newValue;
+    
+    private String changedBy;
+    
+    private LocalDateTime changedAt = LocalDateTime.now();
+}
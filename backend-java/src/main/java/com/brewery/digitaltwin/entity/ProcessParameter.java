@@ -0,0 +1,43 @@
+package com.brewery.digitaltwin.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 工艺参数设定值 - 由 ParamStore 加载为不可变快照，修改时同时写入 ProcessParamChange
+ */
+@Data
+@Entity
+@Table(name = "process_parameters")
+public class ProcessParameter {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false, unique = true)
+    private String code;        // 稳定键，仿真与告警规则按此引用，如 fermentation.pit_temperature
+    
+    @Column(nullable = false)
+    private String processName; // 制曲/发酵/蒸馏
+    
+    @Column(nullable = false)
+    private String name;
+    
+    @Column(name = "param_value", nullable = false)
+    private Double value;
+    
+    private String unit;
+    
+    private Double minValue;
+    
+    private Double maxValue;
+    
+    @Column(nullable = false)
+    private Long version = 0L;  // 最近一次修改时的全局参数版本
+    
+    private String updatedBy;
+    
+    private LocalDateTime updatedAt = LocalDateTime.now();
+}
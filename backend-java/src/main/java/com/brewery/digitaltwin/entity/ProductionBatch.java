@@ -2,6 +2,8 @@ package com.brewery.digitaltwin.entity;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import java.time.LocalDateTime;
 
 /**
@@ -9,6 +11,8 @@ import java.time.LocalDateTime;
  */
 @Data
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "production_batches")
 @Table(name = "production_batches")
 public class ProductionBatch {
     
@@ -22,6 +26,10 @@ public class ProductionBatch {
     @Column(nullable = false)
     private String productType = "浓香型白酒";
     
+    private String grainType = "高粱";  // 原料类型，排产时只分配同原料的窖池
+    
+    private Integer minPitAge;    // 要求的最低窖龄(年)，为空不限
+    
     private Double targetVolume;  // 目标产量 (吨)
     
     private Double actualVolume;  // 实际产量 (吨)
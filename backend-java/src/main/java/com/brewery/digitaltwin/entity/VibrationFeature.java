@@ -0,0 +1,59 @@
+package com.brewery.digitaltwin.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 振动波形特征 - 每个原始采样块只保存特征值与可选的降采样包络
+ */
+@Data
+@Entity
+@Table(
+    name = "vibration_features",
+    indexes = {
+        @Index(name = "idx_vibration_features_device_time", columnList = "device_id, recorded_at")
+    }
+)
+public class VibrationFeature {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "device_id", nullable = false)
+    private Long deviceId;
+    
+    private Double sampleRate;        // 采样率 Hz
+    
+    private Integer blockSize;        // 采样点数
+    
+    private Double shaftFrequency;    // 转频 Hz
+    
+    private Double rms;               // 均方根
+    
+    private Double peak;              // 峰值
+    
+    private Double crestFactor;       // 峰值因子
+    
+    private Double kurtosis;          // 峭度
+    
+    private Double dominantFrequency; // 主频 Hz
+    
+    // 各频带能量占比 (含谐波)
+    private Double shaftEnergy;       // 1X 转频
+    
+    private Double bpfoEnergy;        // 外圈
+    
+    private Double bpfiEnergy;        // 内圈
+    
+    private Double bsfEnergy;         // 滚动体
+    
+    private Double ftfEnergy;         // 保持架
+    
+    @Column(length = 2048)
+    private String envelope;          // 降采样包络，逗号分隔
+    
+    @Column(name = "recorded_at")
+    private LocalDateTime recordedAt = LocalDateTime.now();
+}
@@ -4,19 +4,20 @@ import com.brewery.digitaltwin.entity.Alarm;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
-public interface AlarmRepository extends JpaRepository<Alarm, Long> {
+public interface AlarmRepository extends JpaRepository<Alarm, Long>, AlarmRepositoryCustom {
     
-    List<Alarm> findByStatus(String status);
+    List<Alarm> findByStatus(String status, Pageable pageable);
     
     List<Alarm> findByLevel(String level);
 
-    List<Alarm> findByLevelAndStatus(String level, String status);
+    List<Alarm> findByLevelAndStatus(String level, String status, Pageable pageable);
     
     Page<Alarm> findByStatusOrderByCreatedAtDesc(String status, Pageable pageable);
     
@@ -28,5 +29,45 @@ public interface AlarmRepository extends JpaRepository<Alarm, Long> {
     @Query("SELECT a.level, COUNT(a) FROM Alarm a WHERE a.status = 'active' GROUP BY a.level")
     List<Object[]> countActiveByLevel();
     
-    List<Alarm> findByCreatedAtAfter(LocalDateTime time);
+    long countByCreatedAtAfter(LocalDateTime time);
+    
+    /**
+     * 时间窗口内影响指定来源的告警 (去重告警按首次发生到最后一次发生的区间判断)，走 (source, last_occurred_at) 索引范围扫描
+     */
+    @Query("SELECT a FROM Alarm a WHERE a.source IN :sources AND a.lastOccurredAt >= :from " +
+           "AND a.createdAt <= :to ORDER BY a.createdAt")
+    List<Alarm> findAffecting(List<String> sources, LocalDateTime from, LocalDateTime to);
+    
+    /**
+     * 按 (日, 小时) 分组统计告警数，查询窗口不超过 24 小时时分组唯一
+     */
+    @Query("SELECT EXTRACT(DAY FROM a.createdAt), EXTRACT(HOUR FROM a.createdAt), COUNT(a) FROM Alarm a " +
+           "WHERE a.createdAt >= :since " +
+           "GROUP BY EXTRACT(DAY FROM a.createdAt), EXTRACT(HOUR FROM a.createdAt)")
+    List<Object[]> countHourlySince(LocalDateTime since);
+    
+    @Modifying
+    @Query("UPDATE Alarm a SET a.occurrenceCount = COALESCE(a.occurrenceCount, 1) + :delta, " +
+           "a.lastOccurredAt = :at WHERE a.id IN :ids")
+    int incrementOccurrences(List<Long> ids, int delta, LocalDateTime at);
+    
+    @Modifying
+    @Query("UPDATE Alarm a SET a.occurrenceCount = COALESCE(a.occurrenceCount, 1) + :delta, " +
+           "a.affectedCount = :affected, a.level = :level, a.message = :message, a.lastOccurredAt = :at " +
+           "WHERE a.id = :id")
+    int updateIncident(Long id, int delta, int affected, String level, String message, LocalDateTime at);
+    
+    @Modifying
+    @Query("UPDATE Alarm a SET a.parentId = :parentId WHERE a.id IN :ids")
+    int attachToIncident(List<Long> ids, Long parentId);
+    
+    @Modifying
+    @Query("UPDATE Alarm a SET a.status = 'resolved', a.resolvedBy = :resolvedBy, a.resolvedAt = :at " +
+           "WHERE (a.id IN :ids OR a.parentId IN :ids) AND a.status <> 'resolved'")
+    int resolveByIds(List<Long> ids, String resolvedBy, LocalDateTime at);
+    
+    @Modifying
+    @Query("UPDATE Alarm a SET a.status = 'acknowledged' " +
+           "WHERE (a.id IN :ids OR a.parentId IN :ids) AND a.status = 'active'")
+    int acknowledgeByIds(List<Long> ids);
 }
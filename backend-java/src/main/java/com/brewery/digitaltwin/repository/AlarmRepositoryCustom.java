@@ -0,0 +1,22 @@
+package com.brewery.digitaltwin.repository;
+
+import com.brewery.digitaltwin.dto.AlarmFilter;
+import com.brewery.digitaltwin.entity.Alarm;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 动态条件告警查询（由 AlarmRepositoryImpl 实现）
+ */
+public interface AlarmRepositoryCustom {
+    
+    /**
+     * 按筛选条件以 id 升序分块取出告警 id，afterId 为上一块最后一个 id
+     */
+    List<Long> findIdsByFilter(AlarmFilter filter, long afterId, int limit);
+    
+    /**
+     * 键集分页：按 (createdAt, id) 倒序取游标之前的 limit 条，游标为空时从最新开始
+     */
+    List<Alarm> findByFilterBefore(AlarmFilter filter, LocalDateTime cursorCreatedAt, Long cursorId, int limit);
+}
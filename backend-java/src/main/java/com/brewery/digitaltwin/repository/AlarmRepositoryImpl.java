@@ -0,0 +1,84 @@
+package com.brewery.digitaltwin.repository;
+
+import com.brewery.digitaltwin.dto.AlarmFilter;
+import com.brewery.digitaltwin.entity.Alarm;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class AlarmRepositoryImpl implements AlarmRepositoryCustom {
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Override
+    public List<Long> findIdsByFilter(AlarmFilter filter, long afterId, int limit) {
+        Map<String, Object> params = new HashMap<>();
+        StringBuilder jpql = new StringBuilder("SELECT a.id FROM Alarm a WHERE a.id > :afterId");
+        params.put("afterId", afterId);
+        appendFilter(jpql, params, filter);
+        jpql.append(" ORDER BY a.id");
+        TypedQuery<Long> query = entityManager.createQuery(jpql.toString(), Long.class);
+        params.forEach(query::setParameter);
+        return query.setMaxResults(limit).getResultList();
+    }
+    
+    @Override
+    public List<Alarm> findByFilterBefore(AlarmFilter filter, LocalDateTime cursorCreatedAt, Long cursorId, int limit) {
+        Map<String, Object> params = new HashMap<>();
+        StringBuilder jpql = new StringBuilder("SELECT a FROM Alarm a WHERE 1 = 1");
+        appendFilter(jpql, params, filter);
+        if (cursorCreatedAt != null && cursorId != null) {
+            // 先给出 createdAt 的范围上界，使索引可以直接定位到游标位置，而不是从头扫描
+            jpql.append(" AND a.createdAt <= :cursorAt AND (a.createdAt < :cursorAt OR a.id < :cursorId)");
+            params.put("cursorAt", cursorCreatedAt);
+            params.put("cursorId", cursorId);
+        }
+        // 单一状态时把 status 放进排序键，与 (status, created_at DESC, id DESC) 索引顺序一致，可免排序
+        boolean singleStatus = filter != null && filter.getStatuses() != null && filter.getStatuses().size() == 1;
+        jpql.append(singleStatus ? " ORDER BY a.status, a.createdAt DESC, a.id DESC" : " ORDER BY a.createdAt DESC, a.id DESC");
+        TypedQuery<Alarm> query = entityManager.createQuery(jpql.toString(), Alarm.class);
+        params.forEach(query::setParameter);
+        return query.setMaxResults(limit).getResultList();
+    }
+    
+    static void appendFilter(StringBuilder jpql, Map<String, Object> params, AlarmFilter filter) {
+        if (filter == null) return;
+        if (filter.getLevel() != null) {
+            jpql.append(" AND a.level = :level");
+            params.put("level", filter.getLevel());
+        }
+        if (filter.getType() != null) {
+            jpql.append(" AND a.type = :type");
+            params.put("type", filter.getType());
+        }
+        if (filter.getSource() != null) {
+            jpql.append(" AND a.source = :source");
+            params.put("source", filter.getSource());
+        }
+        if (filter.getZone() != null) {
+            jpql.append(" AND a.zone = :zone");
+            params.put("zone", filter.getZone());
+        }
+        if (filter.getStatuses() != null && filter.getStatuses().size() == 1) {
+            jpql.append(" AND a.status = :status");
+            params.put("status", filter.getStatuses().get(0));
+        } else if (filter.getStatuses() != null && !filter.getStatuses().isEmpty()) {
+            jpql.append(" AND a.status IN :statuses");
+            params.put("statuses", filter.getStatuses());
+        }
+        if (filter.getFrom() != null) {
+            jpql.append(" AND a.createdAt >= :from");
+            params.put("from", filter.getFrom());
+        }
+        if (filter.getTo() != null) {
+            jpql.append(" AND a.createdAt < :to");
+            params.put("to", filter.getTo());
+        }
+    }
+}
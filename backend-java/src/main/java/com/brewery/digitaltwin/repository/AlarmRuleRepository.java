@@ -0,0 +1,21 @@
+package com.brewery.digitaltwin.repository;
+
+import com.brewery.digitaltwin.entity.AlarmRule;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import java.util.List;
+
+@Repository
+public interface AlarmRuleRepository extends JpaRepository<AlarmRule, Long> {
+    
+    List<AlarmRule> findByEnabledTrue();
+    
+    List<AlarmRule> findByTargetType(String targetType);
+    
+    /**
+     * 规则集指纹：条数 + 最近修改时间，用于热加载时判断是否需要重新编译
+     */
+    @Query("SELECT COUNT(r), MAX(r.updatedAt) FROM AlarmRule r")
+    List<Object[]> fingerprint();
+}
@@ -0,0 +1,25 @@
+package com.brewery.digitaltwin.repository;
+
+import com.brewery.digitaltwin.entity.BatchPitAssignment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface BatchPitAssignmentRepository extends JpaRepository<BatchPitAssignment, Long> {
+    
+    List<BatchPitAssignment> findByBatchIdOrderByStartedAt(Long batchId);
+    
+    List<BatchPitAssignment> findByPitIdOrderByStartedAtDesc(Long pitId);
+    
+    Optional<BatchPitAssignment> findFirstByPitIdAndEndedAtIsNull(Long pitId);
+    
+    List<BatchPitAssignment> findByEndedAtIsNull();
+    
+    /**
+     * 某时刻在窖池中发酵的批次：按 (pit_id, started_at) 倒序取第一个开始时间不晚于该时刻的窗口
+     */
+    Optional<BatchPitAssignment> findFirstByPitIdAndStartedAtLessThanEqualOrderByStartedAtDesc(Long pitId, LocalDateTime at);
+}
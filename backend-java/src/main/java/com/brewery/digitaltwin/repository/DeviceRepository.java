@@ -1,19 +1,38 @@
 package com.brewery.digitaltwin.repository;
 
 import com.brewery.digitaltwin.entity.Device;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface DeviceRepository extends JpaRepository<Device, Long> {
+
+    /**
+     * 查询缓存区域，经 JDBC 直接写表后需按区域失效 (见 EntityCacheService)
+     */
+    String QUERY_REGION = "query.devices";
+
+    @Override
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = QUERY_REGION)})
+    List<Device> findAll();
     
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = QUERY_REGION)})
     Optional<Device> findByDeviceNo(String deviceNo);
     
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = QUERY_REGION)})
     List<Device> findByType(String type);
     
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = QUERY_REGION)})
     List<Device> findByStatus(String status);
     
     @Query("SELECT COUNT(d) FROM Device d WHERE d.status = :status")
@@ -21,4 +40,10 @@ public interface DeviceRepository extends JpaRepository<Device, Long> {
     
     @Query("SELECT d.type, COUNT(d) FROM Device d GROUP BY d.type")
     List<Object[]> countByType();
+    
+    /**
+     * 类型 × 位置 × 状态 的分组计数，各维度汇总由一次查询得到
+     */
+    @Query("SELECT d.type, d.location, d.status, COUNT(d) FROM Device d GROUP BY d.type, d.location, d.status")
+    List<Object[]> countByTypeLocationAndStatus();
 }
@@ -0,0 +1,12 @@
+package com.brewery.digitaltwin.repository;
+
+import com.brewery.digitaltwin.entity.FermentationCurve;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import java.util.List;
+
+@Repository
+public interface FermentationCurveRepository extends JpaRepository<FermentationCurve, Long> {
+    
+    List<FermentationCurve> findByPitIdOrderByCompletedAtDesc(Long pitId);
+}
@@ -0,0 +1,22 @@
+package com.brewery.digitaltwin.repository;
+
+import com.brewery.digitaltwin.entity.ImportCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ImportCheckpointRepository extends JpaRepository<ImportCheckpoint, Long> {
+
+    List<ImportCheckpoint> findByJobKeyOrderByRegionIndex(String jobKey);
+
+    /**
+     * 删除同一文件、同一目标表但文件已变化 (大小或修改时间不同) 的旧检查点
+     */
+    @Modifying
+    @Query("DELETE FROM ImportCheckpoint c WHERE c.filePath = :filePath AND c.target = :target AND c.jobKey <> :jobKey")
+    int deleteStale(String filePath, String target, String jobKey);
+}
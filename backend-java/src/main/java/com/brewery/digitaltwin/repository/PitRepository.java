@@ -1,19 +1,38 @@
 package com.brewery.digitaltwin.repository;
 
 import com.brewery.digitaltwin.entity.Pit;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface PitRepository extends JpaRepository<Pit, Long> {
+
+    /**
+     * 查询缓存区域，经 JDBC 直接写表后需按区域失效 (见 EntityCacheService)
+     */
+    String QUERY_REGION = "query.pits";
+
+    @Override
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = QUERY_REGION)})
+    List<Pit> findAll();
     
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = QUERY_REGION)})
     Optional<Pit> findByPitNo(String pitNo);
     
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = QUERY_REGION)})
     List<Pit> findByZone(String zone);
     
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = QUERY_REGION)})
     List<Pit> findByStatus(String status);
     
     @Query("SELECT COUNT(p) FROM Pit p WHERE p.status = :status")
@@ -21,4 +40,7 @@ public interface PitRepository extends JpaRepository<Pit, Long> {
     
     @Query("SELECT p.zone, COUNT(p) FROM Pit p GROUP BY p.zone")
     List<Object[]> countByZone();
+    
+    @Query("SELECT p.zone, p.status, COUNT(p) FROM Pit p GROUP BY p.zone, p.status")
+    List<Object[]> countByZoneAndStatus();
 }
@@ -0,0 +1,19 @@
+package com.brewery.digitaltwin.repository;
+
+import com.brewery.digitaltwin.entity.ProcessParamChange;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import java.util.List;
+
+@Repository
+public interface ProcessParamChangeRepository extends JpaRepository<ProcessParamChange, Long> {
+    
+    List<ProcessParamChange> findByParamIdOrderByVersionDesc(Long paramId, Pageable pageable);
+    
+    List<ProcessParamChange> findByVersionGreaterThanOrderByVersion(Long version, Pageable pageable);
+    
+    @Query("SELECT COALESCE(MAX(c.version), 0) FROM ProcessParamChange c")
+    long findMaxVersion();
+}
@@ -0,0 +1,9 @@
+package com.brewery.digitaltwin.repository;
+
+import com.brewery.digitaltwin.entity.ProcessParameter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ProcessParameterRepository extends JpaRepository<ProcessParameter, Long> {
+}
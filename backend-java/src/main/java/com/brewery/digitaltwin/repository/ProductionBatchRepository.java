@@ -1,19 +1,38 @@
 package com.brewery.digitaltwin.repository;
 
 import com.brewery.digitaltwin.entity.ProductionBatch;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ProductionBatchRepository extends JpaRepository<ProductionBatch, Long> {
+
+    /**
+     * 查询缓存区域，经 JDBC 直接写表后需按区域失效 (见 EntityCacheService)
+     */
+    String QUERY_REGION = "query.production_batches";
+
+    @Override
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = QUERY_REGION)})
+    List<ProductionBatch> findAll();
     
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = QUERY_REGION)})
     Optional<ProductionBatch> findByBatchNo(String batchNo);
     
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = QUERY_REGION)})
     List<ProductionBatch> findByStatus(String status);
     
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = QUERY_REGION)})
     List<ProductionBatch> findTop10ByOrderByCreatedAtDesc();
     
     @Query("SELECT COUNT(b) FROM ProductionBatch b WHERE b.status = :status")
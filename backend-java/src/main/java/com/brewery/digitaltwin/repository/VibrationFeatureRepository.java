@@ -0,0 +1,20 @@
+package com.brewery.digitaltwin.repository;
+
+import com.brewery.digitaltwin.entity.VibrationFeature;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface VibrationFeatureRepository extends JpaRepository<VibrationFeature, Long> {
+    
+    List<VibrationFeature> findByDeviceIdOrderByRecordedAtDesc(Long deviceId, Pageable pageable);
+    
+    @Modifying
+    @Query("DELETE FROM VibrationFeature v WHERE v.recordedAt < :time")
+    void deleteByRecordedAtBefore(LocalDateTime time);
+}
@@ -0,0 +1,286 @@
+package com.brewery.digitaltwin.service;
+
+import com.brewery.digitaltwin.dto.RealtimeMessage;
+import com.brewery.digitaltwin.entity.Alarm;
+import com.brewery.digitaltwin.repository.AlarmRepository;
+import com.brewery.digitaltwin.websocket.RealtimeWebSocketHandler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * 告警风暴控制 - 去重、区域聚合与抑制窗口
+ *
+ * 同一 source + type 在滑动窗口内重复出现时只累加打开告警的 occurrenceCount，级别更高时升级该告警并重新推送；
+ * 同一 zone + type 在窗口内出现的不同来源达到阈值后汇总为一条聚合事件 (incident)，
+ * 此后该区域新出现的来源只更新聚合事件，不再插入新行、也不再逐条推送。
+ * 每批次只推送新的"标题"告警加一条 alarm_update 汇总，数据库插入量与推送量不随受影响窖池数线性增长。
+ */
+@Slf4j
+@Service
+public class AlarmAggregationService {
+
+    private final AlarmRepository alarmRepository;
+    private final RealtimeWebSocketHandler webSocketHandler;
+    private final long windowMs;
+    private final int incidentThreshold;
+
+    // 以下索引由 this 监视器保护
+    private final Map<String, OpenAlarm> openAlarms = new HashMap<>();      // source|type -> 打开的告警
+    private final Map<String, Incident> incidents = new HashMap<>();        // zone|type -> 聚合事件
+    private final Map<String, List<OpenAlarm>> zoneRecent = new HashMap<>(); // zone|type -> 尚未聚合的近期告警
+
+    public AlarmAggregationService(
+            AlarmRepository alarmRepository,
+            RealtimeWebSocketHandler webSocketHandler,
+            @Value("${app.alarm.dedup-window:300000}") long windowMs,
+            @Value("${app.alarm.incident-threshold:3}") int incidentThreshold) {
+        this.alarmRepository = alarmRepository;
+        this.webSocketHandler = webSocketHandler;
+        this.windowMs = windowMs;
+        this.incidentThreshold = Math.max(2, incidentThreshold);
+    }
+
+    /**
+     * 提交一批候选告警（通常为一个仿真 tick 内产生的全部告警），返回实际插入的告警
+     */
+    @Transactional
+    public synchronized List<Alarm> submit(List<Alarm> candidates) {
+        if (candidates.isEmpty()) return List.of();
+        long now = System.currentTimeMillis();
+        LocalDateTime at = LocalDateTime.now();
+        expire(now);
+
+        Map<Long, Integer> increments = new HashMap<>();
+        Set<Incident> touchedIncidents = new LinkedHashSet<>();
+        List<Alarm> created = new ArrayList<>();
+        List<Alarm> headlines = new ArrayList<>();
+        int deduplicated = 0;
+
+        for (Alarm candidate : candidates) {
+            String sourceKey = candidate.getSource() + "|" + candidate.getType();
+            String zoneKey = candidate.getZone() != null ? candidate.getZone() + "|" + candidate.getType() : null;
+
+            // 1. 同源重复：累加计数
+            OpenAlarm open = openAlarms.get(sourceKey);
+            if (open != null) {
+                open.lastSeen = now;
+                if (open.incident != null) {
+                    open.incident.occurrences++;
+                    open.incident.raise(candidate.getLevel());
+                    open.incident.lastSeen = now;
+                    touchedIncidents.add(open.incident);
+                } else if (AlarmRuleEngine.levelRank(candidate.getLevel()) > AlarmRuleEngine.levelRank(open.level)) {
+                    // 同源升级 (如 warning 后 critical)：更新打开告警的级别并重新推送，不能被计数吞掉
+                    Alarm escalated = escalate(open, candidate, at);
+                    if (escalated != null) {
+                        headlines.removeIf(alarm -> alarm.getId().equals(escalated.getId()));
+                        headlines.add(escalated);
+                    } else {
+                        increments.merge(open.id, 1, Integer::sum);
+                    }
+                } else {
+                    increments.merge(open.id, 1, Integer::sum);
+                }
+                deduplicated++;
+                continue;
+            }
+
+            // 2. 区域已有聚合事件：并入事件，不插入新行
+            Incident incident = zoneKey != null ? incidents.get(zoneKey) : null;
+            if (incident != null) {
+                incident.sources.add(candidate.getSource());
+                incident.occurrences++;
+                incident.raise(candidate.getLevel());
+                incident.lastSeen = now;
+                touchedIncidents.add(incident);
+                openAlarms.put(sourceKey, new OpenAlarm(incident.id, candidate.getSource(), candidate.getLevel(), now, incident));
+                deduplicated++;
+                continue;
+            }
+
+            // 3. 新告警
+            candidate.setOccurrenceCount(1);
+            candidate.setLastOccurredAt(at);
+            Alarm saved = alarmRepository.save(candidate);
+            created.add(saved);
+            headlines.add(saved);
+            OpenAlarm entry = new OpenAlarm(saved.getId(), saved.getSource(), saved.getLevel(), now, null);
+            openAlarms.put(sourceKey, entry);
+
+            if (zoneKey != null) {
+                List<OpenAlarm> recent = zoneRecent.computeIfAbsent(zoneKey, k -> new ArrayList<>());
+                recent.add(entry);
+                if (recent.size() >= incidentThreshold) {
+                    Alarm parent = openIncident(saved, recent, at);
+                    created.add(parent);
+                    Set<Long> childIds = new HashSet<>();
+                    for (OpenAlarm child : recent) childIds.add(child.id);
+                    headlines.removeIf(alarm -> childIds.contains(alarm.getId()));
+                    headlines.add(parent);
+                    zoneRecent.remove(zoneKey);
+                }
+            }
+        }
+
+        applyIncrements(increments, at);
+        for (Incident incident : touchedIncidents) {
+            alarmRepository.updateIncident(incident.id, incident.occurrences - incident.flushedOccurrences,
+                    incident.sources.size(), incident.level, incident.message(), at);
+            incident.flushedOccurrences = incident.occurrences;
+        }
+
+        publish(headlines, created.size(), deduplicated, touchedIncidents);
+        return created;
+    }
+
+    /**
+     * 告警被确认解决后移出去重索引，之后再次出现会生成新告警；
+     * 解决聚合事件时其子告警随之解决，指向该事件的来源一并移出，否则新出现的告警会被并入已解决的事件
+     */
+    public synchronized void forget(Collection<Long> alarmIds) {
+        if (alarmIds.isEmpty()) return;
+        Set<Long> ids = new HashSet<>(alarmIds);
+        openAlarms.values().removeIf(open -> resolvedWith(open, ids));
+        incidents.values().removeIf(incident -> ids.contains(incident.id));
+        zoneRecent.values().forEach(list -> list.removeIf(open -> resolvedWith(open, ids)));
+        zoneRecent.values().removeIf(List::isEmpty);
+    }
+
+    private static boolean resolvedWith(OpenAlarm open, Set<Long> ids) {
+        return ids.contains(open.id) || open.incident != null && ids.contains(open.incident.id);
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("openAlarms", openAlarms.size());
+        stats.put("openIncidents", incidents.size());
+        stats.put("windowMs", windowMs);
+        return stats;
+    }
+
+    private Alarm openIncident(Alarm trigger, List<OpenAlarm> members, LocalDateTime at) {
+        Incident incident = new Incident(trigger.getZone(), trigger.getType());
+        for (OpenAlarm member : members) incident.sources.add(member.source);
+        incident.occurrences = members.size();
+        for (OpenAlarm member : members) incident.raise(member.level);
+
+        Alarm parent = new Alarm();
+        parent.setIncident(true);
+        parent.setLevel(incident.level);
+        parent.setType(trigger.getType());
+        parent.setSource("zone-" + trigger.getZone());
+        parent.setZone(trigger.getZone());
+        parent.setMessage(incident.message());
+        parent.setStatus("active");
+        parent.setOccurrenceCount(incident.occurrences);
+        parent.setAffectedCount(incident.sources.size());
+        parent.setLastOccurredAt(at);
+        parent = alarmRepository.save(parent);
+        incident.id = parent.getId();
+        incident.flushedOccurrences = incident.occurrences;
+        incident.lastSeen = System.currentTimeMillis();
+
+        List<Long> childIds = members.stream().map(m -> m.id).toList();
+        alarmRepository.attachToIncident(childIds, parent.getId());
+        for (OpenAlarm member : members) member.incident = incident;
+        incidents.put(trigger.getZone() + "|" + trigger.getType(), incident);
+        log.info("告警聚合: {} 区 {} 类告警汇总为事件 {} ({} 个来源)",
+                trigger.getZone(), trigger.getType(), parent.getId(), members.size());
+        return parent;
+    }
+
+    /**
+     * 打开告警升级到更高级别：级别、消息与本次计数一并写回，本批次其余增量仍由 applyIncrements 累加
+     */
+    private Alarm escalate(OpenAlarm open, Alarm candidate, LocalDateTime at) {
+        Alarm alarm = alarmRepository.findById(open.id).orElse(null);
+        if (alarm == null) return null;
+        open.level = candidate.getLevel();
+        alarm.setLevel(candidate.getLevel());
+        alarm.setMessage(candidate.getMessage());
+        alarm.setOccurrenceCount((alarm.getOccurrenceCount() != null ? alarm.getOccurrenceCount() : 1) + 1);
+        alarm.setLastOccurredAt(at);
+        log.info("告警升级: {} {} 告警 {} 升级为 {}", open.source, candidate.getType(), open.id, open.level);
+        return alarmRepository.save(alarm);
+    }
+
+    /**
+     * 按增量分组，每组一条 UPDATE ... WHERE id IN (...)
+     */
+    private void applyIncrements(Map<Long, Integer> increments, LocalDateTime at) {
+        if (increments.isEmpty()) return;
+        Map<Integer, List<Long>> byDelta = new HashMap<>();
+        increments.forEach((id, delta) -> byDelta.computeIfAbsent(delta, k -> new ArrayList<>()).add(id));
+        byDelta.forEach((delta, ids) -> alarmRepository.incrementOccurrences(ids, delta, at));
+    }
+
+    private void publish(List<Alarm> headlines, int created, int deduplicated, Set<Incident> touched) {
+        for (Alarm alarm : headlines) {
+            webSocketHandler.publish(new RealtimeMessage("alarm", alarm));
+        }
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("created", created);
+        summary.put("deduplicated", deduplicated);
+        summary.put("incidents", touched.stream().map(i -> Map.of(
+                "id", i.id, "zone", i.zone, "type", i.type,
+                "affected", i.sources.size(), "occurrences", i.occurrences)).toList());
+        webSocketHandler.publish(new RealtimeMessage("alarm_update", summary));
+    }
+
+    /**
+     * 清理超出滑动窗口的索引项
+     */
+    private void expire(long now) {
+        openAlarms.values().removeIf(open -> now - open.lastSeen > windowMs);
+        incidents.values().removeIf(incident -> now - incident.lastSeen > windowMs);
+        zoneRecent.values().forEach(list -> list.removeIf(open -> now - open.lastSeen > windowMs));
+        zoneRecent.values().removeIf(List::isEmpty);
+    }
+
+    private static final class OpenAlarm {
+        final long id;
+        final String source;
+        String level;
+        long lastSeen;
+        Incident incident;
+
+        OpenAlarm(long id, String source, String level, long lastSeen, Incident incident) {
+            this.id = id;
+            this.source = source;
+            this.level = level;
+            this.lastSeen = lastSeen;
+            this.incident = incident;
+        }
+    }
+
+    private static final class Incident {
+        final String zone;
+        final String type;
+        final Set<String> sources = new HashSet<>();
+        long id;
+        int occurrences;
+        int flushedOccurrences;
+        String level = "info";
+        long lastSeen;
+
+        Incident(String zone, String type) {
+            this.zone = zone;
+            this.type = type;
+        }
+
+        void raise(String candidateLevel) {
+            if (AlarmRuleEngine.levelRank(candidateLevel) > AlarmRuleEngine.levelRank(level)) {
+                level = candidateLevel;
+            }
+        }
+
+        String message() {
+            return String.format("区域 %s: %d 个来源同时出现 %s 告警", zone, sources.size(), type);
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package com.brewery.digitaltwin.service;
+
+import com.brewery.digitaltwin.entity.AlarmRule;
+import com.brewery.digitaltwin.entity.Device;
+import com.brewery.digitaltwin.entity.DeviceData;
+import com.brewery.digitaltwin.entity.Pit;
+import com.brewery.digitaltwin.entity.PitSensorData;
+import com.brewery.digitaltwin.repository.AlarmRuleRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 告警规则引擎
+ *
+ * 启用的 AlarmRule 被编译成按下标访问的原始数组；每个实体首次出现（或规则集/实体属性变化）时
+ * 解析出适用的规则下标并缓存，之后每条读数只遍历这些规则，单次求值为 O(适用规则数)。
+ * 实体状态（是否触发、开始超限时间、上次读数）按实体保存，用于滞回、持续时间与变化率判断。
+ *
+ * 引用工艺参数 (thresholdParam) 的规则按当前设定值解析阈值，设定值修改时只用已加载的规则重新编译，
+ * 下一个 tick 即按新阈值求值。
+ *
+ * 求值由仿真 tick 线程单线程调用；规则集通过 volatile 引用整体替换，可在任意线程热加载。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AlarmRuleEngine {
+
+    public static final String TARGET_PIT = "pit";
+    public static final String TARGET_DEVICE = "device";
+
+    // 读数通道顺序，evaluate 的 channels 数组按此下标取值
+    public static final String[] PIT_CHANNELS = {"temperature", "humidity", "ph", "acidity", "moisture", "alcohol"};
+    public static final String[] DEVICE_CHANNELS = {"power", "speed", "vibration", "temperature", "current"};
+
+    private static final long NOT_PENDING = Long.MIN_VALUE;
+
+    private final AlarmRuleRepository ruleRepository;
+    private final ParamStore paramStore;
+
+    private final Map<Long, EntityState> pitStates = new ConcurrentHashMap<>();
+    private final Map<Long, EntityState> deviceStates = new ConcurrentHashMap<>();
+
+    private volatile CompiledRules compiled;
+    private volatile List<Object> fingerprint = List.of();
+    private long nextVersion = 1;
+
+    /**
+     * 规则状态变化：raised=true 表示新触发，false 表示已恢复
+     */
+    public record Transition(AlarmRule rule, String targetType, Long entityId, boolean raised, double value) {
+    }
+
+    /**
+     * 对窖池读数求值，返回触发规则中最严重的目标状态，无触发时返回 normal
+     */
+    public String evaluatePit(Pit pit, PitSensorData data, long now, List<Transition> out) {
+        double[] channels = {
+            value(data.getTemperature()), value(data.getHumidity()), value(data.getPhValue()),
+            value(data.getAcidity()), value(data.getMoisture()), value(data.getAlcohol())
+        };
+        String status = evaluate(TARGET_PIT, pit.getId(), pit.getZone(), null,
+                pit.getPitAge() != null ? pit.getPitAge() : 0, channels, now, out);
+        return status != null ? status : "normal";
+    }
+
+    /**
+     * 对设备读数求值，返回触发规则中最严重的目标状态，无触发时返回 running
+     */
+    public String evaluateDevice(Device device, DeviceData data, long now, List<Transition> out) {
+        double[] channels = {
+            value(data.getPower()), value(data.getSpeed()), value(data.getVibration()),
+            value(data.getTemperature()), value(data.getCurrent())
+        };
+        String status = evaluate(TARGET_DEVICE, device.getId(), device.getLocation(), device.getType(),
+                0, channels, now, out);
+        return status != null ? status : "running";
+    }
+
+    /**
+     * 通用求值入口，channels 按 PIT_CHANNELS / DEVICE_CHANNELS 排列，NaN 表示缺失
+     *
+     * @return 触发中最高级别规则的 targetStatus，没有触发规则时返回 null
+     */
+    public String evaluate(String targetType, long entityId, String zone, String deviceType, int pitAge,
+                           double[] channels, long now, List<Transition> out) {
+        CompiledRules rules = ensureCompiled();
+        boolean pit = TARGET_PIT.equals(targetType);
+        Map<Long, EntityState> states = pit ? pitStates : deviceStates;
+        EntityState state = states.get(entityId);
+        if (state == null) {
+            state = new EntityState(channels.length);
+            states.put(entityId, state);
+        }
+        int scopeHash = Objects.hash(zone, deviceType, pitAge);
+        if (state.version != rules.version || state.scopeHash != scopeHash) {
+            state.bind(rules, pit ? 0 : 1, zone, deviceType, pitAge, scopeHash);
+        }
+
+        double minutes = state.lastTime > 0 ? (now - state.lastTime) / 60000.0 : 0;
+        int top = -1;
+        int[] bound = state.rules;
+        for (int k = 0; k < bound.length; k++) {
+            int r = bound[k];
+            int ch = rules.channel[r];
+            double v = channels[ch];
+            if (Double.isNaN(v)) continue;
+            if (rules.rate[r]) {
+                double last = state.lastValue[ch];
+                if (minutes <= 0 || Double.isNaN(last)) continue;
+                v = (v - last) / minutes;
+            }
+            boolean greater = rules.greater[r];
+            if (!state.active[k]) {
+                boolean breach = greater ? v > rules.threshold[r] : v < rules.threshold[r];
+                if (!breach) {
+                    state.pendingSince[k] = NOT_PENDING;
+                } else {
+                    if (state.pendingSince[k] == NOT_PENDING) state.pendingSince[k] = now;
+                    if (now - state.pendingSince[k] >= rules.durationMs[r]) {
+                        state.active[k] = true;
+                        if (out != null) out.add(new Transition(rules.source[r], targetType, entityId, true, v));
+                    }
+                }
+            } else {
+                boolean cleared = greater ? v < rules.clear[r] : v > rules.clear[r];
+                if (cleared) {
+                    state.active[k] = false;
+                    state.pendingSince[k] = NOT_PENDING;
+                    if (out != null) out.add(new Transition(rules.source[r], targetType, entityId, false, v));
+                }
+            }
+            if (state.active[k] && (top < 0 || rules.severity[r] > rules.severity[top])) {
+                top = r;
+            }
+        }
+        System.arraycopy(channels, 0, state.lastValue, 0, Math.min(channels.length, state.lastValue.length));
+        state.lastTime = now;
+        return top >= 0 ? rules.targetStatus[top] : null;
+    }
+
+    /**
+     * 定期检查规则表指纹，有变化时重新编译（热加载，无需重启）
+     */
+    @Scheduled(fixedDelayString = "${app.rules.reload-interval:10000}")
+    public void reloadIfChanged() {
+        List<Object> current = currentFingerprint();
+        if (compiled == null || !current.equals(fingerprint)) {
+            reload(current);
+        }
+    }
+
+    public void reload() {
+        reload(currentFingerprint());
+    }
+
+    /**
+     * 工艺参数修改：有规则引用该参数时按新设定值重新编译，不读数据库
+     */
+    @EventListener
+    public synchronized void onParamChange(ParamChangeEvent event) {
+        CompiledRules rules = compiled;
+        if (rules == null || !rules.params.contains(event.current().getCode())) return;
+        compiled = new CompiledRules(nextVersion++, Arrays.asList(rules.source), paramStore.snapshot());
+        log.info("工艺参数 {} 修改，告警规则已按新设定值重新编译", event.current().getCode());
+    }
+
+    public int getRuleCount() {
+        CompiledRules rules = compiled;
+        return rules != null ? rules.source.length : 0;
+    }
+
+    private CompiledRules ensureCompiled() {
+        CompiledRules rules = compiled;
+        if (rules == null) {
+            reload();
+            rules = compiled;
+        }
+        return rules;
+    }
+
+    private List<Object> currentFingerprint() {
+        List<Object[]> rows = ruleRepository.fingerprint();
+        if (rows.isEmpty()) return List.of();
+        Object[] row = rows.get(0);
+        List<Object> result = new ArrayList<>();
+        result.add(row[0]);
+        result.add(row[1]);
+        return result;
+    }
+
+    private synchronized void reload(List<Object> newFingerprint) {
+        List<AlarmRule> enabled = ruleRepository.findByEnabledTrue();
+        compiled = new CompiledRules(nextVersion++, enabled, paramStore.snapshot());
+        fingerprint = newFingerprint;
+        log.info("告警规则已编译: {} 条启用规则", enabled.size());
+    }
+
+    private static double value(Double v) {
+        return v != null ? v : Double.NaN;
+    }
+
+    static int levelRank(String level) {
+        if (level == null) return 0;
+        switch (level) {
+            case "critical": return 3;
+            case "error": return 2;
+            case "warning": return 1;
+            default: return 0;
+        }
+    }
+
+    /**
+     * 编译后的不可变规则集，按规则下标以列式数组存储
+     */
+    private static final class CompiledRules {
+        final long version;
+        final AlarmRule[] source;
+        final int[] target;        // 0=pit 1=device
+        final int[] channel;
+        final boolean[] greater;
+        final boolean[] rate;
+        final double[] threshold;
+        final double[] clear;
+        final long[] durationMs;
+        final int[] severity;
+        final String[] targetStatus;
+        final String[] zone;
+        final String[] deviceType;
+        final int[] minAge;
+        final int[] maxAge;
+        final Set<String> params;  // 引用的工艺参数 code
+
+        CompiledRules(long version, List<AlarmRule> rules, ParamStore.Snapshot paramSnapshot) {
+            List<AlarmRule> valid = new ArrayList<>();
+            for (AlarmRule rule : rules) {
+                String param = blankToNull(rule.getThresholdParam());
+                if (channelOf(rule) >= 0 && rule.getThreshold() != null
+                        && (param == null || paramSnapshot.byCode().containsKey(param))) {
+                    valid.add(rule);
+                } else {
+                    log.warn("忽略无效告警规则 {}: {} {}", rule.getId(), rule.getTargetType(), rule.getMetric());
+                }
+            }
+            int n = valid.size();
+            this.version = version;
+            this.source = valid.toArray(new AlarmRule[0]);
+            this.target = new int[n];
+            this.channel = new int[n];
+            this.greater = new boolean[n];
+            this.rate = new boolean[n];
+            this.threshold = new double[n];
+            this.clear = new double[n];
+            this.durationMs = new long[n];
+            this.severity = new int[n];
+            this.targetStatus = new String[n];
+            this.zone = new String[n];
+            this.deviceType = new String[n];
+            this.minAge = new int[n];
+            this.maxAge = new int[n];
+            this.params = new HashSet<>();
+            for (int i = 0; i < n; i++) {
+                AlarmRule rule = source[i];
+                target[i] = TARGET_PIT.equals(rule.getTargetType()) ? 0 : 1;
+                channel[i] = channelOf(rule);
+                greater[i] = !"lt".equals(rule.getOperator());
+                rate[i] = "rate".equals(rule.getConditionType());
+                String param = blankToNull(rule.getThresholdParam());
+                double base = 0;
+                if (param != null) {
+                    params.add(param);
+                    base = paramSnapshot.value(param, 0);
+                }
+                threshold[i] = base + rule.getThreshold();
+                clear[i] = base + (rule.getClearThreshold() != null ? rule.getClearThreshold() : rule.getThreshold());
+                durationMs[i] = rule.getDurationSeconds() != null ? rule.getDurationSeconds() * 1000L : 0L;
+                severity[i] = levelRank(rule.getLevel());
+                targetStatus[i] = rule.getTargetStatus();
+                zone[i] = blankToNull(rule.getZone());
+                deviceType[i] = blankToNull(rule.getDeviceType());
+                minAge[i] = rule.getMinPitAge() != null ? rule.getMinPitAge() : Integer.MIN_VALUE;
+                maxAge[i] = rule.getMaxPitAge() != null ? rule.getMaxPitAge() : Integer.MAX_VALUE;
+            }
+        }
+
+        boolean applies(int r, int targetKind, String entityZone, String entityType, int pitAge) {
+            if (target[r] != targetKind) return false;
+            if (zone[r] != null && (entityZone == null || !entityZone.startsWith(zone[r]))) return false;
+            if (deviceType[r] != null && !deviceType[r].equals(entityType)) return false;
+            return pitAge >= minAge[r] && pitAge <= maxAge[r];
+        }
+
+        private static int channelOf(AlarmRule rule) {
+            String[] channels = TARGET_PIT.equals(rule.getTargetType()) ? PIT_CHANNELS
+                    : TARGET_DEVICE.equals(rule.getTargetType()) ? DEVICE_CHANNELS : new String[0];
+            for (int i = 0; i < channels.length; i++) {
+                if (channels[i].equals(rule.getMetric())) return i;
+            }
+            return -1;
+        }
+
+        private static String blankToNull(String s) {
+            return s == null || s.isBlank() ? null : s;
+        }
+    }
+
+    /**
+     * 单个实体的规则状态，数组与 rules 下标一一对应
+     */
+    private static final class EntityState {
+        long version = -1;
+        int scopeHash;
+        int[] rules = new int[0];
+        Long[] ruleIds = new Long[0];
+        boolean[] active = new boolean[0];
+        long[] pendingSince = new long[0];
+        final double[] lastValue;
+        long lastTime;
+
+        EntityState(int channelCount) {
+            lastValue = new double[channelCount];
+            Arrays.fill(lastValue, Double.NaN);
+        }
+
+        /**
+         * 重新解析适用规则，已触发的规则按 id 保留触发状态，避免热加载后重复告警
+         */
+        void bind(CompiledRules compiled, int targetKind, String zone, String deviceType, int pitAge, int hash) {
+            int[] matched = new int[compiled.source.length];
+            int n = 0;
+            for (int r = 0; r < compiled.source.length; r++) {
+                if (compiled.applies(r, targetKind, zone, deviceType, pitAge)) matched[n++] = r;
+            }
+            int[] newRules = Arrays.copyOf(matched, n);
+            boolean[] newActive = new boolean[n];
+            long[] newPending = new long[n];
+            Arrays.fill(newPending, NOT_PENDING);
+            for (int k = 0; k < n; k++) {
+                Long id = compiled.source[newRules[k]].getId();
+                for (int j = 0; j < rules.length; j++) {
+                    if (id != null && id.equals(ruleIds[j])) {
+                        newActive[k] = active[j];
+                        newPending[k] = pendingSince[j];
+                        break;
+                    }
+                }
+            }
+            Long[] newIds = new Long[n];
+            for (int k = 0; k < n; k++) newIds[k] = compiled.source[newRules[k]].getId();
+            rules = newRules;
+            ruleIds = newIds;
+            active = newActive;
+            pendingSince = newPending;
+            version = compiled.version;
+            scopeHash = hash;
+        }
+    }
+}
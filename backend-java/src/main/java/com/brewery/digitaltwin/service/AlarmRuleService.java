@@ -0,0 +1,134 @@
+package com.brewery.digitaltwin.service;
+
+import com.brewery.digitaltwin.dto.AlarmRuleRequest;
+import com.brewery.digitaltwin.entity.AlarmRule;
+import com.brewery.digitaltwin.repository.AlarmRuleRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Service
+@RequiredArgsConstructor
+public class AlarmRuleService {
+    
+    private final AlarmRuleRepository ruleRepository;
+    private final AlarmRuleEngine ruleEngine;
+    
+    public List<AlarmRule> getAllRules() {
+        return ruleRepository.findAll();
+    }
+    
+    public List<AlarmRule> getRulesByTargetType(String targetType) {
+        return ruleRepository.findByTargetType(targetType);
+    }
+    
+    public Optional<AlarmRule> getRuleById(Long id) {
+        return ruleRepository.findById(id);
+    }
+    
+    /**
+     * @throws IllegalArgumentException 运算符、阈值或恢复阈值无效
+     */
+    @Transactional
+    public AlarmRule createRule(AlarmRule rule) {
+        validate(rule);
+        rule.setUpdatedAt(LocalDateTime.now());
+        AlarmRule saved = ruleRepository.save(rule);
+        ruleEngine.reload();
+        return saved;
+    }
+    
+    /**
+     * 只合并请求中出现的字段，未出现的字段保持原值
+     *
+     * @throws IllegalArgumentException 合并后的运算符、阈值或恢复阈值无效
+     */
+    @Transactional
+    public Optional<AlarmRule> updateRule(Long id, AlarmRuleRequest data) {
+        return ruleRepository.findById(id).map(rule -> {
+            if (data.getName() != null) rule.setName(data.getName());
+            if (data.getMetric() != null) rule.setMetric(data.getMetric());
+            if (data.getOperator() != null) rule.setOperator(data.getOperator());
+            if (data.getConditionType() != null) rule.setConditionType(data.getConditionType());
+            if (data.getThreshold() != null) rule.setThreshold(data.getThreshold());
+            if (data.getClearThreshold() != null) rule.setClearThreshold(data.getClearThreshold().orElse(null));
+            if (data.getDurationSeconds() != null) rule.setDurationSeconds(data.getDurationSeconds());
+            if (data.getLevel() != null) rule.setLevel(data.getLevel());
+            if (data.getTargetStatus() != null) rule.setTargetStatus(data.getTargetStatus());
+            if (data.getEnabled() != null) rule.setEnabled(data.getEnabled());
+            if (data.getZone() != null) rule.setZone(data.getZone().orElse(null));
+            if (data.getDeviceType() != null) rule.setDeviceType(data.getDeviceType().orElse(null));
+            if (data.getThresholdParam() != null) rule.setThresholdParam(data.getThresholdParam().orElse(null));
+            if (data.getMinPitAge() != null) rule.setMinPitAge(data.getMinPitAge().orElse(null));
+            if (data.getMaxPitAge() != null) rule.setMaxPitAge(data.getMaxPitAge().orElse(null));
+            validate(rule);
+            rule.setUpdatedAt(LocalDateTime.now());
+            AlarmRule saved = ruleRepository.save(rule);
+            ruleEngine.reload();
+            return saved;
+        });
+    }
+    
+    /**
+     * 恢复阈值须落在阈值的恢复一侧：gt 规则读数回落到恢复阈值以下才解除，恢复阈值不得高于阈值；lt 规则反之。
+     * 在错误一侧时告警一触发即满足解除条件，滞回失效并在阈值附近反复触发/解除
+     */
+    private static void validate(AlarmRule rule) {
+        if (!"gt".equals(rule.getOperator()) && !"lt".equals(rule.getOperator())) {
+            throw new IllegalArgumentException("不支持的运算符: " + rule.getOperator() + "，可选 gt / lt");
+        }
+        if (rule.getThreshold() == null) throw new IllegalArgumentException("threshold 不能为空");
+        Double clear = rule.getClearThreshold();
+        if (clear == null) return;
+        if ("gt".equals(rule.getOperator()) && clear > rule.getThreshold()) {
+            throw new IllegalArgumentException(String.format(
+                    "gt 规则的恢复阈值 %s 不能高于阈值 %s", clear, rule.getThreshold()));
+        }
+        if ("lt".equals(rule.getOperator()) && clear < rule.getThreshold()) {
+            throw new IllegalArgumentException(String.format(
+                    "lt 规则的恢复阈值 %s 不能低于阈值 %s", clear, rule.getThreshold()));
+        }
+    }
+    
+    @Transactional
+    public boolean deleteRule(Long id) {
+        if (!ruleRepository.existsById(id)) return false;
+        ruleRepository.deleteById(id);
+        ruleEngine.reload();
+        return true;
+    }
+    
+    /**
+     * 初始化默认规则，与原先 SimulatorService 中硬编码的阈值一致，并增加滞回区间
+     */
+    @Transactional
+    public void initDefaultRules() {
+        if (ruleRepository.count() > 0) return;
+        ruleRepository.save(rule("窖池温度偏高", "pit", "temperature", 35.0, 34.0, 0, "warning", "warning"));
+        ruleRepository.save(rule("窖池温度超限", "pit", "temperature", 40.0, 39.0, 0, "critical", "alarm"));
+        ruleRepository.save(rule("窖池持续高温", "pit", "temperature", 38.0, 37.0, 120, "error", "alarm"));
+        ruleRepository.save(rule("设备振动偏大", "device", "vibration", 5.0, 4.5, 0, "warning", "warning"));
+        ruleRepository.save(rule("设备振动过大", "device", "vibration", 8.0, 7.0, 0, "critical", "fault"));
+        ruleRepository.save(rule("设备温度偏高", "device", "temperature", 65.0, 63.0, 0, "warning", "warning"));
+        ruleRepository.save(rule("设备温度过高", "device", "temperature", 80.0, 78.0, 0, "critical", "fault"));
+        ruleEngine.reload();
+    }
+    
+    private AlarmRule rule(String name, String targetType, String metric, double threshold, double clear,
+                           int durationSeconds, String level, String targetStatus) {
+        AlarmRule rule = new AlarmRule();
+        rule.setName(name);
+        rule.setTargetType(targetType);
+        rule.setMetric(metric);
+        rule.setThreshold(threshold);
+        rule.setClearThreshold(clear);
+        rule.setDurationSeconds(durationSeconds);
+        rule.setLevel(level);
+        rule.setTargetStatus(targetStatus);
+        return rule;
+    }
+}
@@ -1,28 +1,51 @@
 package com.brewery.digitaltwin.service;
 
+import com.brewery.digitaltwin.dto.AlarmBulkRequest;
+import com.brewery.digitaltwin.dto.AlarmFilter;
+import com.brewery.digitaltwin.dto.CursorPage;
+import com.brewery.digitaltwin.dto.RealtimeMessage;
 import com.brewery.digitaltwin.entity.Alarm;
 import com.brewery.digitaltwin.repository.AlarmRepository;
+import com.brewery.digitaltwin.websocket.RealtimeWebSocketHandler;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 
 @Service
 @RequiredArgsConstructor
 public class AlarmService {
     
     private final AlarmRepository alarmRepository;
+    private final AlarmAggregationService alarmAggregationService;
+    private final RealtimeWebSocketHandler webSocketHandler;
+    private final TransactionTemplate transactionTemplate;
     
+    @Value("${app.alarm.bulk-chunk-size:500}")
+    private int bulkChunkSize;
+    
+    @Value("${app.alarm.list-limit:200}")
+    private int listLimit;
+    
+    /**
+     * 最新的活跃告警，最多 app.alarm.list-limit 条，完整列表使用 getAlarmsByCursor 翻页
+     */
     public List<Alarm> getActiveAlarms() {
-        return alarmRepository.findByStatus("active");
+        return alarmRepository.findByStatus("active", latest(listLimit));
     }
     
     public List<Alarm> getRecentAlarms() {
@@ -30,7 +53,39 @@ public class AlarmService {
     }
 
     public List<Alarm> getAlarmsByLevelAndStatus(String level, String status) {
-        return alarmRepository.findByLevelAndStatus(level, status);
+        return alarmRepository.findByLevelAndStatus(level, status, latest(listLimit));
+    }
+    
+    /**
+     * 键集分页查询，游标为上一页最后一条的 (createdAt, id)，翻页代价与页码无关
+     */
+    public CursorPage<Alarm> getAlarmsByCursor(AlarmFilter filter, String cursor, int size) {
+        int limit = Math.max(1, Math.min(size, listLimit));
+        LocalDateTime cursorAt = null;
+        Long cursorId = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("_", 2);
+            if (parts.length != 2) throw new IllegalArgumentException("invalid cursor");
+            cursorAt = LocalDateTime.parse(parts[0]);
+            cursorId = Long.parseLong(parts[1]);
+        }
+        List<Alarm> rows = alarmRepository.findByFilterBefore(filter, cursorAt, cursorId, limit + 1);
+        boolean hasMore = rows.size() > limit;
+        List<Alarm> items = hasMore ? rows.subList(0, limit) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            Alarm last = items.get(items.size() - 1);
+            nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                    (last.getCreatedAt() + "_" + last.getId()).getBytes(StandardCharsets.UTF_8));
+        }
+        return new CursorPage<>(items, nextCursor, hasMore);
+    }
+    
+    /**
+     * 最近的告警；调用方均按 status 等值查询，把 status 放进排序键以匹配 (status, created_at DESC, id DESC) 索引
+     */
+    private static PageRequest latest(int limit) {
+        return PageRequest.of(0, limit, Sort.by(Sort.Order.asc("status"), Sort.Order.desc("createdAt"), Sort.Order.desc("id")));
     }
     
     public Page<Alarm> getAlarmsByStatus(String status, int page, int size) {
@@ -45,8 +100,7 @@ public class AlarmService {
         Map<String, Object> stats = new HashMap<>();
         long active = alarmRepository.countByStatus("active");
         long total = alarmRepository.count();
-        long today = alarmRepository.findByCreatedAtAfter(LocalDateTime.now()
-                .with(LocalTime.MIN)).size();
+        long today = alarmRepository.countByCreatedAtAfter(LocalDateTime.now().with(LocalTime.MIN));
         Map<String, Long> byLevel = new HashMap<>();
         alarmRepository.countActiveByLevel().forEach(row ->
             byLevel.put((String) row[0], (Long) row[1])
@@ -71,24 +125,89 @@ public class AlarmService {
         });
     }
     
+    /**
+     * 解决单条告警；若为聚合事件，与批量解决一样一并解决其子告警
+     */
     @Transactional
     public Optional<Alarm> resolveAlarm(Long id, String resolvedBy) {
         return alarmRepository.findById(id).map(alarm -> {
+            LocalDateTime now = LocalDateTime.now();
             alarm.setStatus("resolved");
             alarm.setResolvedBy(resolvedBy);
-            alarm.setResolvedAt(LocalDateTime.now());
-            return alarmRepository.save(alarm);
+            alarm.setResolvedAt(now);
+            alarmAggregationService.forget(List.of(id));
+            Alarm saved = alarmRepository.save(alarm);
+            if (Boolean.TRUE.equals(saved.getIncident())) {
+                alarmRepository.resolveByIds(List.of(id), resolvedBy, now);
+            }
+            return saved;
         });
     }
     
-    @Transactional
     public int batchResolve(List<Long> ids, String resolvedBy) {
-        int count = 0;
-        for (Long id : ids) {
-            if (resolveAlarm(id, resolvedBy).isPresent()) {
-                count++;
+        AlarmBulkRequest request = new AlarmBulkRequest();
+        request.setIds(ids);
+        request.setResolvedBy(resolvedBy);
+        return bulkResolve(request);
+    }
+    
+    /**
+     * 批量解决：按 id 列表或筛选条件分块执行集合 UPDATE，每块独立事务，
+     * 解决聚合事件时一并解决其子告警；完成后推送一条汇总事件
+     */
+    public int bulkResolve(AlarmBulkRequest request) {
+        String resolvedBy = request.getResolvedBy() != null ? request.getResolvedBy() : "system";
+        LocalDateTime now = LocalDateTime.now();
+        request.setStatuses(List.of("active", "acknowledged"));
+        int count = bulkUpdate(request, ids -> {
+            alarmAggregationService.forget(ids);
+            return alarmRepository.resolveByIds(ids, resolvedBy, now);
+        });
+        publishBulkEvent("resolved", count, request);
+        return count;
+    }
+    
+    /**
+     * 批量确认：仅将 active 告警置为 acknowledged
+     */
+    public int bulkAcknowledge(AlarmBulkRequest request) {
+        request.setStatuses(List.of("active"));
+        int count = bulkUpdate(request, alarmRepository::acknowledgeByIds);
+        publishBulkEvent("acknowledged", count, request);
+        return count;
+    }
+    
+    private int bulkUpdate(AlarmBulkRequest request, Function<List<Long>, Integer> update) {
+        int total = 0;
+        List<Long> ids = request.getIds();
+        if (ids != null) {
+            for (int from = 0; from < ids.size(); from += bulkChunkSize) {
+                List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + bulkChunkSize));
+                total += transactionTemplate.execute(status -> update.apply(chunk));
             }
+            return total;
         }
-        return count;
+        // 按筛选条件：以 id 为游标分块，避免一次锁住全部匹配行
+        long afterId = 0;
+        while (true) {
+            long cursor = afterId;
+            List<Long> chunk = alarmRepository.findIdsByFilter(request, cursor, bulkChunkSize);
+            if (chunk.isEmpty()) break;
+            total += transactionTemplate.execute(status -> update.apply(chunk));
+            afterId = chunk.get(chunk.size() - 1);
+            if (chunk.size() < bulkChunkSize) break;
+        }
+        return total;
+    }
+    
+    private void publishBulkEvent(String action, int count, AlarmBulkRequest request) {
+        if (count == 0) return;
+        Map<String, Object> data = new HashMap<>();
+        data.put("action", action);
+        data.put("count", count);
+        if (request.getZone() != null) data.put("zone", request.getZone());
+        if (request.getLevel() != null) data.put("level", request.getLevel());
+        if (request.getType() != null) data.put("type", request.getType());
+        webSocketHandler.publish(new RealtimeMessage("alarm_update", data));
     }
 }
@@ -0,0 +1,440 @@
+package com.brewery.digitaltwin.service;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 批次排产求解器 - 把待排批次分配到可用窖池
+ *
+ * 硬约束：每个窖池最多属于一个批次；批次与窖池原料一致、窖龄不低于批次要求；
+ * 各区域本轮投料的窖池数不超过该区设备产能。批次需要的窖池数必须全部分到才算排入。
+ * 目标：Σ 排入批次 [产量 × 所分窖池预测质量均值 / 100 − 跨区惩罚 × (所跨区域数 − 1)]，
+ * 即优先排满产量，其次把高质量窖池给大批次，并尽量让一个批次集中在一个区域。
+ *
+ * 先贪心构造 (可从上一版计划热启动)，再由多个线程各自从同一初始解出发做局部搜索，
+ * 到时间预算后取最好的解，任意时刻截止都有可行解。邻域：换一个空闲窖池、两个批次交换窖池、
+ * 插入未排批次 (必要时挤出一个同原料批次再尝试重新排入)。只接受不变差的移动，
+ * 因此每个线程的当前解就是它的最好解。
+ *
+ * 问题数据为只读的原始数组，实例可被多个线程共享。
+ */
+public final class BatchScheduler {
+
+    /**
+     * 求解问题，窖池与批次都用下标表示；原料、区域已编码为从 0 开始的整数
+     *
+     * @param pitQuality    窖池预测质量评分
+     * @param zoneCapacity  各区域本轮最多投料的窖池数
+     * @param batchPits     批次需要的窖池数
+     * @param spreadPenalty 批次每多跨一个区域的目标扣减
+     */
+    public record Problem(int[] pitGrain, int[] pitAge, int[] pitZone, double[] pitQuality,
+                          int[] zoneCapacity, int[] batchGrain, int[] batchMinAge, int[] batchPits,
+                          double[] batchVolume, double spreadPenalty) {
+    }
+
+    /**
+     * 排产结果：assignment[b] 为批次 b 分到的窖池下标，未排入为 null
+     */
+    public record Plan(int[][] assignment, double objective, int scheduled, long iterations) {
+    }
+
+    private static final double EPS = 1e-9;
+
+    private final Problem pr;
+    private final int pitCount;
+    private final int batchCount;
+    private final int zones;
+    private final int[][] byGrain;      // 原料 → 窖池下标
+    private final int[][] byGrainZone;  // 原料 × 区域 → 窖池下标，按预测质量降序
+
+    public BatchScheduler(Problem problem) {
+        this.pr = problem;
+        this.pitCount = problem.pitGrain().length;
+        this.batchCount = problem.batchGrain().length;
+        this.zones = problem.zoneCapacity().length;
+        int grains = 0;
+        for (int g : problem.pitGrain()) grains = Math.max(grains, g + 1);
+        for (int g : problem.batchGrain()) grains = Math.max(grains, g + 1);
+
+        List<List<Integer>> grainLists = new ArrayList<>();
+        List<List<Integer>> cellLists = new ArrayList<>();
+        for (int g = 0; g < grains; g++) grainLists.add(new ArrayList<>());
+        for (int c = 0; c < grains * zones; c++) cellLists.add(new ArrayList<>());
+        for (int p = 0; p < pitCount; p++) {
+            grainLists.get(problem.pitGrain()[p]).add(p);
+            cellLists.get(problem.pitGrain()[p] * zones + problem.pitZone()[p]).add(p);
+        }
+        byGrain = new int[grains][];
+        for (int g = 0; g < grains; g++) byGrain[g] = toArray(grainLists.get(g));
+        byGrainZone = new int[grains * zones][];
+        for (int c = 0; c < cellLists.size(); c++) {
+            List<Integer> cell = cellLists.get(c);
+            cell.sort((a, b) -> Double.compare(problem.pitQuality()[b], problem.pitQuality()[a]));
+            byGrainZone[c] = toArray(cell);
+        }
+    }
+
+    /**
+     * 在调用线程上单线程求解
+     *
+     * @param initial 上一版计划 (可为 null)，仍可行的分配原样保留，其余批次贪心插入
+     * @param budgetMillis 局部搜索时间预算，0 表示只做贪心构造
+     */
+    public Plan solve(int[][] initial, long budgetMillis, long seed) {
+        Solution base = construct(initial);
+        if (budgetMillis <= 0) return base.toPlan();
+        Solution s = base.copy();
+        s.search(new SplittableRandom(seed), System.nanoTime() + budgetMillis * 1_000_000L);
+        Plan plan = (s.objective >= base.objective ? s : base).toPlan();
+        return new Plan(plan.assignment(), plan.objective(), plan.scheduled(), s.iterations);
+    }
+
+    /**
+     * 在给定线程池上并行求解，调用线程等待全部搜索到期
+     *
+     * @param executor 搜索线程池，由调用方限定大小，不占用公共 ForkJoinPool
+     * @param threads 并行搜索任务数
+     */
+    public Plan solve(int[][] initial, long budgetMillis, ExecutorService executor, int threads, long seed) {
+        Solution base = construct(initial);
+        if (budgetMillis <= 0 || threads <= 0) return base.toPlan();
+
+        long deadline = System.nanoTime() + budgetMillis * 1_000_000L;
+        List<Callable<Solution>> tasks = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            long taskSeed = seed + 31L * t;
+            tasks.add(() -> {
+                Solution s = base.copy();
+                s.search(new SplittableRandom(taskSeed), deadline);
+                return s;
+            });
+        }
+        List<Solution> results = new ArrayList<>(threads);
+        try {
+            for (Future<Solution> future : executor.invokeAll(tasks)) results.add(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return base.toPlan();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("排产搜索失败", e.getCause());
+        }
+        Solution best = results.stream().max(Comparator.comparingDouble(s -> s.objective)).orElse(base);
+        Plan plan = best.toPlan();
+        long iterations = results.stream().mapToLong(s -> s.iterations).sum();
+        return new Plan(plan.assignment(), plan.objective(), plan.scheduled(), iterations);
+    }
+
+    private Solution construct(int[][] initial) {
+        Solution base = new Solution();
+        if (initial != null) {
+            for (int b = 0; b < batchCount && b < initial.length; b++) {
+                if (initial[b] != null && base.canPlace(b, initial[b])) base.place(b, initial[b].clone());
+            }
+        }
+        Integer[] order = new Integer[batchCount];
+        for (int b = 0; b < batchCount; b++) order[b] = b;
+        Arrays.sort(order, (a, b) -> Double.compare(pr.batchVolume()[b], pr.batchVolume()[a]));
+        for (int b : order) {
+            if (base.pits[b] != null) continue;
+            int[] fill = base.bestFill(b);
+            if (fill != null) base.place(b, fill);
+        }
+        return base;
+    }
+
+    private boolean eligible(int b, int p) {
+        return pr.pitGrain()[p] == pr.batchGrain()[b] && pr.pitAge()[p] >= pr.batchMinAge()[b];
+    }
+
+    private double batchValue(double volume, double qualitySum, int required, int distinctZones) {
+        return volume * (qualitySum / required) / 100.0 - pr.spreadPenalty() * (distinctZones - 1);
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] out = new int[list.size()];
+        for (int i = 0; i < out.length; i++) out[i] = list.get(i);
+        return out;
+    }
+
+    /**
+     * 一个可变的解与其增量维护的统计
+     */
+    private final class Solution {
+        final int[] owner;
+        final int[][] pits;
+        final double[] qualitySum;
+        final int[] zoneCount;   // 批次 × 区域
+        final int[] distinct;
+        final int[] zoneUsed;
+        double objective;
+        long iterations;
+
+        Solution() {
+            owner = new int[pitCount];
+            Arrays.fill(owner, -1);
+            pits = new int[batchCount][];
+            qualitySum = new double[batchCount];
+            zoneCount = new int[batchCount * zones];
+            distinct = new int[batchCount];
+            zoneUsed = new int[zones];
+        }
+
+        Solution(Solution other) {
+            owner = other.owner.clone();
+            pits = new int[batchCount][];
+            for (int b = 0; b < batchCount; b++) pits[b] = other.pits[b] != null ? other.pits[b].clone() : null;
+            qualitySum = other.qualitySum.clone();
+            zoneCount = other.zoneCount.clone();
+            distinct = other.distinct.clone();
+            zoneUsed = other.zoneUsed.clone();
+            objective = other.objective;
+        }
+
+        Solution copy() {
+            return new Solution(this);
+        }
+
+        double value(int b) {
+            return pits[b] == null ? 0 : batchValue(pr.batchVolume()[b], qualitySum[b], pr.batchPits()[b], distinct[b]);
+        }
+
+        boolean canPlace(int b, int[] candidate) {
+            if (candidate.length != pr.batchPits()[b]) return false;
+            int[] need = new int[zones];
+            Set<Integer> seen = new HashSet<>();
+            for (int p : candidate) {
+                if (p < 0 || p >= pitCount || owner[p] != -1 || !eligible(b, p) || !seen.add(p)) return false;
+                need[pr.pitZone()[p]]++;
+            }
+            for (int z = 0; z < zones; z++) {
+                if (zoneUsed[z] + need[z] > pr.zoneCapacity()[z]) return false;
+            }
+            return true;
+        }
+
+        void place(int b, int[] assigned) {
+            pits[b] = assigned;
+            for (int p : assigned) addPit(b, p);
+            objective += value(b);
+        }
+
+        void remove(int b) {
+            objective -= value(b);
+            for (int p : pits[b]) removePit(b, p);
+            pits[b] = null;
+        }
+
+        private void addPit(int b, int p) {
+            int z = pr.pitZone()[p];
+            owner[p] = b;
+            qualitySum[b] += pr.pitQuality()[p];
+            if (zoneCount[b * zones + z]++ == 0) distinct[b]++;
+            zoneUsed[z]++;
+        }
+
+        private void removePit(int b, int p) {
+            int z = pr.pitZone()[p];
+            owner[p] = -1;
+            qualitySum[b] -= pr.pitQuality()[p];
+            if (--zoneCount[b * zones + z] == 0) distinct[b]--;
+            zoneUsed[z]--;
+        }
+
+        /**
+         * 把批次 b 第 k 个窖池换成 q，返回目标变化量
+         */
+        private double replace(int b, int k, int q) {
+            double before = value(b);
+            removePit(b, pits[b][k]);
+            pits[b][k] = q;
+            addPit(b, q);
+            double delta = value(b) - before;
+            objective += delta;
+            return delta;
+        }
+
+        /**
+         * 批次 b 的最优空闲窖池组合：优先在单个区域内取质量最高的，否则跨区按质量合并；不足返回 null
+         */
+        int[] bestFill(int b) {
+            int need = pr.batchPits()[b];
+            int grain = pr.batchGrain()[b];
+            int minAge = pr.batchMinAge()[b];
+            int[] best = null;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int z = 0; z < zones; z++) {
+                if (pr.zoneCapacity()[z] - zoneUsed[z] < need) continue;
+                int[] cell = byGrainZone[grain * zones + z];
+                int[] picked = new int[need];
+                int n = 0;
+                double sum = 0;
+                for (int i = 0; i < cell.length && n < need; i++) {
+                    int p = cell[i];
+                    if (owner[p] != -1 || pr.pitAge()[p] < minAge) continue;
+                    picked[n++] = p;
+                    sum += pr.pitQuality()[p];
+                }
+                if (n < need) continue;
+                double v = batchValue(pr.batchVolume()[b], sum, need, 1);
+                if (v > bestValue) {
+                    bestValue = v;
+                    best = picked;
+                }
+            }
+            if (best != null) return best;
+
+            // 跨区：各区域有序列表多路归并，受各区剩余产能限制
+            int[] cursor = new int[zones];
+            int[] room = new int[zones];
+            for (int z = 0; z < zones; z++) room[z] = pr.zoneCapacity()[z] - zoneUsed[z];
+            int[] picked = new int[need];
+            for (int n = 0; n < need; n++) {
+                int bestPit = -1;
+                int bestZone = -1;
+                for (int z = 0; z < zones; z++) {
+                    if (room[z] <= 0) continue;
+                    int[] cell = byGrainZone[grain * zones + z];
+                    int i = cursor[z];
+                    while (i < cell.length && (owner[cell[i]] != -1 || pr.pitAge()[cell[i]] < minAge)) i++;
+                    cursor[z] = i;
+                    if (i < cell.length && (bestPit < 0 || pr.pitQuality()[cell[i]] > pr.pitQuality()[bestPit])) {
+                        bestPit = cell[i];
+                        bestZone = z;
+                    }
+                }
+                if (bestPit < 0) return null;
+                picked[n] = bestPit;
+                cursor[bestZone]++;
+                room[bestZone]--;
+            }
+            return picked;
+        }
+
+        void search(SplittableRandom rng, long deadline) {
+            if (batchCount == 0) return;
+            while (true) {
+                if ((++iterations & 255) == 0
+                        && (System.nanoTime() >= deadline || Thread.currentThread().isInterrupted())) return;
+                int b = rng.nextInt(batchCount);
+                if (pits[b] == null) {
+                    insert(b, rng);
+                } else if (rng.nextInt(4) == 0) {
+                    reinsert(b);
+                } else {
+                    movePit(b, rng);
+                }
+            }
+        }
+
+        /**
+         * 换一个同原料窖池：空闲则替换，属于其他批次则交换
+         */
+        private void movePit(int b, SplittableRandom rng) {
+            int[] candidates = byGrain[pr.batchGrain()[b]];
+            if (candidates.length == 0) return;
+            int k = rng.nextInt(pits[b].length);
+            int p = pits[b][k];
+            int q = candidates[rng.nextInt(candidates.length)];
+            if (q == p || pr.pitAge()[q] < pr.batchMinAge()[b]) return;
+            int c = owner[q];
+            if (c == -1) {
+                int zq = pr.pitZone()[q];
+                if (zq != pr.pitZone()[p] && zoneUsed[zq] >= pr.zoneCapacity()[zq]) return;
+                if (replace(b, k, q) < -EPS) replace(b, k, p);
+            } else if (c != b && pr.pitAge()[p] >= pr.batchMinAge()[c]) {
+                int kc = indexOf(pits[c], q);
+                if (swap(b, k, c, kc) < -EPS) swap(b, k, c, kc);
+            }
+        }
+
+        /**
+         * 交换批次 b 第 k 个与批次 c 第 kc 个窖池，区域占用总量不变，返回目标变化量
+         */
+        private double swap(int b, int k, int c, int kc) {
+            int p = pits[b][k];
+            int q = pits[c][kc];
+            double before = value(b) + value(c);
+            removePit(b, p);
+            removePit(c, q);
+            pits[b][k] = q;
+            pits[c][kc] = p;
+            addPit(b, q);
+            addPit(c, p);
+            double delta = value(b) + value(c) - before;
+            objective += delta;
+            return delta;
+        }
+
+        /**
+         * 拆掉批次 b 按当前空闲窖池重新取最优组合，更差则恢复
+         */
+        private void reinsert(int b) {
+            int[] old = pits[b];
+            double before = objective;
+            remove(b);
+            int[] fill = bestFill(b);
+            if (fill != null) {
+                place(b, fill);
+                if (objective >= before - EPS) return;
+                remove(b);
+            }
+            place(b, old);
+        }
+
+        /**
+         * 插入未排批次；没有足够空闲窖池时挤出一个同原料批次，被挤出的批次再尝试重新排入
+         */
+        private void insert(int b, SplittableRandom rng) {
+            int[] fill = bestFill(b);
+            if (fill != null) {
+                double before = objective;
+                place(b, fill);
+                if (objective < before - EPS) remove(b);
+                return;
+            }
+            int[] candidates = byGrain[pr.batchGrain()[b]];
+            if (candidates.length == 0) return;
+            int c = owner[candidates[rng.nextInt(candidates.length)]];
+            if (c < 0 || c == b) return;
+            double before = objective;
+            int[] old = pits[c];
+            remove(c);
+            fill = bestFill(b);
+            if (fill == null) {
+                place(c, old);
+                return;
+            }
+            place(b, fill);
+            int[] refill = bestFill(c);
+            if (refill != null) place(c, refill);
+            if (objective >= before - EPS) return;
+            if (pits[c] != null) remove(c);
+            remove(b);
+            place(c, old);
+        }
+
+        Plan toPlan() {
+            // 重新累加目标值，消除增量更新的浮点漂移
+            double total = 0;
+            int scheduled = 0;
+            int[][] assignment = new int[batchCount][];
+            for (int b = 0; b < batchCount; b++) {
+                if (pits[b] == null) continue;
+                double sum = 0;
+                for (int p : pits[b]) sum += pr.pitQuality()[p];
+                int d = 0;
+                for (int z = 0; z < zones; z++) if (zoneCount[b * zones + z] > 0) d++;
+                total += batchValue(pr.batchVolume()[b], sum, pits[b].length, d);
+                assignment[b] = pits[b].clone();
+                scheduled++;
+            }
+            return new Plan(assignment, total, scheduled, iterations);
+        }
+
+        private int indexOf(int[] array, int value) {
+            for (int i = 0; i < array.length; i++) if (array[i] == value) return i;
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package com.brewery.digitaltwin.service;
+
+import com.brewery.digitaltwin.dto.ClusterEnvelope;
+import com.brewery.digitaltwin.dto.HeatmapData;
+import com.brewery.digitaltwin.entity.Device;
+import com.brewery.digitaltwin.entity.Pit;
+import com.brewery.digitaltwin.websocket.ClusterTransport;
+import com.brewery.digitaltwin.websocket.RealtimeWebSocketHandler;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 集群模式 - 窖池/设备按分片分配到节点，各节点只仿真自己负责的分片，实时消息在节点间转发
+ *
+ * 成员：各节点每个 heartbeat-interval 通过集群通道广播心跳，超过 node-timeout 未收到心跳的节点视为离线，
+ * 正常关闭时广播 leave。分片：app.cluster.shard-by=zone 时分片键为区域 (窖池区域与设备位置按同一区域名对齐，
+ * 同区域的窖池和设备落在同一节点，告警聚合与跨实体关联仍在单节点内完成)；range 时按 ID 每 range-size 个一片。
+ * 归属由 ShardMap 按成员视图计算，各节点独立算出相同结果。
+ *
+ * 重平衡：成员变化时重新计算归属。移出的分片立即写回内存状态；接管的分片先等待一个心跳间隔
+ * (让原负责节点看到成员变化并写回)，再从数据库重新加载后开始仿真。节点启动后先等两个心跳间隔收集成员，
+ * 避免同时启动的节点在看到彼此之前都仿真全部分片。
+ *
+ * 转发：本节点发布的实时消息经通道发给其他节点，接收方按自己的 seq 重新编号后推送给本地客户端，
+ * 并据此更新本地热力图与非本节点实体的状态，任何节点都能为任何客户端提供完整的快照与实时流。
+ *
+ * 心跳在专用线程 cluster-heartbeat 上执行，不使用 @Scheduled：默认调度器只有一个线程，仿真 tick、
+ * 自动排产求解、清理与写回都在上面排队，一次慢任务超过 node-timeout 就会让其他节点误判本节点离线并重平衡。
+ */
+@Slf4j
+@Service
+public class ClusterService {
+
+    private final boolean enabled;
+    private final String nodeId;
+    private final String url;
+    private final boolean shardByZone;
+    private final long rangeSize;
+    private final long heartbeatMs;
+    private final long nodeTimeoutMs;
+    private final ClusterTransport transport;
+    private final LiveStateService liveStateService;
+    private final DashboardService dashboardService;
+    private final ParamStore paramStore;
+    private final RealtimeWebSocketHandler webSocketHandler;
+    private final ObjectMapper objectMapper;
+
+    private final long startedAt = System.currentTimeMillis();
+    private final Map<String, Member> members = new ConcurrentHashMap<>();  // 其他节点
+    private ScheduledExecutorService heartbeatTimer;
+
+    // 由 this 监视器保护写入；volatile 供仿真线程无锁读取
+    private volatile Ownership ownership;
+    private long rebalances;
+    private LocalDateTime lastRebalanceAt;
+
+    private record Member(String nodeId, String url, long lastSeen, Map<String, Object> load) {
+    }
+
+    /**
+     * 某一版成员视图下本节点的归属；pending 为已接管但尚未完成交接 (重新加载) 的实体
+     */
+    private record Ownership(ShardMap map, String self, Map<String, Boolean> ownedKeys,
+                             Set<Long> pendingPits, Set<Long> pendingDevices, long handoffAt,
+                             int pits, int devices) {
+
+        boolean owns(String key) {
+            return ownedKeys.computeIfAbsent(key, k -> self.equals(map.owner(k)));
+        }
+    }
+
+    public ClusterService(@Value("${app.cluster.enabled:false}") boolean enabled,
+                          @Value("${app.cluster.node-id:}") String nodeId,
+                          @Value("${app.cluster.url:}") String url,
+                          @Value("${app.cluster.shard-by:zone}") String shardBy,
+                          @Value("${app.cluster.range-size:1000}") long rangeSize,
+                          @Value("${app.cluster.heartbeat-interval:2000}") long heartbeatMs,
+                          @Value("${app.cluster.node-timeout:6000}") long nodeTimeoutMs,
+                          @Value("${server.port:8000}") int port,
+                          ClusterTransport transport,
+                          LiveStateService liveStateService,
+                          DashboardService dashboardService,
+                          ParamStore paramStore,
+                          RealtimeWebSocketHandler webSocketHandler,
+                          ObjectMapper objectMapper) {
+        if (!shardBy.equals("zone") && !shardBy.equals("range")) {
+            throw new IllegalArgumentException("不支持的分片方式: " + shardBy + "，可选 zone / range");
+        }
+        String host = hostName();
+        this.enabled = enabled;
+        this.nodeId = nodeId.isBlank() ? host + "-" + port : nodeId;
+        this.url = url.isBlank() ? "http://" + host + ":" + port : url;
+        this.shardByZone = shardBy.equals("zone");
+        this.rangeSize = Math.max(1, rangeSize);
+        this.heartbeatMs = heartbeatMs;
+        this.nodeTimeoutMs = nodeTimeoutMs;
+        this.transport = transport;
+        this.liveStateService = liveStateService;
+        this.dashboardService = dashboardService;
+        this.paramStore = paramStore;
+        this.webSocketHandler = webSocketHandler;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) return;
+        transport.start(nodeId, this::receive);
+        webSocketHandler.setRelay(this::relay);
+        heartbeatTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cluster-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeatTimer.scheduleWithFixedDelay(this::heartbeat, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+        log.info("集群模式启动: 节点 {} ({}), 分片方式 {}", nodeId, url, shardByZone ? "区域" : "ID 范围 " + rangeSize);
+    }
+
+    @PreDestroy
+    public void leave() throws InterruptedException {
+        if (!enabled) return;
+        heartbeatTimer.shutdownNow();
+        webSocketHandler.setRelay(null);
+        // 先写回，收到 leave 的节点接管时读到的是最新状态
+        liveStateService.flush();
+        transport.send(envelope(ClusterEnvelope.LEAVE, null));
+        Thread.sleep(Math.min(heartbeatMs, 500));  // 等待发送线程把 leave 发出
+        transport.stop();
+        log.info("已离开集群: {}", nodeId);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean ownsPit(Pit pit) {
+        if (!enabled) return true;
+        Ownership o = ownership;
+        return o != null && !o.pendingPits().contains(pit.getId()) && o.owns(pitKey(pit));
+    }
+
+    public boolean ownsDevice(Device device) {
+        if (!enabled) return true;
+        Ownership o = ownership;
+        return o != null && !o.pendingDevices().contains(device.getId()) && o.owns(deviceKey(device));
+    }
+
+    public List<Pit> ownedPits(List<Pit> pits) {
+        return enabled ? pits.stream().filter(this::ownsPit).toList() : pits;
+    }
+
+    public List<Device> ownedDevices(List<Device> devices) {
+        return enabled ? devices.stream().filter(this::ownsDevice).toList() : devices;
+    }
+
+    /**
+     * 集群级单例任务 (数据清理、自动排产、仪表盘汇总推送) 只在协调节点执行：当前成员中 ID 最小的节点
+     */
+    public boolean isCoordinator() {
+        if (!enabled) return true;
+        Ownership o = ownership;
+        return o != null && nodeId.equals(o.map().nodes().get(0));
+    }
+
+    /**
+     * 广播心跳、剔除超时节点并完成到期的交接；异常只记录日志，否则调度器会停止后续心跳
+     */
+    void heartbeat() {
+        try {
+            beat();
+        } catch (RuntimeException e) {
+            log.warn("集群心跳失败: {}", e.getMessage(), e);
+        }
+    }
+
+    private void beat() {
+        long now = System.currentTimeMillis();
+        Ownership o = ownership;
+        Map<String, Object> load = new LinkedHashMap<>();
+        load.put("pits", o != null ? o.pits() : 0);
+        load.put("devices", o != null ? o.devices() : 0);
+        load.put("sessions", webSocketHandler.getConnectionCount());
+        transport.send(envelope(ClusterEnvelope.HEARTBEAT, load));
+
+        List<String> expired = new ArrayList<>();
+        members.values().removeIf(m -> {
+            boolean timedOut = now - m.lastSeen() > nodeTimeoutMs;
+            if (timedOut) expired.add(m.nodeId());
+            return timedOut;
+        });
+        if (o == null) {
+            if (now - startedAt >= 2 * heartbeatMs) rebalance("加入集群");
+        } else if (!expired.isEmpty()) {
+            rebalance("节点离线 " + expired);
+        }
+        completeHandoff(now);
+    }
+
+    private void relay(String payload) {
+        transport.send(envelope(ClusterEnvelope.REALTIME, null, payload));
+    }
+
+    void receive(ClusterEnvelope envelope) {
+        if (nodeId.equals(envelope.getNodeId())) return;
+        long now = System.currentTimeMillis();
+        switch (envelope.getKind()) {
+            case ClusterEnvelope.HEARTBEAT -> {
+                Member previous = members.put(envelope.getNodeId(),
+                        new Member(envelope.getNodeId(), envelope.getUrl(), now, envelope.getLoad()));
+                if (previous == null && ownership != null) rebalance("节点加入 " + envelope.getNodeId());
+            }
+            case ClusterEnvelope.LEAVE -> {
+                if (members.remove(envelope.getNodeId()) != null && ownership != null) {
+                    rebalance("节点离开 " + envelope.getNodeId());
+                }
+            }
+            case ClusterEnvelope.REALTIME -> {
+                members.computeIfPresent(envelope.getNodeId(),
+                        (id, m) -> new Member(m.nodeId(), m.url(), now, m.load()));
+                applyRelayed(envelope.getPayload());
+            }
+            default -> log.debug("忽略未知集群消息: {}", envelope.getKind());
+        }
+    }
+
+    /**
+     * 转发来的实时消息：更新本地状态后按本节点 seq 推送给本地客户端
+     */
+    private void applyRelayed(String payload) {
+        ObjectNode message;
+        try {
+            message = (ObjectNode) objectMapper.readTree(payload);
+        } catch (IOException | ClassCastException e) {
+            log.warn("集群转发消息解析失败: {}", e.getMessage());
+            return;
+        }
+        JsonNode data = message.path("data");
+        switch (message.path("type").asText()) {
+            case "pit_data" -> {
+                Map<Long, String> statuses = new HashMap<>();
+                for (JsonNode item : data) {
+                    long pitId = item.path("pitId").asLong();
+                    String status = item.path("status").asText();
+                    statuses.put(pitId, status);
+                    liveStateService.getPit(pitId).ifPresent(pit -> {
+                        HeatmapData hd = new HeatmapData();
+                        hd.setPitId(pitId);
+                        hd.setPitNo(pit.getPitNo());
+                        hd.setZone(pit.getZone());
+                        hd.setRow(pit.getRow());
+                        hd.setCol(pit.getCol());
+                        hd.setStatus(status);
+                        hd.setTemperature(item.path("temperature").asDouble());
+                        hd.setHumidity(item.path("humidity").asDouble());
+                        hd.setPhValue(item.path("phValue").asDouble());
+                        dashboardService.updateHeatmapCache(pitId, hd);
+                    });
+                }
+                liveStateService.applyRemoteStatus(statuses, Map.of());
+            }
+            case "device_data" -> {
+                Map<Long, String> statuses = new HashMap<>();
+                for (JsonNode item : data) statuses.put(item.path("deviceId").asLong(), item.path("status").asText());
+                liveStateService.applyRemoteStatus(Map.of(), statuses);
+            }
+            case "param_change" -> paramStore.reloadFromDatabase();
+            default -> {
+            }
+        }
+        webSocketHandler.publishRelayed(message);
+    }
+
+    private synchronized void rebalance(String reason) {
+        Set<String> nodes = new TreeSet<>(members.keySet());
+        nodes.add(nodeId);
+        ShardMap map = ShardMap.of(nodes);
+        Ownership previous = ownership;
+        if (previous != null && previous.map().nodes().equals(map.nodes())) return;
+
+        Ownership next = new Ownership(map, nodeId, new ConcurrentHashMap<>(), Set.of(), Set.of(), 0, 0, 0);
+        Set<Long> pendingPits = new HashSet<>();
+        Set<Long> pendingDevices = new HashSet<>();
+        int[] lost = new int[2];
+        int pits = collect(liveStateService.getPits(), this::pitKey, Pit::getId, previous, next, pendingPits, lost, 0);
+        int devices = collect(liveStateService.getDevices(), this::deviceKey, Device::getId, previous, next,
+                pendingDevices, lost, 1);
+        long handoffAt = System.currentTimeMillis() + heartbeatMs;
+        ownership = new Ownership(map, nodeId, next.ownedKeys(), Set.copyOf(pendingPits), Set.copyOf(pendingDevices),
+                handoffAt, pits, devices);
+        rebalances++;
+        lastRebalanceAt = LocalDateTime.now();
+        if (lost[0] + lost[1] > 0) liveStateService.flush();
+        log.info("分片重平衡 ({}): 节点 {}, 本节点负责窖池 {} 个 / 设备 {} 台, 移出 {} / {}, 待接管 {} / {}",
+                reason, map.nodes(), pits, devices, lost[0], lost[1], pendingPits.size(), pendingDevices.size());
+    }
+
+    /**
+     * 统计新归属下本节点负责的实体数，新接管 (之前不归本节点或仍在交接中) 的加入 pending，移出的计入 lost
+     */
+    private <T> int collect(List<T> entities, Function<T, String> key, Function<T, Long> id,
+                            Ownership previous, Ownership next, Set<Long> pending, int[] lost, int lostIndex) {
+        Set<Long> previousPending = previous == null ? Set.of()
+                : lostIndex == 0 ? previous.pendingPits() : previous.pendingDevices();
+        int owned = 0;
+        for (T entity : entities) {
+            String k = key.apply(entity);
+            boolean before = previous != null && previous.owns(k);
+            boolean after = next.owns(k);
+            if (after) {
+                owned++;
+                if (!before || previousPending.contains(id.apply(entity))) pending.add(id.apply(entity));
+            } else if (before) {
+                lost[lostIndex]++;
+            }
+        }
+        return owned;
+    }
+
+    private void completeHandoff(long now) {
+        Ownership o = ownership;
+        if (o == null || now < o.handoffAt() || (o.pendingPits().isEmpty() && o.pendingDevices().isEmpty())) return;
+        liveStateService.reload(o.pendingPits(), o.pendingDevices());
+        synchronized (this) {
+            if (ownership != o) return;  // 交接期间成员又变化，等下一轮
+            ownership = new Ownership(o.map(), o.self(), o.ownedKeys(), Set.of(), Set.of(), 0, o.pits(), o.devices());
+        }
+        log.info("分片交接完成: 接管窖池 {} 个 / 设备 {} 台", o.pendingPits().size(), o.pendingDevices().size());
+    }
+
+    public synchronized Map<String, Object> getStatus() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("nodeId", nodeId);
+        result.put("url", url);
+        if (!enabled) return result;
+        Ownership o = ownership;
+        result.put("state", o == null ? "joining" : o.pendingPits().isEmpty() && o.pendingDevices().isEmpty() ? "active" : "handoff");
+        result.put("coordinator", isCoordinator());
+        result.put("shardBy", shardByZone ? "zone" : "range");
+
+        long now = System.currentTimeMillis();
+        List<Map<String, Object>> nodes = new ArrayList<>();
+        Map<String, Object> self = new LinkedHashMap<>();
+        self.put("nodeId", nodeId);
+        self.put("url", url);
+        self.put("self", true);
+        self.put("sessions", webSocketHandler.getConnectionCount());
+        nodes.add(self);
+        for (Member m : members.values()) {
+            Map<String, Object> node = new LinkedHashMap<>();
+            node.put("nodeId", m.nodeId());
+            node.put("url", m.url());
+            node.put("lastSeenMs", now - m.lastSeen());
+            if (m.load() != null) node.putAll(m.load());
+            nodes.add(node);
+        }
+        result.put("nodes", nodes);
+
+        if (o != null) {
+            // 各节点按当前成员视图应负责的实体数
+            Map<String, int[]> assignment = new TreeMap<>();
+            o.map().nodes().forEach(n -> assignment.put(n, new int[2]));
+            liveStateService.getPits().forEach(p -> assignment.get(o.map().owner(pitKey(p)))[0]++);
+            liveStateService.getDevices().forEach(d -> assignment.get(o.map().owner(deviceKey(d)))[1]++);
+            Map<String, Object> shards = new LinkedHashMap<>();
+            assignment.forEach((n, counts) -> shards.put(n, Map.of("pits", counts[0], "devices", counts[1])));
+            result.put("assignment", shards);
+            result.put("pendingPits", o.pendingPits().size());
+            result.put("pendingDevices", o.pendingDevices().size());
+        }
+        result.put("rebalances", rebalances);
+        result.put("lastRebalanceAt", lastRebalanceAt);
+        result.put("relay", transport.getStats());
+        return result;
+    }
+
+    private String pitKey(Pit pit) {
+        return shardByZone ? "zone:" + CorrelationEngine.normalizeZone(pit.getZone()) : "pit:" + pit.getId() / rangeSize;
+    }
+
+    private String deviceKey(Device device) {
+        return shardByZone ? "zone:" + CorrelationEngine.normalizeZone(device.getLocation()) : "device:" + device.getId() / rangeSize;
+    }
+
+    private ClusterEnvelope envelope(String kind, Map<String, Object> load) {
+        return envelope(kind, load, null);
+    }
+
+    private ClusterEnvelope envelope(String kind, Map<String, Object> load, String payload) {
+        return new ClusterEnvelope(kind, nodeId, url, System.currentTimeMillis(), load, payload);
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "localhost";
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.brewery.digitaltwin.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 跨实体事件关联引擎
+ *
+ * 模式形如 "device:fault->pit:temperature"：同一区域内先出现 A 类事件，Δt 内又出现 B 类事件时，
+ * 输出一条根因事件 (A 为根因，B 为影响)。每个 (模式, 区域) 只保留最近 maxPerKey 个 A 事件，
+ * 键数量按 LRU 限制在 maxKeys 内，因此内存有界，单个事件的处理代价与历史长度无关。
+ */
+@Slf4j
+@Service
+public class CorrelationEngine {
+
+    private final List<Pattern> patterns = new ArrayList<>();
+    private final long windowMs;
+    private final int maxPerKey;
+    private final Map<String, Window> windows;
+    private final RootCause[] recent;
+    private int recentHead = 0;
+    private int recentSize = 0;
+
+    /**
+     * 输入事件：type 为 "实体类型:指标或状态"，如 device:fault、pit:temperature
+     */
+    public record Event(String type, String zone, String source, long time) {
+    }
+
+    /**
+     * 关联结果：cause 事件之后 lagMs 毫秒出现了 effect 事件
+     */
+    public record RootCause(String pattern, String zone, String causeSource, String effectSource,
+                            long causeTime, long effectTime, long lagMs) {
+    }
+
+    private record Pattern(String name, String first, String second) {
+    }
+
+    public CorrelationEngine(
+            @Value("${app.correlation.patterns:device:fault->pit:temperature,device:warning->pit:temperature}") List<String> patternSpecs,
+            @Value("${app.correlation.window:600000}") long windowMs,
+            @Value("${app.correlation.max-per-key:16}") int maxPerKey,
+            @Value("${app.correlation.max-keys:1024}") int maxKeys,
+            @Value("${app.correlation.recent-size:200}") int recentSize) {
+        for (String spec : patternSpecs) {
+            String[] parts = spec.trim().split("->");
+            if (parts.length == 2) {
+                patterns.add(new Pattern(spec.trim(), parts[0].trim(), parts[1].trim()));
+            } else {
+                log.warn("忽略无效关联模式: {}", spec);
+            }
+        }
+        this.windowMs = windowMs;
+        this.maxPerKey = Math.max(1, maxPerKey);
+        this.windows = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Window> eldest) {
+                return size() > maxKeys;
+            }
+        };
+        this.recent = new RootCause[Math.max(1, recentSize)];
+    }
+
+    /**
+     * 按时间顺序处理一批事件，返回本批产生的根因事件
+     */
+    public synchronized List<RootCause> process(List<Event> events) {
+        List<RootCause> result = new ArrayList<>();
+        for (Event event : events) {
+            if (event.zone() == null) continue;
+            String zone = normalizeZone(event.zone());
+            for (int p = 0; p < patterns.size(); p++) {
+                Pattern pattern = patterns.get(p);
+                String key = p + "|" + zone;
+                // 先匹配 B，再登记 A，同一事件不会与自身关联
+                if (pattern.second().equals(event.type())) {
+                    Window window = windows.get(key);
+                    if (window != null) {
+                        int match = window.latestWithin(event.time(), windowMs);
+                        if (match >= 0 && !window.sources[match].equals(event.source())) {
+                            RootCause cause = new RootCause(pattern.name(), zone, window.sources[match],
+                                    event.source(), window.times[match], event.time(),
+                                    event.time() - window.times[match]);
+                            result.add(cause);
+                            remember(cause);
+                        }
+                    }
+                }
+                if (pattern.first().equals(event.type())) {
+                    windows.computeIfAbsent(key, k -> new Window(maxPerKey)).add(event.source(), event.time());
+                }
+            }
+        }
+        return result;
+    }
+
+    public synchronized List<RootCause> getRecent() {
+        List<RootCause> list = new ArrayList<>(recentSize);
+        for (int i = 0; i < recentSize; i++) {
+            list.add(recent[(recentHead - 1 - i + recent.length) % recent.length]);
+        }
+        return list;
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("patterns", patterns.stream().map(Pattern::name).toList());
+        stats.put("windowMs", windowMs);
+        stats.put("activeKeys", windows.size());
+        stats.put("recentRootCauses", recentSize);
+        return stats;
+    }
+
+    private void remember(RootCause cause) {
+        recent[recentHead] = cause;
+        recentHead = (recentHead + 1) % recent.length;
+        if (recentSize < recent.length) recentSize++;
+    }
+
+    /**
+     * 窖池区域为 "A"，设备位置为 "A区"，统一成区域字母；为空时返回 ""
+     */
+    static String normalizeZone(String zone) {
+        if (zone == null) return "";
+        return zone.endsWith("区") ? zone.substring(0, zone.length() - 1) : zone;
+    }
+
+    /**
+     * 定长环形窗口，保存最近的 A 事件
+     */
+    private static final class Window {
+        final long[] times;
+        final String[] sources;
+        int head = 0;
+        int size = 0;
+
+        Window(int capacity) {
+            times = new long[capacity];
+            sources = new String[capacity];
+        }
+
+        void add(String source, long time) {
+            times[head] = time;
+            sources[head] = source;
+            head = (head + 1) % times.length;
+            if (size < times.length) size++;
+        }
+
+        /**
+         * 返回 Δt 内最近一个事件的下标，没有则返回 -1
+         */
+        int latestWithin(long now, long windowMs) {
+            for (int i = 0; i < size; i++) {
+                int idx = (head - 1 - i + times.length) % times.length;
+                long lag = now - times[idx];
+                if (lag < 0) continue;
+                return lag <= windowMs ? idx : -1;
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.brewery.digitaltwin.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 发酵曲线向量索引 - 定长 PAA 嵌入上的 k 近邻查询
+ *
+ * 所有嵌入按行连续存放在 float 数组中，另存一份更粗粒度的 PAA (每 group 段取均值)。
+ * 查询时先用粗粒度距离作为下界剪枝 (w × (均值差)² 不超过该组逐段差的平方和)，
+ * 剩余候选逐段累加完整距离，超过当前第 k 名时提前放弃。
+ * 追加由 this 监视器串行化，查询无锁：先写入数组，再通过 volatile 发布新的快照。
+ */
+public final class CurveIndex {
+
+    private final int dims;
+    private final int group;
+    private final int coarseDims;
+    private volatile Snapshot snapshot;
+
+    private record Snapshot(long[] ids, float[] quality, float[] vectors, float[] coarse, int size) {
+    }
+
+    /**
+     * 查询结果：曲线 ID、欧氏距离 (℃) 与该曲线的质量评分 (无评分为 NaN)
+     */
+    public record Match(long id, double distance, double qualityScore) {
+    }
+
+    public CurveIndex(int dims, int group) {
+        this.dims = dims;
+        this.group = Math.max(1, Math.min(group, dims));
+        this.coarseDims = (dims + this.group - 1) / this.group;
+        int capacity = 1024;
+        this.snapshot = new Snapshot(new long[capacity], new float[capacity],
+                new float[capacity * dims], new float[capacity * coarseDims], 0);
+    }
+
+    public synchronized void add(long id, double qualityScore, float[] embedding) {
+        Snapshot s = snapshot;
+        int size = s.size;
+        long[] ids = s.ids;
+        float[] quality = s.quality;
+        float[] vectors = s.vectors;
+        float[] coarse = s.coarse;
+        if (size == ids.length) {
+            int capacity = size * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            quality = Arrays.copyOf(quality, capacity);
+            vectors = Arrays.copyOf(vectors, capacity * dims);
+            coarse = Arrays.copyOf(coarse, capacity * coarseDims);
+        }
+        ids[size] = id;
+        quality[size] = (float) qualityScore;
+        System.arraycopy(embedding, 0, vectors, size * dims, dims);
+        for (int g = 0; g < coarseDims; g++) {
+            int from = g * group;
+            int to = Math.min(dims, from + group);
+            double sum = 0;
+            for (int d = from; d < to; d++) sum += embedding[d];
+            coarse[size * coarseDims + g] = (float) (sum / (to - from));
+        }
+        snapshot = new Snapshot(ids, quality, vectors, coarse, size + 1);
+    }
+
+    /**
+     * @param query      查询嵌入，只比较 mask 为 true 的段
+     * @param minQuality 只返回质量评分不低于该值的曲线，传 NaN 不过滤
+     * @return 按距离升序
+     */
+    public List<Match> search(float[] query, boolean[] mask, int k, double minQuality) {
+        Snapshot s = snapshot;
+        int compared = 0;
+        for (int d = 0; d < dims; d++) if (mask[d]) compared++;
+        if (compared == 0 || k <= 0) return List.of();
+
+        // 只有整组都参与比较的粗粒度段才能用于下界
+        boolean[] fullGroup = new boolean[coarseDims];
+        float[] queryCoarse = new float[coarseDims];
+        int[] groupWidth = new int[coarseDims];
+        for (int g = 0; g < coarseDims; g++) {
+            int from = g * group;
+            int to = Math.min(dims, from + group);
+            boolean full = true;
+            double sum = 0;
+            for (int d = from; d < to; d++) {
+                full &= mask[d];
+                sum += query[d];
+            }
+            fullGroup[g] = full;
+            queryCoarse[g] = (float) (sum / (to - from));
+            groupWidth[g] = to - from;
+        }
+
+        double[] bestDist = new double[k];
+        int[] bestIndex = new int[k];
+        int found = 0;
+        double threshold = Double.POSITIVE_INFINITY;  // 当前第 k 名的距离平方
+        boolean filter = !Double.isNaN(minQuality);
+
+        for (int i = 0; i < s.size; i++) {
+            if (filter && !(s.quality[i] >= minQuality)) continue;
+
+            double bound = 0;
+            int coarseBase = i * coarseDims;
+            for (int g = 0; g < coarseDims && bound < threshold; g++) {
+                if (!fullGroup[g]) continue;
+                double diff = queryCoarse[g] - s.coarse[coarseBase + g];
+                bound += groupWidth[g] * diff * diff;
+            }
+            if (bound >= threshold) continue;
+
+            double dist = 0;
+            int base = i * dims;
+            for (int d = 0; d < dims && dist < threshold; d++) {
+                if (!mask[d]) continue;
+                double diff = query[d] - s.vectors[base + d];
+                dist += diff * diff;
+            }
+            if (dist >= threshold) continue;
+
+            // 插入有序的前 k 名
+            int pos = found < k ? found++ : k - 1;
+            while (pos > 0 && bestDist[pos - 1] > dist) {
+                bestDist[pos] = bestDist[pos - 1];
+                bestIndex[pos] = bestIndex[pos - 1];
+                pos--;
+            }
+            bestDist[pos] = dist;
+            bestIndex[pos] = i;
+            if (found == k) threshold = bestDist[k - 1];
+        }
+
+        List<Match> result = new ArrayList<>(found);
+        for (int j = 0; j < found; j++) {
+            int i = bestIndex[j];
+            result.add(new Match(s.ids[i], Math.sqrt(bestDist[j]), s.quality[i]));
+        }
+        return result;
+    }
+
+    public int size() {
+        return snapshot.size;
+    }
+
+    public int getDims() {
+        return dims;
+    }
+}
@@ -0,0 +1,306 @@
+package com.brewery.digitaltwin.service;
+
+import com.brewery.digitaltwin.dto.CurveImportRequest;
+import com.brewery.digitaltwin.entity.FermentationCurve;
+import com.brewery.digitaltwin.entity.Pit;
+import com.brewery.digitaltwin.entity.ProductionBatch;
+import com.brewery.digitaltwin.repository.FermentationCurveRepository;
+import com.brewery.digitaltwin.repository.PitRepository;
+import com.brewery.digitaltwin.repository.ProductionBatchRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 发酵曲线相似检索
+ *
+ * 曲线横轴为发酵天数而非时间，每 segment-days 天取平均温度，得到 max-days / segment-days 维的 PAA 嵌入。
+ * 已完成的曲线与批次质量评分一起入库并加载到内存 CurveIndex；正在发酵的窖池由仿真数据累积当前曲线，
+ * 查询时只比较已经走过的发酵段，即"到目前为止最像哪些历史窖池"。
+ */
+@Slf4j
+@Service
+public class CurveSimilarityService {
+
+    private final FermentationCurveRepository curveRepository;
+    private final PitRepository pitRepository;
+    private final ProductionBatchRepository batchRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final int segmentDays;
+    private final int dims;
+    private final int coarseGroup;
+    private volatile CurveIndex index;
+    private final Map<Long, Accumulator> live = new ConcurrentHashMap<>();
+
+    /**
+     * 正在发酵的窖池的分段温度累计，由自身监视器保护
+     */
+    private static final class Accumulator {
+        final double[] sum;
+        final int[] count;
+        int lastDay = -1;
+
+        Accumulator(int dims) {
+            this.sum = new double[dims];
+            this.count = new int[dims];
+        }
+
+        void reset() {
+            Arrays.fill(sum, 0);
+            Arrays.fill(count, 0);
+        }
+    }
+
+    public CurveSimilarityService(FermentationCurveRepository curveRepository,
+                                  PitRepository pitRepository,
+                                  ProductionBatchRepository batchRepository,
+                                  JdbcTemplate jdbcTemplate,
+                                  @Value("${app.curves.max-days:90}") int maxDays,
+                                  @Value("${app.curves.segment-days:3}") int segmentDays,
+                                  @Value("${app.curves.coarse-group:5}") int coarseGroup) {
+        this.curveRepository = curveRepository;
+        this.pitRepository = pitRepository;
+        this.batchRepository = batchRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.segmentDays = Math.max(1, segmentDays);
+        this.dims = (maxDays + this.segmentDays - 1) / this.segmentDays;
+        this.coarseGroup = coarseGroup;
+        this.index = new CurveIndex(dims, coarseGroup);
+    }
+
+    /**
+     * 仿真每个周期调用：把窖池当前温度计入所在发酵段；发酵天数回退视为新一轮发酵，清空累计
+     */
+    public void record(Pit pit, double temperature) {
+        Integer day = pit.getFermentationDay();
+        if (day == null || day < 0) return;
+        Accumulator acc = live.computeIfAbsent(pit.getId(), id -> new Accumulator(dims));
+        synchronized (acc) {
+            if (day < acc.lastDay) acc.reset();
+            acc.lastDay = day;
+            int segment = Math.min(dims - 1, day / segmentDays);
+            acc.sum[segment] += temperature;
+            acc.count[segment]++;
+        }
+    }
+
+    /**
+     * 与窖池当前曲线最相似的 k 条历史曲线
+     *
+     * @param minQuality 只在质量评分不低于该值的曲线中检索，为空不过滤
+     */
+    public Map<String, Object> findSimilar(String pitNo, int k, Double minQuality) {
+        Pit pit = pitRepository.findByPitNo(pitNo)
+                .orElseThrow(() -> new IllegalArgumentException("窖池不存在"));
+        Accumulator acc = live.get(pit.getId());
+        float[] query = new float[dims];
+        boolean[] mask = new boolean[dims];
+        int compared = 0;
+        if (acc != null) {
+            synchronized (acc) {
+                for (int d = 0; d < dims; d++) {
+                    if (acc.count[d] == 0) continue;
+                    query[d] = (float) (acc.sum[d] / acc.count[d]);
+                    mask[d] = true;
+                    compared++;
+                }
+            }
+        }
+        if (compared == 0) {
+            throw new IllegalArgumentException("该窖池暂无当前发酵曲线");
+        }
+
+        long start = System.nanoTime();
+        List<CurveIndex.Match> matches = index.search(query, mask, k,
+                minQuality != null ? minQuality : Double.NaN);
+        double searchMillis = (System.nanoTime() - start) / 1e6;
+
+        Map<Long, FermentationCurve> curves = new HashMap<>();
+        curveRepository.findAllById(matches.stream().map(CurveIndex.Match::id).toList())
+                .forEach(c -> curves.put(c.getId(), c));
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (CurveIndex.Match match : matches) {
+            FermentationCurve curve = curves.get(match.id());
+            if (curve == null) continue;
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("curveId", curve.getId());
+            item.put("pitNo", curve.getPitNo());
+            item.put("batchId", curve.getBatchId());
+            item.put("qualityScore", curve.getQualityScore());
+            item.put("fermentationDays", curve.getFermentationDays());
+            item.put("distance", match.distance() / Math.sqrt(compared));  // 每段均方根温差 ℃
+            item.put("completedAt", curve.getCompletedAt());
+            items.add(item);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("pitNo", pitNo);
+        result.put("fermentationDay", pit.getFermentationDay());
+        result.put("comparedSegments", compared);
+        result.put("indexedCurves", index.size());
+        result.put("searchMillis", searchMillis);
+        result.put("matches", items);
+        return result;
+    }
+
+    /**
+     * 窖池一轮发酵结束：把累计的当前曲线连同批次质量评分归档，并开始新的累计
+     *
+     * @param qualityScore 为空时取批次的质量评分
+     */
+    public FermentationCurve archive(String pitNo, Long batchId, Double qualityScore) {
+        Pit pit = pitRepository.findByPitNo(pitNo)
+                .orElseThrow(() -> new IllegalArgumentException("窖池不存在"));
+        Accumulator acc = live.get(pit.getId());
+        if (acc == null) {
+            throw new IllegalArgumentException("该窖池暂无当前发酵曲线");
+        }
+        double[] segments = new double[dims];
+        Arrays.fill(segments, Double.NaN);
+        int lastDay;
+        synchronized (acc) {
+            for (int d = 0; d < dims; d++) {
+                if (acc.count[d] > 0) segments[d] = acc.sum[d] / acc.count[d];
+            }
+            lastDay = acc.lastDay;
+            acc.reset();
+        }
+        return save(pit.getId(), pitNo, batchId, qualityScore, lastDay + 1, segments);
+    }
+
+    /**
+     * 导入一条已完成的历史曲线
+     */
+    public FermentationCurve importCurve(CurveImportRequest request) {
+        List<Double> daily = request.getDailyTemperatures();
+        if (daily == null || daily.isEmpty()) {
+            throw new IllegalArgumentException("曲线不能为空");
+        }
+        double[] sum = new double[dims];
+        int[] count = new int[dims];
+        for (int day = 0; day < daily.size(); day++) {
+            Double t = daily.get(day);
+            if (t == null) continue;
+            int segment = Math.min(dims - 1, day / segmentDays);
+            sum[segment] += t;
+            count[segment]++;
+        }
+        double[] segments = new double[dims];
+        for (int d = 0; d < dims; d++) {
+            segments[d] = count[d] > 0 ? sum[d] / count[d] : Double.NaN;
+        }
+        Long pitId = request.getPitNo() != null
+                ? pitRepository.findByPitNo(request.getPitNo()).map(Pit::getId).orElse(null)
+                : null;
+        return save(pitId, request.getPitNo(), request.getBatchId(), request.getQualityScore(),
+                daily.size(), segments);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("indexedCurves", index.size());
+        stats.put("dims", dims);
+        stats.put("segmentDays", segmentDays);
+        stats.put("livePits", live.size());
+        return stats;
+    }
+
+    /**
+     * 从数据库重建索引；只读取 ID、评分与嵌入，不加载实体
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reload() {
+        CurveIndex rebuilt = new CurveIndex(dims, coarseGroup);
+        int[] skipped = {0};
+        jdbcTemplate.query("SELECT id, quality_score, segment_days, embedding FROM fermentation_curves ORDER BY id",
+                (RowCallbackHandler) rs -> {
+                    float[] embedding = decode(rs.getBytes(4));
+                    if (rs.getInt(3) != segmentDays || embedding.length != dims) {
+                        skipped[0]++;
+                        return;
+                    }
+                    double quality = rs.getDouble(2);
+                    rebuilt.add(rs.getLong(1), rs.wasNull() ? Double.NaN : quality, embedding);
+                });
+        index = rebuilt;
+        if (skipped[0] > 0) {
+            log.warn("{} 条发酵曲线的分段配置与当前不一致，未加载", skipped[0]);
+        }
+        log.info("发酵曲线索引已加载: {} 条, {} 维", rebuilt.size(), dims);
+    }
+
+    private FermentationCurve save(Long pitId, String pitNo, Long batchId, Double qualityScore,
+                                   int fermentationDays, double[] segments) {
+        float[] embedding = fillGaps(segments);
+        if (qualityScore == null && batchId != null) {
+            qualityScore = batchRepository.findById(batchId).map(ProductionBatch::getQualityScore).orElse(null);
+        }
+        FermentationCurve curve = new FermentationCurve();
+        curve.setPitId(pitId);
+        curve.setPitNo(pitNo);
+        curve.setBatchId(batchId);
+        curve.setQualityScore(qualityScore);
+        curve.setFermentationDays(fermentationDays);
+        curve.setSegmentDays(segmentDays);
+        curve.setEmbedding(encode(embedding));
+        curve = curveRepository.save(curve);
+        index.add(curve.getId(), qualityScore != null ? qualityScore : Double.NaN, embedding);
+        return curve;
+    }
+
+    /**
+     * 缺失的段用相邻段线性插值，两端保持最近的已知值
+     */
+    private float[] fillGaps(double[] segments) {
+        int firstKnown = -1;
+        for (int d = 0; d < dims; d++) {
+            if (!Double.isNaN(segments[d])) {
+                firstKnown = d;
+                break;
+            }
+        }
+        if (firstKnown < 0) {
+            throw new IllegalArgumentException("曲线没有有效温度");
+        }
+        float[] out = new float[dims];
+        int prev = -1;
+        for (int d = 0; d < dims; d++) {
+            if (Double.isNaN(segments[d])) continue;
+            if (prev < 0) {
+                for (int j = 0; j < d; j++) out[j] = (float) segments[d];
+            } else {
+                for (int j = prev + 1; j < d; j++) {
+                    double ratio = (double) (j - prev) / (d - prev);
+                    out[j] = (float) (segments[prev] + (segments[d] - segments[prev]) * ratio);
+                }
+            }
+            out[d] = (float) segments[d];
+            prev = d;
+        }
+        for (int j = prev + 1; j < dims; j++) out[j] = (float) segments[prev];
+        return out;
+    }
+
+    private static byte[] encode(float[] embedding) {
+        ByteBuffer buffer = ByteBuffer.allocate(embedding.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for (float v : embedding) buffer.putFloat(v);
+        return buffer.array();
+    }
+
+    private static float[] decode(byte[] bytes) {
+        if (bytes == null) return new float[0];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        float[] embedding = new float[bytes.length / 4];
+        for (int i = 0; i < embedding.length; i++) embedding[i] = buffer.getFloat();
+        return embedding;
+    }
+}
@@ -25,6 +25,7 @@ public class DashboardService {
     private final DeviceDataRepository deviceDataRepository;
     private final AlarmRepository alarmRepository;
     private final ProductionBatchRepository batchRepository;
+    private final EntityStatsService statsService;
     
     // 热力图缓存 - 由SimulatorService更新
     private final Map<Long, HeatmapData> heatmapCache = new ConcurrentHashMap<>();
@@ -36,18 +37,21 @@ public class DashboardService {
     }
     
     public DashboardStats getStats() {
+        JfrEvents.DashboardStatsEvent event = new JfrEvents.DashboardStatsEvent();
+        event.begin();
         DashboardStats stats = new DashboardStats();
         
-        // 窖池统计
-        stats.setTotalPits(pitRepository.count());
-        stats.setNormalPits(pitRepository.countByStatus("normal"));
-        stats.setWarningPits(pitRepository.countByStatus("warning"));
-        stats.setAlarmPits(pitRepository.countByStatus("alarm"));
+        // 窖池/设备统计 - 共享分组聚合缓存
+        Map<String, Long> pitCounts = statsService.getPitStatusCounts();
+        stats.setTotalPits(pitCounts.values().stream().mapToLong(Long::longValue).sum());
+        stats.setNormalPits(pitCounts.get("normal"));
+        stats.setWarningPits(pitCounts.get("warning"));
+        stats.setAlarmPits(pitCounts.get("alarm"));
         
-        // 设备统计
-        stats.setTotalDevices(deviceRepository.count());
-        stats.setRunningDevices(deviceRepository.countByStatus("running"));
-        stats.setFaultDevices(deviceRepository.countByStatus("fault"));
+        Map<String, Long> deviceCounts = statsService.getDeviceStatusCounts();
+        stats.setTotalDevices(deviceCounts.values().stream().mapToLong(Long::longValue).sum());
+        stats.setRunningDevices(deviceCounts.get("running"));
+        stats.setFaultDevices(deviceCounts.get("fault"));
         
         // 告警统计
         stats.setActiveAlarms(alarmRepository.countByStatus("active"));
@@ -77,6 +81,14 @@ public class DashboardService {
         // 总功率 - 使用简化查询
         stats.setTotalPower(0.0); // 先用默认值，实际功率由设备数据实时更新
         
+        event.end();
+        if (event.shouldCommit()) {
+            event.pits = stats.getTotalPits();
+            event.devices = stats.getTotalDevices();
+            event.activeAlarms = stats.getActiveAlarms();
+            event.heatmapEntries = heatmapCache.size();
+            event.commit();
+        }
         return stats;
     }
     
@@ -86,7 +98,9 @@ public class DashboardService {
             return new ArrayList<>(heatmapCache.values());
         }
         
-        // 首次加载或缓存为空时从数据库查询
+        // 首次加载且没有可恢复的快照时，取数据库中各窖池最近一次读数；尚无读数的窖池等SimulatorService更新
+        Map<Long, PitSensorData> latest = new HashMap<>();
+        pitSensorDataRepository.findLatestForAllPitsFast().forEach(d -> latest.put(d.getPitId(), d));
         List<Pit> pits = pitRepository.findAll();
         return pits.stream().map(pit -> {
             HeatmapData hd = new HeatmapData();
@@ -96,15 +110,31 @@ public class DashboardService {
             hd.setRow(pit.getRow());
             hd.setCol(pit.getCol());
             hd.setStatus(pit.getStatus());
-            // 首次加载不查传感器数据，等SimulatorService更新
-            hd.setTemperature(25.0 + Math.random() * 10);
-            hd.setHumidity(65.0 + Math.random() * 10);
-            hd.setPhValue(3.5 + Math.random() * 0.5);
-            heatmapCache.put(pit.getId(), hd);
+            PitSensorData data = latest.get(pit.getId());
+            if (data != null) {
+                hd.setTemperature(data.getTemperature());
+                hd.setHumidity(data.getHumidity());
+                hd.setPhValue(data.getPhValue());
+                heatmapCache.putIfAbsent(pit.getId(), hd);
+            }
             return hd;
         }).collect(Collectors.toList());
     }
 
+    /**
+     * 热力图缓存的副本，用于写状态快照
+     */
+    public List<HeatmapData> getHeatmapSnapshot() {
+        return new ArrayList<>(heatmapCache.values());
+    }
+
+    /**
+     * 启动时从状态快照恢复热力图；仿真已写入的条目较新，不覆盖
+     */
+    public void restoreHeatmap(Collection<HeatmapData> data) {
+        data.forEach(hd -> heatmapCache.putIfAbsent(hd.getPitId(), hd));
+    }
+
     public Map<String, Object> getOverview() {
         Map<String, Object> overview = new HashMap<>();
         overview.put("alarm_trend", buildAlarmTrend());
@@ -113,15 +143,21 @@ public class DashboardService {
     }
 
     private List<Map<String, Object>> buildAlarmTrend() {
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime start = now.minusHours(24);
+        LocalDateTime start = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusHours(23);
         List<Map<String, Object>> trend = new ArrayList<>();
 
+        // 数据库按小时分组计数，避免加载 24 小时内的全部告警
         Map<Long, Long> bucketCounts = new HashMap<>();
-        alarmRepository.findByCreatedAtAfter(start).forEach(alarm -> {
-            long bucket = ChronoUnit.HOURS.between(start, alarm.getCreatedAt());
+        alarmRepository.countHourlySince(start).forEach(row -> {
+            int day = ((Number) row[0]).intValue();
+            int hour = ((Number) row[1]).intValue();
+            LocalDateTime bucketTime = start.withHour(hour);
+            if (bucketTime.getDayOfMonth() != day || bucketTime.isBefore(start)) {
+                bucketTime = bucketTime.plusDays(1);
+            }
+            long bucket = ChronoUnit.HOURS.between(start, bucketTime);
             if (bucket >= 0 && bucket < 24) {
-                bucketCounts.put(bucket, bucketCounts.getOrDefault(bucket, 0L) + 1);
+                bucketCounts.merge(bucket, ((Number) row[2]).longValue(), Long::sum);
             }
         });
 
@@ -0,0 +1,278 @@
+package com.brewery.digitaltwin.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 设备在线异常检测 - 预测性维护
+ *
+ * 每台设备占用一个槽位，状态全部保存在按槽位展开的原始数组中，每个样本 O(1) 更新，不回查 device_data 历史：
+ * - 基线：五个通道 (功率、转速、振动、温度、电流) 的慢速 EWMA 均值与协方差，以及流式中位数与绝对偏差；
+ * - 多元 EWMA 控制图：快速 EWMA 跟踪相对基线的偏差向量，用基线协方差计算马氏距离 T²，能发现缓慢漂移；
+ * - 鲁棒 z 分数：单个通道相对中位数的突变。
+ * 两者合成健康分；健康分跌破阈值时输出一次预警，回升到恢复阈值后才会再次预警。
+ * 判定为异常的样本只以很小的权重进入基线，避免把故障学成正常。
+ */
+@Service
+public class DeviceAnomalyDetector {
+
+    public static final int CHANNELS = 5;
+    public static final String[] CHANNEL_NAMES = {"power", "speed", "vibration", "temperature", "current"};
+
+    private static final int COV = CHANNELS * (CHANNELS + 1) / 2;  // 下三角存储
+    private static final double ABS_DEV_SCALE = 1.2533;  // 正态分布下 σ ≈ 1.2533 × 平均绝对偏差
+    private static final double RIDGE = 1e-6;
+    private static final double T2_LIMIT = 15;            // 5 维 MEWMA 控制限 (λ=0.2 时约为 ARL 370)
+    private static final double Z_LIMIT = 4;
+
+    private final double baselineAlpha;
+    private final double lambda;
+    private final int warmupSamples;
+    private final double warningHealth;
+    private final double recoverHealth;
+
+    // 以下状态由 this 监视器保护
+    private final Map<Long, Integer> slots = new HashMap<>();
+    private long[] deviceIds = new long[0];
+    private long[] samples = new long[0];
+    private double[] mean = new double[0];
+    private double[] cov = new double[0];
+    private double[] ewma = new double[0];        // 相对基线均值的偏差的快速 EWMA
+    private double[] median = new double[0];
+    private double[] mad = new double[0];         // 相对中位数的平均绝对偏差
+    private double[] health = new double[0];
+    private double[] lastDistance = new double[0];
+    private double[] lastMaxZ = new double[0];
+    private boolean[] warning = new boolean[0];
+
+    // 每次计算复用的工作数组
+    private final double[] diff = new double[CHANNELS];
+    private final double[] chol = new double[COV];
+    private final double[] solve = new double[CHANNELS];
+
+    /**
+     * 单次更新结果；earlyWarning 仅在健康分首次跌破阈值时为 true
+     */
+    public record Assessment(long deviceId, double health, double distance, double maxRobustZ,
+                             String dominantChannel, boolean earlyWarning) {
+    }
+
+    public DeviceAnomalyDetector(
+            @Value("${app.anomaly.baseline-alpha:0.01}") double baselineAlpha,
+            @Value("${app.anomaly.lambda:0.2}") double lambda,
+            @Value("${app.anomaly.warmup-samples:60}") int warmupSamples,
+            @Value("${app.anomaly.warning-health:60}") double warningHealth,
+            @Value("${app.anomaly.recover-health:75}") double recoverHealth) {
+        this.baselineAlpha = baselineAlpha;
+        this.lambda = lambda;
+        this.warmupSamples = Math.max(2, warmupSamples);
+        this.warningHealth = warningHealth;
+        this.recoverHealth = recoverHealth;
+    }
+
+    /**
+     * 输入一条样本，values 按 CHANNEL_NAMES 顺序排列，缺失通道用 NaN 表示（视为等于基线）
+     */
+    public synchronized Assessment update(long deviceId, double[] values) {
+        int slot = slotOf(deviceId);
+        int base = slot * CHANNELS;
+        int covBase = slot * COV;
+        long n = samples[slot];
+
+        if (n == 0) {
+            for (int c = 0; c < CHANNELS; c++) {
+                double x = Double.isNaN(values[c]) ? 0 : values[c];
+                mean[base + c] = x;
+                median[base + c] = x;
+                mad[base + c] = Math.abs(x) * 0.05 + 1e-3;
+            }
+            samples[slot] = 1;
+            return new Assessment(deviceId, health[slot], 0, 0, null, false);
+        }
+
+        // 1. 用旧统计量评分：单通道鲁棒 z 分数 + 偏差 EWMA 的马氏距离
+        double maxZ = 0;
+        int dominant = -1;
+        for (int c = 0; c < CHANNELS; c++) {
+            double x = Double.isNaN(values[c]) ? mean[base + c] : values[c];
+            diff[c] = x - mean[base + c];
+            ewma[base + c] = lambda * diff[c] + (1 - lambda) * ewma[base + c];
+            double z = Math.abs(x - median[base + c]) / (ABS_DEV_SCALE * mad[base + c] + 1e-9);
+            if (z > maxZ) {
+                maxZ = z;
+                dominant = c;
+            }
+        }
+        // 稳态下 EWMA 向量的协方差为 λ/(2-λ)·Σ
+        double t2 = mahalanobis(ewma, base, covBase) * (2 - lambda) / lambda;
+
+        boolean anomalous = false;
+        boolean earlyWarning = false;
+        if (n >= warmupSamples) {
+            double excess = Math.max(0, t2 - T2_LIMIT) / T2_LIMIT + Math.max(0, maxZ - Z_LIMIT) / Z_LIMIT;
+            anomalous = excess > 0;
+            double instant = 100 * Math.exp(-excess);
+            health[slot] = health[slot] + 0.3 * (instant - health[slot]);
+            if (!warning[slot] && health[slot] < warningHealth) {
+                warning[slot] = true;
+                earlyWarning = true;
+            } else if (warning[slot] && health[slot] > recoverHealth) {
+                warning[slot] = false;
+            }
+            if (maxZ < Z_LIMIT) {
+                // 没有单通道突变时，由漂移最大的通道说明原因
+                dominant = dominantByEwma(base, covBase);
+            }
+        }
+        lastDistance[slot] = Math.sqrt(t2);
+        lastMaxZ[slot] = maxZ;
+
+        // 2. 更新基线：预热期按累计平均快速收敛，之后慢速 EWMA；异常样本权重降为 1/10
+        double alpha = Math.max(baselineAlpha, 1.0 / (n + 1));
+        if (anomalous || warning[slot]) alpha *= 0.1;
+        for (int c = 0; c < CHANNELS; c++) {
+            mean[base + c] += alpha * diff[c];
+            if (Double.isNaN(values[c])) continue;
+            double x = values[c];
+            double m = median[base + c];
+            // 中位数按符号随机逼近，单个离群值最多移动一步；偏差截断在 5 倍尺度内
+            median[base + c] = m + Math.signum(x - m) * alpha * ABS_DEV_SCALE * mad[base + c];
+            double dev = Math.min(Math.abs(x - m), 5 * ABS_DEV_SCALE * mad[base + c]);
+            mad[base + c] = Math.max(1e-6, mad[base + c] + alpha * (dev - mad[base + c]));
+        }
+        int k = covBase;
+        for (int i = 0; i < CHANNELS; i++) {
+            for (int j = 0; j <= i; j++) {
+                cov[k] = (1 - alpha) * (cov[k] + alpha * diff[i] * diff[j]);
+                k++;
+            }
+        }
+        samples[slot] = n + 1;
+
+        return new Assessment(deviceId, health[slot], lastDistance[slot], maxZ,
+                dominant >= 0 ? CHANNEL_NAMES[dominant] : null, earlyWarning);
+    }
+
+    public synchronized Map<String, Object> getHealth(long deviceId) {
+        Integer slot = slots.get(deviceId);
+        if (slot == null) return null;
+        return describe(slot);
+    }
+
+    public synchronized Map<Long, Double> getAllHealth() {
+        Map<Long, Double> result = new LinkedHashMap<>();
+        for (int slot = 0; slot < slots.size(); slot++) {
+            result.put(deviceIds[slot], health[slot]);
+        }
+        return result;
+    }
+
+    public synchronized int getDeviceCount() {
+        return slots.size();
+    }
+
+    private Map<String, Object> describe(int slot) {
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("deviceId", deviceIds[slot]);
+        info.put("health", health[slot]);
+        info.put("warning", warning[slot]);
+        info.put("samples", samples[slot]);
+        info.put("distance", lastDistance[slot]);
+        info.put("maxRobustZ", lastMaxZ[slot]);
+        Map<String, Double> means = new LinkedHashMap<>();
+        for (int c = 0; c < CHANNELS; c++) means.put(CHANNEL_NAMES[c], mean[slot * CHANNELS + c]);
+        info.put("mean", means);
+        return info;
+    }
+
+    /**
+     * 偏离最大的通道：按各通道 EWMA 偏差除以基线标准差比较
+     */
+    private int dominantByEwma(int base, int covBase) {
+        int dominant = 0;
+        double best = -1;
+        for (int c = 0; c < CHANNELS; c++) {
+            double score = Math.abs(ewma[base + c]) / Math.sqrt(cov[covBase + tri(c, c)] + RIDGE);
+            if (score > best) {
+                best = score;
+                dominant = c;
+            }
+        }
+        return dominant;
+    }
+
+    /**
+     * v^T * Σ^-1 * v，Σ 加微小岭项后做 Cholesky 分解；分解失败时退化为对角近似
+     */
+    private double mahalanobis(double[] vector, int base, int covBase) {
+        int k = 0;
+        for (int i = 0; i < CHANNELS; i++) {
+            for (int j = 0; j <= i; j++) {
+                double sum = cov[covBase + k];
+                if (i == j) sum += RIDGE * (1 + Math.abs(mean[base + i]));
+                for (int p = 0; p < j; p++) {
+                    sum -= chol[tri(i, p)] * chol[tri(j, p)];
+                }
+                if (i == j) {
+                    if (sum <= 0) return diagonalDistance(vector, base, covBase);
+                    chol[k] = Math.sqrt(sum);
+                } else {
+                    chol[k] = sum / chol[tri(j, j)];
+                }
+                k++;
+            }
+        }
+        // 前代求解 L y = v，距离平方为 |y|^2
+        double d2 = 0;
+        for (int i = 0; i < CHANNELS; i++) {
+            double sum = vector[base + i];
+            for (int p = 0; p < i; p++) sum -= chol[tri(i, p)] * solve[p];
+            solve[i] = sum / chol[tri(i, i)];
+            d2 += solve[i] * solve[i];
+        }
+        return d2;
+    }
+
+    private double diagonalDistance(double[] vector, int base, int covBase) {
+        double d2 = 0;
+        for (int i = 0; i < CHANNELS; i++) {
+            double v = cov[covBase + tri(i, i)] + RIDGE * (1 + Math.abs(mean[base + i]));
+            d2 += vector[base + i] * vector[base + i] / v;
+        }
+        return d2;
+    }
+
+    private static int tri(int i, int j) {
+        return i * (i + 1) / 2 + j;
+    }
+
+    private int slotOf(long deviceId) {
+        Integer slot = slots.get(deviceId);
+        if (slot != null) return slot;
+        int next = slots.size();
+        if (next == deviceIds.length) grow(Math.max(64, next * 2));
+        slots.put(deviceId, next);
+        deviceIds[next] = deviceId;
+        health[next] = 100;
+        return next;
+    }
+
+    private void grow(int capacity) {
+        deviceIds = Arrays.copyOf(deviceIds, capacity);
+        samples = Arrays.copyOf(samples, capacity);
+        mean = Arrays.copyOf(mean, capacity * CHANNELS);
+        cov = Arrays.copyOf(cov, capacity * COV);
+        ewma = Arrays.copyOf(ewma, capacity * CHANNELS);
+        median = Arrays.copyOf(median, capacity * CHANNELS);
+        mad = Arrays.copyOf(mad, capacity * CHANNELS);
+        health = Arrays.copyOf(health, capacity);
+        lastDistance = Arrays.copyOf(lastDistance, capacity);
+        lastMaxZ = Arrays.copyOf(lastMaxZ, capacity);
+        warning = Arrays.copyOf(warning, capacity);
+    }
+}
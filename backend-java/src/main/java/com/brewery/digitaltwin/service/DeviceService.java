@@ -17,6 +17,8 @@ public class DeviceService {
     
     private final DeviceRepository deviceRepository;
     private final DeviceDataRepository deviceDataRepository;
+    private final LiveStateService liveStateService;
+    private final EntityStatsService statsService;
     
     public List<Device> getAllDevices() {
         return deviceRepository.findAll();
@@ -36,7 +38,10 @@ public class DeviceService {
     
     @Transactional
     public Device createDevice(Device device) {
-        return deviceRepository.save(device);
+        Device saved = deviceRepository.save(device);
+        liveStateService.refresh(saved);
+        statsService.invalidateAfterCommit();
+        return saved;
     }
     
     @Transactional
@@ -45,7 +50,11 @@ public class DeviceService {
             if (deviceData.getName() != null) device.setName(deviceData.getName());
             if (deviceData.getStatus() != null) device.setStatus(deviceData.getStatus());
             if (deviceData.getLocation() != null) device.setLocation(deviceData.getLocation());
-            return deviceRepository.save(device);
+            liveStateService.mergeInto(device);
+            Device saved = deviceRepository.save(device);
+            liveStateService.refresh(saved);
+            statsService.invalidateAfterCommit();
+            return saved;
         });
     }
     
@@ -0,0 +1,274 @@
+package com.brewery.digitaltwin.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 时间序列降采样 - 流式，按时间等分桶
+ *
+ * MINMAX：每个桶内对每个指标保留最小值和最大值所在的行，峰谷一定保留，适合告警回溯 (默认)；
+ * LTTB：Largest-Triangle-Three-Buckets，按单个指标在每个桶内保留与上一选中点、下一桶均值
+ * 构成三角形面积最大的行，曲线形状更接近原始数据，但不保证保留每个极值。
+ *
+ * 行须按时间升序逐条 accept，只缓存当前桶 (LTTB 为相邻两个桶) 的值，输出不超过 maxPoints 行。
+ * 实例不是线程安全的，每次查询新建一个。
+ */
+public final class Downsampler {
+
+    public enum Mode { MINMAX, LTTB }
+
+    /**
+     * 选中的一行：原始主键、毫秒时间戳与全部列的值 (空值为 NaN)
+     */
+    public record Row(long id, long time, double[] values) {
+    }
+
+    private final Mode mode;
+    private final int columns;
+    private final int[] metrics;
+    private final long end;
+    private final int buckets;
+    private long start;
+    private double bucketWidth;
+    private boolean started = false;
+    private final List<Row> output = new ArrayList<>();
+    private int currentBucket = -1;
+    private long seq = 0;
+
+    // MINMAX：每个指标的最小/最大行，槽位 2j 为最小、2j+1 为最大
+    private long[] slotSeq;
+    private long[] slotId;
+    private long[] slotTime;
+    private double[][] slotValues;
+    private double[] slotBest;
+
+    // LTTB：pending 为待选桶，current 为正在累积的桶
+    private Bucket pending;
+    private Bucket current;
+    private boolean first = true;
+    private double selectedTime;
+    private double selectedValue;
+
+    /**
+     * @param columns   每行的列数
+     * @param metrics   参与降采样的列下标，LTTB 只使用第一个
+     * @param from      时间范围起点 (毫秒)，首行晚于该时间时从首行开始分桶，避免数据只覆盖部分范围时挤在少数桶里
+     * @param to        时间范围终点 (毫秒)，之后的行归入最后一个桶
+     * @param maxPoints 输出行数上限
+     */
+    public Downsampler(Mode mode, int columns, int[] metrics, long from, long to, int maxPoints) {
+        int minPoints = minPoints(mode, metrics.length);
+        if (maxPoints < minPoints) {
+            throw new IllegalArgumentException("maxPoints 过小，至少为 " + minPoints);
+        }
+        this.mode = mode;
+        this.columns = columns;
+        this.metrics = mode == Mode.LTTB ? new int[]{metrics[0]} : metrics.clone();
+        this.start = from;
+        this.end = to;
+        // LTTB 首尾两点单独输出，中间每桶选一点；MINMAX 每桶每指标最多两行
+        this.buckets = mode == Mode.LTTB ? maxPoints - 2 : maxPoints / (2 * metrics.length);
+        if (mode == Mode.MINMAX) {
+            int slots = 2 * this.metrics.length;
+            slotSeq = new long[slots];
+            slotId = new long[slots];
+            slotTime = new long[slots];
+            slotValues = new double[slots][columns];
+            slotBest = new double[slots];
+            resetSlots();
+        } else {
+            pending = new Bucket(columns);
+            current = new Bucket(columns);
+        }
+    }
+
+    public static int minPoints(Mode mode, int metricCount) {
+        return mode == Mode.LTTB ? 3 : 2 * metricCount;
+    }
+
+    public void accept(long id, long time, double[] values) {
+        if (!started) {
+            started = true;
+            start = Math.max(start, Math.min(time, end));
+            bucketWidth = Math.max(1.0, (double) (end - start) / buckets);
+        }
+        int bucket = (int) Math.min(buckets - 1, Math.max(0, (long) ((time - start) / bucketWidth)));
+        if (mode == Mode.MINMAX) {
+            if (bucket != currentBucket) {
+                closeMinMax();
+                currentBucket = bucket;
+            }
+            acceptMinMax(id, time, values);
+        } else {
+            if (first) {
+                first = false;
+                output.add(new Row(id, time, values.clone()));
+                selectedTime = time - start;
+                selectedValue = values[metrics[0]];
+                currentBucket = bucket;
+                return;
+            }
+            if (bucket != currentBucket) {
+                closeLttb();
+                currentBucket = bucket;
+            }
+            current.add(id, time, values);
+        }
+    }
+
+    /**
+     * 结束输入，返回按时间升序的选中行
+     */
+    public List<Row> finish() {
+        if (mode == Mode.MINMAX) {
+            closeMinMax();
+            return output;
+        }
+        int metric = metrics[0];
+        if (pending.size > 0 && current.size > 0) {
+            selectLttb(pending, 0, pending.size, current.meanTime(start), current.meanValue(metric));
+        }
+        if (current.size > 0) {
+            int last = current.size - 1;
+            if (last > 0) {
+                selectLttb(current, 0, last, current.times[last] - start, current.value(last, metric));
+            }
+            output.add(current.row(last));
+        }
+        return output;
+    }
+
+    private void acceptMinMax(long id, long time, double[] values) {
+        long rowSeq = ++seq;
+        for (int j = 0; j < metrics.length; j++) {
+            double v = values[metrics[j]];
+            if (Double.isNaN(v)) continue;
+            if (v < slotBest[2 * j]) storeSlot(2 * j, rowSeq, id, time, values, v);
+            if (v > slotBest[2 * j + 1]) storeSlot(2 * j + 1, rowSeq, id, time, values, v);
+        }
+    }
+
+    private void storeSlot(int slot, long rowSeq, long id, long time, double[] values, double v) {
+        slotSeq[slot] = rowSeq;
+        slotId[slot] = id;
+        slotTime[slot] = time;
+        slotBest[slot] = v;
+        System.arraycopy(values, 0, slotValues[slot], 0, columns);
+    }
+
+    /**
+     * 按到达顺序输出桶内不重复的极值行
+     */
+    private void closeMinMax() {
+        long last = 0;
+        while (true) {
+            int next = -1;
+            for (int s = 0; s < slotSeq.length; s++) {
+                if (slotSeq[s] > last && (next < 0 || slotSeq[s] < slotSeq[next])) next = s;
+            }
+            if (next < 0) break;
+            last = slotSeq[next];
+            output.add(new Row(slotId[next], slotTime[next], slotValues[next].clone()));
+        }
+        resetSlots();
+    }
+
+    private void resetSlots() {
+        Arrays.fill(slotSeq, 0);
+        for (int j = 0; j < metrics.length; j++) {
+            slotBest[2 * j] = Double.POSITIVE_INFINITY;
+            slotBest[2 * j + 1] = Double.NEGATIVE_INFINITY;
+        }
+    }
+
+    /**
+     * 当前桶结束：用它的均值作为第三个点，从上一个桶中选点，然后当前桶成为待选桶
+     */
+    private void closeLttb() {
+        int metric = metrics[0];
+        if (pending.size > 0) {
+            selectLttb(pending, 0, pending.size, current.meanTime(start), current.meanValue(metric));
+        }
+        Bucket swap = pending;
+        pending = current;
+        current = swap;
+        current.size = 0;
+    }
+
+    private void selectLttb(Bucket bucket, int from, int to, double nextTime, double nextValue) {
+        int metric = metrics[0];
+        if (Double.isNaN(nextValue)) nextValue = selectedValue;
+        double bestArea = -1;
+        int best = -1;
+        for (int i = from; i < to; i++) {
+            double y = bucket.value(i, metric);
+            if (Double.isNaN(y)) continue;
+            double t = bucket.times[i] - start;
+            double area = Math.abs((selectedTime - nextTime) * (y - selectedValue)
+                    - (selectedTime - t) * (nextValue - selectedValue));
+            if (area > bestArea) {
+                bestArea = area;
+                best = i;
+            }
+        }
+        if (best < 0) return;
+        output.add(bucket.row(best));
+        selectedTime = bucket.times[best] - start;
+        selectedValue = bucket.value(best, metric);
+    }
+
+    /**
+     * LTTB 桶缓存：按行展平的原始值，容量按需扩展后复用
+     */
+    private static final class Bucket {
+        final int columns;
+        long[] ids = new long[64];
+        long[] times = new long[64];
+        double[] values;
+        int size;
+
+        Bucket(int columns) {
+            this.columns = columns;
+            this.values = new double[64 * columns];
+        }
+
+        void add(long id, long time, double[] row) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                times = Arrays.copyOf(times, size * 2);
+                values = Arrays.copyOf(values, size * 2 * columns);
+            }
+            ids[size] = id;
+            times[size] = time;
+            System.arraycopy(row, 0, values, size * columns, columns);
+            size++;
+        }
+
+        double value(int i, int column) {
+            return values[i * columns + column];
+        }
+
+        double meanTime(long start) {
+            double sum = 0;
+            for (int i = 0; i < size; i++) sum += times[i] - start;
+            return sum / size;
+        }
+
+        double meanValue(int column) {
+            double sum = 0;
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                double v = value(i, column);
+                if (Double.isNaN(v)) continue;
+                sum += v;
+                count++;
+            }
+            return count > 0 ? sum / count : Double.NaN;
+        }
+
+        Row row(int i) {
+            return new Row(ids[i], times[i], Arrays.copyOfRange(values, i * columns, (i + 1) * columns));
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.brewery.digitaltwin.service;
+
+import com.brewery.digitaltwin.config.BoundedRegionFactory;
+import com.brewery.digitaltwin.entity.Device;
+import com.brewery.digitaltwin.entity.Pit;
+import com.brewery.digitaltwin.repository.DeviceRepository;
+import com.brewery.digitaltwin.repository.PitRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * 参考实体 (窖池、设备、批次) 二级缓存的失效与指标
+ *
+ * 经 JPA 保存的修改由 Hibernate 自动更新实体缓存并使相关查询缓存失效；
+ * 运行状态写回走 JDBC 批量 UPDATE，绕过了 Hibernate，写回后须调用这里按 ID 失效实体并清空对应查询区域。
+ */
+@Service
+public class EntityCacheService {
+
+    private static final List<String> ENTITY_REGIONS = List.of("pits", "devices", "production_batches");
+
+    private final SessionFactoryImplementor sessionFactory;
+
+    public EntityCacheService(EntityManagerFactory entityManagerFactory, MetricsRegistry metrics) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        Statistics stats = sessionFactory.getStatistics();
+        metrics.counter("twin_jpa_statements_total", "经 Hibernate 执行的 JDBC 语句数", stats::getPrepareStatementCount);
+        metrics.counter("twin_jpa_queries_total", "HQL/JPQL 查询执行次数", stats::getQueryExecutionCount);
+        metrics.counter(MetricsRegistry.CACHE_REQUESTS, MetricsRegistry.CACHE_REQUESTS_HELP,
+                stats::getSecondLevelCacheHitCount, "cache", "second_level", "result", "hit");
+        metrics.counter(MetricsRegistry.CACHE_REQUESTS, MetricsRegistry.CACHE_REQUESTS_HELP,
+                stats::getSecondLevelCacheMissCount, "cache", "second_level", "result", "miss");
+        metrics.counter(MetricsRegistry.CACHE_REQUESTS, MetricsRegistry.CACHE_REQUESTS_HELP,
+                stats::getQueryCacheHitCount, "cache", "query", "result", "hit");
+        metrics.counter(MetricsRegistry.CACHE_REQUESTS, MetricsRegistry.CACHE_REQUESTS_HELP,
+                stats::getQueryCacheMissCount, "cache", "query", "result", "miss");
+        metrics.gauges("twin_cache_entries", "各二级缓存区域的条目数", sink -> regionSizes().forEach(
+                (region, size) -> sink.sample(size, "region", region)));
+        metrics.counters("twin_cache_evictions_total", "各二级缓存区域按 LRU 淘汰的条目数", sink -> regionEvictions().forEach(
+                (region, count) -> sink.sample(count, "region", region)));
+    }
+
+    /**
+     * 本进程经 Hibernate 执行的 JDBC 语句累计数
+     */
+    public long statementCount() {
+        return sessionFactory.getStatistics().getPrepareStatementCount();
+    }
+
+    public void evictPits(Collection<Long> ids) {
+        evict(Pit.class, PitRepository.QUERY_REGION, ids);
+    }
+
+    public void evictDevices(Collection<Long> ids) {
+        evict(Device.class, DeviceRepository.QUERY_REGION, ids);
+    }
+
+    /**
+     * 清空全部区域，用于绕过 Hibernate 的批量写入 (如初始化数据批量插入) 提交之后
+     */
+    public void evictAll() {
+        sessionFactory.getCache().evictAllRegions();
+    }
+
+    private void evict(Class<?> type, String queryRegion, Collection<Long> ids) {
+        if (ids.isEmpty()) return;
+        Cache cache = sessionFactory.getCache();
+        ids.forEach(id -> cache.evictEntityData(type, id));
+        cache.evictQueryRegion(queryRegion);
+    }
+
+    /**
+     * 全局与各区域的命中/未命中/写入次数，以及累计 JDBC 语句数 (数据库往返次数)
+     */
+    public Map<String, Object> getStats() {
+        Statistics stats = sessionFactory.getStatistics();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", sessionFactory.getSessionFactoryOptions().isSecondLevelCacheEnabled());
+        result.put("statisticsEnabled", stats.isStatisticsEnabled());
+        result.put("statements", stats.getPrepareStatementCount());
+        result.put("queries", stats.getQueryExecutionCount());
+        result.put("entityLoads", stats.getEntityLoadCount());
+        result.put("secondLevel", counts(stats.getSecondLevelCacheHitCount(),
+                stats.getSecondLevelCacheMissCount(), stats.getSecondLevelCachePutCount()));
+        result.put("queryCache", counts(stats.getQueryCacheHitCount(),
+                stats.getQueryCacheMissCount(), stats.getQueryCachePutCount()));
+
+        Map<String, Integer> sizes = regionSizes();
+        Map<String, Long> evictions = regionEvictions();
+        Map<String, Object> regions = new LinkedHashMap<>();
+        // 缓存关闭时区域不存在；查询区域在首次缓存查询时才创建
+        for (String region : ENTITY_REGIONS) {
+            if (sizes.containsKey(region)) {
+                regions.put(region, region(stats.getDomainDataRegionStatistics(region), sizes.get(region),
+                        evictions.getOrDefault(region, 0L)));
+            }
+            String queryRegion = "query." + region;
+            if (sizes.containsKey(queryRegion)) {
+                regions.put(queryRegion, region(stats.getQueryRegionStatistics(queryRegion), sizes.get(queryRegion),
+                        evictions.getOrDefault(queryRegion, 0L)));
+            }
+        }
+        result.put("regions", regions);
+        return result;
+    }
+
+    private Map<String, Integer> regionSizes() {
+        return sessionFactory.getCache().getRegionFactory() instanceof BoundedRegionFactory factory
+                ? factory.sizes() : Map.of();
+    }
+
+    private Map<String, Long> regionEvictions() {
+        return sessionFactory.getCache().getRegionFactory() instanceof BoundedRegionFactory factory
+                ? factory.evictions() : Map.of();
+    }
+
+    private static Map<String, Object> region(CacheRegionStatistics stats, int size, long evictions) {
+        Map<String, Object> result = stats != null
+                ? counts(stats.getHitCount(), stats.getMissCount(), stats.getPutCount())
+                : counts(0, 0, 0);
+        result.put("entries", size);
+        result.put("evictions", evictions);
+        return result;
+    }
+
+    private static Map<String, Object> counts(long hits, long misses, long puts) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("hits", hits);
+        result.put("misses", misses);
+        result.put("puts", puts);
+        result.put("hitRatio", hits + misses > 0 ? (double) hits / (hits + misses) : 0.0);
+        return result;
+    }
+}
@@ -0,0 +1,184 @@
+package com.brewery.digitaltwin.service;
+
+import com.brewery.digitaltwin.repository.DeviceRepository;
+import com.brewery.digitaltwin.repository.PitRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+
+/**
+ * 设备/窖池分组统计
+ *
+ * 每类实体只执行一次 GROUP BY 查询，在内存中汇总出按状态、按类型 × 状态、按区域 × 状态等维度，
+ * 结果缓存 app.stats.cache-ttl 毫秒；状态变化写回数据库或管理接口修改后立即失效。
+ */
+@Service
+public class EntityStatsService {
+
+    private static final List<String> DEVICE_STATUSES = List.of("running", "stopped", "warning", "fault", "maintenance");
+    private static final List<String> PIT_STATUSES = List.of("normal", "warning", "alarm", "maintenance");
+
+    private final DeviceRepository deviceRepository;
+    private final PitRepository pitRepository;
+    private final long ttlMs;
+    private final MetricsRegistry.Counter hits;
+    private final MetricsRegistry.Counter misses;
+
+    private volatile Cached deviceStats;
+    private volatile Cached pitStats;
+    // 每次失效加一；聚合期间发生失效时结果只返回给本次调用，不写入缓存
+    private volatile long generation = 0;
+
+    private record Cached(long builtAt, Map<String, Object> stats) {
+    }
+
+    public EntityStatsService(DeviceRepository deviceRepository,
+                              PitRepository pitRepository,
+                              @Value("${app.stats.cache-ttl:10000}") long ttlMs,
+                              MetricsRegistry metrics) {
+        this.deviceRepository = deviceRepository;
+        this.pitRepository = pitRepository;
+        this.ttlMs = ttlMs;
+        this.hits = metrics.counter(MetricsRegistry.CACHE_REQUESTS, MetricsRegistry.CACHE_REQUESTS_HELP,
+                "cache", "entity_stats", "result", "hit");
+        this.misses = metrics.counter(MetricsRegistry.CACHE_REQUESTS, MetricsRegistry.CACHE_REQUESTS_HELP,
+                "cache", "entity_stats", "result", "miss");
+    }
+
+    /**
+     * 设备统计：total、各状态计数 (兼容原接口字段)，以及 byStatus / byType / byLocation
+     */
+    public Map<String, Object> getDeviceStats() {
+        Cached cached = deviceStats;
+        if (isFresh(cached)) return cached.stats;
+        synchronized (this) {
+            cached = deviceStats;
+            if (isFresh(cached)) return cached.stats;
+            misses.increment();
+            long startGeneration = generation;
+            Map<String, Long> byStatus = zeroCounts(DEVICE_STATUSES);
+            Map<String, Map<String, Long>> byType = new TreeMap<>();
+            Map<String, Map<String, Long>> byLocation = new TreeMap<>();
+            long total = 0;
+            for (Object[] row : deviceRepository.countByTypeLocationAndStatus()) {
+                String type = (String) row[0];
+                String location = row[1] != null ? (String) row[1] : "未知";
+                String status = (String) row[2];
+                long count = (Long) row[3];
+                total += count;
+                byStatus.merge(status, count, Long::sum);
+                addCount(byType, type, status, count, DEVICE_STATUSES);
+                addCount(byLocation, location, status, count, DEVICE_STATUSES);
+            }
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("total", total);
+            stats.putAll(byStatus);
+            stats.put("byStatus", byStatus);
+            stats.put("byType", byType);
+            stats.put("byLocation", byLocation);
+            Map<String, Object> result = Collections.unmodifiableMap(stats);
+            if (startGeneration == generation) deviceStats = new Cached(System.currentTimeMillis(), result);
+            return result;
+        }
+    }
+
+    /**
+     * 窖池统计：total、各状态计数 (兼容原接口字段)，以及 byStatus / byZone
+     */
+    public Map<String, Object> getPitStats() {
+        Cached cached = pitStats;
+        if (isFresh(cached)) return cached.stats;
+        synchronized (this) {
+            cached = pitStats;
+            if (isFresh(cached)) return cached.stats;
+            misses.increment();
+            long startGeneration = generation;
+            Map<String, Long> byStatus = zeroCounts(PIT_STATUSES);
+            Map<String, Map<String, Long>> byZone = new TreeMap<>();
+            long total = 0;
+            for (Object[] row : pitRepository.countByZoneAndStatus()) {
+                String zone = (String) row[0];
+                String status = (String) row[1];
+                long count = (Long) row[2];
+                total += count;
+                byStatus.merge(status, count, Long::sum);
+                addCount(byZone, zone, status, count, PIT_STATUSES);
+            }
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("total", total);
+            stats.putAll(byStatus);
+            stats.put("byStatus", byStatus);
+            stats.put("byZone", byZone);
+            Map<String, Object> result = Collections.unmodifiableMap(stats);
+            if (startGeneration == generation) pitStats = new Cached(System.currentTimeMillis(), result);
+            return result;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<String> getDeviceTypes() {
+        return new ArrayList<>(((Map<String, Object>) getDeviceStats().get("byType")).keySet());
+    }
+
+    @SuppressWarnings("unchecked")
+    public Map<String, Long> getDeviceStatusCounts() {
+        return (Map<String, Long>) getDeviceStats().get("byStatus");
+    }
+
+    @SuppressWarnings("unchecked")
+    public Map<String, Long> getPitStatusCounts() {
+        return (Map<String, Long>) getPitStats().get("byStatus");
+    }
+
+    /**
+     * 状态变化后调用，下次读取重新聚合
+     */
+    public void invalidate() {
+        generation++;
+        deviceStats = null;
+        pitStats = null;
+    }
+
+    /**
+     * 在当前事务提交后失效：提交前失效时并发读取会按旧数据重新聚合并缓存，回滚时则白白丢弃缓存；
+     * 不在事务中时立即失效
+     */
+    public void invalidateAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidate();
+            }
+        });
+    }
+
+    private boolean isFresh(Cached cached) {
+        boolean fresh = cached != null && System.currentTimeMillis() - cached.builtAt < ttlMs;
+        if (fresh) hits.increment();
+        return fresh;
+    }
+
+    private static Map<String, Long> zeroCounts(List<String> statuses) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        statuses.forEach(status -> counts.put(status, 0L));
+        return counts;
+    }
+
+    private static void addCount(Map<String, Map<String, Long>> groups, String key, String status,
+                                 long count, List<String> statuses) {
+        Map<String, Long> group = groups.computeIfAbsent(key, k -> {
+            Map<String, Long> counts = zeroCounts(statuses);
+            counts.put("total", 0L);
+            return counts;
+        });
+        group.merge(status, count, Long::sum);
+        group.merge("total", count, Long::sum);
+    }
+}
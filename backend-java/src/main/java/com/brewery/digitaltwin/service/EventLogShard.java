@@ -0,0 +1,457 @@
+package com.brewery.digitaltwin.service;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 孪生事件日志的一个分片：该分片实体的当前状态、只追加的段文件与段起点快照
+ *
+ * 文件 (均在日志目录下)：s{分片}-{序号}.snap 为第 序号 段开始时该分片的完整状态，s{分片}-{序号}.log 为之后追加的事件。
+ * 每段自成一体 (字典与时间增量都从段头重新开始)，任一时刻的状态 = 不晚于该时刻的最近快照 + 其后一段内的事件，
+ * 单次重放最多读一段。
+ *
+ * 段格式 (DataOutput 大端)：magic version shard(int) seq(long) startTime(long)，之后为事件：
+ * kind(byte) 时间增量(varlong，相对上一事件) 实体ID(varlong) 值 —— 状态类为字典码 (varint，等于当前字典大小时
+ * 后跟 UTF 串，即新词条)，整数为 zigzag varint，数值为 double。典型状态变化事件 4~6 字节。
+ * 快照格式：magic version shard(int) seq(long) time(long)，各类状态 count(int) + (id(long), 值)，末尾为 CRC32。
+ * 进程崩溃时最后一段可能截断在事件中间，读取遇到 EOF 即停止；打开时总是新开一段，不在可能截断的段后追加。
+ */
+final class EventLogShard implements AutoCloseable {
+
+    private static final int LOG_MAGIC = 0x4254454c;   // "BTEL"
+    private static final int SNAP_MAGIC = 0x42544553;  // "BTES"
+    private static final int VERSION = 1;
+    private static final Pattern FILE_NAME = Pattern.compile("s(\\d+)-(\\d+)\\.(log|snap)");
+
+    enum Type { TEXT, INT, DOUBLE }
+
+    /**
+     * 事件类型，code 写入文件，不可更改
+     */
+    enum Kind {
+        PIT_STATUS(1, Type.TEXT),
+        PIT_DAY(2, Type.INT),
+        DEVICE_STATUS(3, Type.TEXT),
+        DEVICE_HOURS(4, Type.DOUBLE),
+        BATCH_STATUS(5, Type.TEXT),
+        PARAM_VALUE(6, Type.DOUBLE);
+
+        private static final Kind[] BY_CODE = new Kind[8];
+
+        static {
+            for (Kind kind : values()) BY_CODE[kind.code] = kind;
+        }
+
+        final int code;
+        final Type type;
+
+        Kind(int code, Type type) {
+            this.code = code;
+            this.type = type;
+        }
+
+        static Kind of(int code) {
+            Kind kind = code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+            if (kind == null) throw new IllegalStateException("未知事件类型: " + code);
+            return kind;
+        }
+    }
+
+    /**
+     * 按事件类型分表的实体状态，值为 String / Integer / Double
+     */
+    static final class State {
+        final EnumMap<Kind, Map<Long, Object>> values = new EnumMap<>(Kind.class);
+
+        State() {
+            for (Kind kind : Kind.values()) values.put(kind, new HashMap<>());
+        }
+
+        /**
+         * @return 值发生变化时返回 true
+         */
+        boolean apply(Kind kind, long id, Object value) {
+            return !value.equals(values.get(kind).put(id, value));
+        }
+
+        Map<Long, Object> get(Kind kind) {
+            return values.get(kind);
+        }
+
+        void putAll(State other) {
+            other.values.forEach((kind, map) -> values.get(kind).putAll(map));
+        }
+    }
+
+    /**
+     * 某一时刻的重放结果；snapshotTime 为所用快照的时间，lastTime 为最后一个重放事件的时间 (无事件时等于快照时间)，
+     * events 为重放的事件数
+     */
+    record Replay(State state, long snapshotTime, long lastTime, long events) {
+    }
+
+    private final Path dir;
+    private final int shard;
+
+    // 以下由 this 监视器保护
+    private final State current = new State();
+    private final TreeMap<Long, Long> snapshotsByTime = new TreeMap<>();  // 快照时间 → 段序号
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private DataOutputStream out;
+    private long seq = -1;
+    private long segmentStart;
+    private long lastTime;
+    private long segmentEvents;
+    private long totalEvents;
+    private boolean broken;  // 当前段写入失败
+
+    EventLogShard(Path dir, int shard) {
+        this.dir = dir;
+        this.shard = shard;
+    }
+
+    /**
+     * 目录中已有的最大分片号 + 1，目录为空返回 0
+     */
+    static int existingShardCount(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) return 0;
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(p -> FILE_NAME.matcher(p.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .mapToInt(m -> Integer.parseInt(m.group(1)) + 1)
+                    .max().orElse(0);
+        }
+    }
+
+    /**
+     * 从最近的快照和其后的段恢复当前状态，然后新开一段
+     *
+     * @return 恢复时重放的事件数
+     */
+    synchronized long open(long now) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                Matcher m = FILE_NAME.matcher(path.getFileName().toString());
+                if (!m.matches() || Integer.parseInt(m.group(1)) != shard || !m.group(3).equals("snap")) continue;
+                long snapSeq = Long.parseLong(m.group(2));
+                try {
+                    snapshotsByTime.put(readSnapshotTime(path), snapSeq);
+                } catch (IOException e) {
+                    Files.deleteIfExists(path);  // 写到一半的快照
+                }
+            }
+        }
+        long replayed = 0;
+        if (!snapshotsByTime.isEmpty()) {
+            long latest = Collections.max(snapshotsByTime.values());
+            Replay replay = replay(latest, Long.MAX_VALUE);
+            current.putAll(replay.state());
+            replayed = replay.events();
+            seq = latest;
+            lastTime = Math.max(now, replay.lastTime());  // 新段不早于上一段的最后一个事件
+        }
+        roll(Math.max(now, lastTime));
+        return replayed;
+    }
+
+    /**
+     * 追加一个状态变化；值与当前状态相同时不写入
+     *
+     * 写入成功后才更新当前状态与字典，写入失败时当前状态仍与已落盘的内容一致；失败的段后面可能残留半个事件，
+     * 之后的追加直接报错，直到下次换段以当前状态写快照重新开始
+     *
+     * @return 写入返回 true
+     */
+    synchronized boolean append(Kind kind, long id, Object value, long time) throws IOException {
+        if (out == null || value.equals(current.get(kind).get(id))) return false;
+        if (broken) throw new IOException("事件日志分片 " + shard + " 当前段写入失败，等待换段");
+        long t = Math.max(time, lastTime);  // 分片内时间单调，重放可按时间截止
+        String newWord = null;
+        try {
+            out.writeByte(kind.code);
+            writeVarLong(out, t - lastTime);
+            writeVarLong(out, id);
+            switch (kind.type) {
+                case TEXT -> {
+                    String text = (String) value;
+                    Integer code = dictionary.get(text);
+                    if (code != null) {
+                        writeVarLong(out, code);
+                    } else {
+                        writeVarLong(out, dictionary.size());
+                        out.writeUTF(text);
+                        newWord = text;
+                    }
+                }
+                case INT -> writeVarLong(out, zigzag((Integer) value));
+                case DOUBLE -> out.writeDouble((Double) value);
+            }
+        } catch (IOException e) {
+            broken = true;
+            throw e;
+        }
+        if (newWord != null) dictionary.put(newWord, dictionary.size());
+        current.apply(kind, id, value);
+        lastTime = t;
+        segmentEvents++;
+        totalEvents++;
+        return true;
+    }
+
+    synchronized void flush() throws IOException {
+        if (out != null) out.flush();
+    }
+
+    synchronized boolean needsSnapshot(long now, long maxEvents, long intervalMs) {
+        return broken || segmentEvents >= maxEvents || (segmentEvents > 0 && now - segmentStart >= intervalMs);
+    }
+
+    /**
+     * 关闭当前段，写当前状态快照并开始新段
+     *
+     * 快照时间严格递增：同一毫秒内连续换段时顺延 1 毫秒，否则新快照会在 snapshotsByTime 中覆盖上一个，
+     * 上一段因此无法按时间找到，也不会被 retain 清理
+     */
+    synchronized void roll(long now) throws IOException {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                if (!broken) throw e;  // 已失败的段不再需要，关闭出错也照常换段
+            }
+        }
+        long time = Math.max(now, lastTime);
+        if (!snapshotsByTime.isEmpty()) time = Math.max(time, snapshotsByTime.lastKey() + 1);
+        long next = seq + 1;
+        writeSnapshot(next, time);
+        DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(logPath(next), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING), 1 << 16));
+        stream.writeInt(LOG_MAGIC);
+        stream.writeInt(VERSION);
+        stream.writeInt(shard);
+        stream.writeLong(next);
+        stream.writeLong(time);
+        out = stream;
+        seq = next;
+        segmentStart = time;
+        lastTime = time;
+        segmentEvents = 0;
+        broken = false;
+        dictionary.clear();
+        snapshotsByTime.put(time, next);
+    }
+
+    /**
+     * 删除不再需要的旧段：保留不晚于 cutoff 的最近一个快照，保证 cutoff 之后的时刻仍可重建
+     *
+     * @return 删除的段数
+     */
+    synchronized int retain(long cutoff) throws IOException {
+        Map.Entry<Long, Long> keep = snapshotsByTime.floorEntry(cutoff);
+        if (keep == null) return 0;
+        int removed = 0;
+        Iterator<Map.Entry<Long, Long>> it = snapshotsByTime.headMap(keep.getKey(), false).entrySet().iterator();
+        while (it.hasNext()) {
+            long old = it.next().getValue();
+            Files.deleteIfExists(snapshotPath(old));
+            Files.deleteIfExists(logPath(old));
+            it.remove();
+            removed++;
+        }
+        return removed;
+    }
+
+    /**
+     * 重建 at 时刻本分片的状态；at 早于最早的快照时返回 null
+     */
+    Replay stateAt(long at) throws IOException {
+        Long snapSeq;
+        synchronized (this) {
+            Map.Entry<Long, Long> entry = snapshotsByTime.floorEntry(at);
+            if (entry == null) return null;
+            snapSeq = entry.getValue();
+            if (snapSeq == seq && out != null) out.flush();  // 正在写的段，关闭后 out 为 null
+        }
+        return replay(snapSeq, at);
+    }
+
+    synchronized long earliestTime() {
+        return snapshotsByTime.isEmpty() ? Long.MAX_VALUE : snapshotsByTime.firstKey();
+    }
+
+    synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("shard", shard);
+        stats.put("segment", seq);
+        stats.put("segments", snapshotsByTime.size());
+        stats.put("segmentEvents", segmentEvents);
+        stats.put("segmentBytes", out != null ? out.size() : 0);
+        stats.put("events", totalEvents);
+        return stats;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    private Replay replay(long snapSeq, long at) throws IOException {
+        State state = new State();
+        long snapshotTime = readSnapshot(snapshotPath(snapSeq), state);
+        long events = 0;
+        Path log = logPath(snapSeq);
+        long lastTime = snapshotTime;
+        if (!Files.exists(log)) return new Replay(state, snapshotTime, lastTime, 0);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(log), 1 << 16))) {
+            if (in.readInt() != LOG_MAGIC || in.readInt() != VERSION) throw new IOException("不是有效的事件日志段: " + log);
+            in.readInt();
+            in.readLong();
+            long time = in.readLong();
+            List<String> words = new ArrayList<>();
+            while (true) {
+                Kind kind;
+                long id;
+                Object value;
+                try {
+                    int code = in.read();
+                    if (code < 0) break;
+                    kind = Kind.of(code);
+                    time += readVarLong(in);
+                    id = readVarLong(in);
+                    value = switch (kind.type) {
+                        case TEXT -> {
+                            int word = (int) readVarLong(in);
+                            if (word == words.size()) words.add(in.readUTF());
+                            yield words.get(word);
+                        }
+                        case INT -> unzigzag(readVarLong(in));
+                        case DOUBLE -> in.readDouble();
+                    };
+                } catch (EOFException e) {
+                    break;  // 截断的最后一个事件
+                }
+                if (time > at) break;
+                state.apply(kind, id, value);
+                lastTime = time;
+                events++;
+            }
+        }
+        return new Replay(state, snapshotTime, lastTime, events);
+    }
+
+    private void writeSnapshot(long snapSeq, long time) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(SNAP_MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(shard);
+        out.writeLong(snapSeq);
+        out.writeLong(time);
+        for (Kind kind : Kind.values()) {
+            Map<Long, Object> map = current.get(kind);
+            out.writeInt(map.size());
+            for (Map.Entry<Long, Object> e : map.entrySet()) {
+                out.writeLong(e.getKey());
+                switch (kind.type) {
+                    case TEXT -> out.writeUTF((String) e.getValue());
+                    case INT -> out.writeInt((Integer) e.getValue());
+                    case DOUBLE -> out.writeDouble((Double) e.getValue());
+                }
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+
+        Path file = snapshotPath(snapSeq);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream stream = Files.newOutputStream(tmp)) {
+            bytes.writeTo(stream);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private long readSnapshot(Path path, State state) throws IOException {
+        byte[] bytes = Files.readAllBytes(path);
+        DataInputStream in = checkedSnapshot(path, bytes);
+        long time = in.readLong();
+        for (Kind kind : Kind.values()) {
+            int count = in.readInt();
+            Map<Long, Object> map = state.get(kind);
+            for (int i = 0; i < count; i++) {
+                long id = in.readLong();
+                map.put(id, switch (kind.type) {
+                    case TEXT -> in.readUTF();
+                    case INT -> in.readInt();
+                    case DOUBLE -> in.readDouble();
+                });
+            }
+        }
+        return time;
+    }
+
+    private long readSnapshotTime(Path path) throws IOException {
+        return checkedSnapshot(path, Files.readAllBytes(path)).readLong();
+    }
+
+    /**
+     * 校验快照并返回定位到 time 字段的输入流
+     */
+    private DataInputStream checkedSnapshot(Path path, byte[] bytes) throws IOException {
+        if (bytes.length < 32) throw new IOException("不是有效的事件快照: " + path);
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 4);
+        int stored = ((bytes[bytes.length - 4] & 0xff) << 24) | ((bytes[bytes.length - 3] & 0xff) << 16)
+                | ((bytes[bytes.length - 2] & 0xff) << 8) | (bytes[bytes.length - 1] & 0xff);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 4));
+        if (in.readInt() != SNAP_MAGIC || in.readInt() != VERSION || (int) crc.getValue() != stored) {
+            throw new IOException("事件快照校验失败: " + path);
+        }
+        in.readInt();
+        in.readLong();
+        return in;
+    }
+
+    private Path logPath(long s) {
+        return dir.resolve(String.format("s%d-%08d.log", shard, s));
+    }
+
+    private Path snapshotPath(long s) {
+        return dir.resolve(String.format("s%d-%08d.snap", shard, s));
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("事件日志 varint 过长");
+    }
+
+    private static long zigzag(int value) {
+        return ((value << 1) ^ (value >> 31)) & 0xffffffffL;
+    }
+
+    private static int unzigzag(long value) {
+        int v = (int) value;
+        return (v >>> 1) ^ -(v & 1);
+    }
+}
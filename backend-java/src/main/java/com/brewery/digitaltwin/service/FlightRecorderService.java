@@ -0,0 +1,239 @@
+package com.brewery.digitaltwin.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.*;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import jdk.management.jfr.FlightRecorderMXBean;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * JFR 持续录制 - 常驻的滚动录制，按需导出最近 N 分钟
+ *
+ * 启动时开启一个落盘的录制，按 max-age / max-size 滚动淘汰旧数据；除所选 JFR 配置 (默认 default，开销约 1%)
+ * 的 JVM 事件外，还强制开启 {@link JfrEvents} 中的自定义事件与 GC 停顿、安全点、VM 操作事件，
+ * 导出的文件可直接在时间轴上对照仿真周期的卡顿与 JVM 停顿，无需临时挂载分析器。
+ *
+ * 导出时先克隆一份已停止的录制再按起始时间读取，正在进行的录制不受影响；JFR 以数据块 (chunk) 为单位筛选时间，
+ * 导出内容可能略早于所请求的起点。
+ */
+@Slf4j
+@Service
+public class FlightRecorderService {
+
+    private static final String RECORDING_NAME = "twin-continuous";
+
+    /** 用于与周期卡顿对照的 JVM 停顿事件 */
+    private static final List<String> PAUSE_EVENTS = List.of(
+            "jdk.GarbageCollection", "jdk.GCPhasePause",
+            "jdk.SafepointBegin", "jdk.SafepointStateSynchronization", "jdk.ExecuteVMOperation");
+
+    private static final List<Class<? extends Event>> TWIN_EVENTS = List.of(
+            JfrEvents.TickEvent.class, JfrEvents.TickStageEvent.class, JfrEvents.DbFlushEvent.class,
+            JfrEvents.DashboardStatsEvent.class, JfrEvents.BroadcastEvent.class);
+
+    private final boolean enabled;
+    private final String settings;
+    private final Duration maxAge;
+    private final long maxSize;
+    private final Duration pauseThreshold;
+    private volatile Recording recording;
+
+    public FlightRecorderService(@Value("${app.jfr.enabled:true}") boolean enabled,
+                                 @Value("${app.jfr.settings:default}") String settings,
+                                 @Value("${app.jfr.max-age:1800000}") long maxAgeMs,
+                                 @Value("${app.jfr.max-size:268435456}") long maxSize,
+                                 @Value("${app.jfr.pause-threshold:0}") long pauseThresholdMs) {
+        this.enabled = enabled;
+        this.settings = settings;
+        this.maxAge = Duration.ofMillis(maxAgeMs);
+        this.maxSize = maxSize;
+        this.pauseThreshold = Duration.ofMillis(pauseThresholdMs);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) return;
+        if (!FlightRecorder.isAvailable()) {
+            log.warn("当前 JVM 不支持 JFR，持续录制未启动");
+            return;
+        }
+        try {
+            Configuration configuration = settings.endsWith(".jfc")
+                    ? Configuration.create(Path.of(settings))
+                    : Configuration.getConfiguration(settings);
+            Recording r = new Recording(configuration);
+            r.setName(RECORDING_NAME);
+            r.setToDisk(true);
+            r.setMaxAge(maxAge);
+            r.setMaxSize(maxSize);
+            for (Class<? extends Event> type : TWIN_EVENTS) r.enable(type);
+            for (String name : PAUSE_EVENTS) r.enable(name).withThreshold(pauseThreshold);
+            r.start();
+            recording = r;
+            log.info("JFR 持续录制已启动: 配置 {}, 保留 {} 分钟 / {} MB",
+                    settings, maxAge.toMinutes(), maxSize / (1024 * 1024));
+        } catch (IOException | ParseException e) {
+            log.error("JFR 持续录制启动失败: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        Recording r = recording;
+        recording = null;
+        if (r != null) r.close();
+    }
+
+    public boolean isRecording() {
+        Recording r = recording;
+        return r != null && r.getState() == RecordingState.RUNNING;
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        Recording r = recording;
+        status.put("recording", isRecording());
+        status.put("settings", settings);
+        status.put("maxAgeMinutes", maxAge.toMinutes());
+        status.put("maxSize", maxSize);
+        if (r != null) {
+            status.put("id", r.getId());
+            status.put("name", r.getName());
+            status.put("state", r.getState().name());
+            status.put("startTime", r.getStartTime());
+            status.put("size", r.getSize());
+        }
+        return status;
+    }
+
+    /**
+     * 把最近 last 时长内的录制数据以 .jfr 格式写出
+     */
+    public void dump(Duration last, OutputStream out) throws IOException {
+        Recording r = recording;
+        if (r == null || r.getState() != RecordingState.RUNNING) {
+            throw new IllegalStateException("JFR 持续录制未运行");
+        }
+        FlightRecorderMXBean bean = ManagementFactory.getPlatformMXBean(FlightRecorderMXBean.class);
+        long clone = bean.cloneRecording(r.getId(), true);
+        try {
+            Map<String, String> options = new HashMap<>();
+            options.put("startTime", Instant.now().minus(last).toString());
+            options.put("blockSize", Integer.toString(1024 * 1024));
+            long stream = bean.openStream(clone, options);
+            try {
+                byte[] block;
+                while ((block = bean.readStream(stream)) != null) out.write(block);
+            } finally {
+                bean.closeStream(stream);
+            }
+        } finally {
+            bean.closeRecording(clone);
+        }
+    }
+
+    /**
+     * 最近 last 时长内耗时不少于 minTick 的仿真周期，附带各阶段耗时与时间上重叠的 GC / 安全点停顿
+     */
+    public List<Map<String, Object>> findStalls(Duration last, Duration minTick) throws IOException {
+        Path file = Files.createTempFile("twin-jfr-", ".jfr");
+        try {
+            try (OutputStream out = Files.newOutputStream(file)) {
+                dump(last, out);
+            }
+            Instant from = Instant.now().minus(last);
+            List<RecordedEvent> ticks = new ArrayList<>();
+            List<RecordedEvent> stages = new ArrayList<>();
+            List<RecordedEvent> pauses = new ArrayList<>();
+            try (RecordingFile events = new RecordingFile(file)) {
+                while (events.hasMoreEvents()) {
+                    RecordedEvent event = events.readEvent();
+                    if (event.getEndTime().isBefore(from)) continue;
+                    String name = event.getEventType().getName();
+                    if (name.equals("twin.Tick")) {
+                        if (event.getDuration().compareTo(minTick) >= 0) ticks.add(event);
+                    } else if (name.equals("twin.TickStage")) {
+                        stages.add(event);
+                    } else if (PAUSE_EVENTS.contains(name)) {
+                        pauses.add(event);
+                    }
+                }
+            }
+            ticks.sort(Comparator.comparing(RecordedEvent::getStartTime));
+            List<Map<String, Object>> result = new ArrayList<>();
+            for (RecordedEvent tick : ticks) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("startTime", tick.getStartTime());
+                item.put("durationMs", millis(tick.getDuration()));
+                item.put("pitReadings", tick.getInt("pitReadings"));
+                item.put("deviceReadings", tick.getInt("deviceReadings"));
+                item.put("statements", tick.getLong("statements"));
+                item.put("committed", tick.getBoolean("committed"));
+                Map<String, Object> stageMs = new LinkedHashMap<>();
+                for (RecordedEvent stage : stages) {
+                    if (overlaps(tick, stage) && tick.getThread() != null && stage.getThread() != null
+                            && tick.getThread().getJavaThreadId() == stage.getThread().getJavaThreadId()) {
+                        stageMs.put(stage.getString("stage"), millis(stage.getDuration()));
+                    }
+                }
+                item.put("stages", stageMs);
+                List<Map<String, Object>> overlapping = new ArrayList<>();
+                double safepointMs = 0;
+                double gcPauseMs = 0;
+                for (RecordedEvent pause : pauses) {
+                    if (!overlaps(tick, pause)) continue;
+                    Map<String, Object> p = new LinkedHashMap<>();
+                    p.put("event", pause.getEventType().getName());
+                    p.put("startTime", pause.getStartTime());
+                    p.put("durationMs", millis(pause.getDuration()));
+                    String detail = detail(pause);
+                    if (detail != null) p.put("detail", detail);
+                    overlapping.add(p);
+                    // 停顿 = 进入安全点的同步时间 + 安全点内执行的 VM 操作 (含停顿式 GC)；
+                    // 配置未开启安全点事件时退回按 GC 停顿阶段累计
+                    String name = pause.getEventType().getName();
+                    if (name.equals("jdk.SafepointBegin")
+                            || name.equals("jdk.ExecuteVMOperation") && pause.getBoolean("safepoint")) {
+                        safepointMs += millis(pause.getDuration());
+                    }
+                    if (name.equals("jdk.GCPhasePause")) gcPauseMs += millis(pause.getDuration());
+                }
+                item.put("pauseMs", safepointMs > 0 ? safepointMs : gcPauseMs);
+                item.put("pauses", overlapping);
+                result.add(item);
+            }
+            return result;
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static boolean overlaps(RecordedEvent a, RecordedEvent b) {
+        return !b.getEndTime().isBefore(a.getStartTime()) && !b.getStartTime().isAfter(a.getEndTime());
+    }
+
+    private static String detail(RecordedEvent pause) {
+        if (pause.hasField("cause")) return pause.getString("cause");
+        if (pause.hasField("operation")) return pause.getString("operation");
+        if (pause.hasField("name")) return pause.getString("name");
+        return null;
+    }
+
+    private static double millis(Duration duration) {
+        return duration.toNanos() / 1e6;
+    }
+}
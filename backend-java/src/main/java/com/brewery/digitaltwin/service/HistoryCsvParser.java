@@ -0,0 +1,251 @@
+package com.brewery.digitaltwin.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * 历史 CSV 行解析 - 直接读取映射缓冲区中的字节，解析数字与时间戳不创建对象
+ *
+ * 一个实例只由一个线程使用，解析结果写入 id/epochSecond/nanos/values 字段，下一行覆盖。
+ * 时间戳为不带时区的 ISO 本地时间 yyyy-MM-dd[T| ]HH:mm[:ss[.fffffffff]]，与导出格式一致；
+ * epochSecond 按 UTC 计算，只作为本地时间的紧凑表示；不存在的日期 (如 2024-02-30) 视为格式错误，不顺延。
+ * 浮点数的尾数不超过 2^53、指数不超过 ±22 时走快速路径 (两者都能精确表示为 double，一次乘除的舍入即为正确舍入，
+ * 结果与 Double.parseDouble 相同)，其余情况回退到 Double.parseDouble。
+ */
+final class HistoryCsvParser {
+
+    static final int IGNORED = -1;
+    static final int ID = 0;
+    static final int TIME = 1;
+    static final int METRIC = 2;  // 指标 i 的槽位为 METRIC + i
+
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POW10 = new double[23];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) POW10[i] = POW10[i - 1] * 10;
+    }
+
+    private final ByteBuffer buffer;
+    private final int[] slots;
+
+    long id;
+    long epochSecond;
+    int nanos;
+    final double[] values;  // 缺失为 NaN
+
+    private long parsedLong;
+    private double parsedDouble;
+
+    HistoryCsvParser(ByteBuffer buffer, int[] slots, int metricCount) {
+        this.buffer = buffer;
+        this.slots = slots;
+        this.values = new double[metricCount];
+    }
+
+    /**
+     * 按表头把各 CSV 列映射到槽位，列名可用对外名称或数据库列名 (忽略大小写)，未识别的列忽略
+     */
+    static int[] mapHeader(String header, SensorTable table) {
+        String[] names = header.replace("\uFEFF", "").trim().split(",", -1);
+        int[] slots = new int[names.length];
+        boolean hasId = false;
+        boolean hasTime = false;
+        for (int c = 0; c < names.length; c++) {
+            String name = names[c].trim().toLowerCase(Locale.ROOT);
+            slots[c] = IGNORED;
+            if (name.equals(table.idField.toLowerCase(Locale.ROOT)) || name.equals(table.idColumn)) {
+                slots[c] = ID;
+                hasId = true;
+            } else if (name.equals("recordedat") || name.equals("recorded_at")) {
+                slots[c] = TIME;
+                hasTime = true;
+            } else {
+                for (int i = 0; i < table.metricCount(); i++) {
+                    if (name.equals(table.fields[i].toLowerCase(Locale.ROOT)) || name.equals(table.columns[i])) {
+                        slots[c] = METRIC + i;
+                    }
+                }
+            }
+        }
+        if (!hasId || !hasTime) {
+            throw new IllegalArgumentException("表头缺少必需列: " + table.idField + ", recordedAt");
+        }
+        return slots;
+    }
+
+    /**
+     * 解析缓冲区 [from, to) 中的一行 (不含换行符)，格式错误返回 false
+     */
+    boolean parseLine(int from, int to) {
+        if (to > from && buffer.get(to - 1) == '\r') to--;
+        boolean hasId = false;
+        boolean hasTime = false;
+        for (int i = 0; i < values.length; i++) values[i] = Double.NaN;
+        int column = 0;
+        int start = from;
+        for (int pos = from; pos <= to; pos++) {
+            if (pos < to && buffer.get(pos) != ',') continue;
+            int slot = column < slots.length ? slots[column] : IGNORED;
+            if (slot == ID) {
+                if (!parseLong(start, pos)) return false;
+                id = parsedLong;
+                hasId = true;
+            } else if (slot == TIME) {
+                if (!parseTime(start, pos)) return false;
+                hasTime = true;
+            } else if (slot >= METRIC && pos > start) {
+                if (!parseDouble(start, pos)) return false;
+                values[slot - METRIC] = parsedDouble;
+            }
+            column++;
+            start = pos + 1;
+        }
+        return hasId && hasTime;
+    }
+
+    private boolean parseLong(int from, int to) {
+        if (from >= to || to - from > 18) return false;
+        long value = 0;
+        for (int pos = from; pos < to; pos++) {
+            int digit = buffer.get(pos) - '0';
+            if (digit < 0 || digit > 9) return false;
+            value = value * 10 + digit;
+        }
+        parsedLong = value;
+        return true;
+    }
+
+    private boolean parseDouble(int from, int to) {
+        int pos = from;
+        boolean negative = false;
+        byte b = buffer.get(pos);
+        if (b == '-' || b == '+') {
+            negative = b == '-';
+            pos++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean any = false;
+        boolean fraction = false;
+        for (; pos < to; pos++) {
+            b = buffer.get(pos);
+            if (b >= '0' && b <= '9') {
+                any = true;
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (mantissa != 0) digits++;
+                    if (fraction) exponent--;
+                } else if (!fraction) {
+                    exponent++;  // 超出精度的整数位只计入数量级
+                }
+            } else if (b == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+        }
+        if (!any) return false;
+        if (pos < to) {
+            b = buffer.get(pos);
+            if (b != 'e' && b != 'E') return false;
+            pos++;
+            boolean negativeExp = false;
+            if (pos < to && (buffer.get(pos) == '-' || buffer.get(pos) == '+')) {
+                negativeExp = buffer.get(pos) == '-';
+                pos++;
+            }
+            if (pos >= to || to - pos > 4) return false;
+            int exp = 0;
+            for (; pos < to; pos++) {
+                int digit = buffer.get(pos) - '0';
+                if (digit < 0 || digit > 9) return false;
+                exp = exp * 10 + digit;
+            }
+            exponent += negativeExp ? -exp : exp;
+        }
+        double value;
+        if (mantissa <= MAX_EXACT_MANTISSA && exponent >= -22 && exponent <= 22) {
+            value = exponent < 0 ? mantissa / POW10[-exponent] : mantissa * POW10[exponent];
+        } else {
+            value = slowParse(from, to);
+        }
+        parsedDouble = negative ? -value : value;
+        return true;
+    }
+
+    private double slowParse(int from, int to) {
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes);
+        return Math.abs(Double.parseDouble(new String(bytes, StandardCharsets.US_ASCII)));
+    }
+
+    private boolean parseTime(int from, int to) {
+        int length = to - from;
+        if (length < 16) return false;
+        int year = digits(from, 4);
+        int month = digits(from + 5, 2);
+        int day = digits(from + 8, 2);
+        int hour = digits(from + 11, 2);
+        int minute = digits(from + 14, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31 || hour < 0 || hour > 23
+                || minute < 0 || minute > 59) return false;
+        if (day > daysInMonth(year, month)) return false;
+        if (buffer.get(from + 4) != '-' || buffer.get(from + 7) != '-' || buffer.get(from + 13) != ':') return false;
+        byte separator = buffer.get(from + 10);
+        if (separator != 'T' && separator != ' ') return false;
+        int second = 0;
+        int nano = 0;
+        if (length > 16) {
+            if (length < 19 || buffer.get(from + 16) != ':') return false;
+            second = digits(from + 17, 2);
+            if (second < 0 || second > 59) return false;
+            if (length > 19) {
+                int fractionDigits = length - 20;
+                if (buffer.get(from + 19) != '.' || fractionDigits < 1 || fractionDigits > 9) return false;
+                nano = digits(from + 20, fractionDigits);
+                if (nano < 0) return false;
+                for (int i = fractionDigits; i < 9; i++) nano *= 10;
+            }
+        }
+        epochSecond = daysFromCivil(year, month, day) * 86400L + hour * 3600 + minute * 60 + second;
+        nanos = nano;
+        return true;
+    }
+
+    /**
+     * 读取 count 位十进制数字，含非数字字符时返回 -1
+     */
+    private int digits(int from, int count) {
+        int value = 0;
+        for (int pos = from; pos < from + count; pos++) {
+            int digit = buffer.get(pos) - '0';
+            if (digit < 0 || digit > 9) return -1;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    static int daysInMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> year % 4 == 0 && (year % 100 != 0 || year % 400 == 0) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    /**
+     * 公历日期到 1970-01-01 起的天数 (Howard Hinnant 的 days_from_civil)
+     */
+    static long daysFromCivil(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = Math.floorDiv(year, 400);
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+}
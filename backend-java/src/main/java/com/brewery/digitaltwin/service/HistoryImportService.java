@@ -0,0 +1,485 @@
+package com.brewery.digitaltwin.service;
+
+import com.brewery.digitaltwin.entity.ImportCheckpoint;
+import com.brewery.digitaltwin.repository.ImportCheckpointRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 历史数据导入 - 把旧 SCADA 导出的多 GB CSV 回灌到 pit_sensor_data / device_data
+ *
+ * 文件位于 app.import.dir 下，首行为表头 (列名同导出接口，也接受数据库列名)。数据部分按 app.import.region-size
+ * 切分为区域，区域边界对齐到行首；各区域由工作线程并行解析：整段内存映射，HistoryCsvParser 直接在映射字节上
+ * 解析，按 batch-size 行批量 INSERT，同一张表的写入串行。每批数据与该区域检查点 (下一行的字节偏移、累计行数)
+ * 在同一事务中提交，中断 (停机、取消、出错) 后重新提交同一文件即从各区域检查点继续，不重复也不遗漏；
+ * 文件大小或修改时间变化时旧检查点作废，从头导入。
+ */
+@Slf4j
+@Service
+public class HistoryImportService {
+
+    private static final int MAX_LINE = 64 * 1024;
+    private static final int MAX_REJECT_LOGS = 5;
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final String UPDATE_CHECKPOINT = "UPDATE import_checkpoints SET next_offset = ?, rows_imported = ?, " +
+            "rows_rejected = ?, done = ?, updated_at = ? WHERE id = ?";
+
+    private static final Map<SensorTable, String> INSERTS = new EnumMap<>(SensorTable.class);
+
+    static {
+        for (SensorTable table : SensorTable.values()) {
+            INSERTS.put(table, "INSERT INTO " + table.table + " (" + table.idColumn + ", recorded_at, " +
+                    String.join(", ", table.columns) + ") VALUES (?, ?" + ", ?".repeat(table.metricCount()) + ")");
+        }
+    }
+
+    public enum Status { RUNNING, COMPLETED, CANCELLED, FAILED }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ImportCheckpointRepository checkpointRepository;
+    private final Path importDir;
+    private final long regionSize;
+    private final int batchSize;
+    private final int threads;
+    private final boolean cleanupEnabled;
+
+    private final Map<SensorTable, Object> writeLocks = new EnumMap<>(SensorTable.class);
+    private final Map<SensorTable, MetricsRegistry.Counter> ingested = new EnumMap<>(SensorTable.class);
+    private final Map<SensorTable, MetricsRegistry.Counter> persisted = new EnumMap<>(SensorTable.class);
+    private final AtomicLong jobSeq = new AtomicLong();
+    private final Map<Long, ImportJob> jobs = new ConcurrentHashMap<>();
+
+    public HistoryImportService(JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                ImportCheckpointRepository checkpointRepository,
+                                @Value("${app.import.dir:./data/import}") String importDir,
+                                @Value("${app.import.region-size:268435456}") long regionSize,
+                                @Value("${app.import.batch-size:5000}") int batchSize,
+                                @Value("${app.import.threads:0}") int threads,
+                                @Value("${app.simulator.enabled:true}") boolean simulatorEnabled,
+                                @Value("${app.simulator.retention-hours:24}") long retentionHours,
+                                MetricsRegistry metrics) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.checkpointRepository = checkpointRepository;
+        this.importDir = Path.of(importDir).toAbsolutePath().normalize();
+        // 单个映射不能超过 2GB
+        this.regionSize = Math.max(MAX_LINE, Math.min(regionSize, Integer.MAX_VALUE - MAX_LINE));
+        this.batchSize = Math.max(1, batchSize);
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.cleanupEnabled = simulatorEnabled && retentionHours > 0;
+        for (SensorTable table : SensorTable.values()) {
+            writeLocks.put(table, new Object());
+            // 导入的读数解析通过即写入，两者在批次提交后一并累加；格式错误的行不计入
+            ingested.put(table, metrics.counter("twin_readings_ingested_total", "进入系统的传感器读数条数",
+                    "source", "import", "kind", table.label));
+            persisted.put(table, metrics.counter("twin_readings_persisted_total", "已提交入库的传感器读数条数",
+                    "source", "import", "kind", table.label));
+        }
+    }
+
+    public Map<String, Object> importPits(String file) throws IOException {
+        return start(SensorTable.PIT, file);
+    }
+
+    public Map<String, Object> importDevices(String file) throws IOException {
+        return start(SensorTable.DEVICE, file);
+    }
+
+    public List<Map<String, Object>> getJobs() {
+        return jobs.values().stream()
+                .sorted(Comparator.comparingLong((ImportJob job) -> job.id).reversed())
+                .map(ImportJob::toMap)
+                .toList();
+    }
+
+    public Optional<Map<String, Object>> getJob(Long id) {
+        return Optional.ofNullable(jobs.get(id)).map(ImportJob::toMap);
+    }
+
+    /**
+     * 取消导入，已提交的批次保留，重新提交同一文件时继续
+     */
+    public Map<String, Object> cancel(Long id) {
+        ImportJob job = jobs.get(id);
+        if (job == null) throw new IllegalArgumentException("导入任务不存在: " + id);
+        job.cancelled = true;
+        return job.toMap();
+    }
+
+    private synchronized Map<String, Object> start(SensorTable table, String file) throws IOException {
+        Path path = importDir.resolve(file).normalize();
+        if (!path.startsWith(importDir)) throw new IllegalArgumentException("文件必须位于导入目录内: " + importDir);
+        if (!Files.isRegularFile(path)) throw new IllegalArgumentException("文件不存在: " + file);
+        long size = Files.size(path);
+        String jobKey = table.label + ":" + size + ":" + Files.getLastModifiedTime(path).toMillis() + ":" + path;
+        for (ImportJob job : jobs.values()) {
+            if (job.jobKey.equals(jobKey) && job.status == Status.RUNNING) {
+                throw new IllegalArgumentException("该文件正在导入，任务 " + job.id);
+            }
+        }
+
+        List<ImportCheckpoint> checkpoints;
+        int[] slots;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long dataStart = nextLineStart(channel, 0);
+            if (dataStart < 0) throw new IllegalArgumentException("文件缺少表头");
+            ByteBuffer header = ByteBuffer.allocate((int) dataStart);
+            channel.read(header, 0);
+            slots = HistoryCsvParser.mapHeader(new String(header.array(), StandardCharsets.UTF_8), table);
+            checkpoints = transactionTemplate.execute(tx -> {
+                checkpointRepository.deleteStale(path.toString(), table.label, jobKey);
+                List<ImportCheckpoint> existing = checkpointRepository.findByJobKeyOrderByRegionIndex(jobKey);
+                return existing.isEmpty()
+                        ? checkpointRepository.saveAll(planRegions(channel, jobKey, path, table, dataStart, size))
+                        : existing;
+            });
+        }
+
+        ImportJob job = new ImportJob(jobSeq.incrementAndGet(), jobKey, path, table, size, checkpoints);
+        jobs.put(job.id, job);
+        List<ImportCheckpoint> pending = checkpoints.stream().filter(cp -> !cp.getDone()).toList();
+        if (pending.isEmpty()) {
+            job.finish(Status.COMPLETED);
+            log.info("历史数据导入: {} 已全部导入 ({} 行)，无需继续", path.getFileName(), job.previousRows);
+            return job.toMap();
+        }
+
+        int workerCount = Math.min(threads, pending.size());
+        AtomicInteger threadSeq = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(workerCount, r -> {
+            Thread thread = new Thread(r, "history-import-" + job.id + "-" + threadSeq.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        job.workers = workers;
+        CompletableFuture<?>[] tasks = pending.stream()
+                // 批次缓冲在任务开始时才分配，排队中的区域不占内存
+                .map(cp -> CompletableFuture.runAsync(() -> new RegionTask(job, cp, slots).run(), workers))
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(tasks).whenComplete((ignored, e) -> {
+            workers.shutdown();
+            job.finish(job.error != null ? Status.FAILED : job.cancelled ? Status.CANCELLED : Status.COMPLETED);
+            Map<String, Object> summary = job.toMap();
+            log.info("历史数据导入{}: {} 本次 {} 行 (拒绝 {} 行), {} 区域, {} 线程, {} ms, {} 行/秒, {} MB/秒",
+                    job.status == Status.COMPLETED ? "完成" : job.status == Status.CANCELLED ? "已取消" : "失败",
+                    path.getFileName(), summary.get("rows"), summary.get("rejected"), checkpoints.size(), workerCount,
+                    summary.get("elapsedMs"), summary.get("rowsPerSec"), summary.get("mbPerSec"));
+        });
+        if (cleanupEnabled) {
+            log.warn("仿真数据定时清理已开启 (app.simulator.retention-hours)，早于保留时长的导入数据会被删除");
+        }
+        log.info("历史数据导入开始: {} → {}, {} MB, {} 区域 (待处理 {}), {} 线程{}",
+                path.getFileName(), table.table, size >> 20, checkpoints.size(), pending.size(), workerCount,
+                job.previousBytes > 0 ? "，从检查点继续 " + (job.previousBytes >> 20) + " MB" : "");
+        return job.toMap();
+    }
+
+    /**
+     * 按 regionSize 切分数据部分，每个区域的起止对齐到行首，区域内的行完整且互不重叠
+     */
+    private List<ImportCheckpoint> planRegions(FileChannel channel, String jobKey, Path path, SensorTable table,
+                                               long dataStart, long size) {
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(dataStart);
+        for (long nominal = dataStart + regionSize; nominal < size; nominal += regionSize) {
+            long aligned = nextLineStart(channel, nominal - 1);
+            if (aligned < 0 || aligned >= size) break;
+            if (aligned > bounds.get(bounds.size() - 1)) bounds.add(aligned);
+        }
+        bounds.add(size);
+        List<ImportCheckpoint> regions = new ArrayList<>();
+        for (int i = 0; i + 1 < bounds.size(); i++) {
+            ImportCheckpoint cp = new ImportCheckpoint();
+            cp.setJobKey(jobKey);
+            cp.setFilePath(path.toString());
+            cp.setTarget(table.label);
+            cp.setRegionIndex(i);
+            cp.setNextOffset(bounds.get(i));
+            cp.setEndOffset(bounds.get(i + 1));
+            cp.setDone(bounds.get(i) >= bounds.get(i + 1));
+            regions.add(cp);
+        }
+        return regions;
+    }
+
+    /**
+     * from 处或之后第一个换行符的下一个字节，MAX_LINE 内没有换行符返回 -1
+     */
+    private static long nextLineStart(FileChannel channel, long from) {
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(MAX_LINE);
+            int read = channel.read(buffer, from);
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') return from + i + 1;
+            }
+            return read < MAX_LINE && read >= 0 ? from + read : -1;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.import.progress-interval:10000}")
+    public void logProgress() {
+        for (ImportJob job : jobs.values()) {
+            if (job.status != Status.RUNNING) continue;
+            Map<String, Object> progress = job.toMap();
+            log.info("历史数据导入进度: {} {}%, {} 行, {} 行/秒, 区域 {}/{}",
+                    job.path.getFileName(), progress.get("progress"), progress.get("rows"),
+                    progress.get("rowsPerSec"), progress.get("regionsDone"), progress.get("regions"));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (ImportJob job : jobs.values()) {
+            if (job.status != Status.RUNNING) continue;
+            job.cancelled = true;
+            job.workers.shutdown();
+            // 等待进行中的批次提交，未完成部分下次从检查点继续
+            job.workers.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 一个区域的导入：整段映射后逐行解析，行缓存在列式数组中，满一批提交一次
+     */
+    private final class RegionTask implements Runnable {
+        private final ImportJob job;
+        private final ImportCheckpoint checkpoint;
+        private final int[] slots;
+        private final SensorTable table;
+
+        private final long[] ids;
+        private final long[] seconds;
+        private final int[] nanos;
+        private final double[][] values;
+        private int size;
+
+        private long committedOffset;
+        private long rowsImported;
+        private long rowsRejected;
+        private long pendingRejected;
+
+        RegionTask(ImportJob job, ImportCheckpoint checkpoint, int[] slots) {
+            this.job = job;
+            this.checkpoint = checkpoint;
+            this.slots = slots;
+            this.table = job.table;
+            this.ids = new long[batchSize];
+            this.seconds = new long[batchSize];
+            this.nanos = new int[batchSize];
+            this.values = new double[table.metricCount()][batchSize];
+            this.committedOffset = checkpoint.getNextOffset();
+            this.rowsImported = checkpoint.getRowsImported();
+            this.rowsRejected = checkpoint.getRowsRejected();
+        }
+
+        @Override
+        public void run() {
+            if (job.cancelled) return;
+            try (FileChannel channel = FileChannel.open(job.path, StandardOpenOption.READ)) {
+                long base = checkpoint.getNextOffset();
+                int limit = (int) (checkpoint.getEndOffset() - base);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, base, limit);
+                HistoryCsvParser parser = new HistoryCsvParser(buffer, slots, table.metricCount());
+                int pos = 0;
+                while (pos < limit) {
+                    if (job.cancelled) return;
+                    int lineEnd = pos;
+                    while (lineEnd < limit && buffer.get(lineEnd) != '\n') lineEnd++;
+                    boolean blank = lineEnd == pos || (lineEnd == pos + 1 && buffer.get(pos) == '\r');
+                    if (!blank) {
+                        if (parser.parseLine(pos, lineEnd)) {
+                            add(parser);
+                        } else {
+                            reject(buffer, base, pos, lineEnd);
+                        }
+                    }
+                    pos = lineEnd + 1;
+                    if (size == batchSize) commit(base + pos, false);
+                }
+                commit(checkpoint.getEndOffset(), true);
+                job.regionsDone.incrementAndGet();
+            } catch (Exception e) {
+                job.error = e.getMessage();
+                job.cancelled = true;
+                log.error("历史数据导入区域 {} 失败，已提交部分保留: {}", checkpoint.getRegionIndex(), e.getMessage());
+            }
+        }
+
+        private void add(HistoryCsvParser parser) {
+            ids[size] = parser.id;
+            seconds[size] = parser.epochSecond;
+            nanos[size] = parser.nanos;
+            for (int i = 0; i < values.length; i++) values[i][size] = parser.values[i];
+            size++;
+        }
+
+        private void reject(ByteBuffer buffer, long base, int from, int to) {
+            pendingRejected++;
+            if (job.rejectLogs.incrementAndGet() <= MAX_REJECT_LOGS) {
+                byte[] line = new byte[Math.min(to - from, 200)];
+                buffer.get(from, line);
+                log.warn("历史数据导入跳过格式错误的行 (偏移 {}): {}", base + from, new String(line, StandardCharsets.UTF_8));
+            }
+        }
+
+        private void commit(long nextOffset, boolean done) {
+            long imported = rowsImported + size;
+            long rejected = rowsRejected + pendingRejected;
+            // 解析并行、写入按表串行：H2 LEGACY 模式下多个连接并发插入同一表会分到重复的自增 ID
+            synchronized (writeLocks.get(table)) {
+                for (int attempt = 1; ; attempt++) {
+                    try {
+                        write(nextOffset, imported, rejected, done);
+                        break;
+                    } catch (DuplicateKeyException e) {
+                        // 与仿真等其他写入者冲突，整批连同检查点已回滚，重试不会重复
+                        if (attempt == MAX_ATTEMPTS) throw e;
+                    }
+                }
+            }
+            job.processedBytes.addAndGet(nextOffset - committedOffset);
+            job.rows.addAndGet(size);
+            ingested.get(table).add(size);
+            persisted.get(table).add(size);
+            job.rejected.addAndGet(pendingRejected);
+            committedOffset = nextOffset;
+            rowsImported = imported;
+            rowsRejected = rejected;
+            pendingRejected = 0;
+            size = 0;
+        }
+
+        private void write(long nextOffset, long imported, long rejected, boolean done) {
+            int rows = size;
+            transactionTemplate.executeWithoutResult(tx -> {
+                if (rows > 0) jdbcTemplate.batchUpdate(INSERTS.get(table), new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setLong(1, ids[i]);
+                        ps.setTimestamp(2, Timestamp.valueOf(LocalDateTime.ofEpochSecond(seconds[i], nanos[i], ZoneOffset.UTC)));
+                        for (int m = 0; m < values.length; m++) {
+                            double v = values[m][i];
+                            if (Double.isNaN(v)) ps.setNull(3 + m, Types.DOUBLE);
+                            else ps.setDouble(3 + m, v);
+                        }
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return rows;
+                    }
+                });
+                jdbcTemplate.update(UPDATE_CHECKPOINT, nextOffset, imported, rejected, done,
+                        Timestamp.valueOf(LocalDateTime.now()), checkpoint.getId());
+            });
+        }
+    }
+
+    private static final class ImportJob {
+        final long id;
+        final String jobKey;
+        final Path path;
+        final SensorTable table;
+        final long totalBytes;
+        final int regions;
+        final long previousBytes;  // 之前运行已提交的字节数 (含表头)
+        final long previousRows;
+        final long startNanos = System.nanoTime();
+        final LocalDateTime startedAt = LocalDateTime.now();
+        final AtomicLong processedBytes = new AtomicLong();
+        final AtomicLong rows = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicInteger regionsDone = new AtomicInteger();
+        final AtomicInteger rejectLogs = new AtomicInteger();
+        volatile Status status = Status.RUNNING;
+        volatile boolean cancelled;
+        volatile String error;
+        volatile long finishNanos;
+        ExecutorService workers;
+
+        ImportJob(long id, String jobKey, Path path, SensorTable table, long totalBytes,
+                  List<ImportCheckpoint> checkpoints) {
+            this.id = id;
+            this.jobKey = jobKey;
+            this.path = path;
+            this.table = table;
+            this.totalBytes = totalBytes;
+            this.regions = checkpoints.size();
+            long remaining = 0;
+            long done = 0;
+            int finished = 0;
+            for (ImportCheckpoint cp : checkpoints) {
+                remaining += cp.getEndOffset() - cp.getNextOffset();
+                done += cp.getRowsImported();
+                if (cp.getDone()) finished++;
+            }
+            this.previousBytes = totalBytes - remaining;
+            this.previousRows = done;
+            this.regionsDone.set(finished);
+        }
+
+        void finish(Status status) {
+            this.finishNanos = System.nanoTime();
+            this.status = status;
+        }
+
+        Map<String, Object> toMap() {
+            long elapsedNanos = (status == Status.RUNNING ? System.nanoTime() : finishNanos) - startNanos;
+            double seconds = Math.max(elapsedNanos / 1e9, 1e-3);
+            long bytes = processedBytes.get();
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("id", id);
+            result.put("file", path.getFileName().toString());
+            result.put("target", table.table);
+            result.put("status", status.name().toLowerCase(Locale.ROOT));
+            result.put("startedAt", startedAt);
+            result.put("totalBytes", totalBytes);
+            result.put("processedBytes", previousBytes + bytes);
+            result.put("progress", totalBytes > 0 ? Math.round((previousBytes + bytes) * 1000.0 / totalBytes) / 10.0 : 100.0);
+            result.put("regions", regions);
+            result.put("regionsDone", regionsDone.get());
+            result.put("rows", rows.get());
+            result.put("totalRows", previousRows + rows.get());
+            result.put("rejected", rejected.get());
+            result.put("elapsedMs", elapsedNanos / 1_000_000);
+            result.put("rowsPerSec", Math.round(rows.get() / seconds));
+            result.put("mbPerSec", Math.round(bytes / seconds / (1 << 20) * 10) / 10.0);
+            result.put("resumedFromBytes", previousBytes);
+            result.put("error", error);
+            return result;
+        }
+    }
+}
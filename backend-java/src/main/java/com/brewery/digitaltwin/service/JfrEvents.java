@@ -0,0 +1,117 @@
+package com.brewery.digitaltwin.service;
+
+import jdk.jfr.*;
+
+/**
+ * 自定义 JFR 事件 - 仿真周期、写库、仪表盘统计与实时广播
+ *
+ * 事件不带调用栈，未被任何录制启用时 begin/commit 几乎没有开销；与 GC、安全点等 JVM 事件写在同一录制中，
+ * 用 JDK Mission Control 或 jfr print 按时间轴对照即可判断周期卡顿是否与停顿重叠。
+ */
+public final class JfrEvents {
+
+    private static final String CATEGORY = "Digital Twin";
+
+    private JfrEvents() {
+    }
+
+    @Name("twin.Tick")
+    @Label("仿真周期")
+    @Description("一个仿真周期从开始到事务结束的耗时")
+    @Category({CATEGORY, "Simulator"})
+    @StackTrace(false)
+    public static final class TickEvent extends Event {
+        @Label("窖池读数")
+        public int pitReadings;
+
+        @Label("设备读数")
+        public int deviceReadings;
+
+        @Label("JDBC 语句数")
+        public long statements;
+
+        @Label("已提交")
+        public boolean committed;
+
+        @Label("超出仿真间隔")
+        public boolean overrun;
+    }
+
+    @Name("twin.TickStage")
+    @Label("仿真阶段")
+    @Description("仿真周期内单个阶段的耗时与处理的实体数")
+    @Category({CATEGORY, "Simulator"})
+    @StackTrace(false)
+    public static final class TickStageEvent extends Event {
+        @Label("阶段")
+        public String stage;
+
+        @Label("实体数")
+        public int entities;
+    }
+
+    @Name("twin.DbFlush")
+    @Label("写库")
+    @Description("仿真事务提交或运行状态批量写回")
+    @Category({CATEGORY, "Database"})
+    @StackTrace(false)
+    public static final class DbFlushEvent extends Event {
+        @Label("来源")
+        @Description("tick-commit 仿真事务提交, state-status 状态变化写回, state-periodic 定时累计量写回")
+        public String source;
+
+        @Label("行数")
+        public int rows;
+
+        @Label("JDBC 语句数")
+        public long statements;
+
+        @Label("成功")
+        public boolean success;
+    }
+
+    @Name("twin.DashboardStats")
+    @Label("仪表盘统计")
+    @Description("DashboardService.getStats 汇总一次统计")
+    @Category({CATEGORY, "Dashboard"})
+    @StackTrace(false)
+    public static final class DashboardStatsEvent extends Event {
+        @Label("窖池数")
+        public long pits;
+
+        @Label("设备数")
+        public long devices;
+
+        @Label("活跃告警数")
+        public long activeAlarms;
+
+        @Label("热力图缓存条数")
+        public int heatmapEntries;
+    }
+
+    @Name("twin.Broadcast")
+    @Label("实时广播")
+    @Description("一条实时消息的序列化与向全部会话的推送")
+    @Category({CATEGORY, "WebSocket"})
+    @StackTrace(false)
+    public static final class BroadcastEvent extends Event {
+        @Label("消息类型")
+        public String type;
+
+        @Label("序号")
+        public long seq;
+
+        @Label("消息字节数")
+        @DataAmount
+        public long bytes;
+
+        @Label("会话数")
+        public int sessions;
+
+        @Label("送达会话数")
+        public int delivered;
+
+        @Label("转发自其他节点")
+        public boolean relayed;
+    }
+}
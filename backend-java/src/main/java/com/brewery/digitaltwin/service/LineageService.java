@@ -0,0 +1,237 @@
+package com.brewery.digitaltwin.service;
+
+import com.brewery.digitaltwin.entity.*;
+import com.brewery.digitaltwin.repository.AlarmRepository;
+import com.brewery.digitaltwin.repository.BatchPitAssignmentRepository;
+import com.brewery.digitaltwin.repository.BatchSummaryRepository;
+import com.brewery.digitaltwin.repository.PitRepository;
+import com.brewery.digitaltwin.repository.ProductionBatchRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * 批次-窖池血缘与质量追溯
+ *
+ * 每次入窖记录一条 (批次, 窖池, 时间窗口)，按 (batch_id, started_at) 与 (pit_id, started_at) 建索引，
+ * 正反两个方向的追溯都是索引范围扫描：批次 → 窖池窗口 → 传感器数据 (pit_id, recorded_at) 与告警 (source, last_occurred_at)；
+ * 窖池/时刻 → 批次。批次完工时预计算各窗口统计与批次汇总，原始数据过了保留期后追溯报告仍然完整。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LineageService {
+
+    private static final String WINDOW_STATS_SQL =
+            "SELECT COUNT(*), AVG(temperature), MIN(temperature), MAX(temperature), AVG(humidity), AVG(ph_value) " +
+            "FROM pit_sensor_data WHERE pit_id = ? AND recorded_at > ? AND recorded_at <= ?";
+
+    private final BatchPitAssignmentRepository assignmentRepository;
+    private final BatchSummaryRepository summaryRepository;
+    private final ProductionBatchRepository batchRepository;
+    private final PitRepository pitRepository;
+    private final AlarmRepository alarmRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final SensorHistoryService historyService;
+    private final CurveSimilarityService curveService;
+
+    /**
+     * 批次入窖：窖池上仍未结束的其他批次窗口先结束；同一批次重复入窖不重复记录
+     */
+    @Transactional
+    public BatchPitAssignment assign(Pit pit, ProductionBatch batch) {
+        Optional<BatchPitAssignment> open = assignmentRepository.findFirstByPitIdAndEndedAtIsNull(pit.getId());
+        if (open.isPresent()) {
+            if (open.get().getBatchId().equals(batch.getId())) return open.get();
+            open.get().setEndedAt(LocalDateTime.now());
+            assignmentRepository.save(open.get());
+        }
+        BatchPitAssignment assignment = new BatchPitAssignment();
+        assignment.setBatchId(batch.getId());
+        assignment.setBatchNo(batch.getBatchNo());
+        assignment.setPitId(pit.getId());
+        assignment.setPitNo(pit.getPitNo());
+        assignment.setZone(pit.getZone());
+        return assignmentRepository.save(assignment);
+    }
+
+    @Transactional
+    public BatchPitAssignment assignByBatchNo(Long pitId, String batchNo) {
+        Pit pit = pitRepository.findById(pitId)
+                .orElseThrow(() -> new IllegalArgumentException("窖池不存在"));
+        ProductionBatch batch = batchRepository.findByBatchNo(batchNo)
+                .orElseThrow(() -> new IllegalArgumentException("批次不存在"));
+        return assign(pit, batch);
+    }
+
+    @Transactional
+    public BatchPitAssignment assignToBatch(Long batchId, Long pitId) {
+        Pit pit = pitRepository.findById(pitId)
+                .orElseThrow(() -> new IllegalArgumentException("窖池不存在"));
+        ProductionBatch batch = batchRepository.findById(batchId)
+                .orElseThrow(() -> new IllegalArgumentException("批次不存在"));
+        if ("completed".equals(batch.getStatus()) || "cancelled".equals(batch.getStatus())) {
+            throw new IllegalArgumentException("批次已结束");
+        }
+        return assign(pit, batch);
+    }
+
+    public List<BatchPitAssignment> getBatchesForPit(Long pitId) {
+        return assignmentRepository.findByPitIdOrderByStartedAtDesc(pitId);
+    }
+
+    /**
+     * 某时刻在窖池中发酵的批次，没有则返回 empty
+     */
+    public Optional<BatchPitAssignment> findBatchAt(Long pitId, LocalDateTime at) {
+        return assignmentRepository.findFirstByPitIdAndStartedAtLessThanEqualOrderByStartedAtDesc(pitId, at)
+                .filter(a -> a.getEndedAt() == null || !a.getEndedAt().isBefore(at));
+    }
+
+    /**
+     * 批次完工：结束全部窖池窗口，预计算窗口统计与批次汇总，并把各窖池本轮曲线连同质量评分归档
+     */
+    @Transactional
+    public BatchSummary summarize(ProductionBatch batch) {
+        LocalDateTime now = LocalDateTime.now();
+        List<BatchPitAssignment> assignments = assignmentRepository.findByBatchIdOrderByStartedAt(batch.getId());
+        BatchSummary summary = new BatchSummary();
+        summary.setBatchId(batch.getId());
+        summary.setBatchNo(batch.getBatchNo());
+        summary.setPitCount((int) assignments.stream().map(BatchPitAssignment::getPitId).distinct().count());
+        summary.setQualityScore(batch.getQualityScore());
+
+        int samples = 0;
+        Map<Long, Alarm> alarms = new HashMap<>();  // 同区域聚合事件会落在多个窖池窗口内，按 id 去重
+        double tempSum = 0, humiditySum = 0, phSum = 0;
+        double minTemp = Double.POSITIVE_INFINITY, maxTemp = Double.NEGATIVE_INFINITY;
+        LocalDateTime first = null, last = null;
+        for (BatchPitAssignment a : assignments) {
+            boolean open = a.getEndedAt() == null;
+            if (open) a.setEndedAt(now);
+            computeWindowStats(a).forEach(alarm -> alarms.putIfAbsent(alarm.getId(), alarm));
+            assignmentRepository.save(a);
+            if (open) archiveCurve(a, batch);
+
+            int n = a.getSampleCount();
+            samples += n;
+            if (n > 0) {
+                tempSum += a.getAvgTemperature() * n;
+                humiditySum += a.getAvgHumidity() * n;
+                phSum += a.getAvgPhValue() * n;
+                minTemp = Math.min(minTemp, a.getMinTemperature());
+                maxTemp = Math.max(maxTemp, a.getMaxTemperature());
+            }
+            if (first == null || a.getStartedAt().isBefore(first)) first = a.getStartedAt();
+            if (last == null || a.getEndedAt().isAfter(last)) last = a.getEndedAt();
+        }
+        summary.setSampleCount(samples);
+        if (samples > 0) {
+            summary.setAvgTemperature(tempSum / samples);
+            summary.setMinTemperature(minTemp);
+            summary.setMaxTemperature(maxTemp);
+            summary.setAvgHumidity(humiditySum / samples);
+            summary.setAvgPhValue(phSum / samples);
+        }
+        summary.setAlarmCount(alarms.size());
+        summary.setCriticalAlarmCount((int) alarms.values().stream().filter(alarm -> "critical".equals(alarm.getLevel())).count());
+        if (first != null) {
+            summary.setFermentationHours(Duration.between(first, last).toMinutes() / 60.0);
+        }
+        summary.setComputedAt(now);
+        log.info("批次 {} 汇总完成: {} 个窖池, {} 条传感器数据, {} 条告警",
+                batch.getBatchNo(), summary.getPitCount(), samples, alarms.size());
+        return summaryRepository.save(summary);
+    }
+
+    /**
+     * 批次追溯报告：汇总 (已完工时为预计算结果)、窖池窗口与窗口内告警
+     */
+    public Optional<Map<String, Object>> getTrace(Long batchId) {
+        return batchRepository.findById(batchId).map(batch -> {
+            List<BatchPitAssignment> assignments = assignmentRepository.findByBatchIdOrderByStartedAt(batchId);
+            Map<String, Object> trace = new LinkedHashMap<>();
+            trace.put("batch", batch);
+            trace.put("summary", summaryRepository.findById(batchId).orElse(null));
+            trace.put("pits", assignments);
+            trace.put("alarms", findAlarms(assignments));
+            return trace;
+        });
+    }
+
+    /**
+     * 批次各窖池窗口内的传感器数据，按 maxPoints 降采样；原始数据只保留 24 小时，更早的窗口以汇总为准
+     */
+    public Optional<List<Map<String, Object>>> getTraceSensors(Long batchId, int maxPoints, String metric, String mode) {
+        if (!batchRepository.existsById(batchId)) return Optional.empty();
+        LocalDateTime now = LocalDateTime.now();
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (BatchPitAssignment a : assignmentRepository.findByBatchIdOrderByStartedAt(batchId)) {
+            LocalDateTime to = a.getEndedAt() != null ? a.getEndedAt() : now;
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("pitId", a.getPitId());
+            item.put("pitNo", a.getPitNo());
+            item.put("from", a.getStartedAt());
+            item.put("to", to);
+            item.put("data", historyService.getPitSensorData(a.getPitId(), a.getStartedAt(), to, maxPoints, metric, mode));
+            result.add(item);
+        }
+        return Optional.of(result);
+    }
+
+    /**
+     * 写入窗口统计，返回窗口内的告警
+     */
+    private List<Alarm> computeWindowStats(BatchPitAssignment a) {
+        jdbcTemplate.query(WINDOW_STATS_SQL, (RowCallbackHandler) rs -> {
+            a.setSampleCount(rs.getInt(1));
+            a.setAvgTemperature(rs.getObject(2) != null ? rs.getDouble(2) : null);
+            a.setMinTemperature(rs.getObject(3) != null ? rs.getDouble(3) : null);
+            a.setMaxTemperature(rs.getObject(4) != null ? rs.getDouble(4) : null);
+            a.setAvgHumidity(rs.getObject(5) != null ? rs.getDouble(5) : null);
+            a.setAvgPhValue(rs.getObject(6) != null ? rs.getDouble(6) : null);
+        }, a.getPitId(), Timestamp.valueOf(a.getStartedAt()), Timestamp.valueOf(a.getEndedAt()));
+        List<Alarm> alarms = alarmRepository.findAffecting(sourcesOf(a), a.getStartedAt(), a.getEndedAt());
+        a.setAlarmCount(alarms.size());
+        a.setCriticalAlarmCount((int) alarms.stream().filter(alarm -> "critical".equals(alarm.getLevel())).count());
+        return alarms;
+    }
+
+    private List<Alarm> findAlarms(List<BatchPitAssignment> assignments) {
+        LocalDateTime now = LocalDateTime.now();
+        Map<Long, Alarm> alarms = new LinkedHashMap<>();
+        for (BatchPitAssignment a : assignments) {
+            LocalDateTime to = a.getEndedAt() != null ? a.getEndedAt() : now;
+            alarmRepository.findAffecting(sourcesOf(a), a.getStartedAt(), to)
+                    .forEach(alarm -> alarms.putIfAbsent(alarm.getId(), alarm));
+        }
+        List<Alarm> result = new ArrayList<>(alarms.values());
+        result.sort(Comparator.comparing(Alarm::getCreatedAt));
+        return result;
+    }
+
+    /**
+     * 影响窖池的告警来源：窖池自身与所在区域的聚合事件
+     */
+    private static List<String> sourcesOf(BatchPitAssignment a) {
+        return a.getZone() != null
+                ? List.of("pit-" + a.getPitNo(), "zone-" + a.getZone())
+                : List.of("pit-" + a.getPitNo());
+    }
+
+    private void archiveCurve(BatchPitAssignment a, ProductionBatch batch) {
+        try {
+            curveService.archive(a.getPitNo(), batch.getId(), batch.getQualityScore());
+        } catch (IllegalArgumentException e) {
+            log.debug("窖池 {} 无可归档的发酵曲线: {}", a.getPitNo(), e.getMessage());
+        }
+    }
+}
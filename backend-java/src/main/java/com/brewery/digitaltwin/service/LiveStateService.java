@@ -0,0 +1,323 @@
+package com.brewery.digitaltwin.service;
+
+import com.brewery.digitaltwin.entity.Device;
+import com.brewery.digitaltwin.entity.Pit;
+import com.brewery.digitaltwin.repository.DeviceRepository;
+import com.brewery.digitaltwin.repository.PitRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * 设备/窖池运行状态的内存权威模型 - 写回 (write-behind) 持久化
+ *
+ * 仿真每个周期只修改内存中的实体并打脏标记，不再逐个 save：
+ * 状态变化在本周期结束时批量写回 (数据库中的状态最多落后一个周期)，
+ * 运行小时等累计量按 app.state.flush-interval 批量写回，关闭时再写回一次。
+ * 写回的是绝对值，重启后从数据库加载即可恢复累计运行小时，异常退出最多丢失一个写回间隔。
+ * 写回后对应实体的二级缓存与查询缓存随即失效。状态变化同时记入事件日志 (TwinEventLog)，用于按时刻重建。
+ */
+@Slf4j
+@Service
+public class LiveStateService {
+
+    private static final String UPDATE_DEVICE =
+            "UPDATE devices SET status = ?, running_hours = ?, updated_at = ? WHERE id = ?";
+    private static final String UPDATE_PIT =
+            "UPDATE pits SET status = ?, updated_at = ? WHERE id = ?";
+
+    private final DeviceRepository deviceRepository;
+    private final PitRepository pitRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityStatsService statsService;
+    private final EntityCacheService cacheService;
+    private final TwinEventLog eventLog;
+    private final TransactionTemplate loadTransaction;
+    private final TransactionTemplate flushTransaction;
+
+    // 以下状态由 this 监视器保护
+    private Map<Long, Device> devices;
+    private Map<Long, Pit> pits;
+    private final Set<Long> dirtyDevices = new HashSet<>();
+    private final Set<Long> dirtyPits = new HashSet<>();
+    private final Set<Long> statusChangedDevices = new HashSet<>();  // dirtyDevices 的子集
+
+    public LiveStateService(DeviceRepository deviceRepository,
+                            PitRepository pitRepository,
+                            JdbcTemplate jdbcTemplate,
+                            EntityStatsService statsService,
+                            EntityCacheService cacheService,
+                            TwinEventLog eventLog,
+                            PlatformTransactionManager transactionManager) {
+        this.deviceRepository = deviceRepository;
+        this.pitRepository = pitRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.statsService = statsService;
+        this.cacheService = cacheService;
+        this.eventLog = eventLog;
+        // 在独立的只读事务中加载，保证缓存的实体处于游离状态，不会被调用方事务自动刷写
+        this.loadTransaction = new TransactionTemplate(transactionManager);
+        this.loadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.loadTransaction.setReadOnly(true);
+        this.flushTransaction = new TransactionTemplate(transactionManager);
+        this.flushTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public synchronized List<Device> getDevices() {
+        ensureLoaded();
+        return new ArrayList<>(devices.values());
+    }
+
+    public synchronized List<Pit> getPits() {
+        ensureLoaded();
+        return new ArrayList<>(pits.values());
+    }
+
+    public synchronized Optional<Device> getDevice(Long id) {
+        ensureLoaded();
+        return Optional.ofNullable(devices.get(id));
+    }
+
+    public synchronized Optional<Pit> getPit(Long id) {
+        ensureLoaded();
+        return Optional.ofNullable(pits.get(id));
+    }
+
+    public synchronized void updateDeviceStatus(Device device, String status) {
+        if (status.equals(device.getStatus())) return;
+        device.setStatus(status);
+        device.setUpdatedAt(LocalDateTime.now());
+        dirtyDevices.add(device.getId());
+        statusChangedDevices.add(device.getId());
+        eventLog.deviceStatus(device.getId(), status);
+    }
+
+    public synchronized void addRunningHours(Device device, double hours) {
+        device.setRunningHours(device.getRunningHours() + hours);
+        dirtyDevices.add(device.getId());
+    }
+
+    public synchronized void updatePitStatus(Pit pit, String status) {
+        if (status.equals(pit.getStatus())) return;
+        pit.setStatus(status);
+        pit.setUpdatedAt(LocalDateTime.now());
+        dirtyPits.add(pit.getId());
+        eventLog.pitStatus(pit.getId(), status);
+    }
+
+    /**
+     * 从快照恢复累计运行小时：只增不减，快照中的值更大 (上次在写回间隔内异常退出) 时才采用并打脏标记
+     *
+     * @return 设备不存在时返回 false
+     */
+    public synchronized boolean restoreRunningHours(Long deviceId, double hours) {
+        ensureLoaded();
+        Device device = devices.get(deviceId);
+        if (device == null) return false;
+        if (device.getRunningHours() == null || hours > device.getRunningHours()) {
+            device.setRunningHours(hours);
+            dirtyDevices.add(deviceId);
+        }
+        return true;
+    }
+
+    /**
+     * 管理接口修改实体前调用：把尚未写回的累计量合并到待保存的实体，避免被数据库中的旧值覆盖
+     */
+    public synchronized void mergeInto(Device device) {
+        Device live = devices != null ? devices.get(device.getId()) : null;
+        if (live != null) {
+            device.setRunningHours(live.getRunningHours());
+        }
+    }
+
+    /**
+     * 管理接口保存实体后调用：以保存结果替换内存中的实体
+     */
+    public synchronized void refresh(Device device) {
+        if (devices == null) return;
+        devices.put(device.getId(), device);
+        dirtyDevices.remove(device.getId());
+        statusChangedDevices.remove(device.getId());
+        eventLog.deviceStatus(device.getId(), device.getStatus());
+    }
+
+    public synchronized void refresh(Pit pit) {
+        if (pits == null) return;
+        pits.put(pit.getId(), pit);
+        dirtyPits.remove(pit.getId());
+        eventLog.pitStatus(pit.getId(), pit.getStatus());
+        eventLog.pitFermentationDay(pit.getId(), pit.getFermentationDay());
+    }
+
+    /**
+     * 集群模式下由其他节点负责的实体：按转发的实时数据更新内存中的状态，不打脏标记 (由负责节点写回)
+     */
+    public synchronized void applyRemoteStatus(Map<Long, String> pitStatuses, Map<Long, String> deviceStatuses) {
+        if (devices == null) return;
+        pitStatuses.forEach((id, status) -> {
+            Pit pit = pits.get(id);
+            if (pit != null && !dirtyPits.contains(id)) {
+                pit.setStatus(status);
+                eventLog.pitStatus(id, status);
+            }
+        });
+        deviceStatuses.forEach((id, status) -> {
+            Device device = devices.get(id);
+            if (device != null && !dirtyDevices.contains(id)) {
+                device.setStatus(status);
+                eventLog.deviceStatus(id, status);
+            }
+        });
+    }
+
+    /**
+     * 集群重平衡后接管的实体：从数据库重新加载前一负责节点写回的状态与累计量
+     */
+    public void reload(Collection<Long> pitIds, Collection<Long> deviceIds) {
+        if (pitIds.isEmpty() && deviceIds.isEmpty()) return;
+        // 二级缓存中可能是本节点之前加载的旧值
+        cacheService.evictPits(pitIds);
+        cacheService.evictDevices(deviceIds);
+        List<Pit> loadedPits = new ArrayList<>();
+        List<Device> loadedDevices = new ArrayList<>();
+        loadTransaction.executeWithoutResult(status -> {
+            loadedPits.addAll(pitRepository.findAllById(pitIds));
+            loadedDevices.addAll(deviceRepository.findAllById(deviceIds));
+        });
+        synchronized (this) {
+            ensureLoaded();
+            loadedPits.forEach(p -> {
+                pits.put(p.getId(), p);
+                dirtyPits.remove(p.getId());
+                eventLog.pitStatus(p.getId(), p.getStatus());
+            });
+            loadedDevices.forEach(d -> {
+                devices.put(d.getId(), d);
+                dirtyDevices.remove(d.getId());
+                statusChangedDevices.remove(d.getId());
+                eventLog.deviceStatus(d.getId(), d.getStatus());
+            });
+        }
+    }
+
+    /**
+     * 仿真周期结束时调用：只写回本周期状态发生变化的实体 (窖池只有状态)，累计量留给定时写回
+     *
+     * @return 写回的行数
+     */
+    public int flushStatusChanges() {
+        return flush(true);
+    }
+
+    @Scheduled(fixedDelayString = "${app.state.flush-interval:30000}")
+    public void flush() {
+        flush(false);
+    }
+
+    private int flush(boolean statusOnly) {
+        List<Object[]> deviceRows = new ArrayList<>();
+        List<Object[]> pitRows = new ArrayList<>();
+        Set<Long> deviceIds;
+        Set<Long> pitIds;
+        Set<Long> statusDeviceIds;
+        boolean statusWritten;
+        synchronized (this) {
+            deviceIds = new HashSet<>(statusOnly ? statusChangedDevices : dirtyDevices);
+            pitIds = new HashSet<>(dirtyPits);
+            if (deviceIds.isEmpty() && pitIds.isEmpty()) return 0;
+            for (Long id : deviceIds) {
+                Device d = devices.get(id);
+                if (d == null) continue;
+                deviceRows.add(new Object[]{d.getStatus(), d.getRunningHours(), Timestamp.valueOf(d.getUpdatedAt()), id});
+            }
+            for (Long id : pitIds) {
+                Pit p = pits.get(id);
+                if (p == null) continue;
+                pitRows.add(new Object[]{p.getStatus(), Timestamp.valueOf(p.getUpdatedAt()), id});
+            }
+            statusDeviceIds = new HashSet<>(deviceIds);
+            statusDeviceIds.retainAll(statusChangedDevices);
+            statusWritten = !pitIds.isEmpty() || !statusDeviceIds.isEmpty();
+            dirtyDevices.removeAll(deviceIds);
+            statusChangedDevices.removeAll(deviceIds);
+            dirtyPits.clear();
+        }
+        JfrEvents.DbFlushEvent event = new JfrEvents.DbFlushEvent();
+        event.begin();
+        boolean success = false;
+        try {
+            flushTransaction.executeWithoutResult(status -> {
+                if (!deviceRows.isEmpty()) jdbcTemplate.batchUpdate(UPDATE_DEVICE, deviceRows);
+                if (!pitRows.isEmpty()) jdbcTemplate.batchUpdate(UPDATE_PIT, pitRows);
+            });
+            // JDBC 写回绕过了 Hibernate，二级缓存中这些实体及其查询结果需显式失效
+            cacheService.evictDevices(deviceIds);
+            cacheService.evictPits(pitIds);
+            if (statusWritten) statsService.invalidate();
+            log.debug("状态写回: 设备 {} 条, 窖池 {} 条", deviceRows.size(), pitRows.size());
+            success = true;
+        } catch (RuntimeException e) {
+            // 写回失败时恢复脏标记，下次定时写回重试；写回的是当前值，重复写入无副作用
+            synchronized (this) {
+                dirtyDevices.addAll(deviceIds);
+                statusChangedDevices.addAll(statusDeviceIds);
+                dirtyPits.addAll(pitIds);
+            }
+            log.error("状态写回失败: {}", e.getMessage());
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.source = statusOnly ? "state-status" : "state-periodic";
+            // 每行一条批量 UPDATE
+            event.rows = deviceRows.size() + pitRows.size();
+            event.statements = event.rows;
+            event.success = success;
+            event.commit();
+        }
+        return success ? deviceRows.size() + pitRows.size() : 0;
+    }
+
+    /**
+     * 初始化数据写入后重新加载，之前已产生的变化先写回
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(0)
+    public synchronized void reloadOnReady() {
+        flush();
+        devices = null;
+        pits = null;
+        ensureLoaded();
+        log.info("运行状态已加载: 设备 {} 台, 窖池 {} 个", devices.size(), pits.size());
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+        log.info("关闭前状态已写回");
+    }
+
+    private void ensureLoaded() {
+        if (devices != null) return;
+        Map<Long, Device> loadedDevices = new LinkedHashMap<>();
+        Map<Long, Pit> loadedPits = new LinkedHashMap<>();
+        loadTransaction.executeWithoutResult(status -> {
+            deviceRepository.findAll().forEach(d -> loadedDevices.put(d.getId(), d));
+            pitRepository.findAll().forEach(p -> loadedPits.put(p.getId(), p));
+        });
+        devices = loadedDevices;
+        pits = loadedPits;
+    }
+}
@@ -0,0 +1,256 @@
+package com.brewery.digitaltwin.service;
+
+import org.springframework.stereotype.Service;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.*;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * 运行指标注册表 - 计数器、仪表与直方图，按 Prometheus 文本格式 (0.0.4) 输出供抓取
+ *
+ * 各组件在构造或初始化时注册自己的指标并持有返回的 Counter / Histogram，热路径上只做 LongAdder 累加；
+ * 已有累计值的来源 (Hibernate 统计、连接池状态、会话缓冲区) 以回调方式注册，抓取时才读取。
+ * 标签以 "名称, 值" 成对传入；同名指标的每组标签值只注册一次，重复注册返回已有实例。
+ */
+@Service
+public class MetricsRegistry {
+
+    /** 秒级耗时的默认分桶：1 ms 到 30 s */
+    public static final double[] SECONDS_BUCKETS = {
+            0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30};
+
+    /** 各缓存共用的请求计数，标签 cache 为缓存名、result 为 hit / miss，命中率由两者相除得到 */
+    public static final String CACHE_REQUESTS = "twin_cache_requests_total";
+    public static final String CACHE_REQUESTS_HELP = "缓存请求次数 (按命中/未命中)";
+
+    private enum Type {
+        COUNTER("counter"), GAUGE("gauge"), HISTOGRAM("histogram");
+
+        final String text;
+
+        Type(String text) {
+            this.text = text;
+        }
+    }
+
+    /**
+     * 同一指标名下的全部标签组合
+     */
+    private static final class Family {
+        final String name;
+        final String help;
+        final Type type;
+        final Map<String, Object> children = new LinkedHashMap<>();
+        final List<Collector> collectors = new ArrayList<>();
+
+        Family(String name, String help, Type type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    public static final class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long amount) {
+            value.add(amount);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    public static final class Histogram {
+        private final double[] bounds;
+        private final LongAdder[] buckets;
+        private final LongAdder count = new LongAdder();
+        private final DoubleAdder sum = new DoubleAdder();
+
+        Histogram(double[] bounds) {
+            this.bounds = bounds.clone();
+            this.buckets = new LongAdder[bounds.length];
+            for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+        }
+
+        public void observe(double value) {
+            int i = Arrays.binarySearch(bounds, value);
+            if (i < 0) i = -i - 1;
+            if (i < buckets.length) buckets[i].increment();
+            count.increment();
+            sum.add(value);
+        }
+
+        public void observeNanos(long nanos) {
+            observe(nanos / 1e9);
+        }
+    }
+
+    /**
+     * 抓取时才生成样本的指标，用于标签集合动态变化的场景 (如每个 WebSocket 会话一条)
+     */
+    @FunctionalInterface
+    public interface Collector {
+        void collect(Sink sink);
+    }
+
+    @FunctionalInterface
+    public interface Sink {
+        void sample(double value, String... labels);
+    }
+
+    private record Sampled(DoubleSupplier supplier) {
+    }
+
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    public MetricsRegistry() {
+        long startMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+        gauge("process_start_time_seconds", "进程启动时间 (Unix 秒)", () -> startMillis / 1000.0);
+        gauge("process_uptime_seconds", "进程已运行时间",
+                () -> ManagementFactory.getRuntimeMXBean().getUptime() / 1000.0);
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        gauge("jvm_memory_used_bytes", "JVM 已用内存", () -> memory.getHeapMemoryUsage().getUsed(), "area", "heap");
+        gauge("jvm_memory_used_bytes", "JVM 已用内存", () -> memory.getNonHeapMemoryUsage().getUsed(), "area", "nonheap");
+        gauge("jvm_memory_max_bytes", "JVM 最大可用内存", () -> memory.getHeapMemoryUsage().getMax(), "area", "heap");
+        gauge("jvm_threads_live", "存活线程数", () -> ManagementFactory.getThreadMXBean().getThreadCount());
+        collector("jvm_gc_collection_seconds_total", "各垃圾收集器累计停顿时间", Type.COUNTER, sink -> {
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                sink.sample(gc.getCollectionTime() / 1000.0, "gc", gc.getName());
+            }
+        });
+    }
+
+    public synchronized Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, Type.COUNTER).children.computeIfAbsent(labelText(labels), k -> new Counter());
+    }
+
+    /**
+     * 由已有累计值提供的计数器 (值只增不减)
+     */
+    public synchronized void counter(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, Type.COUNTER).children.putIfAbsent(labelText(labels), new Sampled(value));
+    }
+
+    public synchronized void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, Type.GAUGE).children.putIfAbsent(labelText(labels), new Sampled(value));
+    }
+
+    public synchronized void gauges(String name, String help, Collector collector) {
+        collector(name, help, Type.GAUGE, collector);
+    }
+
+    public synchronized void counters(String name, String help, Collector collector) {
+        collector(name, help, Type.COUNTER, collector);
+    }
+
+    public synchronized Histogram histogram(String name, String help, double[] buckets, String... labels) {
+        return (Histogram) family(name, help, Type.HISTOGRAM).children
+                .computeIfAbsent(labelText(labels), k -> new Histogram(buckets));
+    }
+
+    private void collector(String name, String help, Type type, Collector collector) {
+        family(name, help, type).collectors.add(collector);
+    }
+
+    private Family family(String name, String help, Type type) {
+        Family family = families.computeIfAbsent(name, k -> new Family(name, help, type));
+        if (family.type != type) {
+            throw new IllegalArgumentException("指标 " + name + " 已注册为 " + family.type.text);
+        }
+        return family;
+    }
+
+    /**
+     * 当前全部指标的文本格式输出
+     */
+    public String scrape() {
+        // 注册可能与抓取并发，先在锁内复制结构，读取数值与回调在锁外进行
+        List<Family> snapshot;
+        Map<Family, List<Map.Entry<String, Object>>> children = new IdentityHashMap<>();
+        Map<Family, List<Collector>> collectors = new IdentityHashMap<>();
+        synchronized (this) {
+            snapshot = new ArrayList<>(families.values());
+            for (Family family : snapshot) {
+                children.put(family, new ArrayList<>(family.children.entrySet()));
+                collectors.put(family, new ArrayList<>(family.collectors));
+            }
+        }
+        StringBuilder out = new StringBuilder(8192);
+        for (Family family : snapshot) {
+            out.append("# HELP ").append(family.name).append(' ')
+                    .append(family.help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.type.text).append('\n');
+            for (Map.Entry<String, Object> child : children.get(family)) {
+                String labels = child.getKey();
+                Object metric = child.getValue();
+                if (metric instanceof Counter counter) {
+                    sample(out, family.name, labels, counter.get());
+                } else if (metric instanceof Sampled sampled) {
+                    sample(out, family.name, labels, sampled.supplier().getAsDouble());
+                } else if (metric instanceof Histogram histogram) {
+                    writeHistogram(out, family.name, labels, histogram);
+                }
+            }
+            for (Collector collector : collectors.get(family)) {
+                collector.collect((value, labels) -> sample(out, family.name, labelText(labels), value));
+            }
+        }
+        return out.toString();
+    }
+
+    private static void writeHistogram(StringBuilder out, String name, String labels, Histogram histogram) {
+        String prefix = labels.isEmpty() ? "" : labels + ",";
+        long cumulative = 0;
+        for (int i = 0; i < histogram.bounds.length; i++) {
+            cumulative += histogram.buckets[i].sum();
+            sample(out, name + "_bucket", prefix + "le=\"" + format(histogram.bounds[i]) + "\"", cumulative);
+        }
+        // 计数与分桶分别读取，并发写入时 +Inf 桶以 count 为准，保证不小于前面的桶
+        long count = Math.max(cumulative, histogram.count.sum());
+        sample(out, name + "_bucket", prefix + "le=\"+Inf\"", count);
+        sample(out, name + "_sum", labels, histogram.sum.sum());
+        sample(out, name + "_count", labels, count);
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, long value) {
+        out.append(name);
+        if (!labels.isEmpty()) out.append('{').append(labels).append('}');
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (!labels.isEmpty()) out.append('{').append(labels).append('}');
+        out.append(' ').append(format(value)).append('\n');
+    }
+
+    private static String format(double value) {
+        if (Double.isNaN(value)) return "NaN";
+        if (Double.isInfinite(value)) return value > 0 ? "+Inf" : "-Inf";
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) return Long.toString((long) value);
+        return Double.toString(value);
+    }
+
+    private static String labelText(String... labels) {
+        if (labels.length % 2 != 0) throw new IllegalArgumentException("标签须为名称、值成对");
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) text.append(',');
+            String value = labels[i + 1] != null ? labels[i + 1] : "";
+            text.append(labels[i]).append("=\"")
+                    .append(value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n")).append('"');
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,7 @@
+package com.brewery.digitaltwin.service;
+
+/**
+ * 工艺参数已修改并持久化，由 ParamStore 在新快照发布后同步发出
+ */
+public record ParamChangeEvent(ProductionParam previous, ProductionParam current) {
+}
@@ -0,0 +1,286 @@
+package com.brewery.digitaltwin.service;
+
+import com.brewery.digitaltwin.dto.RealtimeMessage;
+import com.brewery.digitaltwin.entity.ProcessParamChange;
+import com.brewery.digitaltwin.entity.ProcessParameter;
+import com.brewery.digitaltwin.repository.ProcessParamChangeRepository;
+import com.brewery.digitaltwin.repository.ProcessParameterRepository;
+import com.brewery.digitaltwin.websocket.RealtimeWebSocketHandler;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * 工艺参数存储 - 持久化、带版本、写时复制
+ *
+ * 参数加载为不可变快照并通过 volatile 引用发布，仿真 tick、规则引擎与 REST 读取都不加锁。
+ * 修改由 this 监视器串行化：校验上下限 → 同一事务内更新参数并追加变更记录 (全局版本 +1)
+ * → 复制出新快照替换旧快照 → 发出 ParamChangeEvent 并推送 param_change，
+ * 下一个仿真周期即按新设定值运行。变更记录按版本建索引，客户端可按 sinceVersion 续读。
+ *
+ * 集群中各节点共用一张变更表，本节点快照的版本可能落后：新版本号在事务内按库中最大版本 +1 计算；
+ * 两个节点同时写入同一版本时唯一约束拒绝后写入的一方，重新加载快照后以版本冲突报错，由调用方重试。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ParamStore {
+
+    public static final String KOJI_MOISTURE = "koji.moisture";
+    public static final String KOJI_ROOM_TEMPERATURE = "koji.room_temperature";
+    public static final String PIT_TEMPERATURE = "fermentation.pit_temperature";
+    public static final String PIT_MOISTURE = "fermentation.moisture";
+    public static final String STEAM_PRESSURE = "distillation.steam_pressure";
+    public static final String DISTILLATE_FLOW = "distillation.flow_rate";
+    public static final String PIT_CONTROL_KP = "control.pit_temperature.kp";
+    public static final String PIT_CONTROL_KI = "control.pit_temperature.ki";
+    public static final String PIT_CONTROL_KD = "control.pit_temperature.kd";
+
+    private final ProcessParameterRepository parameterRepository;
+    private final ProcessParamChangeRepository changeRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final RealtimeWebSocketHandler webSocketHandler;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * 修改与集群中其他节点的修改冲突 (同一版本号已被占用)，客户端刷新后重试
+     */
+    public static class VersionConflictException extends RuntimeException {
+        public VersionConflictException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * 参数快照：全局版本、按工序分组的参数列表及按 ID / code 的索引，创建后不再修改
+     */
+    public record Snapshot(long version, List<ProductionParam> params,
+                           Map<Long, ProductionParam> byId, Map<String, ProductionParam> byCode) {
+
+        static Snapshot of(long version, Collection<ProductionParam> params) {
+            List<ProductionParam> list = new ArrayList<>(params);
+            list.sort(Comparator.comparing(ProductionParam::getId));
+            Map<Long, ProductionParam> byId = new LinkedHashMap<>();
+            Map<String, ProductionParam> byCode = new HashMap<>();
+            for (ProductionParam p : list) {
+                byId.put(p.getId(), p);
+                byCode.put(p.getCode(), p);
+            }
+            return new Snapshot(version, Collections.unmodifiableList(list),
+                    Collections.unmodifiableMap(byId), Collections.unmodifiableMap(byCode));
+        }
+
+        Snapshot with(ProductionParam updated) {
+            Map<Long, ProductionParam> copy = new LinkedHashMap<>(byId);
+            copy.put(updated.getId(), updated);
+            return of(updated.getVersion(), copy.values());
+        }
+
+        /**
+         * 设定值，参数不存在时返回 fallback
+         */
+        public double value(String code, double fallback) {
+            ProductionParam p = byCode.get(code);
+            return p != null && p.getValue() != null ? p.getValue() : fallback;
+        }
+
+        public Map<String, List<ProductionParam>> byProcess() {
+            Map<String, List<ProductionParam>> result = new LinkedHashMap<>();
+            for (ProductionParam p : params) {
+                result.computeIfAbsent(p.getProcessName(), key -> new ArrayList<>()).add(p);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 当前快照，无锁读取；首次访问时从数据库加载
+     */
+    public Snapshot snapshot() {
+        Snapshot s = snapshot;
+        return s != null ? s : load();
+    }
+
+    public double value(String code, double fallback) {
+        return snapshot().value(code, fallback);
+    }
+
+    /**
+     * 修改设定值
+     *
+     * @return 参数不存在 (含已被其他节点删除) 时返回 empty；超出上下限抛出 IllegalArgumentException，
+     *         与其他节点的修改冲突时抛出 VersionConflictException
+     */
+    public Optional<ProductionParam> update(Long id, double value, String changedBy) {
+        ProductionParam previous;
+        ProductionParam current;
+        synchronized (this) {
+            Snapshot s = snapshot();
+            previous = s.byId().get(id);
+            if (previous == null) return Optional.empty();
+            if (Double.isNaN(value)
+                    || (previous.getMin() != null && value < previous.getMin())
+                    || (previous.getMax() != null && value > previous.getMax())) {
+                throw new IllegalArgumentException(String.format("参数超出范围 [%s, %s] %s",
+                        previous.getMin(), previous.getMax(), previous.getUnit()));
+            }
+            if (previous.getValue() != null && previous.getValue() == value) return Optional.of(previous);
+
+            try {
+                current = transactionTemplate.execute(tx -> persist(previous, value, s.version(), changedBy));
+            } catch (DataIntegrityViolationException e) {
+                reloadFromDatabase();
+                throw new VersionConflictException("参数版本冲突 (其他节点同时修改了参数)，请刷新后重试");
+            }
+            if (current == null) {
+                reloadFromDatabase();
+                return Optional.empty();
+            }
+            // 其他节点的修改由其转发的 param_change 触发 reloadFromDatabase 补齐
+            snapshot = s.with(current);
+        }
+        log.info("工艺参数 {} 修改: {} -> {} (版本 {}, {})",
+                current.getCode(), previous.getValue(), current.getValue(), current.getVersion(), changedBy);
+        eventPublisher.publishEvent(new ParamChangeEvent(previous, current));
+        webSocketHandler.publish(new RealtimeMessage("param_change", toMessage(previous, current, changedBy)));
+        return Optional.of(current);
+    }
+
+    /**
+     * 集群中其他节点修改了参数：重新从数据库加载快照，对值发生变化的参数同样发出 ParamChangeEvent
+     * (实时消息已由修改节点转发，这里不再推送)
+     */
+    public void reloadFromDatabase() {
+        Snapshot previous;
+        Snapshot current;
+        synchronized (this) {
+            previous = snapshot;
+            snapshot = null;
+            current = load();
+        }
+        if (previous == null) return;
+        for (ProductionParam param : current.params()) {
+            ProductionParam old = previous.byId().get(param.getId());
+            if (old != null && !Objects.equals(old.getValue(), param.getValue())) {
+                eventPublisher.publishEvent(new ParamChangeEvent(old, param));
+            }
+        }
+    }
+
+    /**
+     * 单个参数的修改历史，按版本倒序
+     */
+    public List<ProcessParamChange> getHistory(Long paramId, int limit) {
+        return changeRepository.findByParamIdOrderByVersionDesc(paramId, PageRequest.of(0, limit));
+    }
+
+    /**
+     * 变更流：版本大于 sinceVersion 的全部修改，按版本升序
+     */
+    public List<ProcessParamChange> getChanges(long sinceVersion, int limit) {
+        return changeRepository.findByVersionGreaterThanOrderByVersion(sinceVersion, PageRequest.of(0, limit));
+    }
+
+    /**
+     * 更新参数并追加变更记录；版本取库中最大版本与本地快照版本的较大者 +1，旧值取库中的当前值。
+     * 参数已不在库中时返回 null
+     */
+    private ProductionParam persist(ProductionParam previous, double value, long snapshotVersion, String changedBy) {
+        ProcessParameter entity = parameterRepository.findById(previous.getId()).orElse(null);
+        if (entity == null) return null;
+        long version = Math.max(snapshotVersion, changeRepository.findMaxVersion()) + 1;
+        Double oldValue = entity.getValue();
+        ProductionParam current = previous.withValue(value, version, LocalDateTime.now());
+        entity.setValue(current.getValue());
+        entity.setVersion(current.getVersion());
+        entity.setUpdatedBy(changedBy);
+        entity.setUpdatedAt(current.getUpdatedAt());
+        parameterRepository.save(entity);
+
+        ProcessParamChange change = new ProcessParamChange();
+        change.setVersion(current.getVersion());
+        change.setParamId(current.getId());
+        change.setCode(current.getCode());
+        change.setOldValue(oldValue);
+        change.setNewValue(current.getValue());
+        change.setChangedBy(changedBy);
+        change.setChangedAt(current.getUpdatedAt());
+        changeRepository.saveAndFlush(change);
+        return current;
+    }
+
+    private synchronized Snapshot load() {
+        if (snapshot != null) return snapshot;
+        List<ProcessParameter> entities = transactionTemplate.execute(tx -> {
+            initDefaults();
+            return parameterRepository.findAll();
+        });
+        long version = 0;
+        List<ProductionParam> params = new ArrayList<>();
+        for (ProcessParameter entity : entities) {
+            params.add(ProductionParam.of(entity));
+            version = Math.max(version, entity.getVersion());
+        }
+        snapshot = Snapshot.of(version, params);
+        log.info("工艺参数已加载: {} 项, 版本 {}", params.size(), version);
+        return snapshot;
+    }
+
+    /**
+     * 写入缺失的默认参数，已有参数保持不变，版本升级新增的参数也会补齐
+     */
+    private void initDefaults() {
+        Set<String> existing = new HashSet<>();
+        parameterRepository.findAll().forEach(p -> existing.add(p.getCode()));
+        List<ProcessParameter> defaults = List.of(
+                param(KOJI_MOISTURE, "制曲", "曲块水分", 12.0, "%", 8.0, 16.0),
+                param(KOJI_ROOM_TEMPERATURE, "制曲", "曲房温度", 28.0, "℃", 20.0, 35.0),
+                param(PIT_TEMPERATURE, "发酵", "窖池温度", 30.0, "℃", 25.0, 40.0),
+                param(PIT_MOISTURE, "发酵", "入窖水分", 55.0, "%", 45.0, 60.0),
+                param(STEAM_PRESSURE, "蒸馏", "蒸汽压力", 0.5, "MPa", 0.3, 0.8),
+                param(DISTILLATE_FLOW, "蒸馏", "出酒速度", 2.0, "L/min", 1.0, 3.0),
+                param(PIT_CONTROL_KP, "窖温控制", "比例增益 Kp", 0.2, "1/℃", 0.0, 2.0),
+                param(PIT_CONTROL_KI, "窖温控制", "积分增益 Ki", 0.002, "1/(℃·s)", 0.0, 0.05),
+                param(PIT_CONTROL_KD, "窖温控制", "微分增益 Kd", 0.0, "s/℃", 0.0, 120.0));
+        for (ProcessParameter p : defaults) {
+            if (!existing.contains(p.getCode())) parameterRepository.save(p);
+        }
+    }
+
+    private ProcessParameter param(String code, String processName, String name, double value, String unit,
+                                   double min, double max) {
+        ProcessParameter p = new ProcessParameter();
+        p.setCode(code);
+        p.setProcessName(processName);
+        p.setName(name);
+        p.setValue(value);
+        p.setUnit(unit);
+        p.setMinValue(min);
+        p.setMaxValue(max);
+        p.setUpdatedBy("system");
+        return p;
+    }
+
+    private static Map<String, Object> toMessage(ProductionParam previous, ProductionParam current, String changedBy) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("version", current.getVersion());
+        data.put("paramId", current.getId());
+        data.put("code", current.getCode());
+        data.put("processName", current.getProcessName());
+        data.put("name", current.getName());
+        data.put("oldValue", previous.getValue());
+        data.put("value", current.getValue());
+        data.put("unit", current.getUnit());
+        data.put("changedBy", changedBy);
+        return data;
+    }
+}
@@ -0,0 +1,181 @@
+package com.brewery.digitaltwin.service;
+
+import java.util.Arrays;
+
+/**
+ * 窖池温度闭环控制 - 批量 PID 控制器 + 一阶热模型
+ *
+ * 每个窖池一组状态，按列存放在 double 数组中，step 对全部窖池做一次紧凑循环，无对象分配。
+ * 被控对象：τ·dT/dt = (E − T) + g_v·v·(T_air − T) + g_c·c·(T_water − T)，
+ * E 为不加控制时发酵放热决定的平衡温度。控制器输出 u ∈ [0, 1] 分程驱动执行器：
+ * u ∈ [0, 0.5] 先开通风 v = 2u，u ∈ [0.5, 1] 再加冷却水 c = 2u − 1 (通风保持全开)。
+ * PID 的微分作用于测量值，避免设定值阶跃冲击；输出饱和且误差继续推向饱和方向时停止积分 (抗积分饱和)。
+ * 没有加热执行器，跟踪误差以可达目标 min(E, 设定值) 计算，自然发酵温度低于设定值的窖池不计偏差。
+ *
+ * 实例不是线程安全的，由调用方串行化。
+ */
+public final class PitControlLoop {
+
+    /**
+     * 被控对象参数
+     *
+     * @param timeConstant    热时间常数 τ (秒)
+     * @param coolingGain     满负荷冷却水换热相对自然散热的倍数 g_c
+     * @param ventilationGain 满负荷通风换热相对自然散热的倍数 g_v
+     * @param waterTemp       冷却水温度 (℃)
+     * @param airTemp         通风空气温度 (℃)
+     */
+    public record Plant(double timeConstant, double coolingGain, double ventilationGain,
+                        double waterTemp, double airTemp) {
+    }
+
+    /**
+     * PID 增益，误差为 测量值 − 设定值 (温度高于设定值时加大冷却)
+     */
+    public record Gains(double kp, double ki, double kd) {
+    }
+
+    /**
+     * 汇总指标：跟踪误差为当前值 (maxUndershoot 为低于可达目标的最大幅度)，IAE 与控制量为累计量按窖池平均
+     */
+    public record Stats(int pits, double meanTemperature, double maxTemperature, double meanAbsError,
+                        double rmsError, double maxAbsError, double maxUndershoot, double meanOutput,
+                        int saturated, double meanIae, double meanEffort, double elapsedSeconds) {
+    }
+
+    private final Plant plant;
+    private int size;
+    private double[] temperature = new double[0];
+    private double[] lastTemperature = new double[0];
+    private double[] integral = new double[0];
+    private double[] output = new double[0];
+    private double[] error = new double[0];    // 跟踪误差 T − min(E, 设定值)
+    private double[] iae = new double[0];      // ∫|e|dt (℃·s)
+    private double[] effort = new double[0];   // ∫u dt (s)
+    private double elapsed;
+
+    public PitControlLoop(Plant plant) {
+        this.plant = plant;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 调整窖池数量，新增窖池从平衡温度开始，控制器状态清零
+     */
+    public void resize(int n, double[] equilibrium) {
+        int old = size;
+        if (n > temperature.length) {
+            int capacity = Math.max(n, temperature.length * 2);
+            temperature = Arrays.copyOf(temperature, capacity);
+            lastTemperature = Arrays.copyOf(lastTemperature, capacity);
+            integral = Arrays.copyOf(integral, capacity);
+            output = Arrays.copyOf(output, capacity);
+            error = Arrays.copyOf(error, capacity);
+            iae = Arrays.copyOf(iae, capacity);
+            effort = Arrays.copyOf(effort, capacity);
+        }
+        size = n;
+        for (int i = old; i < n; i++) reset(i, equilibrium[i]);
+    }
+
+    public void reset(int i, double temp) {
+        temperature[i] = temp;
+        lastTemperature[i] = temp;
+        integral[i] = 0;
+        output[i] = 0;
+        error[i] = 0;
+        iae[i] = 0;
+        effort[i] = 0;
+    }
+
+    /**
+     * 所有窖池前进 dt 秒：按当前测量值计算控制量，再用显式欧拉积分被控对象
+     *
+     * @param equilibrium 各窖池不加控制时的平衡温度，长度不小于 size
+     */
+    public void step(double[] equilibrium, double setpoint, Gains gains, double dt) {
+        if (dt <= 0) return;
+        final double kp = gains.kp(), ki = gains.ki(), kdRate = gains.kd() / dt;
+        final double rate = dt / plant.timeConstant();
+        final double gc = plant.coolingGain(), gv = plant.ventilationGain();
+        final double tw = plant.waterTemp(), ta = plant.airTemp();
+        final double[] temp = temperature, last = lastTemperature, integ = integral;
+        final double[] out = output, err = error, absInt = iae, eff = effort;
+        for (int i = 0; i < size; i++) {
+            double t = temp[i];
+            double e = t - setpoint;
+            double tracking = t - Math.min(equilibrium[i], setpoint);
+            double held = kp * e + ki * integ[i] + kdRate * (t - last[i]);
+            double u = held + ki * e * dt;
+            // 饱和方向上不积分，用非短路运算让 JIT 生成条件传送而不是分支
+            boolean hold = (u > 1 & e > 0) | (u < 0 & e < 0);
+            double in = hold ? integ[i] : integ[i] + e * dt;
+            u = Math.min(1, Math.max(0, hold ? held : u));
+            double vent = Math.min(1, 2 * u);
+            double cool = Math.max(0, 2 * u - 1);
+            double dT = (equilibrium[i] - t) + gv * vent * (ta - t) + gc * cool * (tw - t);
+
+            integ[i] = in;
+            out[i] = u;
+            err[i] = tracking;
+            absInt[i] += Math.abs(tracking) * dt;
+            eff[i] += u * dt;
+            last[i] = t;
+            temp[i] = t + dT * rate;
+        }
+        elapsed += dt;
+    }
+
+    public double temperature(int i) {
+        return temperature[i];
+    }
+
+    public double output(int i) {
+        return output[i];
+    }
+
+    public double ventilation(int i) {
+        return Math.min(1, 2 * output[i]);
+    }
+
+    public double cooling(int i) {
+        return Math.max(0, 2 * output[i] - 1);
+    }
+
+    public double error(int i) {
+        return error[i];
+    }
+
+    public double iae(int i) {
+        return iae[i];
+    }
+
+    public double effort(int i) {
+        return effort[i];
+    }
+
+    public Stats stats() {
+        if (size == 0) return new Stats(0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, elapsed);
+        double tempSum = 0, tempMax = Double.NEGATIVE_INFINITY, absSum = 0, sqSum = 0, absMax = 0, under = 0;
+        double outSum = 0, iaeSum = 0, effortSum = 0;
+        int saturated = 0;
+        for (int i = 0; i < size; i++) {
+            double e = error[i];
+            tempSum += temperature[i];
+            tempMax = Math.max(tempMax, temperature[i]);
+            absSum += Math.abs(e);
+            sqSum += e * e;
+            absMax = Math.max(absMax, Math.abs(e));
+            under = Math.max(under, -e);
+            outSum += output[i];
+            if (output[i] >= 1) saturated++;
+            iaeSum += iae[i];
+            effortSum += effort[i];
+        }
+        return new Stats(size, tempSum / size, tempMax, absSum / size, Math.sqrt(sqSum / size), absMax, under,
+                outSum / size, saturated, iaeSum / size, effortSum / size, elapsed);
+    }
+}
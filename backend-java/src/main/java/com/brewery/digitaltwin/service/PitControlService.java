@@ -0,0 +1,214 @@
+package com.brewery.digitaltwin.service;
+
+import com.brewery.digitaltwin.entity.Pit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * 窖池温度虚拟控制层
+ *
+ * 仿真每个周期调用 step：读取参数快照中的窖池温度设定值与 PID 增益 (修改后下一周期生效)，
+ * 对全部窖池批量推进 PitControlLoop。closed-loop 开启时窖池温度读数取自受控模型，
+ * 否则控制器只在影子模型上运行，读数沿用开环模型。simulate 用候选增益在独立实例上离线仿真，
+ * 便于调参后再下发到实际 PLC。
+ */
+@Slf4j
+@Service
+public class PitControlService {
+
+    private final ParamStore paramStore;
+    private final LiveStateService liveStateService;
+    private final boolean closedLoop;
+    private final PitControlLoop.Plant plant;
+    private final PitControlLoop loop;
+    private long[] pitIds = new long[0];
+    private double[] equilibrium = new double[0];
+    private int pitCount;
+    private final Map<Long, Integer> indexById = new HashMap<>();
+    private final long maxSimulatePitSteps;
+    private long lastStepMillis;
+    private long stepNanos;
+
+    public PitControlService(ParamStore paramStore,
+                             LiveStateService liveStateService,
+                             @Value("${app.control.closed-loop:false}") boolean closedLoop,
+                             @Value("${app.control.time-constant:600}") double timeConstant,
+                             @Value("${app.control.cooling-gain:3.0}") double coolingGain,
+                             @Value("${app.control.ventilation-gain:1.0}") double ventilationGain,
+                             @Value("${app.control.water-temperature:15}") double waterTemp,
+                             @Value("${app.control.air-temperature:22}") double airTemp,
+                             @Value("${app.control.max-simulate-pit-steps:100000000}") long maxSimulatePitSteps) {
+        this.paramStore = paramStore;
+        this.liveStateService = liveStateService;
+        this.closedLoop = closedLoop;
+        this.plant = new PitControlLoop.Plant(timeConstant, coolingGain, ventilationGain, waterTemp, airTemp);
+        this.loop = new PitControlLoop(plant);
+        this.maxSimulatePitSteps = maxSimulatePitSteps;
+    }
+
+    /**
+     * 不加控制时窖池的发酵温度曲线 (与开环仿真模型一致)，作为被控对象的平衡温度
+     */
+    public static double naturalTemperature(Pit pit) {
+        int day = pit.getFermentationDay() != null ? pit.getFermentationDay() : 0;
+        return 25 + Math.sin(day * 0.1) * 10;
+    }
+
+    public boolean isClosedLoop() {
+        return closedLoop;
+    }
+
+    /**
+     * 推进一个仿真周期，pits 的顺序即 temperatureAt 的下标
+     */
+    public synchronized void step(List<Pit> pits, long nowMillis) {
+        long start = System.nanoTime();
+        int n = pits.size();
+        if (equilibrium.length < n) {
+            equilibrium = Arrays.copyOf(equilibrium, n);
+            pitIds = Arrays.copyOf(pitIds, n);
+        }
+        for (int i = 0; i < n; i++) equilibrium[i] = naturalTemperature(pits.get(i));
+        int old = loop.size();
+        loop.resize(n, equilibrium);
+        boolean changed = n != pitCount;
+        for (int i = 0; i < n; i++) {
+            long id = pits.get(i).getId();
+            if (pitIds[i] != id) {
+                if (i < old) loop.reset(i, equilibrium[i]);
+                pitIds[i] = id;
+                changed = true;
+            }
+        }
+        if (changed) {
+            // 窖池增删或换位后整体重建，删除的窖池不再指向其他窖池的槽位
+            indexById.clear();
+            for (int i = 0; i < n; i++) indexById.put(pitIds[i], i);
+            pitCount = n;
+        }
+
+        double dt = lastStepMillis > 0 ? Math.min(60.0, (nowMillis - lastStepMillis) / 1000.0) : 0;
+        lastStepMillis = nowMillis;
+        ParamStore.Snapshot params = paramStore.snapshot();
+        loop.step(equilibrium, params.value(ParamStore.PIT_TEMPERATURE, 30.0), gains(params), dt);
+        stepNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * 受控模型中第 i 个窖池的温度
+     */
+    public synchronized double temperatureAt(int i) {
+        return loop.temperature(i);
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        ParamStore.Snapshot params = paramStore.snapshot();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("closedLoop", closedLoop);
+        result.put("setpoint", params.value(ParamStore.PIT_TEMPERATURE, 30.0));
+        result.put("gains", gains(params));
+        result.put("plant", plant);
+        result.put("stats", loop.stats());
+        result.put("stepMicros", stepNanos / 1000.0);
+        return result;
+    }
+
+    public synchronized Optional<Map<String, Object>> getPitState(Long pitId) {
+        Integer i = indexById.get(pitId);
+        if (i == null) return Optional.empty();
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("pitId", pitId);
+        state.put("temperature", loop.temperature(i));
+        state.put("naturalTemperature", equilibrium[i]);
+        state.put("error", loop.error(i));
+        state.put("output", loop.output(i));
+        state.put("ventilation", loop.ventilation(i));
+        state.put("cooling", loop.cooling(i));
+        state.put("iae", loop.iae(i));
+        state.put("effortSeconds", loop.effort(i));
+        return Optional.of(state);
+    }
+
+    /**
+     * 离线仿真：pits 个窖池 (平衡温度循环取自当前窖池) 从平衡温度出发，按给定增益运行 hours 小时
+     *
+     * @param stepSeconds 积分步长 (秒)
+     * @param kp          kp/ki/kd 为空时取当前参数
+     * @param setpoint    为空取当前设定值
+     */
+    public Map<String, Object> simulate(int pits, double hours, double stepSeconds,
+                                        Double kp, Double ki, Double kd, Double setpoint) {
+        List<Pit> template = liveStateService.getPits();
+        if (template.isEmpty()) throw new IllegalArgumentException("没有窖池");
+        if (pits <= 0 || pits > 100_000) throw new IllegalArgumentException("pits 须在 1..100000 之间");
+        if (stepSeconds <= 0 || stepSeconds > plant.timeConstant() / 10) {
+            throw new IllegalArgumentException("步长须在 (0, " + plant.timeConstant() / 10 + "] 秒之间");
+        }
+        long steps = (long) Math.ceil(hours * 3600 / stepSeconds);
+        if (steps <= 0) throw new IllegalArgumentException("hours 须大于 0");
+        if (steps > maxSimulatePitSteps / pits) {
+            throw new IllegalArgumentException("仿真规模过大: 窖池数 × 步数 " + pits + " × " + steps
+                    + " 超过上限 " + maxSimulatePitSteps + "，请减少窖池数、缩短时长或增大步长");
+        }
+
+        ParamStore.Snapshot params = paramStore.snapshot();
+        PitControlLoop.Gains current = gains(params);
+        PitControlLoop.Gains candidate = new PitControlLoop.Gains(
+                kp != null ? kp : current.kp(), ki != null ? ki : current.ki(), kd != null ? kd : current.kd());
+        double target = setpoint != null ? setpoint : params.value(ParamStore.PIT_TEMPERATURE, 30.0);
+
+        double[] eq = new double[pits];
+        for (int i = 0; i < pits; i++) eq[i] = naturalTemperature(template.get(i % template.size()));
+        PitControlLoop sim = new PitControlLoop(plant);
+        sim.resize(pits, eq);
+
+        // 轨迹最多约 200 个点；记录全程最大下冲 (低于可达目标) 与全部窖池跟踪误差进入 ±0.5℃ 的时间
+        long sampleEvery = Math.max(1, steps / 200);
+        List<Map<String, Object>> trajectory = new ArrayList<>();
+        double maxUndershoot = 0;
+        double settledAt = -1;
+        long start = System.nanoTime();
+        for (long s = 0; s < steps; s++) {
+            sim.step(eq, target, candidate, stepSeconds);
+            PitControlLoop.Stats st = (s % sampleEvery == 0 || s == steps - 1) ? sim.stats() : null;
+            if (st == null) continue;
+            maxUndershoot = Math.max(maxUndershoot, st.maxUndershoot());
+            if (st.maxAbsError() > 0.5) {
+                settledAt = -1;
+            } else if (settledAt < 0) {
+                settledAt = st.elapsedSeconds();
+            }
+            Map<String, Object> point = new LinkedHashMap<>();
+            point.put("seconds", st.elapsedSeconds());
+            point.put("meanTemperature", st.meanTemperature());
+            point.put("maxTemperature", st.maxTemperature());
+            point.put("rmsError", st.rmsError());
+            point.put("meanOutput", st.meanOutput());
+            trajectory.add(point);
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("gains", candidate);
+        result.put("setpoint", target);
+        result.put("pits", pits);
+        result.put("steps", steps);
+        result.put("final", sim.stats());
+        result.put("maxUndershoot", maxUndershoot);
+        result.put("settlingSeconds", settledAt >= 0 ? settledAt : null);
+        result.put("computeMillis", elapsedNanos / 1e6);
+        result.put("nanosPerPitStep", (double) elapsedNanos / (steps * pits));
+        result.put("trajectory", trajectory);
+        return result;
+    }
+
+    private static PitControlLoop.Gains gains(ParamStore.Snapshot params) {
+        return new PitControlLoop.Gains(
+                params.value(ParamStore.PIT_CONTROL_KP, 0.2),
+                params.value(ParamStore.PIT_CONTROL_KI, 0.002),
+                params.value(ParamStore.PIT_CONTROL_KD, 0.0));
+    }
+}
@@ -17,6 +17,8 @@ public class PitService {
     
     private final PitRepository pitRepository;
     private final PitSensorDataRepository sensorDataRepository;
+    private final LiveStateService liveStateService;
+    private final EntityStatsService statsService;
     
     public List<Pit> getAllPits() {
         return pitRepository.findAll();
@@ -40,7 +42,10 @@ public class PitService {
     
     @Transactional
     public Pit createPit(Pit pit) {
-        return pitRepository.save(pit);
+        Pit saved = pitRepository.save(pit);
+        liveStateService.refresh(saved);
+        statsService.invalidateAfterCommit();
+        return saved;
     }
     
     @Transactional
@@ -50,7 +55,10 @@ public class PitService {
             if (pitData.getPitAge() != null) pit.setPitAge(pitData.getPitAge());
             if (pitData.getGrapeType() != null) pit.setGrapeType(pitData.getGrapeType());
             if (pitData.getFermentationDay() != null) pit.setFermentationDay(pitData.getFermentationDay());
-            return pitRepository.save(pit);
+            Pit saved = pitRepository.save(pit);
+            liveStateService.refresh(saved);
+            statsService.invalidateAfterCommit();
+            return saved;
         });
     }
     
@@ -1,24 +1,33 @@
 package com.brewery.digitaltwin.service;
 
-import lombok.Data;
+import com.brewery.digitaltwin.entity.ProcessParameter;
+import lombok.Value;
 
-@Data
+import java.time.LocalDateTime;
+
+/**
+ * 工艺参数的不可变视图，属于 ParamStore 快照，读取方可以无锁共享
+ */
+@Value
 public class ProductionParam {
-    private Long id;
-    private String processName;
-    private String name;
-    private Double value;
-    private String unit;
-    private Double min;
-    private Double max;
+    Long id;
+    String code;
+    String processName;
+    String name;
+    Double value;
+    String unit;
+    Double min;
+    Double max;
+    long version;
+    LocalDateTime updatedAt;
+
+    static ProductionParam of(ProcessParameter entity) {
+        return new ProductionParam(entity.getId(), entity.getCode(), entity.getProcessName(), entity.getName(),
+                entity.getValue(), entity.getUnit(), entity.getMinValue(), entity.getMaxValue(),
+                entity.getVersion(), entity.getUpdatedAt());
+    }
 
-    public ProductionParam(Long id, String processName, String name, Double value, String unit, Double min, Double max) {
-        this.id = id;
-        this.processName = processName;
-        this.name = name;
-        this.value = value;
-        this.unit = unit;
-        this.min = min;
-        this.max = max;
+    ProductionParam withValue(double newValue, long newVersion, LocalDateTime time) {
+        return new ProductionParam(id, code, processName, name, newValue, unit, min, max, newVersion, time);
     }
 }
@@ -13,15 +13,15 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 @RequiredArgsConstructor
 public class ProductionService {
     
     private final ProductionBatchRepository batchRepository;
-    private final List<ProductionParam> processParams = new ArrayList<>();
-    private final AtomicLong paramId = new AtomicLong(1);
+    private final LineageService lineageService;
+    private final ParamStore paramStore;
+    private final TwinEventLog eventLog;
     
     public List<ProductionBatch> getAllBatches() {
         return batchRepository.findAll();
@@ -79,43 +79,18 @@ public class ProductionService {
     }
 
     public Map<String, List<ProductionParam>> getProcessParams() {
-        ensureParams();
-        Map<String, List<ProductionParam>> result = new HashMap<>();
-        for (ProductionParam param : processParams) {
-            result.computeIfAbsent(param.getProcessName(), key -> new ArrayList<>()).add(param);
-        }
-        return result;
-    }
-
-    @Transactional
-    public Optional<ProductionParam> updateParam(Long id, Double value) {
-        ensureParams();
-        for (ProductionParam param : processParams) {
-            if (param.getId().equals(id)) {
-                param.setValue(value);
-                return Optional.of(param);
-            }
-        }
-        return Optional.empty();
-    }
-
-    private void ensureParams() {
-        if (!processParams.isEmpty()) return;
-        processParams.add(new ProductionParam(nextId(), "制曲", "曲块水分", 12.0, "%", 8.0, 16.0));
-        processParams.add(new ProductionParam(nextId(), "制曲", "曲房温度", 28.0, "℃", 20.0, 35.0));
-        processParams.add(new ProductionParam(nextId(), "发酵", "窖池温度", 30.0, "℃", 25.0, 40.0));
-        processParams.add(new ProductionParam(nextId(), "发酵", "入窖水分", 55.0, "%", 45.0, 60.0));
-        processParams.add(new ProductionParam(nextId(), "蒸馏", "蒸汽压力", 0.5, "MPa", 0.3, 0.8));
-        processParams.add(new ProductionParam(nextId(), "蒸馏", "出酒速度", 2.0, "L/min", 1.0, 3.0));
+        return paramStore.snapshot().byProcess();
     }
 
-    private long nextId() {
-        return paramId.getAndIncrement();
+    public Optional<ProductionParam> updateParam(Long id, Double value, String changedBy) {
+        return paramStore.update(id, value, changedBy);
     }
     
     @Transactional
     public ProductionBatch createBatch(ProductionBatch batch) {
-        return batchRepository.save(batch);
+        ProductionBatch saved = batchRepository.save(batch);
+        eventLog.batchStatusAfterCommit(saved.getId(), saved.getStatus());
+        return saved;
     }
     
     @Transactional
@@ -123,10 +98,14 @@ public class ProductionService {
         return batchRepository.findById(id).map(batch -> {
             if (batchData.getProductType() != null) batch.setProductType(batchData.getProductType());
             if (batchData.getTargetVolume() != null) batch.setTargetVolume(batchData.getTargetVolume());
+            if (batchData.getGrainType() != null) batch.setGrainType(batchData.getGrainType());
+            if (batchData.getMinPitAge() != null) batch.setMinPitAge(batchData.getMinPitAge());
             if (batchData.getActualVolume() != null) batch.setActualVolume(batchData.getActualVolume());
             if (batchData.getQualityScore() != null) batch.setQualityScore(batchData.getQualityScore());
             if (batchData.getStatus() != null) batch.setStatus(batchData.getStatus());
-            return batchRepository.save(batch);
+            ProductionBatch saved = batchRepository.save(batch);
+            eventLog.batchStatusAfterCommit(saved.getId(), saved.getStatus());
+            return saved;
         });
     }
     
@@ -135,7 +114,9 @@ public class ProductionService {
         return batchRepository.findById(id).map(batch -> {
             batch.setStatus("in_progress");
             batch.setStartDate(LocalDateTime.now());
-            return batchRepository.save(batch);
+            ProductionBatch saved = batchRepository.save(batch);
+            eventLog.batchStatusAfterCommit(saved.getId(), saved.getStatus());
+            return saved;
         });
     }
     
@@ -146,7 +127,10 @@ public class ProductionService {
             batch.setEndDate(LocalDateTime.now());
             batch.setActualVolume(actualVolume);
             batch.setQualityScore(qualityScore);
-            return batchRepository.save(batch);
+            ProductionBatch saved = batchRepository.save(batch);
+            eventLog.batchStatusAfterCommit(saved.getId(), saved.getStatus());
+            lineageService.summarize(saved);
+            return saved;
         });
     }
 }
@@ -0,0 +1,35 @@
+package com.brewery.digitaltwin.service;
+
+import com.brewery.digitaltwin.repository.AlarmRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 实时快照服务 - 汇总客户端连接时需要的完整孪生状态
+ * (热力图、仪表盘统计、活跃告警)，替代前端重连后的多次 REST 拉取
+ */
+@Service
+@RequiredArgsConstructor
+public class RealtimeSnapshotService {
+    
+    private final DashboardService dashboardService;
+    private final AlarmRepository alarmRepository;
+    
+    @Value("${app.alarm.list-limit:200}")
+    private int alarmLimit;
+    
+    public Map<String, Object> capture() {
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("heatmap", dashboardService.getHeatmap());
+        snapshot.put("stats", dashboardService.getStats());
+        snapshot.put("alarms", alarmRepository.findByStatus("active",
+                PageRequest.of(0, alarmLimit, Sort.by(Sort.Order.asc("status"), Sort.Order.desc("createdAt"), Sort.Order.desc("id")))));
+        return snapshot;
+    }
+}
@@ -0,0 +1,394 @@
+package com.brewery.digitaltwin.service;
+
+import com.brewery.digitaltwin.entity.BatchPitAssignment;
+import com.brewery.digitaltwin.entity.Device;
+import com.brewery.digitaltwin.entity.Pit;
+import com.brewery.digitaltwin.entity.ProductionBatch;
+import com.brewery.digitaltwin.repository.BatchPitAssignmentRepository;
+import com.brewery.digitaltwin.repository.ProductionBatchRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批次排产
+ *
+ * 从当前状态构造 BatchScheduler 问题：待排 (planning) 批次按目标产量折算所需窖池数；
+ * 可用窖池排除维护中、仍有批次在发酵、发酵周期内保养到期的窖池；区域产能按区域内可用的
+ * 上甑/输送设备数折算；窖池预测质量为该窖池历史曲线质量评分与按窖龄先验的收缩平均。
+ * 最新计划保存在内存中，待排批次变化时以上一版计划热启动增量重排，确认后由 apply 下发
+ * (批次开工并记录入窖)。
+ */
+@Slf4j
+@Service
+public class SchedulingService {
+
+    private static final String QUALITY_SQL =
+            "SELECT pit_id, COUNT(*), AVG(quality_score) FROM fermentation_curves " +
+            "WHERE pit_id IS NOT NULL AND quality_score IS NOT NULL GROUP BY pit_id";
+    private static final double PRIOR_WEIGHT = 3.0;  // 先验相当于几条历史曲线
+
+    private final ProductionBatchRepository batchRepository;
+    private final BatchPitAssignmentRepository assignmentRepository;
+    private final LiveStateService liveStateService;
+    private final ProductionService productionService;
+    private final LineageService lineageService;
+    private final JdbcTemplate jdbcTemplate;
+    private final ClusterService clusterService;
+    private final boolean auto;
+    private final long budgetMillis;
+    private final long maxBudgetMillis;
+    private final int threads;
+    private final ExecutorService searchPool;
+    private final double pitCapacity;
+    private final int pitsPerDevice;
+    private final Set<String> capacityDeviceTypes;
+    private final int fermentationDays;
+    private final int maintenanceIntervalDays;
+    private final double spreadPenalty;
+
+    private volatile CurrentPlan current;
+
+    /**
+     * 最新计划：批次 ID → 窖池 ID，以及生成计划时的待排批次集合 (用于判断是否需要重排)
+     */
+    private record CurrentPlan(Map<Long, List<Long>> pitsByBatch, Set<Long> planningIds, Map<String, Object> report) {
+    }
+
+    public SchedulingService(ProductionBatchRepository batchRepository,
+                             BatchPitAssignmentRepository assignmentRepository,
+                             LiveStateService liveStateService,
+                             ProductionService productionService,
+                             LineageService lineageService,
+                             JdbcTemplate jdbcTemplate,
+                             ClusterService clusterService,
+                             @Value("${app.scheduler.auto:true}") boolean auto,
+                             @Value("${app.scheduler.budget-ms:2000}") long budgetMillis,
+                             @Value("${app.scheduler.max-budget-ms:10000}") long maxBudgetMillis,
+                             @Value("${app.scheduler.threads:0}") int threads,
+                             @Value("${app.scheduler.pit-capacity:20}") double pitCapacity,
+                             @Value("${app.scheduler.pits-per-device:10}") int pitsPerDevice,
+                             @Value("${app.scheduler.capacity-device-types:robot,conveyor}") String capacityDeviceTypes,
+                             @Value("${app.scheduler.fermentation-days:60}") int fermentationDays,
+                             @Value("${app.scheduler.maintenance-interval-days:180}") int maintenanceIntervalDays,
+                             @Value("${app.scheduler.spread-penalty:5.0}") double spreadPenalty) {
+        this.batchRepository = batchRepository;
+        this.assignmentRepository = assignmentRepository;
+        this.liveStateService = liveStateService;
+        this.productionService = productionService;
+        this.lineageService = lineageService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.clusterService = clusterService;
+        this.auto = auto;
+        this.budgetMillis = Math.min(budgetMillis, maxBudgetMillis);
+        this.maxBudgetMillis = maxBudgetMillis;
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadSeq = new AtomicInteger();
+        this.searchPool = Executors.newFixedThreadPool(this.threads, r -> {
+            Thread thread = new Thread(r, "scheduler-search-" + threadSeq.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pitCapacity = pitCapacity;
+        this.pitsPerDevice = pitsPerDevice;
+        this.capacityDeviceTypes = new HashSet<>(Arrays.asList(capacityDeviceTypes.split("\\s*,\\s*")));
+        this.fermentationDays = fermentationDays;
+        this.maintenanceIntervalDays = maintenanceIntervalDays;
+        this.spreadPenalty = spreadPenalty;
+    }
+
+    public Optional<Map<String, Object>> getPlan() {
+        CurrentPlan plan = current;
+        return plan != null ? Optional.of(plan.report()) : Optional.empty();
+    }
+
+    /**
+     * 重新求解；已有计划中仍然可行的分配作为初始解保留
+     *
+     * @param budget 局部搜索时间预算 (毫秒)，为空使用配置值，超过 app.scheduler.max-budget-ms 时按上限截断
+     * @throws IllegalArgumentException 预算不大于 0
+     */
+    public synchronized Map<String, Object> solve(Long budget) {
+        if (budget != null && budget <= 0) {
+            throw new IllegalArgumentException("budgetMs 必须大于 0");
+        }
+        long effectiveBudget = budget != null ? Math.min(budget, maxBudgetMillis) : budgetMillis;
+        long start = System.nanoTime();
+        List<ProductionBatch> batches = batchRepository.findByStatus("planning");
+        batches.sort(Comparator.comparing(ProductionBatch::getId));
+        List<Pit> pits = availablePits();
+
+        Map<String, Integer> grains = new HashMap<>();
+        Map<String, Integer> zoneIndex = new LinkedHashMap<>();
+        for (Pit pit : pits) zoneIndex.putIfAbsent(pit.getZone(), zoneIndex.size());
+        Map<Long, double[]> history = loadQualityHistory();
+
+        int[] pitGrain = new int[pits.size()];
+        int[] pitAge = new int[pits.size()];
+        int[] pitZone = new int[pits.size()];
+        double[] pitQuality = new double[pits.size()];
+        Map<Long, Integer> pitIndex = new HashMap<>();
+        for (int p = 0; p < pits.size(); p++) {
+            Pit pit = pits.get(p);
+            pitGrain[p] = grains.computeIfAbsent(pit.getGrapeType(), k -> grains.size());
+            pitAge[p] = pit.getPitAge() != null ? pit.getPitAge() : 0;
+            pitZone[p] = zoneIndex.get(pit.getZone());
+            pitQuality[p] = predictQuality(pitAge[p], history.get(pit.getId()));
+            pitIndex.put(pit.getId(), p);
+        }
+        int[] zoneCapacity = zoneCapacity(zoneIndex);
+
+        int[] batchGrain = new int[batches.size()];
+        int[] batchMinAge = new int[batches.size()];
+        int[] batchPits = new int[batches.size()];
+        double[] batchVolume = new double[batches.size()];
+        for (int b = 0; b < batches.size(); b++) {
+            ProductionBatch batch = batches.get(b);
+            batchGrain[b] = grains.computeIfAbsent(batch.getGrainType(), k -> grains.size());
+            batchMinAge[b] = batch.getMinPitAge() != null ? batch.getMinPitAge() : 0;
+            batchVolume[b] = batch.getTargetVolume() != null ? batch.getTargetVolume() : pitCapacity;
+            batchPits[b] = requiredPits(batch);
+        }
+
+        // 热启动：上一版计划中的分配按 ID 映射到本次下标
+        int[][] initial = new int[batches.size()][];
+        CurrentPlan previous = current;
+        if (previous != null) {
+            for (int b = 0; b < batches.size(); b++) {
+                List<Long> ids = previous.pitsByBatch().get(batches.get(b).getId());
+                if (ids == null) continue;
+                int[] mapped = new int[ids.size()];
+                boolean complete = true;
+                for (int k = 0; k < ids.size() && complete; k++) {
+                    Integer p = pitIndex.get(ids.get(k));
+                    complete = p != null;
+                    if (complete) mapped[k] = p;
+                }
+                if (complete) initial[b] = mapped;
+            }
+        }
+
+        BatchScheduler.Problem problem = new BatchScheduler.Problem(pitGrain, pitAge, pitZone, pitQuality,
+                zoneCapacity, batchGrain, batchMinAge, batchPits, batchVolume, spreadPenalty);
+        long solveStart = System.nanoTime();
+        BatchScheduler.Plan plan = new BatchScheduler(problem).solve(initial,
+                effectiveBudget, searchPool, threads, System.nanoTime());
+        double solveMillis = (System.nanoTime() - solveStart) / 1e6;
+
+        Map<Long, List<Long>> pitsByBatch = new LinkedHashMap<>();
+        List<Map<String, Object>> assignments = new ArrayList<>();
+        List<Map<String, Object>> unscheduled = new ArrayList<>();
+        int[] zoneUsed = new int[zoneCapacity.length];
+        double scheduledVolume = 0, totalVolume = 0;
+        for (int b = 0; b < batches.size(); b++) {
+            ProductionBatch batch = batches.get(b);
+            totalVolume += batchVolume[b];
+            int[] assigned = plan.assignment()[b];
+            if (assigned == null) {
+                int eligible = 0;
+                for (int p = 0; p < pits.size(); p++) {
+                    if (pitGrain[p] == batchGrain[b] && pitAge[p] >= batchMinAge[b]) eligible++;
+                }
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("batchId", batch.getId());
+                item.put("batchNo", batch.getBatchNo());
+                item.put("grainType", batch.getGrainType());
+                item.put("requiredPits", batchPits[b]);
+                item.put("eligiblePits", eligible);
+                unscheduled.add(item);
+                continue;
+            }
+            scheduledVolume += batchVolume[b];
+            List<Long> ids = new ArrayList<>();
+            List<Map<String, Object>> pitItems = new ArrayList<>();
+            Set<String> zones = new TreeSet<>();
+            double qualitySum = 0;
+            for (int p : assigned) {
+                Pit pit = pits.get(p);
+                ids.add(pit.getId());
+                zones.add(pit.getZone());
+                zoneUsed[pitZone[p]]++;
+                qualitySum += pitQuality[p];
+                Map<String, Object> pitItem = new LinkedHashMap<>();
+                pitItem.put("pitId", pit.getId());
+                pitItem.put("pitNo", pit.getPitNo());
+                pitItem.put("zone", pit.getZone());
+                pitItem.put("pitAge", pit.getPitAge());
+                pitItem.put("predictedQuality", pitQuality[p]);
+                pitItems.add(pitItem);
+            }
+            pitsByBatch.put(batch.getId(), ids);
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("batchId", batch.getId());
+            item.put("batchNo", batch.getBatchNo());
+            item.put("grainType", batch.getGrainType());
+            item.put("targetVolume", batchVolume[b]);
+            item.put("predictedQuality", qualitySum / assigned.length);
+            item.put("zones", zones);
+            item.put("pits", pitItems);
+            assignments.add(item);
+        }
+
+        Map<String, Object> zoneReport = new LinkedHashMap<>();
+        zoneIndex.forEach((zone, z) -> zoneReport.put(zone, Map.of("capacity", zoneCapacity[z], "planned", zoneUsed[z])));
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("generatedAt", LocalDateTime.now());
+        report.put("planningBatches", batches.size());
+        report.put("scheduledBatches", plan.scheduled());
+        report.put("totalVolume", totalVolume);
+        report.put("scheduledVolume", scheduledVolume);
+        report.put("availablePits", pits.size());
+        report.put("objective", plan.objective());
+        report.put("iterations", plan.iterations());
+        report.put("threads", threads);
+        report.put("budgetMillis", effectiveBudget);
+        report.put("solveMillis", solveMillis);
+        report.put("totalMillis", (System.nanoTime() - start) / 1e6);
+        report.put("zones", zoneReport);
+        report.put("assignments", assignments);
+        report.put("unscheduled", unscheduled);
+
+        Set<Long> planningIds = new HashSet<>();
+        batches.forEach(batch -> planningIds.add(batch.getId()));
+        current = new CurrentPlan(pitsByBatch, planningIds, report);
+        log.info("排产完成: {}/{} 个批次排入, {} 个可用窖池, 求解 {} ms",
+                plan.scheduled(), batches.size(), pits.size(), String.format("%.0f", solveMillis));
+        return report;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        searchPool.shutdownNow();
+    }
+
+    /**
+     * 待排批次集合变化时 (新建、开工、取消) 以上一版计划热启动重排；集群模式下只由协调节点执行
+     */
+    @Scheduled(fixedDelayString = "${app.scheduler.interval:30000}")
+    public void improveIfChanged() {
+        if (!auto || !clusterService.isCoordinator()) return;
+        Set<Long> planningIds = new HashSet<>();
+        batchRepository.findByStatus("planning").forEach(batch -> planningIds.add(batch.getId()));
+        CurrentPlan plan = current;
+        if (planningIds.isEmpty() || (plan != null && plan.planningIds().equals(planningIds))) return;
+        try {
+            solve(null);
+        } catch (Exception e) {
+            log.error("自动排产失败", e);
+        }
+    }
+
+    /**
+     * 按当前计划下发：批次开工并记录入窖；下发前重新检查批次状态与窖池占用
+     *
+     * @param batchId 只下发该批次，为空下发全部
+     */
+    @Transactional
+    public Map<String, Object> apply(Long batchId) {
+        CurrentPlan plan = current;
+        if (plan == null) throw new IllegalArgumentException("尚未生成排产计划");
+        if (batchId != null && !plan.pitsByBatch().containsKey(batchId)) {
+            throw new IllegalArgumentException("该批次不在当前计划中");
+        }
+        List<String> applied = new ArrayList<>();
+        List<Map<String, Object>> skipped = new ArrayList<>();
+        for (Map.Entry<Long, List<Long>> entry : plan.pitsByBatch().entrySet()) {
+            if (batchId != null && !batchId.equals(entry.getKey())) continue;
+            Optional<ProductionBatch> batch = batchRepository.findById(entry.getKey());
+            String reason = null;
+            List<Pit> pits = new ArrayList<>();
+            if (batch.isEmpty() || !"planning".equals(batch.get().getStatus())) {
+                reason = "批次已不是待排状态";
+            } else {
+                for (Long pitId : entry.getValue()) {
+                    Optional<Pit> pit = liveStateService.getPit(pitId);
+                    if (pit.isEmpty() || "maintenance".equals(pit.get().getStatus())
+                            || assignmentRepository.findFirstByPitIdAndEndedAtIsNull(pitId).isPresent()) {
+                        reason = "窖池 " + pit.map(Pit::getPitNo).orElse(String.valueOf(pitId)) + " 已不可用";
+                        break;
+                    }
+                    pits.add(pit.get());
+                }
+            }
+            if (reason != null) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("batchId", entry.getKey());
+                item.put("reason", reason);
+                skipped.add(item);
+                continue;
+            }
+            ProductionBatch started = productionService.startBatch(entry.getKey()).orElseThrow();
+            pits.forEach(pit -> lineageService.assign(pit, started));
+            applied.add(started.getBatchNo());
+        }
+        log.info("排产计划下发: {} 个批次开工, {} 个跳过", applied.size(), skipped.size());
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("applied", applied);
+        result.put("skipped", skipped);
+        return result;
+    }
+
+    private int requiredPits(ProductionBatch batch) {
+        if (batch.getTargetVolume() == null || pitCapacity <= 0) return 1;
+        return Math.max(1, (int) Math.ceil(batch.getTargetVolume() / pitCapacity));
+    }
+
+    private List<Pit> availablePits() {
+        Set<Long> occupied = new HashSet<>();
+        for (BatchPitAssignment a : assignmentRepository.findByEndedAtIsNull()) occupied.add(a.getPitId());
+        LocalDateTime fermentationEnd = LocalDateTime.now().plusDays(fermentationDays);
+        List<Pit> result = new ArrayList<>();
+        for (Pit pit : liveStateService.getPits()) {
+            if (occupied.contains(pit.getId()) || "maintenance".equals(pit.getStatus())) continue;
+            if (pit.getLastMaintenance() != null
+                    && pit.getLastMaintenance().plusDays(maintenanceIntervalDays).isBefore(fermentationEnd)) continue;
+            result.add(pit);
+        }
+        return result;
+    }
+
+    /**
+     * 区域产能：区域内 (设备位置以区域名开头) 可用的上甑/输送设备数 × 每台可支撑窖池数
+     */
+    private int[] zoneCapacity(Map<String, Integer> zoneIndex) {
+        int[] capacity = new int[zoneIndex.size()];
+        for (Device device : liveStateService.getDevices()) {
+            if (!capacityDeviceTypes.contains(device.getType()) || device.getLocation() == null) continue;
+            if (!"running".equals(device.getStatus()) && !"warning".equals(device.getStatus())) continue;
+            zoneIndex.forEach((zone, z) -> {
+                if (device.getLocation().startsWith(zone)) capacity[z] += pitsPerDevice;
+            });
+        }
+        return capacity;
+    }
+
+    /**
+     * 窖池历史曲线条数与平均质量评分
+     */
+    private Map<Long, double[]> loadQualityHistory() {
+        Map<Long, double[]> history = new HashMap<>();
+        jdbcTemplate.query(QUALITY_SQL, (RowCallbackHandler) rs ->
+                history.put(rs.getLong(1), new double[]{rs.getLong(2), rs.getDouble(3)}));
+        return history;
+    }
+
+    /**
+     * 预测质量：窖龄先验 (老窖出好酒，百年以上不再增加) 与历史平均质量按条数加权
+     */
+    private static double predictQuality(int pitAge, double[] history) {
+        double prior = 80 + 15 * Math.min(pitAge, 100) / 100.0;
+        if (history == null) return prior;
+        return (history[0] * history[1] + PRIOR_WEIGHT * prior) / (history[0] + PRIOR_WEIGHT);
+    }
+}
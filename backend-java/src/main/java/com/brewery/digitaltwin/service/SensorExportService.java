@@ -0,0 +1,278 @@
+package com.brewery.digitaltwin.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 传感器历史流式导出
+ *
+ * 按实体逐个执行 (entity_id = ? AND recorded_at 区间) 的索引范围查询，前向只读游标按 fetch size 分批取行，
+ * 每行直接编码写入响应输出流，不创建实体也不缓存结果集，内存占用与导出行数无关。
+ * 查询在只读事务中执行，PostgreSQL 等需要关闭自动提交 fetch size 才生效的驱动同样按批取行。
+ *
+ * 二进制格式 (小端，列式分块)：magic(int) version(int) 列数(int) 各列名 (长度 short + UTF-8)，
+ * 之后为若干块：行数 n(int)，entityId long[n]，recordedAt 毫秒 long[n]，每个指标 float32[n] (缺失为 NaN)；
+ * 行数为 0 的块表示结束。
+ */
+@Slf4j
+@Service
+public class SensorExportService {
+
+    private static final int MAGIC = 0x42535843;  // "BSXC"
+    private static final int VERSION = 1;
+    private static final int BLOCK_ROWS = 4096;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public enum Format {
+        CSV("text/csv; charset=UTF-8", "csv"),
+        NDJSON("application/x-ndjson", "ndjson"),
+        BINARY("application/octet-stream", "bin");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+
+        public static Format parse(String value) {
+            try {
+                return valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("不支持的导出格式: " + value + "，可选 csv / ndjson / binary");
+            }
+        }
+    }
+
+    private static final Map<SensorTable, String> QUERIES = new EnumMap<>(SensorTable.class);
+
+    static {
+        for (SensorTable source : SensorTable.values()) {
+            QUERIES.put(source, "SELECT recorded_at, " + String.join(", ", source.columns) + " FROM " + source.table +
+                    " WHERE " + source.idColumn + " = ? AND recorded_at > ? AND recorded_at <= ? ORDER BY recorded_at");
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readTransaction;
+
+    public SensorExportService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        // 独立实例，按批次从游标取行，不影响其他 JdbcTemplate 使用者
+        this.jdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.jdbcTemplate.setFetchSize(1000);
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+    }
+
+    /**
+     * 导出窖池传感器数据，时间窗口为 (from, to]，按窖池、时间升序
+     *
+     * @return 导出行数
+     */
+    public long exportPits(List<Long> pitIds, LocalDateTime from, LocalDateTime to, Format format,
+                           OutputStream out) throws IOException {
+        return export(SensorTable.PIT, pitIds, from, to, format, out);
+    }
+
+    /**
+     * 导出设备运行数据，时间窗口为 (from, to]，按设备、时间升序
+     *
+     * @return 导出行数
+     */
+    public long exportDevices(List<Long> deviceIds, LocalDateTime from, LocalDateTime to, Format format,
+                              OutputStream out) throws IOException {
+        return export(SensorTable.DEVICE, deviceIds, from, to, format, out);
+    }
+
+    private long export(SensorTable source, List<Long> ids, LocalDateTime from, LocalDateTime to, Format format,
+                        OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        RowSink sink = switch (format) {
+            case CSV -> new CsvSink(source, out);
+            case NDJSON -> new NdjsonSink(source, out);
+            case BINARY -> new BinarySink(source, out);
+        };
+        Timestamp fromTs = Timestamp.valueOf(from);
+        Timestamp toTs = Timestamp.valueOf(to);
+        double[] values = new double[source.metricCount()];
+        long[] rows = new long[1];
+        try {
+            readTransaction.executeWithoutResult(tx -> {
+                for (Long id : ids) {
+                    jdbcTemplate.query(QUERIES.get(source), (RowCallbackHandler) rs -> {
+                        for (int i = 0; i < values.length; i++) {
+                            double v = rs.getDouble(i + 2);
+                            values[i] = rs.wasNull() ? Double.NaN : v;
+                        }
+                        try {
+                            sink.row(id, rs.getTimestamp(1), values);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        rows[0]++;
+                    }, id, fromTs, toTs);
+                }
+            });
+            sink.finish();
+        } catch (UncheckedIOException e) {
+            // 客户端中断下载时写出失败，游标随事务关闭
+            throw e.getCause();
+        }
+        log.info("数据导出: {} {} 个, {} 行, {} 格式, {} ms",
+                source.label, ids.size(), rows[0], format.extension(), (System.nanoTime() - start) / 1_000_000);
+        return rows[0];
+    }
+
+    private interface RowSink {
+        void row(long id, Timestamp recordedAt, double[] values) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    private static final class CsvSink implements RowSink {
+        private final Writer writer;
+
+        CsvSink(SensorTable source, OutputStream out) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+            writer.write(source.idField);
+            writer.write(",recordedAt");
+            for (String field : source.fields) {
+                writer.write(',');
+                writer.write(field);
+            }
+            writer.write('\n');
+        }
+
+        @Override
+        public void row(long id, Timestamp recordedAt, double[] values) throws IOException {
+            writer.write(Long.toString(id));
+            writer.write(',');
+            writer.write(recordedAt.toLocalDateTime().toString());
+            for (double v : values) {
+                writer.write(',');
+                if (!Double.isNaN(v)) writer.write(Double.toString(v));
+            }
+            writer.write('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+    }
+
+    private static final class NdjsonSink implements RowSink {
+        private final Writer writer;
+        private final String idPrefix;
+        private final String[] fieldPrefixes;
+
+        NdjsonSink(SensorTable source, OutputStream out) {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+            this.idPrefix = "{\"" + source.idField + "\":";
+            this.fieldPrefixes = new String[source.fields.length];
+            for (int i = 0; i < fieldPrefixes.length; i++) fieldPrefixes[i] = ",\"" + source.fields[i] + "\":";
+        }
+
+        @Override
+        public void row(long id, Timestamp recordedAt, double[] values) throws IOException {
+            writer.write(idPrefix);
+            writer.write(Long.toString(id));
+            writer.write(",\"recordedAt\":\"");
+            writer.write(recordedAt.toLocalDateTime().toString());
+            writer.write('"');
+            for (int i = 0; i < values.length; i++) {
+                writer.write(fieldPrefixes[i]);
+                writer.write(Double.isNaN(values[i]) ? "null" : Double.toString(values[i]));
+            }
+            writer.write("}\n");
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+    }
+
+    private static final class BinarySink implements RowSink {
+        private final OutputStream out;
+        private final long[] ids = new long[BLOCK_ROWS];
+        private final long[] times = new long[BLOCK_ROWS];
+        private final float[][] columns;
+        private final ByteBuffer block;
+        private int size;
+
+        BinarySink(SensorTable source, OutputStream out) throws IOException {
+            this.out = out;
+            int metrics = source.metricCount();
+            this.columns = new float[metrics][BLOCK_ROWS];
+            this.block = ByteBuffer.allocate(4 + BLOCK_ROWS * (16 + 4 * metrics)).order(ByteOrder.LITTLE_ENDIAN);
+
+            block.putInt(MAGIC).putInt(VERSION).putInt(2 + metrics);
+            putName(source.idField);
+            putName("recordedAt");
+            for (String field : source.fields) putName(field);
+            writeBlock();
+        }
+
+        private void putName(String name) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            block.putShort((short) bytes.length).put(bytes);
+        }
+
+        @Override
+        public void row(long id, Timestamp recordedAt, double[] values) throws IOException {
+            ids[size] = id;
+            times[size] = recordedAt.getTime();
+            for (int i = 0; i < values.length; i++) columns[i][size] = (float) values[i];
+            if (++size == BLOCK_ROWS) flushBlock();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (size > 0) flushBlock();
+            block.putInt(0);
+            writeBlock();
+            out.flush();
+        }
+
+        private void flushBlock() throws IOException {
+            block.putInt(size);
+            for (int i = 0; i < size; i++) block.putLong(ids[i]);
+            for (int i = 0; i < size; i++) block.putLong(times[i]);
+            for (float[] column : columns) {
+                for (int i = 0; i < size; i++) block.putFloat(column[i]);
+            }
+            writeBlock();
+            size = 0;
+        }
+
+        private void writeBlock() throws IOException {
+            out.write(block.array(), 0, block.position());
+            block.clear();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.brewery.digitaltwin.service;
+
+import com.brewery.digitaltwin.entity.DeviceData;
+import com.brewery.digitaltwin.entity.PitSensorData;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * 历史曲线查询 - 服务端降采样
+ *
+ * 按时间升序用 JDBC 游标逐行读取原始值交给 Downsampler，不把整段历史加载为实体，
+ * 只为选中的行创建 PitSensorData / DeviceData。返回顺序与不降采样的接口一致 (时间倒序)。
+ */
+@Service
+public class SensorHistoryService {
+
+    private static final String[] PIT_METRICS = {"temperature", "humidity", "phValue", "acidity", "moisture", "alcohol"};
+    private static final String PIT_SQL =
+            "SELECT id, recorded_at, temperature, humidity, ph_value, acidity, moisture, alcohol " +
+            "FROM pit_sensor_data WHERE pit_id = ? AND recorded_at > ? AND recorded_at <= ? ORDER BY recorded_at";
+
+    private static final String[] DEVICE_METRICS = {"power", "speed", "vibration", "temperature", "current"};
+    private static final String DEVICE_SQL =
+            "SELECT id, recorded_at, power, speed, vibration, temperature, current " +
+            "FROM device_data WHERE device_id = ? AND recorded_at > ? AND recorded_at <= ? ORDER BY recorded_at";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SensorHistoryService(JdbcTemplate jdbcTemplate) {
+        // 独立实例，按批次从游标取行，不影响其他 JdbcTemplate 使用者
+        this.jdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.jdbcTemplate.setFetchSize(1000);
+    }
+
+    /**
+     * @param metric 只按该指标降采样，为空时 MINMAX 覆盖全部指标，LTTB 使用温度
+     * @param mode   minmax (默认，保留每个桶的峰谷) 或 lttb
+     */
+    public List<PitSensorData> getPitSensorData(Long pitId, int hours, int maxPoints, String metric, String mode) {
+        LocalDateTime now = LocalDateTime.now();
+        return getPitSensorData(pitId, now.minusHours(hours), now, maxPoints, metric, mode);
+    }
+
+    /**
+     * 指定时间窗口 (from, to] 的窖池数据，供批次追溯按血缘窗口查询
+     */
+    public List<PitSensorData> getPitSensorData(Long pitId, LocalDateTime from, LocalDateTime to,
+                                                int maxPoints, String metric, String mode) {
+        return query(PIT_SQL, pitId, from, to, maxPoints, PIT_METRICS, metric, "temperature", mode, row -> {
+            PitSensorData data = new PitSensorData();
+            double[] v = row.values();
+            data.setId(row.id());
+            data.setPitId(pitId);
+            data.setTemperature(valueOf(v[0]));
+            data.setHumidity(valueOf(v[1]));
+            data.setPhValue(valueOf(v[2]));
+            data.setAcidity(valueOf(v[3]));
+            data.setMoisture(valueOf(v[4]));
+            data.setAlcohol(valueOf(v[5]));
+            data.setRecordedAt(new Timestamp(row.time()).toLocalDateTime());
+            return data;
+        });
+    }
+
+    /**
+     * @param metric 只按该指标降采样，为空时 MINMAX 覆盖全部指标，LTTB 使用振动
+     * @param mode   minmax (默认，保留每个桶的峰谷) 或 lttb
+     */
+    public List<DeviceData> getDeviceData(Long deviceId, int hours, int maxPoints, String metric, String mode) {
+        LocalDateTime now = LocalDateTime.now();
+        return query(DEVICE_SQL, deviceId, now.minusHours(hours), now, maxPoints, DEVICE_METRICS, metric, "vibration", mode, row -> {
+            DeviceData data = new DeviceData();
+            double[] v = row.values();
+            data.setId(row.id());
+            data.setDeviceId(deviceId);
+            data.setPower(valueOf(v[0]));
+            data.setSpeed(valueOf(v[1]));
+            data.setVibration(valueOf(v[2]));
+            data.setTemperature(valueOf(v[3]));
+            data.setCurrent(valueOf(v[4]));
+            data.setRecordedAt(new Timestamp(row.time()).toLocalDateTime());
+            return data;
+        });
+    }
+
+    private <T> List<T> query(String sql, Long ownerId, LocalDateTime since, LocalDateTime until, int maxPoints,
+                              String[] metricNames, String metric, String lttbDefault, String mode,
+                              Function<Downsampler.Row, T> mapper) {
+        Downsampler.Mode parsedMode = parseMode(mode);
+        int[] metrics = metric == null || metric.isBlank()
+                ? (parsedMode == Downsampler.Mode.LTTB ? new int[]{indexOf(metricNames, lttbDefault)} : allIndexes(metricNames.length))
+                : new int[]{indexOf(metricNames, metric)};
+
+        Downsampler downsampler = new Downsampler(parsedMode, metricNames.length, metrics,
+                Timestamp.valueOf(since).getTime(), Timestamp.valueOf(until).getTime(), maxPoints);
+
+        double[] values = new double[metricNames.length];
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+            for (int c = 0; c < values.length; c++) {
+                values[c] = readDouble(rs, c + 3);
+            }
+            downsampler.accept(rs.getLong(1), rs.getTimestamp(2).getTime(), values);
+        }, ownerId, Timestamp.valueOf(since), Timestamp.valueOf(until));
+
+        List<Downsampler.Row> rows = downsampler.finish();
+        List<T> result = new ArrayList<>(rows.size());
+        for (int i = rows.size() - 1; i >= 0; i--) {
+            result.add(mapper.apply(rows.get(i)));
+        }
+        return result;
+    }
+
+    private static Downsampler.Mode parseMode(String mode) {
+        if (mode == null || mode.isBlank()) return Downsampler.Mode.MINMAX;
+        try {
+            return Downsampler.Mode.valueOf(mode.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("不支持的降采样方式: " + mode);
+        }
+    }
+
+    private static int indexOf(String[] names, String metric) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(metric)) return i;
+        }
+        throw new IllegalArgumentException("未知指标: " + metric);
+    }
+
+    private static int[] allIndexes(int count) {
+        int[] indexes = new int[count];
+        for (int i = 0; i < count; i++) indexes[i] = i;
+        return indexes;
+    }
+
+    private static double readDouble(ResultSet rs, int column) throws SQLException {
+        double v = rs.getDouble(column);
+        return rs.wasNull() ? Double.NaN : v;
+    }
+
+    private static Double valueOf(double v) {
+        return Double.isNaN(v) ? null : v;
+    }
+}
@@ -0,0 +1,36 @@
+package com.brewery.digitaltwin.service;
+
+/**
+ * 传感器历史表的列定义，导出与导入共用
+ *
+ * columns 为数据库列名，fields 为对外名称 (与接口 JSON 字段一致)，两者按下标一一对应。
+ */
+enum SensorTable {
+
+    PIT("pit", "pit_sensor_data", "pit_id", "pitId",
+            new String[]{"temperature", "humidity", "ph_value", "acidity", "moisture", "alcohol"},
+            new String[]{"temperature", "humidity", "phValue", "acidity", "moisture", "alcohol"}),
+    DEVICE("device", "device_data", "device_id", "deviceId",
+            new String[]{"power", "speed", "vibration", "temperature", "current"},
+            new String[]{"power", "speed", "vibration", "temperature", "current"});
+
+    final String label;
+    final String table;
+    final String idColumn;
+    final String idField;
+    final String[] columns;
+    final String[] fields;
+
+    SensorTable(String label, String table, String idColumn, String idField, String[] columns, String[] fields) {
+        this.label = label;
+        this.table = table;
+        this.idColumn = idColumn;
+        this.idField = idField;
+        this.columns = columns;
+        this.fields = fields;
+    }
+
+    int metricCount() {
+        return columns.length;
+    }
+}
@@ -0,0 +1,71 @@
+package com.brewery.digitaltwin.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 分片归属 - 节点集合上的最高随机权重 (rendezvous) 哈希
+ *
+ * 每个分片键归属于 hash(节点, 键) 最大的节点。各节点只要成员视图一致就算出相同的归属，无需协调；
+ * 节点加入只从每个现有节点迁走约 1/n 的分片，节点离开只迁走它自己的分片，其余分片不动。
+ * 不可变，成员变化时整体替换。
+ */
+public final class ShardMap {
+
+    private final List<String> nodes;
+    private final long[] nodeHashes;
+
+    private ShardMap(List<String> nodes) {
+        this.nodes = nodes;
+        this.nodeHashes = new long[nodes.size()];
+        for (int i = 0; i < nodes.size(); i++) nodeHashes[i] = hash(nodes.get(i), 0xcbf29ce484222325L);
+    }
+
+    public static ShardMap of(Collection<String> nodes) {
+        return new ShardMap(List.copyOf(new TreeSet<>(nodes)));
+    }
+
+    public List<String> nodes() {
+        return nodes;
+    }
+
+    /**
+     * 分片键的归属节点，节点集合为空时返回 null
+     */
+    public String owner(String key) {
+        String best = null;
+        long bestWeight = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            long weight = mix(hash(key, nodeHashes[i]));
+            if (best == null || Long.compareUnsigned(weight, bestWeight) > 0) {
+                best = nodes.get(i);
+                bestWeight = weight;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * FNV-1a，以节点哈希为初值把节点与键组合在一起
+     */
+    private static long hash(String value, long seed) {
+        long h = seed;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /**
+     * murmur3 fmix64，打散 FNV 低位的相关性
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -4,95 +4,251 @@ import com.brewery.digitaltwin.entity.*;
 import com.brewery.digitaltwin.repository.*;
 import com.brewery.digitaltwin.websocket.RealtimeWebSocketHandler;
 import com.brewery.digitaltwin.dto.RealtimeMessage;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.IntSupplier;
 
 /**
  * 数据模拟器服务 - 生成演示数据
+ *
+ * 每个周期分阶段计时 (窖池、设备、告警、状态写回、仪表盘推送，以及事务提交时的实际写库)，
+ * 并记录周期总耗时、超出仿真间隔的次数、经 Hibernate 执行的语句数与生成/提交的读数条数。
+ * 周期、各阶段与提交写库同时记为 JFR 事件 (见 {@link JfrEvents})，供持续录制回溯单次卡顿。
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class SimulatorService {
     
-    private final PitRepository pitRepository;
     private final PitSensorDataRepository pitSensorDataRepository;
-    private final DeviceRepository deviceRepository;
     private final DeviceDataRepository deviceDataRepository;
-    private final AlarmRepository alarmRepository;
+    private final VibrationFeatureRepository vibrationFeatureRepository;
+    private final CurveSimilarityService curveService;
     private final RealtimeWebSocketHandler webSocketHandler;
-    private final ObjectMapper objectMapper;
     private final DashboardService dashboardService;
+    private final AlarmRuleEngine ruleEngine;
+    private final AlarmAggregationService alarmAggregationService;
+    private final CorrelationEngine correlationEngine;
+    private final DeviceAnomalyDetector anomalyDetector;
+    private final LiveStateService liveStateService;
+    private final ParamStore paramStore;
+    private final PitControlService controlService;
+    private final ClusterService clusterService;
+    private final MetricsRegistry metrics;
+    private final EntityCacheService cacheService;
     
     @Value("${app.simulator.enabled:true}")
     private boolean enabled;
     
+    @Value("${app.simulator.interval:5000}")
+    private long intervalMs;
+    
+    @Value("${app.simulator.retention-hours:24}")
+    private long retentionHours;
+    
     private final Random random = new Random();
+
+    private static final double[] STATEMENT_BUCKETS = {10, 50, 100, 500, 1000, 5000, 10000, 50000, 100000};
+    private static final String[] STAGES = {"pits", "devices", "alarms", "flush", "dashboard", "commit"};
+    private final Map<String, MetricsRegistry.Histogram> stageTimers = new HashMap<>();
+    private MetricsRegistry.Histogram tickTimer;
+    private MetricsRegistry.Histogram tickStatements;
+    private MetricsRegistry.Counter tickOverruns;
+    private MetricsRegistry.Counter tickFailures;
+    private MetricsRegistry.Counter pitReadingsIngested;
+    private MetricsRegistry.Counter pitReadingsPersisted;
+    private MetricsRegistry.Counter deviceReadingsIngested;
+    private MetricsRegistry.Counter deviceReadingsPersisted;
+
+    @PostConstruct
+    public void registerMetrics() {
+        for (String stage : STAGES) {
+            stageTimers.put(stage, metrics.histogram("twin_tick_stage_seconds", "仿真周期各阶段耗时",
+                    MetricsRegistry.SECONDS_BUCKETS, "stage", stage));
+        }
+        tickTimer = metrics.histogram("twin_tick_seconds", "仿真周期总耗时 (含事务提交)", MetricsRegistry.SECONDS_BUCKETS);
+        tickStatements = metrics.histogram("twin_tick_jpa_statements", "每个仿真周期经 Hibernate 执行的 JDBC 语句数",
+                STATEMENT_BUCKETS);
+        tickOverruns = metrics.counter("twin_tick_overruns_total", "耗时超过仿真间隔的周期数 (下一周期被推迟)");
+        tickFailures = metrics.counter("twin_tick_failures_total", "出错的仿真周期数");
+        pitReadingsIngested = metrics.counter("twin_readings_ingested_total", "进入系统的传感器读数条数",
+                "source", "simulator", "kind", "pit");
+        pitReadingsPersisted = metrics.counter("twin_readings_persisted_total", "已提交入库的传感器读数条数",
+                "source", "simulator", "kind", "pit");
+        deviceReadingsIngested = metrics.counter("twin_readings_ingested_total", "进入系统的传感器读数条数",
+                "source", "simulator", "kind", "device");
+        deviceReadingsPersisted = metrics.counter("twin_readings_persisted_total", "已提交入库的传感器读数条数",
+                "source", "simulator", "kind", "device");
+    }
     
     @Scheduled(fixedRateString = "${app.simulator.interval:5000}")
     @Transactional
     public void generateData() {
         if (!enabled) return;
+        JfrEvents.TickEvent event = new JfrEvents.TickEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long statements = cacheService.statementCount();
+        int pitReadings = 0;
+        int deviceReadings = 0;
         
         try {
-            generatePitSensorData();
-            generateDeviceData();
-            maybeGenerateAlarm();
-            broadcastDashboardUpdate();
+            List<AlarmRuleEngine.Transition> transitions = new ArrayList<>();
+            List<Alarm> predictiveAlarms = new ArrayList<>();
+            pitReadings = stage("pits", () -> generatePitSensorData(transitions));
+            deviceReadings = stage("devices", () -> generateDeviceData(transitions, predictiveAlarms));
+            stage("alarms", () -> {
+                int count = transitions.size() + predictiveAlarms.size();
+                raiseRuleAlarms(transitions, predictiveAlarms);
+                return count;
+            });
+            stage("flush", liveStateService::flushStatusChanges);
+            // 集群模式下各节点的热力图都是全量的，汇总推送只需协调节点发一份
+            stage("dashboard", () -> {
+                if (!clusterService.isCoordinator()) return 0;
+                broadcastDashboardUpdate();
+                return 1;
+            });
         } catch (Exception e) {
+            tickFailures.increment();
             log.error("数据生成失败", e);
         }
+        finishTick(event, start, statements, pitReadings, deviceReadings);
+    }
+
+    /**
+     * 执行一个阶段并计时，返回该阶段处理的实体数 (读数条数、告警候选数、写回行数等)，同时记入 JFR 阶段事件
+     */
+    private int stage(String name, IntSupplier body) {
+        JfrEvents.TickStageEvent event = new JfrEvents.TickStageEvent();
+        event.begin();
+        long begin = System.nanoTime();
+        int entities = body.getAsInt();
+        stageTimers.get(name).observeNanos(System.nanoTime() - begin);
+        event.end();
+        if (event.shouldCommit()) {
+            event.stage = name;
+            event.entities = entities;
+            event.commit();
+        }
+        return entities;
+    }
+
+    /**
+     * 读数在事务提交时才真正写库，提交耗时、周期总耗时与入库条数在事务结束后记录
+     */
+    private void finishTick(JfrEvents.TickEvent event, long start, long statements, int pitReadings, int deviceReadings) {
+        pitReadingsIngested.add(pitReadings);
+        deviceReadingsIngested.add(deviceReadings);
+        JfrEvents.DbFlushEvent flushEvent = new JfrEvents.DbFlushEvent();
+        flushEvent.begin();
+        long bodyEnd = System.nanoTime();
+        Tick tick = new Tick(event, flushEvent, start, bodyEnd, statements, pitReadings, deviceReadings);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            recordTick(tick, true);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                recordTick(tick, status == STATUS_COMMITTED);
+            }
+        });
+    }
+
+    private record Tick(JfrEvents.TickEvent event, JfrEvents.DbFlushEvent flushEvent, long start, long bodyEnd,
+                        long statements, int pitReadings, int deviceReadings) {
+    }
+
+    private void recordTick(Tick tick, boolean committed) {
+        long end = System.nanoTime();
+        stageTimers.get("commit").observeNanos(end - tick.bodyEnd());
+        tickTimer.observeNanos(end - tick.start());
+        boolean overrun = end - tick.start() > intervalMs * 1_000_000;
+        if (overrun) tickOverruns.increment();
+        long statements = cacheService.statementCount() - tick.statements();
+        tickStatements.observe(statements);
+        if (committed) {
+            pitReadingsPersisted.add(tick.pitReadings());
+            deviceReadingsPersisted.add(tick.deviceReadings());
+        }
+
+        JfrEvents.DbFlushEvent flushEvent = tick.flushEvent();
+        flushEvent.end();
+        if (flushEvent.shouldCommit()) {
+            flushEvent.source = "tick-commit";
+            flushEvent.rows = tick.pitReadings() + tick.deviceReadings();
+            flushEvent.statements = statements;
+            flushEvent.success = committed;
+            flushEvent.commit();
+        }
+        JfrEvents.TickEvent event = tick.event();
+        event.end();
+        if (event.shouldCommit()) {
+            event.pitReadings = tick.pitReadings();
+            event.deviceReadings = tick.deviceReadings();
+            event.statements = statements;
+            event.committed = committed;
+            event.overrun = overrun;
+            event.commit();
+        }
     }
 
     @Scheduled(fixedDelayString = "${app.simulator.cleanup-interval:3600000}")
     @Transactional
     public void cleanupOldData() {
-        if (!enabled) return;
-        LocalDateTime cutoff = LocalDateTime.now().minusHours(24);
+        if (!enabled || retentionHours <= 0 || !clusterService.isCoordinator()) return;
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(retentionHours);
         pitSensorDataRepository.deleteByRecordedAtBefore(cutoff);
         deviceDataRepository.deleteByRecordedAtBefore(cutoff);
+        vibrationFeatureRepository.deleteByRecordedAtBefore(cutoff);
     }
     
-    private void generatePitSensorData() {
-        List<Pit> pits = pitRepository.findAll();
+    private int generatePitSensorData(List<AlarmRuleEngine.Transition> transitions) {
+        // 集群模式下只仿真本节点分片内的窖池
+        List<Pit> pits = clusterService.ownedPits(liveStateService.getPits());
+        if (pits.isEmpty()) return 0;
+        long now = System.currentTimeMillis();
         List<Map<String, Object>> dataList = new ArrayList<>();
+        // 每个周期读取一次参数快照，设定值修改后下一个周期生效；默认设定值下与原模型一致
+        ParamStore.Snapshot params = paramStore.snapshot();
+        double tempOffset = params.value(ParamStore.PIT_TEMPERATURE, 30.0) - 30.0;
+        double moistureSetpoint = params.value(ParamStore.PIT_MOISTURE, 55.0);
+        controlService.step(pits, now);
+        boolean closedLoop = controlService.isClosedLoop();
         
-        for (Pit pit : pits) {
+        for (int i = 0; i < pits.size(); i++) {
+            Pit pit = pits.get(i);
             PitSensorData data = new PitSensorData();
             data.setPitId(pit.getId());
             
-            // 根据发酵天数生成温度曲线
-            double baseTemp = 25 + Math.sin(pit.getFermentationDay() * 0.1) * 10;
+            // 闭环时取受控模型温度，否则根据发酵天数生成开环温度曲线
+            double baseTemp = closedLoop ? controlService.temperatureAt(i)
+                    : PitControlService.naturalTemperature(pit) + tempOffset;
             data.setTemperature(baseTemp + (random.nextDouble() - 0.5) * 4);
             data.setHumidity(65 + (random.nextDouble() - 0.5) * 20);
             data.setPhValue(3.5 + (random.nextDouble() - 0.5) * 1);
             data.setAcidity(0.5 + random.nextDouble() * 0.5);
-            data.setMoisture(55 + (random.nextDouble() - 0.5) * 10);
+            data.setMoisture(moistureSetpoint + (random.nextDouble() - 0.5) * 10);
             data.setAlcohol(random.nextDouble() * 15);
             
             pitSensorDataRepository.save(data);
+            curveService.record(pit, data.getTemperature());
             
-            // 更新窖池状态
-            String newStatus = "normal";
-            if (data.getTemperature() > 40) {
-                newStatus = "alarm";
-            } else if (data.getTemperature() > 35) {
-                newStatus = "warning";
-            }
+            // 更新窖池状态 - 由告警规则引擎判定
+            String newStatus = ruleEngine.evaluatePit(pit, data, now, transitions);
             
-            if (!pit.getStatus().equals(newStatus)) {
-                pit.setStatus(newStatus);
-                pit.setUpdatedAt(LocalDateTime.now());
-                pitRepository.save(pit);
-            }
+            liveStateService.updatePitStatus(pit, newStatus);
             
             // 更新热力图缓存
             com.brewery.digitaltwin.dto.HeatmapData hd = new com.brewery.digitaltwin.dto.HeatmapData();
@@ -119,20 +275,19 @@ public class SimulatorService {
         }
         
         // 广播WebSocket消息
-        try {
-            RealtimeMessage msg = new RealtimeMessage("pit_data", dataList);
-            webSocketHandler.broadcast(objectMapper.writeValueAsString(msg));
-        } catch (Exception e) {
-            log.error("WebSocket广播失败", e);
-        }
+        webSocketHandler.publish(new RealtimeMessage("pit_data", dataList));
+        return pits.size();
     }
     
-    private void generateDeviceData() {
-        List<Device> devices = deviceRepository.findAll();
+    private int generateDeviceData(List<AlarmRuleEngine.Transition> transitions, List<Alarm> predictiveAlarms) {
+        List<Device> devices = clusterService.ownedDevices(liveStateService.getDevices());
+        if (devices.isEmpty()) return 0;
         List<Map<String, Object>> dataList = new ArrayList<>();
+        long now = System.currentTimeMillis();
         
         for (Device device : devices) {
-            if (!"running".equals(device.getStatus())) continue;
+            // 告警/故障中的设备继续采集，规则恢复后才能回到 running
+            if ("stopped".equals(device.getStatus()) || "maintenance".equals(device.getStatus())) continue;
             
             DeviceData data = new DeviceData();
             data.setDeviceId(device.getId());
@@ -144,23 +299,27 @@ public class SimulatorService {
             
             deviceDataRepository.save(data);
             
-            // 更新设备状态
-            String newStatus = device.getStatus();
-            if (data.getVibration() > 8 || data.getTemperature() > 80) {
-                newStatus = "fault";
-            } else if (data.getVibration() > 5 || data.getTemperature() > 65) {
-                newStatus = "warning";
-            } else {
-                newStatus = "running";
-            }
+            // 更新设备状态 - 由告警规则引擎判定
+            String newStatus = ruleEngine.evaluateDevice(device, data, now, transitions);
             
-            if (!device.getStatus().equals(newStatus)) {
-                device.setStatus(newStatus);
-                device.setUpdatedAt(LocalDateTime.now());
-            }
+            // 只改内存并打脏标记，由 LiveStateService 批量写回
+            liveStateService.updateDeviceStatus(device, newStatus);
+            liveStateService.addRunningHours(device, intervalMs / 3_600_000.0);
             
-            device.setRunningHours(device.getRunningHours() + 0.0014); // ~5秒
-            deviceRepository.save(device);
+            // 在线异常检测：只用本次样本增量更新，不回查历史数据
+            DeviceAnomalyDetector.Assessment assessment = anomalyDetector.update(device.getId(), new double[]{
+                    data.getPower(), data.getSpeed(), data.getVibration(), data.getTemperature(), data.getCurrent()});
+            if (assessment.earlyWarning()) {
+                Alarm alarm = new Alarm();
+                alarm.setLevel("warning");
+                alarm.setType("predictive");
+                alarm.setSource("device-" + device.getDeviceNo());
+                alarm.setZone(device.getLocation());
+                alarm.setMessage(String.format("设备健康度下降至 %.0f，%s 偏离正常模式 (马氏距离 %.2f)",
+                        assessment.health(), assessment.dominantChannel(), assessment.distance()));
+                alarm.setStatus("active");
+                predictiveAlarms.add(alarm);
+            }
             
             Map<String, Object> dataMap = new HashMap<>();
             dataMap.put("deviceId", device.getId());
@@ -169,49 +328,64 @@ public class SimulatorService {
             dataMap.put("temperature", data.getTemperature());
             dataMap.put("vibration", data.getVibration());
             dataMap.put("status", newStatus);
+            dataMap.put("health", assessment.health());
             dataList.add(dataMap);
         }
         
-        try {
-            RealtimeMessage msg = new RealtimeMessage("device_data", dataList);
-            webSocketHandler.broadcast(objectMapper.writeValueAsString(msg));
-        } catch (Exception e) {
-            log.error("WebSocket广播失败", e);
-        }
+        webSocketHandler.publish(new RealtimeMessage("device_data", dataList));
+        return dataList.size();
     }
     
-    private void maybeGenerateAlarm() {
-        // 5%概率生成告警
-        if (random.nextDouble() > 0.05) return;
-        
-        String[] levels = {"info", "warning", "error", "critical"};
-        String[] types = {"temperature", "humidity", "ph", "device", "system"};
-        String[] messages = {
-            "温度超过上限阈值",
-            "湿度异常波动",
-            "pH值偏离正常范围",
-            "设备振动过大",
-            "系统通信延迟"
-        };
-        
-        int idx = random.nextInt(types.length);
-        Alarm alarm = new Alarm();
-        alarm.setLevel(levels[random.nextInt(levels.length)]);
-        alarm.setType(types[idx]);
-        alarm.setSource("pit-A-" + (random.nextInt(20) + 1));
-        alarm.setMessage(messages[idx]);
-        alarm.setStatus("active");
-        
-        alarmRepository.save(alarm);
+    /**
+     * 规则新触发时生成候选告警，连同设备预测性预警一起交由聚合服务去重、汇总后入库推送；恢复不产生新告警
+     */
+    private void raiseRuleAlarms(List<AlarmRuleEngine.Transition> transitions, List<Alarm> predictiveAlarms) {
+        List<Alarm> candidates = new ArrayList<>(predictiveAlarms);
+        List<CorrelationEngine.Event> events = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (AlarmRuleEngine.Transition transition : transitions) {
+            if (!transition.raised()) continue;
+            AlarmRule rule = transition.rule();
+            Alarm alarm = new Alarm();
+            String eventType;
+            if (AlarmRuleEngine.TARGET_PIT.equals(transition.targetType())) {
+                Optional<Pit> pit = liveStateService.getPit(transition.entityId());
+                alarm.setType(rule.getMetric());
+                alarm.setSource("pit-" + pit.map(Pit::getPitNo).orElse(String.valueOf(transition.entityId())));
+                alarm.setZone(pit.map(Pit::getZone).orElse(null));
+                eventType = "pit:" + rule.getMetric();
+            } else {
+                Optional<Device> device = liveStateService.getDevice(transition.entityId());
+                alarm.setType("device");
+                alarm.setSource("device-" + device.map(Device::getDeviceNo).orElse(String.valueOf(transition.entityId())));
+                alarm.setZone(device.map(Device::getLocation).orElse(null));
+                eventType = "device:" + rule.getTargetStatus();
+            }
+            alarm.setLevel(rule.getLevel());
+            alarm.setMessage(String.format("%s: %s 当前值 %.2f (阈值 %.2f)",
+                    rule.getName(), rule.getMetric(), transition.value(), rule.getThreshold()));
+            alarm.setStatus("active");
+            candidates.add(alarm);
+            events.add(new CorrelationEngine.Event(eventType, alarm.getZone(), alarm.getSource(), now));
+        }
         
-        try {
-            RealtimeMessage msg = new RealtimeMessage("alarm", alarm);
-            webSocketHandler.broadcast(objectMapper.writeValueAsString(msg));
-            RealtimeMessage update = new RealtimeMessage("alarm_update", alarm);
-            webSocketHandler.broadcast(objectMapper.writeValueAsString(update));
-        } catch (Exception e) {
-            log.error("告警广播失败", e);
+        // 跨实体关联：根因事件同样作为告警提交，由聚合服务按根因来源去重
+        List<CorrelationEngine.RootCause> rootCauses = correlationEngine.process(events);
+        for (CorrelationEngine.RootCause cause : rootCauses) {
+            Alarm alarm = new Alarm();
+            alarm.setLevel("error");
+            alarm.setType("correlation");
+            alarm.setSource(cause.causeSource());
+            alarm.setZone(cause.zone());
+            alarm.setMessage(String.format("根因分析: %s 异常后 %d 秒 %s 出现异常 (%s)",
+                    cause.causeSource(), cause.lagMs() / 1000, cause.effectSource(), cause.pattern()));
+            alarm.setStatus("active");
+            candidates.add(alarm);
+        }
+        if (!rootCauses.isEmpty()) {
+            webSocketHandler.publish(new RealtimeMessage("root_cause", rootCauses));
         }
+        alarmAggregationService.submit(candidates);
     }
 
     private void broadcastDashboardUpdate() {
@@ -224,8 +398,7 @@ public class SimulatorService {
             alarms.put("active", stats.getActiveAlarms());
             data.put("temperature", temperature);
             data.put("alarms", alarms);
-            RealtimeMessage msg = new RealtimeMessage("dashboard_update", data);
-            webSocketHandler.broadcast(objectMapper.writeValueAsString(msg));
+            webSocketHandler.publish(new RealtimeMessage("dashboard_update", data));
         } catch (Exception e) {
             log.error("仪表盘数据广播失败", e);
         }
@@ -0,0 +1,184 @@
+package com.brewery.digitaltwin.service;
+
+/**
+ * 振动波形频谱分析 - 无分配 FFT
+ *
+ * 所有缓冲区 (实部/虚部、旋转因子、Hann 窗) 在构造时按最大块长一次性分配，
+ * analyze 过程中不再创建任何对象。实例不是线程安全的，每个线程持有一个。
+ */
+public final class SpectrumAnalyzer {
+
+    public static final int BAND_SHAFT = 0;  // 1X 转频
+    public static final int BAND_BPFO = 1;   // 外圈故障频率
+    public static final int BAND_BPFI = 2;   // 内圈故障频率
+    public static final int BAND_BSF = 3;    // 滚动体故障频率
+    public static final int BAND_FTF = 4;    // 保持架故障频率
+    public static final int BANDS = 5;
+
+    private final int maxFftSize;
+    private final double[] re;
+    private final double[] im;
+    private final double[] cos;
+    private final double[] sin;
+    private final double[] window;
+    private int windowSize = 0;
+
+    /**
+     * 单块分析结果，由调用方复用
+     */
+    public static final class Features {
+        public double rms;
+        public double peak;
+        public double crestFactor;
+        public double kurtosis;
+        public double dominantFrequency;
+        public final double[] bandEnergy = new double[BANDS];  // 各故障频带能量占总能量的比例
+        public final double[] bandFrequency = new double[BANDS];
+        public final float[] envelope;
+        public int envelopeLength;
+
+        public Features(int envelopePoints) {
+            this.envelope = new float[envelopePoints];
+        }
+    }
+
+    public SpectrumAnalyzer(int maxBlockSize) {
+        this.maxFftSize = Integer.highestOneBit(Math.max(2, maxBlockSize));
+        this.re = new double[maxFftSize];
+        this.im = new double[maxFftSize];
+        this.cos = new double[maxFftSize / 2];
+        this.sin = new double[maxFftSize / 2];
+        for (int i = 0; i < maxFftSize / 2; i++) {
+            double angle = -2 * Math.PI * i / maxFftSize;
+            cos[i] = Math.cos(angle);
+            sin[i] = Math.sin(angle);
+        }
+        this.window = new double[maxFftSize];
+    }
+
+    /**
+     * 分析一块采样
+     *
+     * @param samples    采样缓冲区，只读取前 length 个
+     * @param sampleRate 采样率 Hz
+     * @param faultHz    各频带中心频率 (按 BAND_* 顺序)
+     * @param tolerance  频带相对宽度，如 0.03 表示 ±3%
+     * @param harmonics  每个故障频率累计的谐波数
+     */
+    public void analyze(float[] samples, int length, double sampleRate, double[] faultHz,
+                        double tolerance, int harmonics, Features out) {
+        // 时域特征
+        double sum = 0;
+        for (int i = 0; i < length; i++) sum += samples[i];
+        double mean = sum / length;
+        double m2 = 0, m4 = 0, peak = 0;
+        for (int i = 0; i < length; i++) {
+            double x = samples[i] - mean;
+            double x2 = x * x;
+            m2 += x2;
+            m4 += x2 * x2;
+            peak = Math.max(peak, Math.abs(x));
+        }
+        m2 /= length;
+        m4 /= length;
+        out.rms = Math.sqrt(m2);
+        out.peak = peak;
+        out.crestFactor = out.rms > 0 ? peak / out.rms : 0;
+        out.kurtosis = m2 > 0 ? m4 / (m2 * m2) : 0;
+
+        // 包络：每段取绝对值最大值
+        int points = Math.min(out.envelope.length, length);
+        out.envelopeLength = points;
+        for (int p = 0; p < points; p++) {
+            int from = (int) ((long) p * length / points);
+            int to = (int) ((long) (p + 1) * length / points);
+            double max = 0;
+            for (int i = from; i < to; i++) max = Math.max(max, Math.abs(samples[i] - mean));
+            out.envelope[p] = (float) max;
+        }
+
+        // 频域特征：取不超过块长的最大 2 的幂，去均值、加 Hann 窗后做 FFT
+        int n = Math.min(maxFftSize, Integer.highestOneBit(Math.max(2, length)));
+        prepareWindow(n);
+        for (int i = 0; i < n; i++) {
+            re[i] = (samples[i] - mean) * window[i];
+            im[i] = 0;
+        }
+        fft(n);
+
+        double binHz = sampleRate / n;
+        double total = 0;
+        double maxPower = -1;
+        int maxBin = 0;
+        for (int k = 1; k <= n / 2; k++) {
+            double power = re[k] * re[k] + im[k] * im[k];
+            re[k] = power;  // 复用实部存放功率谱
+            total += power;
+            if (power > maxPower) {
+                maxPower = power;
+                maxBin = k;
+            }
+        }
+        out.dominantFrequency = maxBin * binHz;
+
+        for (int b = 0; b < BANDS; b++) {
+            out.bandFrequency[b] = faultHz[b];
+            double energy = 0;
+            int bands = b == BAND_SHAFT ? 1 : harmonics;
+            for (int h = 1; h <= bands; h++) {
+                double center = faultHz[b] * h;
+                double halfWidth = Math.max(binHz, center * tolerance);
+                int lo = Math.max(1, (int) Math.floor((center - halfWidth) / binHz));
+                int hi = Math.min(n / 2, (int) Math.ceil((center + halfWidth) / binHz));
+                for (int k = lo; k <= hi; k++) energy += re[k];
+            }
+            out.bandEnergy[b] = total > 0 ? energy / total : 0;
+        }
+    }
+
+    public int getMaxFftSize() {
+        return maxFftSize;
+    }
+
+    private void prepareWindow(int n) {
+        if (windowSize == n) return;
+        for (int i = 0; i < n; i++) {
+            window[i] = 0.5 - 0.5 * Math.cos(2 * Math.PI * i / (n - 1));
+        }
+        windowSize = n;
+    }
+
+    /**
+     * 原地迭代基 2 FFT，n 为 2 的幂且不超过 maxFftSize
+     */
+    private void fft(int n) {
+        // 位反转置换
+        for (int i = 1, j = 0; i < n; i++) {
+            int bit = n >> 1;
+            for (; (j & bit) != 0; bit >>= 1) j ^= bit;
+            j ^= bit;
+            if (i < j) {
+                double t = re[i]; re[i] = re[j]; re[j] = t;
+                t = im[i]; im[i] = im[j]; im[j] = t;
+            }
+        }
+        for (int len = 2; len <= n; len <<= 1) {
+            int half = len >> 1;
+            int step = maxFftSize / len;
+            for (int start = 0; start < n; start += len) {
+                for (int k = 0; k < half; k++) {
+                    double wr = cos[k * step];
+                    double wi = sin[k * step];
+                    int a = start + k;
+                    int b = a + half;
+                    double xr = re[b] * wr - im[b] * wi;
+                    double xi = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - xr;
+                    im[b] = im[a] - xi;
+                    re[a] += xr;
+                    im[a] += xi;
+                }
+            }
+        }
+    }
+}
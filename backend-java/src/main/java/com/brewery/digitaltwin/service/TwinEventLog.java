@@ -0,0 +1,274 @@
+package com.brewery.digitaltwin.service;
+
+import com.brewery.digitaltwin.service.EventLogShard.Kind;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 孪生状态事件日志 - 只追加记录窖池/设备状态、发酵天数、批次状态与工艺参数的每次变化，用于按时刻重建孪生状态
+ *
+ * 实体按 (类型, ID) 散列到 app.event-log.shards 个分片，每个分片独立加锁、独立写段文件，写入互不阻塞。
+ * 各分片在事件数达到 max-events 或距上个快照超过 snapshot-interval 时写快照并换段，
+ * 重建任一时刻只需每个分片读一个快照加一段事件，重放代价有上界；各分片的重放在 replay-threads 个线程上并行。
+ * 值与当前状态相同的记录直接忽略，调用方不必自己判断是否变化。
+ * 写入先进缓冲区，每 flush-interval 刷到文件，异常退出最多丢失一个刷新间隔的事件。
+ */
+@Slf4j
+@Service
+public class TwinEventLog {
+
+    private static final long ERROR_LOG_INTERVAL_MS = 30_000;
+
+    private final Path dir;
+    private final int configuredShards;
+    private final long maxEvents;
+    private final long snapshotIntervalMs;
+    private final long retentionMs;
+    private final int replayThreads;
+    private final AtomicLong failures = new AtomicLong();
+    private volatile long lastErrorLog;
+
+    private volatile EventLogShard[] shards;
+    private ExecutorService replayPool;
+
+    /**
+     * 某一时刻的孪生状态：按事件类型分表的 ID → 值，以及重建代价
+     */
+    public record Reconstruction(long at, Map<Long, String> pitStatus, Map<Long, Integer> pitDay,
+                                 Map<Long, String> deviceStatus, Map<Long, Double> deviceHours,
+                                 Map<Long, String> batchStatus, Map<Long, Double> paramValue,
+                                 long oldestSnapshot, long events, long millis) {
+    }
+
+    public TwinEventLog(@Value("${app.event-log.dir:}") String dir,
+                        @Value("${app.event-log.shards:4}") int shards,
+                        @Value("${app.event-log.max-events:50000}") long maxEvents,
+                        @Value("${app.event-log.snapshot-interval:600000}") long snapshotIntervalMs,
+                        @Value("${app.event-log.retention-days:30}") long retentionDays,
+                        @Value("${app.event-log.replay-threads:0}") int replayThreads) {
+        this.dir = dir.isBlank() ? null : Path.of(dir);
+        this.configuredShards = Math.max(1, shards);
+        this.maxEvents = Math.max(1, maxEvents);
+        this.snapshotIntervalMs = snapshotIntervalMs;
+        this.retentionMs = retentionDays > 0 ? TimeUnit.DAYS.toMillis(retentionDays) : 0;
+        this.replayThreads = replayThreads > 0 ? replayThreads : Runtime.getRuntime().availableProcessors();
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (dir == null) return;
+        long start = System.nanoTime();
+        Files.createDirectories(dir);
+        // 分片数决定实体落在哪个分片，已有日志时沿用原分片数
+        int existing = EventLogShard.existingShardCount(dir);
+        int count = existing > 0 ? existing : configuredShards;
+        if (existing > 0 && existing != configuredShards) {
+            log.warn("事件日志目录已有 {} 个分片，忽略配置的 {} 个", existing, configuredShards);
+        }
+        EventLogShard[] opened = new EventLogShard[count];
+        long now = System.currentTimeMillis();
+        long replayed = 0;
+        for (int i = 0; i < count; i++) {
+            opened[i] = new EventLogShard(dir, i);
+            replayed += opened[i].open(now);
+        }
+        shards = opened;
+        AtomicInteger threadSeq = new AtomicInteger();
+        replayPool = Executors.newFixedThreadPool(Math.min(replayThreads, count), r -> {
+            Thread thread = new Thread(r, "event-log-replay-" + threadSeq.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("事件日志已打开: {} ({} 个分片), 恢复时重放 {} 个事件, {} ms",
+                dir, count, replayed, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public boolean isEnabled() {
+        return shards != null;
+    }
+
+    public void pitStatus(long pitId, String status) {
+        record(Kind.PIT_STATUS, pitId, status);
+    }
+
+    public void pitFermentationDay(long pitId, Integer day) {
+        record(Kind.PIT_DAY, pitId, day);
+    }
+
+    public void deviceStatus(long deviceId, String status) {
+        record(Kind.DEVICE_STATUS, deviceId, status);
+    }
+
+    public void deviceRunningHours(long deviceId, Double hours) {
+        record(Kind.DEVICE_HOURS, deviceId, hours);
+    }
+
+    public void batchStatus(long batchId, String status) {
+        record(Kind.BATCH_STATUS, batchId, status);
+    }
+
+    /**
+     * 在当前事务提交后记录批次状态：提交前记录时回滚的修改也会留在日志里；不在事务中时立即记录
+     */
+    public void batchStatusAfterCommit(long batchId, String status) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            batchStatus(batchId, status);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                batchStatus(batchId, status);
+            }
+        });
+    }
+
+    public void paramValue(long paramId, Double value) {
+        record(Kind.PARAM_VALUE, paramId, value);
+    }
+
+    private void record(Kind kind, long id, Object value) {
+        EventLogShard[] current = shards;
+        if (current == null || value == null) return;
+        try {
+            shardOf(current, kind, id).append(kind, id, value, System.currentTimeMillis());
+        } catch (IOException e) {
+            // 日志写入失败不影响仿真和业务写入
+            failures.incrementAndGet();
+            long now = System.currentTimeMillis();
+            if (now - lastErrorLog > ERROR_LOG_INTERVAL_MS) {
+                lastErrorLog = now;
+                log.error("事件日志写入失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static EventLogShard shardOf(EventLogShard[] shards, Kind kind, long id) {
+        long h = (id ^ ((long) kind.code << 56)) * 0x9E3779B97F4A7C15L;
+        return shards[(int) Long.remainderUnsigned(h >>> 16, shards.length)];
+    }
+
+    /**
+     * 刷新缓冲区；到达事件数或时间阈值的分片写快照换段，并清理超过保留期的旧段
+     */
+    @Scheduled(fixedDelayString = "${app.event-log.flush-interval:1000}")
+    public void maintain() {
+        EventLogShard[] current = shards;
+        if (current == null) return;
+        long now = System.currentTimeMillis();
+        for (EventLogShard shard : current) {
+            try {
+                if (shard.needsSnapshot(now, maxEvents, snapshotIntervalMs)) {
+                    shard.roll(now);
+                    if (retentionMs > 0) shard.retain(now - retentionMs);
+                } else {
+                    shard.flush();
+                }
+            } catch (IOException e) {
+                failures.incrementAndGet();
+                log.error("事件日志刷新失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 重建 at 时刻的孪生状态：各分片从不晚于 at 的最近快照并行重放
+     */
+    public Reconstruction stateAt(long at) throws IOException {
+        EventLogShard[] current = shards;
+        if (current == null) throw new IllegalArgumentException("事件日志未启用 (app.event-log.dir)");
+        long start = System.nanoTime();
+        List<Future<EventLogShard.Replay>> futures = new ArrayList<>(current.length);
+        for (EventLogShard shard : current) futures.add(replayPool.submit(() -> shard.stateAt(at)));
+
+        EventLogShard.State merged = new EventLogShard.State();
+        long events = 0;
+        long oldestSnapshot = Long.MAX_VALUE;
+        try {
+            for (Future<EventLogShard.Replay> future : futures) {
+                EventLogShard.Replay replay = future.get();
+                if (replay == null) {
+                    throw new IllegalArgumentException("早于事件日志起点，最早可重建时刻为 "
+                            + toLocalDateTime(earliestTime(current)));
+                }
+                merged.putAll(replay.state());
+                events += replay.events();
+                oldestSnapshot = Math.min(oldestSnapshot, replay.snapshotTime());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("重建被中断");
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            if (e.getCause() instanceof IOException io) throw io;
+            throw new IllegalStateException(e.getCause());
+        }
+        return new Reconstruction(at, typed(merged, Kind.PIT_STATUS), typed(merged, Kind.PIT_DAY),
+                typed(merged, Kind.DEVICE_STATUS), typed(merged, Kind.DEVICE_HOURS),
+                typed(merged, Kind.BATCH_STATUS), typed(merged, Kind.PARAM_VALUE),
+                oldestSnapshot, events, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Map<Long, T> typed(EventLogShard.State state, Kind kind) {
+        return (Map<Long, T>) (Map<Long, ?>) state.get(kind);
+    }
+
+    private static long earliestTime(EventLogShard[] shards) {
+        // 所有分片都能重建的最早时刻
+        long earliest = Long.MIN_VALUE;
+        for (EventLogShard shard : shards) earliest = Math.max(earliest, shard.earliestTime());
+        return earliest;
+    }
+
+    static LocalDateTime toLocalDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        EventLogShard[] current = shards;
+        stats.put("enabled", current != null);
+        if (current == null) return stats;
+        stats.put("dir", dir.toString());
+        stats.put("earliest", toLocalDateTime(earliestTime(current)));
+        stats.put("maxEventsPerSegment", maxEvents);
+        stats.put("failures", failures.get());
+        List<Map<String, Object>> shardStats = new ArrayList<>();
+        for (EventLogShard shard : current) shardStats.add(shard.getStats());
+        stats.put("shards", shardStats);
+        return stats;
+    }
+
+    @PreDestroy
+    public void close() {
+        EventLogShard[] current = shards;
+        if (current == null) return;
+        shards = null;
+        for (EventLogShard shard : current) {
+            try {
+                shard.close();
+            } catch (IOException e) {
+                log.error("事件日志关闭失败: {}", e.getMessage());
+            }
+        }
+        replayPool.shutdownNow();
+    }
+}
@@ -0,0 +1,140 @@
+package com.brewery.digitaltwin.service;
+
+import com.brewery.digitaltwin.entity.Device;
+import com.brewery.digitaltwin.entity.Pit;
+import com.brewery.digitaltwin.entity.ProductionBatch;
+import com.brewery.digitaltwin.repository.ProductionBatchRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 孪生状态历史 - 把当前状态同步进事件日志，并按时刻重建完整的孪生状态
+ *
+ * 状态变化由 LiveStateService / ProductionService / 参数变更事件在发生时写入日志；启动时把数据库中的当前状态
+ * 与日志恢复出的状态对齐一次 (初始化数据、停机期间的修改)，设备累计运行小时按 hours-interval 采样记录。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TwinHistoryService {
+
+    private final TwinEventLog eventLog;
+    private final LiveStateService liveStateService;
+    private final ProductionBatchRepository batchRepository;
+    private final ParamStore paramStore;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(10)
+    public void reconcile() {
+        if (!eventLog.isEnabled()) return;
+        long start = System.nanoTime();
+        for (Pit pit : liveStateService.getPits()) {
+            eventLog.pitStatus(pit.getId(), pit.getStatus());
+            eventLog.pitFermentationDay(pit.getId(), pit.getFermentationDay());
+        }
+        for (Device device : liveStateService.getDevices()) {
+            eventLog.deviceStatus(device.getId(), device.getStatus());
+            eventLog.deviceRunningHours(device.getId(), device.getRunningHours());
+        }
+        for (ProductionBatch batch : batchRepository.findAll()) {
+            eventLog.batchStatus(batch.getId(), batch.getStatus());
+        }
+        for (ProductionParam param : paramStore.snapshot().params()) {
+            eventLog.paramValue(param.getId(), param.getValue());
+        }
+        log.info("事件日志已与当前状态对齐, {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Scheduled(fixedDelayString = "${app.event-log.hours-interval:300000}",
+            initialDelayString = "${app.event-log.hours-interval:300000}")
+    public void sampleRunningHours() {
+        if (!eventLog.isEnabled()) return;
+        for (Device device : liveStateService.getDevices()) {
+            eventLog.deviceRunningHours(device.getId(), device.getRunningHours());
+        }
+    }
+
+    @EventListener
+    public void onParamChange(ParamChangeEvent event) {
+        eventLog.paramValue(event.current().getId(), event.current().getValue());
+    }
+
+    /**
+     * at 时刻的孪生状态；编号、位置等不变属性取当前值，at 之后新建的实体不出现在结果中
+     */
+    public Map<String, Object> stateAt(LocalDateTime at) throws IOException {
+        TwinEventLog.Reconstruction state = eventLog.stateAt(at.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        Map<Long, Pit> pits = liveStateService.getPits().stream().collect(Collectors.toMap(Pit::getId, Function.identity()));
+        Map<Long, Device> devices = liveStateService.getDevices().stream()
+                .collect(Collectors.toMap(Device::getId, Function.identity()));
+
+        List<Map<String, Object>> pitList = new ArrayList<>(state.pitStatus().size());
+        new TreeMap<>(state.pitStatus()).forEach((id, status) -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            Pit pit = pits.get(id);
+            item.put("pitId", id);
+            item.put("pitNo", pit != null ? pit.getPitNo() : null);
+            item.put("zone", pit != null ? pit.getZone() : null);
+            item.put("status", status);
+            item.put("fermentationDay", state.pitDay().get(id));
+            pitList.add(item);
+        });
+        List<Map<String, Object>> deviceList = new ArrayList<>(state.deviceStatus().size());
+        new TreeMap<>(state.deviceStatus()).forEach((id, status) -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            Device device = devices.get(id);
+            item.put("deviceId", id);
+            item.put("deviceNo", device != null ? device.getDeviceNo() : null);
+            item.put("status", status);
+            item.put("runningHours", state.deviceHours().get(id));
+            deviceList.add(item);
+        });
+        Map<Long, String> batchNos = new HashMap<>();
+        batchRepository.findAllById(state.batchStatus().keySet()).forEach(b -> batchNos.put(b.getId(), b.getBatchNo()));
+        List<Map<String, Object>> batchList = new ArrayList<>(state.batchStatus().size());
+        new TreeMap<>(state.batchStatus()).forEach((id, status) -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("batchId", id);
+            item.put("batchNo", batchNos.get(id));
+            item.put("status", status);
+            batchList.add(item);
+        });
+        Map<Long, String> paramCodes = new HashMap<>();
+        paramStore.snapshot().params().forEach(p -> paramCodes.put(p.getId(), p.getCode()));
+        List<Map<String, Object>> paramList = new ArrayList<>(state.paramValue().size());
+        new TreeMap<>(state.paramValue()).forEach((id, value) -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("paramId", id);
+            item.put("code", paramCodes.get(id));
+            item.put("value", value);
+            paramList.add(item);
+        });
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("at", at);
+        result.put("snapshotAt", TwinEventLog.toLocalDateTime(state.oldestSnapshot()));
+        result.put("replayedEvents", state.events());
+        result.put("replayMillis", state.millis());
+        result.put("pits", pitList);
+        result.put("devices", deviceList);
+        result.put("batches", batchList);
+        result.put("params", paramList);
+        return result;
+    }
+
+    public Map<String, Object> getStats() {
+        return eventLog.getStats();
+    }
+}
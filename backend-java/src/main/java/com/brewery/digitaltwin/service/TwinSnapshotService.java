@@ -0,0 +1,192 @@
+package com.brewery.digitaltwin.service;
+
+import com.brewery.digitaltwin.dto.HeatmapData;
+import com.brewery.digitaltwin.entity.Device;
+import com.brewery.digitaltwin.entity.Pit;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * 孪生状态快照 - 紧凑二进制检查点
+ *
+ * 按 app.snapshot.interval 及关闭时把内存中的孪生状态写入 app.snapshot.file：热力图 (各窖池位置、状态与最近读数)
+ * 与设备累计运行小时。启动时在初始化数据之后读回，仪表盘在第一个仿真周期之前即显示重启前的真实读数；
+ * 窖池记录自带编号与位置，恢复热力图只需读文件和一次计数查询，不必加载窖池实体。
+ *
+ * 文件布局 (DataOutput 大端)：magic version savedAt(long) 窖池总数(int) 最大窖池ID(long) pitCount deviceCount；
+ * 窖池记录 id(long) row col(int) temperature humidity ph(float，缺失为 NaN) status pitNo zone(UTF)；
+ * 设备记录 id(long) runningHours(double)；末尾为前面全部字节的 CRC32。先写临时文件再原子替换，
+ * 写到一半的文件不会覆盖上一个有效快照。窖池总数与最大 ID 同当前数据库不一致 (拓扑已变化) 时不恢复热力图；
+ * 快照早于 max-age 时读数已无意义，同样只恢复设备累计量。
+ */
+@Slf4j
+@Service
+@Order(2)
+public class TwinSnapshotService implements ApplicationRunner {
+
+    private static final int MAGIC = 0x42545753;  // "BTWS"
+    private static final int VERSION = 1;
+
+    private final DashboardService dashboardService;
+    private final LiveStateService liveStateService;
+    private final JdbcTemplate jdbcTemplate;
+    private final Path file;
+    private final long maxAgeMs;
+
+    public TwinSnapshotService(DashboardService dashboardService,
+                               LiveStateService liveStateService,
+                               JdbcTemplate jdbcTemplate,
+                               @Value("${app.snapshot.file:}") String file,
+                               @Value("${app.snapshot.max-age:3600000}") long maxAgeMs) {
+        this.dashboardService = dashboardService;
+        this.liveStateService = liveStateService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.file = file.isBlank() ? null : Path.of(file);
+        this.maxAgeMs = maxAgeMs;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (file == null || !Files.exists(file)) return;
+        try {
+            restore();
+        } catch (Exception e) {
+            log.warn("状态快照恢复失败，等待仿真更新: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.snapshot.interval:60000}", initialDelayString = "${app.snapshot.interval:60000}")
+    public void checkpoint() {
+        if (file == null) return;
+        try {
+            save();
+        } catch (IOException e) {
+            log.error("状态快照写入失败: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void checkpointOnShutdown() {
+        checkpoint();
+    }
+
+    synchronized void save() throws IOException {
+        long start = System.nanoTime();
+        List<Pit> pits = liveStateService.getPits();
+        List<Device> devices = liveStateService.getDevices();
+        List<HeatmapData> heatmap = dashboardService.getHeatmapSnapshot();
+        long maxPitId = pits.stream().mapToLong(Pit::getId).max().orElse(0);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + heatmap.size() * 48 + devices.size() * 16);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(System.currentTimeMillis());
+        out.writeInt(pits.size());
+        out.writeLong(maxPitId);
+        out.writeInt(heatmap.size());
+        out.writeInt(devices.size());
+        for (HeatmapData hd : heatmap) {
+            out.writeLong(hd.getPitId());
+            out.writeInt(hd.getRow() != null ? hd.getRow() : 0);
+            out.writeInt(hd.getCol() != null ? hd.getCol() : 0);
+            out.writeFloat(floatOrNaN(hd.getTemperature()));
+            out.writeFloat(floatOrNaN(hd.getHumidity()));
+            out.writeFloat(floatOrNaN(hd.getPhValue()));
+            out.writeUTF(Objects.toString(hd.getStatus(), ""));
+            out.writeUTF(Objects.toString(hd.getPitNo(), ""));
+            out.writeUTF(Objects.toString(hd.getZone(), ""));
+        }
+        for (Device device : devices) {
+            out.writeLong(device.getId());
+            out.writeDouble(device.getRunningHours() != null ? device.getRunningHours() : 0);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream stream = Files.newOutputStream(tmp)) {
+            bytes.writeTo(stream);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.debug("状态快照已写入: {} 窖池, {} 设备, {} 字节, {} ms",
+                heatmap.size(), devices.size(), bytes.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    synchronized void restore() throws IOException {
+        long start = System.nanoTime();
+        byte[] bytes = Files.readAllBytes(file);
+        if (bytes.length < 40) throw new IOException("不是有效的状态快照");
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 4);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("不是有效的状态快照");
+        if ((int) crc.getValue() != new DataInputStream(new ByteArrayInputStream(bytes, bytes.length - 4, 4)).readInt()) {
+            throw new IOException("快照校验失败");
+        }
+        long savedAt = in.readLong();
+        int pitTotal = in.readInt();
+        long maxPitId = in.readLong();
+        int pitCount = in.readInt();
+        int deviceCount = in.readInt();
+
+        List<HeatmapData> heatmap = new ArrayList<>(pitCount);
+        for (int i = 0; i < pitCount; i++) {
+            HeatmapData hd = new HeatmapData();
+            hd.setPitId(in.readLong());
+            hd.setRow(in.readInt());
+            hd.setCol(in.readInt());
+            hd.setTemperature(doubleOrNull(in.readFloat()));
+            hd.setHumidity(doubleOrNull(in.readFloat()));
+            hd.setPhValue(doubleOrNull(in.readFloat()));
+            hd.setStatus(in.readUTF());
+            hd.setPitNo(in.readUTF());
+            hd.setZone(in.readUTF());
+            heatmap.add(hd);
+        }
+        long[] deviceIds = new long[deviceCount];
+        double[] runningHours = new double[deviceCount];
+        for (int i = 0; i < deviceCount; i++) {
+            deviceIds[i] = in.readLong();
+            runningHours[i] = in.readDouble();
+        }
+
+        Map<String, Object> topology = jdbcTemplate.queryForMap("SELECT COUNT(*) AS total, MAX(id) AS max_id FROM pits");
+        boolean sameTopology = ((Number) topology.get("total")).intValue() == pitTotal
+                && (topology.get("max_id") != null ? ((Number) topology.get("max_id")).longValue() : 0) == maxPitId;
+        boolean fresh = System.currentTimeMillis() - savedAt <= maxAgeMs;
+        if (sameTopology && fresh) dashboardService.restoreHeatmap(heatmap);
+        long heatmapMillis = (System.nanoTime() - start) / 1_000_000;
+
+        int devices = 0;
+        for (int i = 0; i < deviceCount; i++) {
+            if (liveStateService.restoreRunningHours(deviceIds[i], runningHours[i])) devices++;
+        }
+        log.info("状态快照已恢复: {} 窖池读数 ({} ms{}), {} 设备累计量, 快照时间 {} 秒前, 共 {} ms",
+                sameTopology && fresh ? heatmap.size() : 0, heatmapMillis,
+                !sameTopology ? "，窖池拓扑已变化未恢复" : !fresh ? "，读数已过期未恢复" : "",
+                devices, (System.currentTimeMillis() - savedAt) / 1000, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static float floatOrNaN(Double value) {
+        return value != null ? value.floatValue() : Float.NaN;
+    }
+
+    private static Double doubleOrNull(float value) {
+        return Float.isNaN(value) ? null : (double) value;
+    }
+}
@@ -0,0 +1,93 @@
+package com.brewery.digitaltwin.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 原始波形环形文件 - 定长槽位，写满后覆盖最旧的块，文件大小不超过 slots × slotSize
+ *
+ * 槽位布局 (小端)：seq(long) deviceId(long) timestamp(long) sampleRate(double) length(int) 填充(int)，
+ * 之后为 maxBlockSize 个 float32 采样。seq 为 0 表示空槽。
+ */
+final class WaveformRingFile implements AutoCloseable {
+
+    private static final int HEADER = 40;
+
+    private final FileChannel channel;
+    private final int slots;
+    private final int maxBlockSize;
+    private final long slotSize;
+    private final ByteBuffer buffer;  // 写入复用，访问由 this 监视器保护
+    private long seq;
+
+    WaveformRingFile(Path path, int slots, int maxBlockSize) throws IOException {
+        if (path.getParent() != null) Files.createDirectories(path.getParent());
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.slots = slots;
+        this.maxBlockSize = maxBlockSize;
+        this.slotSize = HEADER + 4L * maxBlockSize;
+        this.buffer = ByteBuffer.allocateDirect((int) slotSize).order(ByteOrder.LITTLE_ENDIAN);
+        this.seq = recoverSeq();
+    }
+
+    synchronized void append(long deviceId, long timestamp, double sampleRate, float[] samples, int length) throws IOException {
+        long next = ++seq;
+        buffer.clear();
+        buffer.putLong(next).putLong(deviceId).putLong(timestamp).putDouble(sampleRate).putInt(length).putInt(0);
+        for (int i = 0; i < length; i++) buffer.putFloat(samples[i]);
+        buffer.flip();
+        long position = ((next - 1) % slots) * slotSize;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * 读取某设备最近写入的一块原始波形，不存在返回 null
+     */
+    synchronized Block readLatest(long deviceId) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        long bestSeq = 0;
+        int bestSlot = -1;
+        for (int slot = 0; slot < slots; slot++) {
+            header.clear();
+            if (channel.read(header, slot * slotSize) < HEADER) break;
+            long slotSeq = header.getLong(0);
+            if (slotSeq > bestSeq && header.getLong(8) == deviceId) {
+                bestSeq = slotSeq;
+                bestSlot = slot;
+            }
+        }
+        if (bestSlot < 0) return null;
+        ByteBuffer data = ByteBuffer.allocate((int) slotSize).order(ByteOrder.LITTLE_ENDIAN);
+        channel.read(data, bestSlot * slotSize);
+        int length = Math.min(data.getInt(32), maxBlockSize);
+        float[] samples = new float[length];
+        for (int i = 0; i < length; i++) samples[i] = data.getFloat(HEADER + 4 * i);
+        return new Block(deviceId, data.getLong(16), data.getDouble(24), samples);
+    }
+
+    record Block(long deviceId, long timestamp, double sampleRate, float[] samples) {
+    }
+
+    private long recoverSeq() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        long max = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            header.clear();
+            if (channel.read(header, slot * slotSize) < 8) break;
+            max = Math.max(max, header.getLong(0));
+        }
+        return max;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
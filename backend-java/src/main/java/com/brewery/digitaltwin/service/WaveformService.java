@@ -0,0 +1,217 @@
+package com.brewery.digitaltwin.service;
+
+import com.brewery.digitaltwin.dto.RealtimeMessage;
+import com.brewery.digitaltwin.entity.VibrationFeature;
+import com.brewery.digitaltwin.repository.VibrationFeatureRepository;
+import com.brewery.digitaltwin.websocket.RealtimeWebSocketHandler;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 高频振动波形接入
+ *
+ * 请求体为小端 float32 原始采样块，读入线程私有的可复用缓冲区后做时域与频谱特征提取，
+ * 只持久化特征值 (RMS、峰值、峰值因子、峭度、主频、轴承故障频带能量) 和可选的降采样包络；
+ * 原始块可选写入定长环形文件，供事后排查。
+ */
+@Slf4j
+@Service
+public class WaveformService {
+
+    private final VibrationFeatureRepository featureRepository;
+    private final RealtimeWebSocketHandler webSocketHandler;
+    private final int maxBlockSize;
+    private final double defaultRpm;
+    private final double tolerance;
+    private final int harmonics;
+    private final double ballCount;
+    private final double ballRatio;  // 滚动体直径 / 节圆直径 × cos(接触角)
+    private final WaveformRingFile ringFile;
+    private final ThreadLocal<Workspace> workspaces;
+
+    /**
+     * 线程私有工作区：读缓冲、采样缓冲、分析器与结果对象全部复用
+     */
+    private static final class Workspace {
+        final byte[] bytes;
+        final float[] samples;
+        final SpectrumAnalyzer analyzer;
+        final SpectrumAnalyzer.Features features;
+        final double[] faultHz = new double[SpectrumAnalyzer.BANDS];
+
+        Workspace(int maxBlockSize, int envelopePoints) {
+            this.bytes = new byte[maxBlockSize * 4];
+            this.samples = new float[maxBlockSize];
+            this.analyzer = new SpectrumAnalyzer(maxBlockSize);
+            this.features = new SpectrumAnalyzer.Features(envelopePoints);
+        }
+    }
+
+    public WaveformService(
+            VibrationFeatureRepository featureRepository,
+            RealtimeWebSocketHandler webSocketHandler,
+            @Value("${app.waveform.max-block:16384}") int maxBlockSize,
+            @Value("${app.waveform.envelope-points:64}") int envelopePoints,
+            @Value("${app.waveform.default-rpm:1500}") double defaultRpm,
+            @Value("${app.waveform.band-tolerance:0.03}") double tolerance,
+            @Value("${app.waveform.harmonics:3}") int harmonics,
+            @Value("${app.waveform.bearing.balls:9}") double ballCount,
+            @Value("${app.waveform.bearing.ball-ratio:0.2}") double ballRatio,
+            @Value("${app.waveform.ring-file:}") String ringFilePath,
+            @Value("${app.waveform.ring-slots:256}") int ringSlots) throws IOException {
+        this.featureRepository = featureRepository;
+        this.webSocketHandler = webSocketHandler;
+        this.maxBlockSize = maxBlockSize;
+        this.defaultRpm = defaultRpm;
+        this.tolerance = tolerance;
+        this.harmonics = Math.max(1, harmonics);
+        this.ballCount = ballCount;
+        this.ballRatio = ballRatio;
+        this.ringFile = ringFilePath.isBlank() ? null : new WaveformRingFile(Path.of(ringFilePath), ringSlots, maxBlockSize);
+        this.workspaces = ThreadLocal.withInitial(() -> new Workspace(maxBlockSize, envelopePoints));
+    }
+
+    /**
+     * 接入一块原始波形并保存特征
+     *
+     * @param body       小端 float32 采样
+     * @param rpm        转速，为空时使用默认转速计算故障频率
+     * @param keepEnvelope 是否保存降采样包络
+     */
+    public VibrationFeature ingest(Long deviceId, InputStream body, double sampleRate, Double rpm,
+                                   boolean keepEnvelope) throws IOException {
+        if (sampleRate <= 0) {
+            throw new IllegalArgumentException("采样率必须大于 0");
+        }
+        Workspace ws = workspaces.get();
+        int length = readSamples(body, ws);
+        if (length < 16) {
+            throw new IllegalArgumentException("采样点数过少");
+        }
+
+        double shaftHz = (rpm != null && rpm > 0 ? rpm : defaultRpm) / 60.0;
+        faultFrequencies(shaftHz, ws.faultHz);
+        SpectrumAnalyzer.Features f = ws.features;
+        ws.analyzer.analyze(ws.samples, length, sampleRate, ws.faultHz, tolerance, harmonics, f);
+
+        if (ringFile != null) {
+            try {
+                ringFile.append(deviceId, System.currentTimeMillis(), sampleRate, ws.samples, length);
+            } catch (IOException e) {
+                log.error("原始波形写入环形文件失败: {}", e.getMessage());
+            }
+        }
+
+        VibrationFeature feature = new VibrationFeature();
+        feature.setDeviceId(deviceId);
+        feature.setSampleRate(sampleRate);
+        feature.setBlockSize(length);
+        feature.setShaftFrequency(shaftHz);
+        feature.setRms(f.rms);
+        feature.setPeak(f.peak);
+        feature.setCrestFactor(f.crestFactor);
+        feature.setKurtosis(f.kurtosis);
+        feature.setDominantFrequency(f.dominantFrequency);
+        feature.setShaftEnergy(f.bandEnergy[SpectrumAnalyzer.BAND_SHAFT]);
+        feature.setBpfoEnergy(f.bandEnergy[SpectrumAnalyzer.BAND_BPFO]);
+        feature.setBpfiEnergy(f.bandEnergy[SpectrumAnalyzer.BAND_BPFI]);
+        feature.setBsfEnergy(f.bandEnergy[SpectrumAnalyzer.BAND_BSF]);
+        feature.setFtfEnergy(f.bandEnergy[SpectrumAnalyzer.BAND_FTF]);
+        if (keepEnvelope) {
+            feature.setEnvelope(joinEnvelope(f));
+        }
+        feature.setRecordedAt(LocalDateTime.now());
+        feature = featureRepository.save(feature);
+
+        Map<String, Object> message = new HashMap<>();
+        message.put("deviceId", deviceId);
+        message.put("rms", f.rms);
+        message.put("crestFactor", f.crestFactor);
+        message.put("kurtosis", f.kurtosis);
+        message.put("bpfoEnergy", feature.getBpfoEnergy());
+        message.put("bpfiEnergy", feature.getBpfiEnergy());
+        webSocketHandler.publish(new RealtimeMessage("vibration_features", message));
+        return feature;
+    }
+
+    public List<VibrationFeature> getFeatures(Long deviceId, int limit) {
+        return featureRepository.findByDeviceIdOrderByRecordedAtDesc(deviceId, PageRequest.of(0, limit));
+    }
+
+    /**
+     * 环形文件中某设备最近的一块原始波形；未启用环形文件或不存在时返回 null
+     */
+    public Map<String, Object> getLatestRaw(Long deviceId) throws IOException {
+        if (ringFile == null) return null;
+        WaveformRingFile.Block block = ringFile.readLatest(deviceId);
+        if (block == null) return null;
+        Map<String, Object> result = new HashMap<>();
+        result.put("deviceId", block.deviceId());
+        result.put("timestamp", block.timestamp());
+        result.put("sampleRate", block.sampleRate());
+        result.put("samples", block.samples());
+        return result;
+    }
+
+    public boolean isRingFileEnabled() {
+        return ringFile != null;
+    }
+
+    /**
+     * 按转频与轴承几何参数计算 1X、BPFO、BPFI、BSF、FTF
+     */
+    void faultFrequencies(double shaftHz, double[] out) {
+        out[SpectrumAnalyzer.BAND_SHAFT] = shaftHz;
+        out[SpectrumAnalyzer.BAND_BPFO] = ballCount / 2 * shaftHz * (1 - ballRatio);
+        out[SpectrumAnalyzer.BAND_BPFI] = ballCount / 2 * shaftHz * (1 + ballRatio);
+        out[SpectrumAnalyzer.BAND_BSF] = shaftHz / (2 * ballRatio) * (1 - ballRatio * ballRatio);
+        out[SpectrumAnalyzer.BAND_FTF] = shaftHz / 2 * (1 - ballRatio);
+    }
+
+    /**
+     * 读入工作区缓冲，超过最大块长时拒绝
+     */
+    private int readSamples(InputStream body, Workspace ws) throws IOException {
+        int total = 0;
+        int read;
+        while ((read = body.read(ws.bytes, total, ws.bytes.length - total)) > 0) {
+            total += read;
+            if (total == ws.bytes.length && body.read() != -1) {
+                throw new IllegalArgumentException("波形块超过最大长度 " + maxBlockSize);
+            }
+        }
+        int length = total / 4;
+        byte[] b = ws.bytes;
+        for (int i = 0; i < length; i++) {
+            int p = i * 4;
+            int bits = (b[p] & 0xff) | (b[p + 1] & 0xff) << 8 | (b[p + 2] & 0xff) << 16 | (b[p + 3] & 0xff) << 24;
+            ws.samples[i] = Float.intBitsToFloat(bits);
+        }
+        return length;
+    }
+
+    private String joinEnvelope(SpectrumAnalyzer.Features f) {
+        StringBuilder sb = new StringBuilder(f.envelopeLength * 8);
+        for (int i = 0; i < f.envelopeLength; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(Math.round(f.envelope[i] * 10000) / 10000.0);
+        }
+        return sb.toString();
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (ringFile != null) ringFile.close();
+    }
+}
@@ -0,0 +1,25 @@
+package com.brewery.digitaltwin.websocket;
+
+import com.brewery.digitaltwin.dto.ClusterEnvelope;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 集群节点间的消息通道 - 广播给其他全部节点，同一发送方的消息按发送顺序到达
+ *
+ * send 只入队不阻塞，可在 WebSocket 发布锁内调用；接收回调在传输层自己的线程中执行。
+ */
+public interface ClusterTransport {
+
+    void start(String nodeId, Consumer<ClusterEnvelope> receiver);
+
+    void send(ClusterEnvelope envelope);
+
+    void stop();
+
+    /**
+     * 发送/接收/丢弃/失败计数
+     */
+    Map<String, Object> getStats();
+}
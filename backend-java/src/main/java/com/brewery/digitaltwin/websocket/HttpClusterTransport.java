@@ -0,0 +1,157 @@
+package com.brewery.digitaltwin.websocket;
+
+import com.brewery.digitaltwin.dto.ClusterEnvelope;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * HTTP 集群通道 - 向 app.cluster.peers 中的每个节点 POST /api/v1/cluster/relay
+ *
+ * 每个对端一个有界发送队列和一个发送线程，队列中的消息合并为一批 JSON 数组发送，
+ * 某个节点不可达只会填满它自己的队列 (满时丢弃并计数)，不影响发往其他节点。
+ * 实时数据过期即无意义，发送失败的批次直接丢弃，心跳会在下一周期重新发送。
+ */
+@Slf4j
+public class HttpClusterTransport implements ClusterTransport {
+
+    public static final String RELAY_PATH_SUFFIX = "/relay";
+    public static final String RELAY_PATH = "/api/v1/cluster" + RELAY_PATH_SUFFIX;
+    public static final String TOKEN_HEADER = "X-Cluster-Token";
+
+    private static final int MAX_BATCH = 500;
+    private static final long ERROR_LOG_INTERVAL_MS = 30_000;
+
+    private final ObjectMapper objectMapper;
+    private final String token;
+    private final Duration timeout;
+    private final List<Peer> peers = new ArrayList<>();
+    private final HttpClient client;
+    private final AtomicLong received = new AtomicLong();
+    private volatile Consumer<ClusterEnvelope> receiver;
+
+    public HttpClusterTransport(ObjectMapper objectMapper, List<String> peerUrls, String token,
+                                int queueSize, long timeoutMs) {
+        this.objectMapper = objectMapper;
+        this.token = token;
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.client = HttpClient.newBuilder().connectTimeout(timeout).build();
+        for (String url : peerUrls) {
+            if (!url.isBlank()) peers.add(new Peer(url.trim().replaceAll("/+$", ""), queueSize));
+        }
+    }
+
+    @Override
+    public void start(String nodeId, Consumer<ClusterEnvelope> receiver) {
+        this.receiver = receiver;
+        for (Peer peer : peers) {
+            Thread thread = new Thread(() -> peer.run(), "cluster-http-" + peer.url);
+            thread.setDaemon(true);
+            thread.start();
+            peer.thread = thread;
+        }
+    }
+
+    @Override
+    public void send(ClusterEnvelope envelope) {
+        for (Peer peer : peers) {
+            if (!peer.queue.offer(envelope)) peer.dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * 接收对端发来的一批消息，令牌不匹配时返回 false
+     */
+    public boolean receive(String requestToken, List<ClusterEnvelope> envelopes) {
+        if (!token.isEmpty() && !token.equals(requestToken)) return false;
+        Consumer<ClusterEnvelope> current = receiver;
+        if (current == null) return true;
+        for (ClusterEnvelope envelope : envelopes) {
+            received.incrementAndGet();
+            current.accept(envelope);
+        }
+        return true;
+    }
+
+    @Override
+    public void stop() {
+        for (Peer peer : peers) {
+            if (peer.thread != null) peer.thread.interrupt();
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("transport", "http");
+        stats.put("received", received.get());
+        List<Map<String, Object>> peerStats = new ArrayList<>();
+        for (Peer peer : peers) {
+            Map<String, Object> p = new LinkedHashMap<>();
+            p.put("url", peer.url);
+            p.put("sent", peer.sent.get());
+            p.put("failed", peer.failed.get());
+            p.put("dropped", peer.dropped.get());
+            p.put("queued", peer.queue.size());
+            peerStats.add(p);
+        }
+        stats.put("peers", peerStats);
+        return stats;
+    }
+
+    private final class Peer {
+        final String url;
+        final BlockingQueue<ClusterEnvelope> queue;
+        final AtomicLong sent = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+        volatile Thread thread;
+        private long lastErrorLog;
+
+        Peer(String url, int queueSize) {
+            this.url = url;
+            this.queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+        }
+
+        void run() {
+            List<ClusterEnvelope> batch = new ArrayList<>(MAX_BATCH);
+            URI uri = URI.create(url + RELAY_PATH);
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    batch.add(queue.take());
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                    HttpRequest request = HttpRequest.newBuilder(uri)
+                            .timeout(timeout)
+                            .header("Content-Type", "application/json")
+                            .header(TOKEN_HEADER, token)
+                            .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(batch)))
+                            .build();
+                    HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                    if (response.statusCode() / 100 != 2) throw new IllegalStateException("HTTP " + response.statusCode());
+                    sent.addAndGet(batch.size());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception e) {
+                    failed.addAndGet(batch.size());
+                    long now = System.currentTimeMillis();
+                    if (now - lastErrorLog > ERROR_LOG_INTERVAL_MS) {
+                        lastErrorLog = now;
+                        log.warn("集群消息发送失败 {}: {}", url, e.getMessage());
+                    }
+                } finally {
+                    batch.clear();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.brewery.digitaltwin.websocket;
+
+import com.brewery.digitaltwin.dto.ClusterEnvelope;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 进程内集群通道 - 同一 JVM 中按集群名共享的消息总线，用于测试和单机多节点演示
+ *
+ * 每个节点一个有界收件箱和一个投递线程，发送方只入队，节点之间不会互相持锁；收件箱满时丢弃并计数。
+ */
+@Slf4j
+public class LocalClusterTransport implements ClusterTransport {
+
+    private static final Map<String, List<LocalClusterTransport>> BUSES = new ConcurrentHashMap<>();
+
+    private final String clusterName;
+    private final BlockingQueue<ClusterEnvelope> inbox;
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile Thread deliveryThread;
+
+    public LocalClusterTransport(String clusterName, int queueSize) {
+        this.clusterName = clusterName;
+        this.inbox = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+    }
+
+    @Override
+    public void start(String nodeId, Consumer<ClusterEnvelope> receiver) {
+        Thread thread = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    ClusterEnvelope envelope = inbox.take();
+                    received.incrementAndGet();
+                    receiver.accept(envelope);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    log.error("集群消息处理失败: {}", e.getMessage());
+                }
+            }
+        }, "cluster-local-" + nodeId);
+        thread.setDaemon(true);
+        thread.start();
+        deliveryThread = thread;
+        BUSES.computeIfAbsent(clusterName, name -> new CopyOnWriteArrayList<>()).add(this);
+    }
+
+    @Override
+    public void send(ClusterEnvelope envelope) {
+        List<LocalClusterTransport> bus = BUSES.getOrDefault(clusterName, List.of());
+        for (LocalClusterTransport peer : bus) {
+            if (peer == this) continue;
+            if (peer.inbox.offer(envelope)) {
+                sent.incrementAndGet();
+            } else {
+                peer.dropped.incrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        List<LocalClusterTransport> bus = BUSES.get(clusterName);
+        if (bus != null) bus.remove(this);
+        Thread thread = deliveryThread;
+        if (thread != null) thread.interrupt();
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("transport", "local");
+        stats.put("sent", sent.get());
+        stats.put("received", received.get());
+        stats.put("dropped", dropped.get());
+        stats.put("queued", inbox.size());
+        return stats;
+    }
+}
@@ -1,59 +1,363 @@
 package com.brewery.digitaltwin.websocket;
 
+import com.brewery.digitaltwin.dto.RealtimeMessage;
+import com.brewery.digitaltwin.service.JfrEvents;
+import com.brewery.digitaltwin.service.MetricsRegistry;
+import com.brewery.digitaltwin.service.RealtimeSnapshotService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import java.io.IOException;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
+/**
+ * 实时推送处理器
+ *
+ * 每条消息分配单调递增的 seq，并保留在有界的重放日志中。
+ * 客户端连接时先收到一份 snapshot；断线重连时携带 epoch 与 lastSeq
+ * (ws://host/ws/realtime?epoch=..&lastSeq=..)，若缺口仍在日志内则只补发缺失消息，
+ * 否则退回到 snapshot。
+ */
 @Slf4j
 @Component
 public class RealtimeWebSocketHandler extends TextWebSocketHandler {
-    
-    private final CopyOnWriteArraySet<WebSocketSession> sessions = new CopyOnWriteArraySet<>();
-    
+
+    private static final int SEND_TIME_LIMIT_MS = 10_000;
+    private static final int SEND_BUFFER_LIMIT = 4 * 1024 * 1024;
+
+    private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+    private final ObjectMapper objectMapper;
+    private final RealtimeSnapshotService snapshotService;
+    private final long snapshotTtlMs;
+
+    // 服务端实例标识，重启后 seq 从头计数，客户端据此判断 lastSeq 是否还有效
+    private final long epoch = System.currentTimeMillis();
+
+    // 以下状态由 this 监视器保护：分配 seq、写日志、发送必须保持同一顺序（seq 可无锁读取）
+    private final ReplayLog replayLog;
+    private volatile long seq = 0;
+    private volatile Consumer<String> relay;
+
+    // 快照缓存：重连风暴时只构建一次，避免同时压向数据库
+    private final Object snapshotLock = new Object();
+    private volatile CachedSnapshot cachedSnapshot;
+
+    private final MetricsRegistry metrics;
+    private final Map<String, TypeCounters> sentByType = new ConcurrentHashMap<>();
+    private final MetricsRegistry.Counter sendFailures;
+    private final MetricsRegistry.Counter snapshotHits;
+    private final MetricsRegistry.Counter snapshotMisses;
+
+    private record TypeCounters(MetricsRegistry.Counter messages, MetricsRegistry.Counter bytes) {
+    }
+
+    public RealtimeWebSocketHandler(
+            ObjectMapper objectMapper,
+            RealtimeSnapshotService snapshotService,
+            MetricsRegistry metrics,
+            @Value("${app.realtime.replay-size:256}") int replaySize,
+            @Value("${app.realtime.snapshot-ttl:${app.simulator.interval:5000}}") long snapshotTtlMs) {
+        this.objectMapper = objectMapper;
+        this.snapshotService = snapshotService;
+        this.snapshotTtlMs = snapshotTtlMs;
+        this.replayLog = new ReplayLog(replaySize);
+        this.metrics = metrics;
+        metrics.gauge("twin_ws_sessions", "WebSocket 连接数", sessions::size);
+        metrics.gauges("twin_ws_session_buffer_bytes", "各会话发送缓冲区中待发送的字节数 (慢客户端积压)", sink -> {
+            for (Map.Entry<String, WebSocketSession> entry : sessions.entrySet()) {
+                if (entry.getValue() instanceof ConcurrentWebSocketSessionDecorator decorator) {
+                    sink.sample(decorator.getBufferSize(), "session", entry.getKey());
+                }
+            }
+        });
+        this.sendFailures = metrics.counter("twin_ws_send_failures_total", "WebSocket 发送失败次数");
+        this.snapshotHits = metrics.counter(MetricsRegistry.CACHE_REQUESTS, MetricsRegistry.CACHE_REQUESTS_HELP,
+                "cache", "ws_snapshot", "result", "hit");
+        this.snapshotMisses = metrics.counter(MetricsRegistry.CACHE_REQUESTS, MetricsRegistry.CACHE_REQUESTS_HELP,
+                "cache", "ws_snapshot", "result", "miss");
+    }
+
     @Override
-    public void afterConnectionEstablished(WebSocketSession session) {
-        sessions.add(session);
-        log.info("WebSocket连接建立: {}, 当前连接数: {}", session.getId(), sessions.size());
+    public void afterConnectionEstablished(WebSocketSession rawSession) {
+        WebSocketSession session = new ConcurrentWebSocketSessionDecorator(
+                rawSession, SEND_TIME_LIMIT_MS, SEND_BUFFER_LIMIT);
+        Long resumeFrom = parseResume(rawSession);
+
+        // 快照在发布锁外构建（可能访问数据库），之后在锁内补齐缺口并注册会话，保证消息不丢不乱序
+        CachedSnapshot snapshot = resumeFrom == null ? getSnapshot(false) : null;
+        while (!register(rawSession.getId(), session, snapshot, resumeFrom)) {
+            // 续传缺口或快照已超出重放日志范围，重新构建快照
+            snapshot = getSnapshot(snapshot != null);
+        }
     }
-    
+
+    private synchronized boolean register(String id, WebSocketSession session,
+                                          CachedSnapshot snapshot, Long resumeFrom) {
+        List<String> missed = replayLog.since(snapshot != null ? snapshot.seq : resumeFrom);
+        if (missed == null) return false;
+        if (snapshot != null) {
+            countSent("snapshot", snapshot.json, send(session, snapshot.json) ? 1 : 0);
+        }
+        for (String payload : missed) {
+            countSent("replay", payload, send(session, payload) ? 1 : 0);
+        }
+        if (!session.isOpen()) return true;  // 补发时已因积压被断开
+        sessions.put(id, session);
+        log.info("WebSocket连接建立: {}, 当前连接数: {}, {}", id, sessions.size(),
+                snapshot != null ? "发送快照" : "续传 " + missed.size() + " 条");
+        return true;
+    }
+
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
-        sessions.remove(session);
+        sessions.remove(session.getId());
         log.info("WebSocket连接关闭: {}, 当前连接数: {}", session.getId(), sessions.size());
     }
-    
+
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) {
         log.debug("收到消息: {}", message.getPayload());
         // 可以处理客户端发送的消息，如订阅特定数据
     }
-    
+
     @Override
     public void handleTransportError(WebSocketSession session, Throwable exception) {
         log.error("WebSocket传输错误: {}", exception.getMessage());
-        sessions.remove(session);
-    }
-    
-    public void broadcast(String message) {
-        TextMessage textMessage = new TextMessage(message);
-        for (WebSocketSession session : sessions) {
-            if (session.isOpen()) {
-                try {
-                    session.sendMessage(textMessage);
-                } catch (IOException e) {
-                    log.error("发送消息失败: {}", e.getMessage());
-                }
-            }
+        sessions.remove(session.getId());
+    }
+
+    /**
+     * 发布一条实时消息：分配 seq、写入重放日志并推送给所有会话
+     */
+    public synchronized void publish(RealtimeMessage message) {
+        JfrEvents.BroadcastEvent event = new JfrEvents.BroadcastEvent();
+        event.begin();
+        message.setSeq(++seq);
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            log.error("消息序列化失败: {}", e.getMessage());
+            return;
+        }
+        deliver(event, message.getType(), payload, false);
+        Consumer<String> current = relay;
+        if (current != null) current.accept(payload);
+    }
+
+    /**
+     * 发布集群中其他节点转发来的消息：按本节点的 seq 重新编号后推送，不再转发
+     */
+    public synchronized void publishRelayed(ObjectNode message) {
+        JfrEvents.BroadcastEvent event = new JfrEvents.BroadcastEvent();
+        event.begin();
+        message.put("seq", ++seq);
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            log.error("消息序列化失败: {}", e.getMessage());
+            return;
+        }
+        deliver(event, message.path("type").asText("unknown"), payload, true);
+    }
+
+    /**
+     * 集群模式下把本节点发布的消息 (已编号的 JSON) 交给集群通道；回调在发布锁内执行，只能入队
+     */
+    public void setRelay(Consumer<String> relay) {
+        this.relay = relay;
+    }
+
+    /**
+     * 写入重放日志并推送给所有会话；JFR 广播事件的耗时从序列化开始算起
+     */
+    private void deliver(JfrEvents.BroadcastEvent event, String type, String payload, boolean relayed) {
+        replayLog.append(seq, payload);
+        int sessionCount = 0;
+        int delivered = 0;
+        for (WebSocketSession session : sessions.values()) {
+            sessionCount++;
+            if (send(session, payload)) delivered++;
+        }
+        boolean record = event.shouldCommit();
+        long bytes = delivered > 0 || record ? utf8Length(payload) : 0;
+        countSent(type, bytes, delivered);
+        event.end();
+        if (record) {
+            event.type = type;
+            event.seq = seq;
+            event.bytes = bytes;
+            event.sessions = sessionCount;
+            event.delivered = delivered;
+            event.relayed = relayed;
+            event.commit();
         }
     }
-    
+
+    private void countSent(String type, String payload, int sessionCount) {
+        countSent(type, sessionCount > 0 ? utf8Length(payload) : 0, sessionCount);
+    }
+
+    /**
+     * 按消息类型累计发布条数与实际发出的字节数 (UTF-8 长度 × 送达会话数)
+     */
+    private void countSent(String type, long bytes, int sessionCount) {
+        TypeCounters counters = sentByType.computeIfAbsent(type, t -> new TypeCounters(
+                metrics.counter("twin_ws_messages_total", "按类型发布的 WebSocket 消息数", "type", t),
+                metrics.counter("twin_ws_sent_bytes_total", "按类型发出的 WebSocket 字节数", "type", t)));
+        counters.messages().increment();
+        if (sessionCount > 0) counters.bytes().add(bytes * sessionCount);
+    }
+
+    private static long utf8Length(String s) {
+        long length = s.length();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) continue;
+            // 代理对编码为 4 字节，两个 char 各多计 1
+            length += c < 0x800 || Character.isSurrogate(c) ? 1 : 2;
+        }
+        return length;
+    }
+
     public int getConnectionCount() {
         return sessions.size();
     }
+
+    public long getCurrentSeq() {
+        return seq;
+    }
+
+    private boolean send(WebSocketSession session, String payload) {
+        if (!session.isOpen()) return false;
+        try {
+            session.sendMessage(new TextMessage(payload));
+            return true;
+        } catch (IOException e) {
+            sendFailures.increment();
+            log.error("发送消息失败: {}", e.getMessage());
+            return false;
+        } catch (SessionLimitExceededException e) {
+            // 慢客户端积压超过发送时限或缓冲上限：断开该会话，其余会话照常推送，客户端重连后按 lastSeq 续传
+            sendFailures.increment();
+            sessions.remove(session.getId());
+            log.warn("WebSocket会话发送积压，已断开: {}, {}", session.getId(), e.getMessage());
+            try {
+                session.close(e.getStatus());
+            } catch (IOException | RuntimeException closeError) {
+                log.debug("关闭会话失败: {}", closeError.getMessage());
+            }
+            return false;
+        }
+    }
+
+    private CachedSnapshot getSnapshot(boolean forceRefresh) {
+        CachedSnapshot stale = forceRefresh ? cachedSnapshot : null;
+        CachedSnapshot current = cachedSnapshot;
+        if (current != null && current != stale && System.currentTimeMillis() - current.builtAt < snapshotTtlMs) {
+            snapshotHits.increment();
+            return current;
+        }
+        synchronized (snapshotLock) {
+            current = cachedSnapshot;
+            if (current != null && current != stale && System.currentTimeMillis() - current.builtAt < snapshotTtlMs) {
+                snapshotHits.increment();
+                return current;
+            }
+            snapshotMisses.increment();
+            // 先取 seq 再采集状态：快照至少包含到该 seq 的全部变化，之后的消息由重放日志补齐
+            long snapshotSeq = getCurrentSeq();
+            Map<String, Object> data = snapshotService.capture();
+            data.put("epoch", epoch);
+            RealtimeMessage message = new RealtimeMessage("snapshot", data);
+            message.setSeq(snapshotSeq);
+            try {
+                current = new CachedSnapshot(snapshotSeq, System.currentTimeMillis(),
+                        objectMapper.writeValueAsString(message));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("快照序列化失败", e);
+            }
+            cachedSnapshot = current;
+            return current;
+        }
+    }
+
+    /**
+     * 解析续传参数，仅当 epoch 与当前实例一致时 lastSeq 才有意义
+     */
+    private Long parseResume(WebSocketSession session) {
+        if (session.getUri() == null) return null;
+        MultiValueMap<String, String> params = UriComponentsBuilder.fromUri(session.getUri())
+                .build().getQueryParams();
+        String clientEpoch = params.getFirst("epoch");
+        String lastSeq = params.getFirst("lastSeq");
+        if (clientEpoch == null || lastSeq == null) return null;
+        try {
+            if (Long.parseLong(clientEpoch) != epoch) return null;
+            return Long.parseLong(lastSeq);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private record CachedSnapshot(long seq, long builtAt, String json) {
+    }
+
+    /**
+     * 定长环形重放日志，仅在发布锁内访问
+     */
+    private static final class ReplayLog {
+        private final long[] seqs;
+        private final String[] payloads;
+        private int head = 0;   // 下一个写入位置
+        private int size = 0;
+
+        ReplayLog(int capacity) {
+            this.seqs = new long[Math.max(1, capacity)];
+            this.payloads = new String[Math.max(1, capacity)];
+        }
+
+        void append(long seq, String payload) {
+            seqs[head] = seq;
+            payloads[head] = payload;
+            head = (head + 1) % seqs.length;
+            if (size < seqs.length) size++;
+        }
+
+        /**
+         * 返回 seq 大于 lastSeq 的全部消息；若缺口已被覆盖返回 null
+         */
+        List<String> since(long lastSeq) {
+            if (size == 0) {
+                return lastSeq == 0 ? List.of() : null;
+            }
+            int oldest = (head - size + seqs.length) % seqs.length;
+            int newest = (head - 1 + seqs.length) % seqs.length;
+            if (lastSeq > seqs[newest]) return null;
+            if (lastSeq < seqs[oldest] - 1) return null;
+            List<String> result = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                int idx = (oldest + i) % seqs.length;
+                if (seqs[idx] > lastSeq) result.add(payloads[idx]);
+            }
+            return result;
+        }
+    }
 }
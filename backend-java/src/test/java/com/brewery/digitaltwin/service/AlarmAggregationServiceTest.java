@@ -0,0 +1,88 @@
+package com.brewery.digitaltwin.service;
+
+import com.brewery.digitaltwin.dto.RealtimeMessage;
+import com.brewery.digitaltwin.entity.Alarm;
+import com.brewery.digitaltwin.repository.AlarmRepository;
+import com.brewery.digitaltwin.websocket.RealtimeWebSocketHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 同一窖池先触发 warning 规则、再触发 critical 规则时，打开的告警升级并重新推送
+ */
+class AlarmAggregationServiceTest {
+
+    private final Map<Long, Alarm> rows = new HashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private AlarmRepository repository;
+    private RealtimeWebSocketHandler handler;
+    private AlarmAggregationService service;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(AlarmRepository.class);
+        when(repository.save(any(Alarm.class))).thenAnswer(invocation -> {
+            Alarm alarm = invocation.getArgument(0);
+            if (alarm.getId() == null) alarm.setId(ids.incrementAndGet());
+            rows.put(alarm.getId(), alarm);
+            return alarm;
+        });
+        when(repository.findById(anyLong())).thenAnswer(invocation -> Optional.ofNullable(rows.get(invocation.<Long>getArgument(0))));
+        handler = mock(RealtimeWebSocketHandler.class);
+        service = new AlarmAggregationService(repository, handler, 300_000, 3);
+    }
+
+    private static Alarm candidate(String level, double value) {
+        Alarm alarm = new Alarm();
+        alarm.setLevel(level);
+        alarm.setType("temperature");
+        alarm.setSource("pit-A-001");
+        alarm.setZone("A");
+        alarm.setMessage("窖池温度 " + value);
+        return alarm;
+    }
+
+    private List<Alarm> publishedAlarms() {
+        ArgumentCaptor<RealtimeMessage> captor = ArgumentCaptor.forClass(RealtimeMessage.class);
+        verify(handler, atLeastOnce()).publish(captor.capture());
+        return captor.getAllValues().stream()
+                .filter(message -> "alarm".equals(message.getType()))
+                .map(message -> (Alarm) message.getData())
+                .toList();
+    }
+
+    @Test
+    void criticalAfterWarningOnSamePitEscalates() {
+        List<Alarm> first = service.submit(List.of(candidate("warning", 35)));
+        assertThat(first).hasSize(1);
+        long id = first.get(0).getId();
+
+        // 同级重复只累加计数，不重新推送
+        assertThat(service.submit(List.of(candidate("warning", 36)))).isEmpty();
+        verify(repository).incrementOccurrences(eq(List.of(id)), eq(1), any());
+        assertThat(publishedAlarms()).hasSize(1);
+
+        assertThat(service.submit(List.of(candidate("critical", 41)))).isEmpty();
+        Alarm row = rows.get(id);
+        assertThat(row.getLevel()).isEqualTo("critical");
+        assertThat(row.getMessage()).isEqualTo("窖池温度 41.0");
+        List<Alarm> published = publishedAlarms();
+        assertThat(published).hasSize(2);
+        assertThat(published.get(1).getId()).isEqualTo(id);
+        assertThat(published.get(1).getLevel()).isEqualTo("critical");
+
+        // 已是 critical，之后的 warning 不会降级
+        service.submit(List.of(candidate("warning", 35)));
+        assertThat(rows.get(id).getLevel()).isEqualTo("critical");
+        assertThat(publishedAlarms()).hasSize(2);
+        assertThat(rows).hasSize(1);
+    }
+}
@@ -0,0 +1,116 @@
+package com.brewery.digitaltwin.service;
+
+import com.brewery.digitaltwin.dto.RealtimeMessage;
+import com.brewery.digitaltwin.websocket.LocalClusterTransport;
+import com.brewery.digitaltwin.websocket.RealtimeWebSocketHandler;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 两个节点经 LocalClusterTransport 组成集群：实时消息的转发、重新编号与不再二次转发
+ */
+class ClusterServiceTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final String clusterName = "test-" + UUID.randomUUID();
+    private final List<LocalClusterTransport> transports = new ArrayList<>();
+
+    private record Node(ClusterService cluster, RealtimeWebSocketHandler handler, LocalClusterTransport transport) {
+    }
+
+    @AfterEach
+    void stopTransports() {
+        transports.forEach(LocalClusterTransport::stop);
+    }
+
+    private Node startNode(String nodeId) {
+        RealtimeSnapshotService snapshotService = mock(RealtimeSnapshotService.class);
+        when(snapshotService.capture()).thenAnswer(invocation -> new HashMap<>());
+        RealtimeWebSocketHandler handler = new RealtimeWebSocketHandler(
+                objectMapper, snapshotService, new MetricsRegistry(), 256, 5000);
+        LocalClusterTransport transport = new LocalClusterTransport(clusterName, 100);
+        transports.add(transport);
+        // 心跳间隔足够长，测试期间不触发重平衡
+        ClusterService cluster = new ClusterService(true, nodeId, "http://" + nodeId, "zone", 1000,
+                60_000, 180_000, 8000, transport, mock(LiveStateService.class), mock(DashboardService.class),
+                mock(ParamStore.class), handler, objectMapper);
+        cluster.start();
+        return new Node(cluster, handler, transport);
+    }
+
+    /**
+     * 连接一个本地客户端 (先收到快照)，返回其收到的全部消息
+     */
+    private static List<JsonNode> connect(RealtimeWebSocketHandler handler, ObjectMapper objectMapper) throws Exception {
+        List<JsonNode> received = new CopyOnWriteArrayList<>();
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("client");
+        when(session.isOpen()).thenReturn(true);
+        doAnswer(invocation -> {
+            received.add(objectMapper.readTree(invocation.<TextMessage>getArgument(0).getPayload()));
+            return null;
+        }).when(session).sendMessage(any());
+        handler.afterConnectionEstablished(session);
+        return received;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("等待超时").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void relayedMessageIsRenumberedAndNotRelayedAgain() throws Exception {
+        Node b = startNode("node-b");
+        // A 加入前 B 已发布 5 条，两个节点的 seq 不再相同
+        for (int i = 0; i < 5; i++) b.handler().publish(new RealtimeMessage("system", Map.of("i", i)));
+        List<JsonNode> clientOfB = connect(b.handler(), objectMapper);
+
+        Node a = startNode("node-a");
+        a.handler().publish(new RealtimeMessage("alarm", Map.of("alarmId", 42, "level", "warning")));
+        assertThat(a.handler().getCurrentSeq()).isEqualTo(1);
+
+        await(() -> b.handler().getCurrentSeq() == 6);
+        await(() -> clientOfB.size() == 2);
+        assertThat(clientOfB.get(0).path("type").asText()).isEqualTo("snapshot");
+        JsonNode relayed = clientOfB.get(1);
+        assertThat(relayed.path("type").asText()).isEqualTo("alarm");
+        assertThat(relayed.path("seq").asLong()).isEqualTo(6);
+        assertThat(relayed.path("data").path("alarmId").asInt()).isEqualTo(42);
+
+        // B 不把转发来的消息再发回集群
+        Thread.sleep(200);
+        assertThat(b.transport().getStats()).containsEntry("sent", 0L);
+        assertThat(a.transport().getStats()).containsEntry("received", 0L);
+        assertThat(a.handler().getCurrentSeq()).isEqualTo(1);
+    }
+
+    @Test
+    void messagesFromBothNodesReachTheOtherOnce() throws Exception {
+        Node a = startNode("node-a");
+        Node b = startNode("node-b");
+        a.handler().publish(new RealtimeMessage("system", Map.of("from", "a")));
+        b.handler().publish(new RealtimeMessage("system", Map.of("from", "b")));
+
+        await(() -> a.handler().getCurrentSeq() == 2 && b.handler().getCurrentSeq() == 2);
+        Thread.sleep(200);
+        assertThat(a.transport().getStats()).containsEntry("sent", 1L).containsEntry("received", 1L);
+        assertThat(b.transport().getStats()).containsEntry("sent", 1L).containsEntry("received", 1L);
+    }
+}
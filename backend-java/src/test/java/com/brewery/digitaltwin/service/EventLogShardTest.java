@@ -0,0 +1,174 @@
+package com.brewery.digitaltwin.service;
+
+import com.brewery.digitaltwin.service.EventLogShard.Kind;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * EventLogShard 随机追加、换段、清理与重开后按时间重放，与逐条保存全部事件的朴素模型对照
+ */
+class EventLogShardTest {
+
+    private static final String[] WORDS = {"EMPTY", "FERMENTING", "SEALED", "MAINTENANCE", "发酵中"};
+
+    /**
+     * 朴素模型：保存每个事件的生效时间与值，某时刻的状态 = 不晚于该时刻的全部事件
+     */
+    private static final class Model {
+        record Event(long time, Kind kind, long id, Object value) {
+        }
+
+        final List<Event> events = new ArrayList<>();
+        final TreeSet<Long> snapshots = new TreeSet<>();
+        final Map<Kind, Map<Long, Object>> current = new EnumMap<>(Kind.class);
+        long lastTime;
+
+        Model() {
+            for (Kind kind : Kind.values()) current.put(kind, new HashMap<>());
+        }
+
+        boolean append(Kind kind, long id, Object value, long time) {
+            if (value.equals(current.get(kind).get(id))) return false;
+            lastTime = Math.max(time, lastTime);
+            current.get(kind).put(id, value);
+            events.add(new Event(lastTime, kind, id, value));
+            return true;
+        }
+
+        void roll(long now) {
+            lastTime = Math.max(now, lastTime);
+            if (!snapshots.isEmpty()) lastTime = Math.max(lastTime, snapshots.last() + 1);
+            snapshots.add(lastTime);
+        }
+
+        void retain(long cutoff) {
+            Long keep = snapshots.floor(cutoff);
+            if (keep != null) snapshots.headSet(keep, false).clear();
+        }
+
+        Map<Kind, Map<Long, Object>> stateAt(long at) {
+            Map<Kind, Map<Long, Object>> state = new EnumMap<>(Kind.class);
+            for (Kind kind : Kind.values()) state.put(kind, new HashMap<>());
+            for (Event e : events) {
+                if (e.time() <= at) state.get(e.kind()).put(e.id(), e.value());
+            }
+            return state;
+        }
+    }
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replayMatchesModel() throws IOException {
+        for (long seed = 1; seed <= 20; seed++) {
+            Path shardDir = dir.resolve("seed-" + seed);
+            Files.createDirectories(shardDir);
+            runScenario(shardDir, new Random(seed));
+        }
+    }
+
+    /**
+     * 同一毫秒内连续换段：每段都有各自的快照时间，早先的时刻仍能重建
+     */
+    @Test
+    void rollsWithinSameMillisecondKeepEarlierSegments() throws IOException {
+        try (EventLogShard shard = new EventLogShard(dir, 0)) {
+            shard.open(1000);
+            shard.append(Kind.PIT_STATUS, 1, "FERMENTING", 1000);
+            shard.roll(1000);
+            shard.append(Kind.PIT_STATUS, 1, "SEALED", 1000);
+            shard.roll(1000);
+            shard.append(Kind.PIT_STATUS, 1, "EMPTY", 1000);
+
+            assertThat(shard.getStats().get("segments")).isEqualTo(3);
+            assertThat(shard.stateAt(1000).state().get(Kind.PIT_STATUS)).containsEntry(1L, "FERMENTING");
+            assertThat(shard.stateAt(1001).state().get(Kind.PIT_STATUS)).containsEntry(1L, "SEALED");
+            assertThat(shard.stateAt(1002).state().get(Kind.PIT_STATUS)).containsEntry(1L, "EMPTY");
+            assertThat(shard.retain(1002)).isEqualTo(2);
+        }
+    }
+
+    /**
+     * 关闭后 (应用停机期间仍有查询) 按时刻重建不因当前段的输出流已释放而失败
+     */
+    @Test
+    void stateAtAfterClose() throws IOException {
+        EventLogShard shard = new EventLogShard(dir, 0);
+        shard.open(1000);
+        shard.append(Kind.PIT_STATUS, 1, "FERMENTING", 1000);
+        shard.close();
+        assertThat(shard.stateAt(1000).state().get(Kind.PIT_STATUS)).containsEntry(1L, "FERMENTING");
+    }
+
+    private void runScenario(Path shardDir, Random random) throws IOException {
+        Model model = new Model();
+        long clock = 1_000_000;
+        EventLogShard shard = new EventLogShard(shardDir, 3);
+        shard.open(clock);
+        model.roll(clock);
+        try {
+            for (int step = 0; step < 3000; step++) {
+                clock += random.nextInt(4) == 0 ? random.nextInt(50) : 0;
+                int op = random.nextInt(100);
+                if (op < 80) {
+                    Kind kind = Kind.values()[random.nextInt(Kind.values().length)];
+                    long id = 1 + random.nextInt(20);
+                    Object value = randomValue(kind, random);
+                    // 偶尔传入更早的时间，验证分片内时间单调
+                    long time = random.nextInt(20) == 0 ? clock - random.nextInt(100) : clock;
+                    assertThat(shard.append(kind, id, value, time)).isEqualTo(model.append(kind, id, value, time));
+                } else if (op < 88) {
+                    shard.roll(clock);
+                    model.roll(clock);
+                } else if (op < 90) {
+                    long cutoff = clock - random.nextInt(500);
+                    shard.retain(cutoff);
+                    model.retain(cutoff);
+                } else if (op < 91) {
+                    shard.close();
+                    shard = new EventLogShard(shardDir, 3);
+                    shard.open(clock);
+                    model.roll(clock);
+                } else {
+                    checkStateAt(shard, model, model.lastTime - random.nextInt(800));
+                }
+            }
+            assertThat(shard.earliestTime()).isEqualTo(model.snapshots.first());
+            for (long at = model.snapshots.first() - 1; at <= model.lastTime + 1; at++) {
+                checkStateAt(shard, model, at);
+            }
+        } finally {
+            shard.close();
+        }
+    }
+
+    private static void checkStateAt(EventLogShard shard, Model model, long at) throws IOException {
+        EventLogShard.Replay replay = shard.stateAt(at);
+        if (at < model.snapshots.first()) {
+            assertThat(replay).as("at=%d", at).isNull();
+            return;
+        }
+        assertThat(replay).as("at=%d", at).isNotNull();
+        assertThat(replay.snapshotTime()).as("at=%d", at).isEqualTo(model.snapshots.floor(at));
+        Map<Kind, Map<Long, Object>> expected = model.stateAt(at);
+        for (Kind kind : Kind.values()) {
+            assertThat(replay.state().get(kind)).as("at=%d kind=%s", at, kind).isEqualTo(expected.get(kind));
+        }
+    }
+
+    private static Object randomValue(Kind kind, Random random) {
+        return switch (kind.type) {
+            case TEXT -> WORDS[random.nextInt(WORDS.length)];
+            case INT -> random.nextInt(5) - 2 + (random.nextBoolean() ? 0 : Integer.MIN_VALUE / 2);
+            case DOUBLE -> random.nextInt(4) == 0 ? -0.0 : random.nextInt(6) * 0.5;
+        };
+    }
+}
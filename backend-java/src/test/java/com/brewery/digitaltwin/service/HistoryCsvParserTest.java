@@ -0,0 +1,128 @@
+package com.brewery.digitaltwin.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * HistoryCsvParser 与 Double.parseDouble / LocalDateTime.parse 的逐值对照
+ */
+class HistoryCsvParserTest {
+
+    private static final int[] SLOTS = {HistoryCsvParser.ID, HistoryCsvParser.TIME, HistoryCsvParser.METRIC};
+
+    private HistoryCsvParser parser;
+
+    /**
+     * 解析 "7,{time},{value}"，格式错误返回 false
+     */
+    private boolean parse(String time, String value) {
+        byte[] line = ("7," + time + "," + value).getBytes(StandardCharsets.US_ASCII);
+        parser = new HistoryCsvParser(ByteBuffer.wrap(line), SLOTS, 1);
+        return parser.parseLine(0, line.length);
+    }
+
+    @Test
+    void doublesMatchParseDouble() {
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            String text = randomDecimal(random);
+            assertThat(parse("2024-01-01T00:00", text)).as(text).isTrue();
+            assertThat(parser.values[0]).as(text).isEqualTo(Double.parseDouble(text));
+        }
+        for (String text : new String[]{"0", "-0", "-0.0", "9007199254740993", "0.1", "1e22", "1e23", "123456789012345678901",
+                "0.30000000000000004", "4.9e-324", "1.7976931348623157e308", "2.2250738585072014E-308"}) {
+            assertThat(parse("2024-01-01T00:00", text)).as(text).isTrue();
+            assertThat(parser.values[0]).as(text).isEqualTo(Double.parseDouble(text));
+        }
+    }
+
+    @Test
+    void malformedDoublesRejected() {
+        for (String text : new String[]{"-", ".", "1e", "1e+", "abc", "1.2.3"}) {
+            assertThat(parse("2024-01-01T00:00", text)).as(text).isFalse();
+        }
+        assertThat(parse("2024-01-01T00:00", "")).isTrue();
+        assertThat(parser.values[0]).isNaN();
+    }
+
+    @Test
+    void timesMatchLocalDateTimeParse() {
+        Random random = new Random(7);
+        for (int i = 0; i < 200_000; i++) {
+            String text = randomTime(random);
+            LocalDateTime expected;
+            try {
+                expected = LocalDateTime.parse(text.replace(' ', 'T'));
+            } catch (DateTimeParseException e) {
+                expected = null;
+            }
+            assertThat(parse(text, "1")).as(text).isEqualTo(expected != null);
+            if (expected != null) {
+                assertThat(parser.epochSecond).as(text).isEqualTo(expected.toEpochSecond(ZoneOffset.UTC));
+                assertThat(parser.nanos).as(text).isEqualTo(expected.getNano());
+            }
+        }
+    }
+
+    @Test
+    void impossibleDatesRejected() {
+        for (String text : new String[]{"2024-02-30T00:00", "2023-02-29T00:00", "1900-02-29 12:00", "2024-04-31T08:00:00",
+                "2024-13-01T00:00", "2024-00-10T00:00", "2024-01-01T24:00", "2024-01-01T23:60", "2024-01-01T23:59:60"}) {
+            assertThat(parse(text, "1")).as(text).isFalse();
+        }
+        assertThat(parse("2024-02-29T00:00", "1")).isTrue();
+        assertThat(parse("2000-02-29 00:00:00.5", "1")).isTrue();
+    }
+
+    @Test
+    void headerWithByteOrderMark() {
+        int[] slots = HistoryCsvParser.mapHeader("\uFEFFpitId,recordedAt,Temperature,ph_value,unknown", SensorTable.PIT);
+        assertThat(slots).containsExactly(HistoryCsvParser.ID, HistoryCsvParser.TIME,
+                HistoryCsvParser.METRIC, HistoryCsvParser.METRIC + 2, HistoryCsvParser.IGNORED);
+        assertThatThrownBy(() -> HistoryCsvParser.mapHeader("temperature,recordedAt", SensorTable.PIT))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static String randomDecimal(Random random) {
+        StringBuilder text = new StringBuilder();
+        if (random.nextInt(4) == 0) text.append(random.nextBoolean() ? '-' : '+');
+        int intDigits = random.nextInt(6) == 0 ? 1 + random.nextInt(22) : 1 + random.nextInt(4);
+        for (int i = 0; i < intDigits; i++) text.append((char) ('0' + random.nextInt(10)));
+        if (random.nextInt(3) > 0) {
+            text.append('.');
+            int fractionDigits = random.nextInt(6) == 0 ? 1 + random.nextInt(22) : 1 + random.nextInt(6);
+            for (int i = 0; i < fractionDigits; i++) text.append((char) ('0' + random.nextInt(10)));
+        }
+        if (random.nextInt(5) == 0) {
+            text.append(random.nextBoolean() ? 'e' : 'E');
+            if (random.nextBoolean()) text.append(random.nextBoolean() ? '-' : '+');
+            text.append(random.nextInt(random.nextInt(10) == 0 ? 400 : 30));
+        }
+        return text.toString();
+    }
+
+    private static String randomTime(Random random) {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%04d-%02d-%02d", random.nextInt(10000), random.nextInt(14), random.nextInt(33)));
+        text.append(random.nextBoolean() ? 'T' : ' ');
+        text.append(String.format("%02d:%02d", random.nextInt(26), random.nextInt(62)));
+        if (random.nextBoolean()) {
+            text.append(String.format(":%02d", random.nextInt(62)));
+            if (random.nextBoolean()) {
+                text.append('.');
+                int fractionDigits = 1 + random.nextInt(9);
+                for (int i = 0; i < fractionDigits; i++) text.append((char) ('0' + random.nextInt(10)));
+            }
+        }
+        return text.toString();
+    }
+}
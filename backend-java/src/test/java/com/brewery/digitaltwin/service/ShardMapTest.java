@@ -0,0 +1,56 @@
+package com.brewery.digitaltwin.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ShardMap 成员变化时只迁移必须迁移的分片
+ */
+class ShardMapTest {
+
+    private static final List<String> KEYS = new ArrayList<>();
+
+    static {
+        for (int i = 0; i < 2000; i++) KEYS.add("pit:" + i);
+        for (char zone = 'A'; zone <= 'Z'; zone++) KEYS.add("zone:" + zone);
+    }
+
+    @Test
+    void addingNodeOnlyMovesRangesToTheNewNode() {
+        ShardMap before = ShardMap.of(List.of("node-a", "node-b", "node-c"));
+        ShardMap after = ShardMap.of(List.of("node-a", "node-b", "node-c", "node-d"));
+        int moved = 0;
+        for (String key : KEYS) {
+            String owner = after.owner(key);
+            if (!owner.equals(before.owner(key))) {
+                assertThat(owner).as(key).isEqualTo("node-d");
+                moved++;
+            }
+        }
+        // 期望迁走约 1/4
+        assertThat(moved).isBetween(KEYS.size() / 4 - KEYS.size() / 16, KEYS.size() / 4 + KEYS.size() / 16);
+    }
+
+    @Test
+    void removingNodeOnlyMovesItsOwnRanges() {
+        ShardMap before = ShardMap.of(List.of("node-a", "node-b", "node-c", "node-d"));
+        ShardMap after = ShardMap.of(List.of("node-a", "node-c", "node-d"));
+        for (String key : KEYS) {
+            if (!before.owner(key).equals("node-b")) {
+                assertThat(after.owner(key)).as(key).isEqualTo(before.owner(key));
+            }
+        }
+    }
+
+    @Test
+    void ownershipIndependentOfMembershipOrder() {
+        ShardMap one = ShardMap.of(List.of("node-c", "node-a", "node-b"));
+        ShardMap other = ShardMap.of(Set.of("node-b", "node-c", "node-a"));
+        assertThat(one.nodes()).containsExactly("node-a", "node-b", "node-c");
+        for (String key : KEYS) assertThat(one.owner(key)).isEqualTo(other.owner(key));
+        assertThat(ShardMap.of(List.of()).owner("pit:1")).isNull();
+    }
+}
@@ -3,10 +3,17 @@ import { useStore } from '@/store'
 
 type MessageHandler = (data: any) => void
 
+// 续传游标：每个连接各自记录服务端 epoch 与最后收到的 seq
+interface ResumeCursor {
+  epoch?: number
+  lastSeq: number
+}
+
 export function useWebSocket(channel: string = 'all', onMessage?: MessageHandler) {
   const wsRef = useRef<WebSocket | null>(null)
   const onMessageRef = useRef<MessageHandler | undefined>(onMessage)
-  const { setWsConnected, setActiveAlarms } = useStore()
+  const cursorRef = useRef<ResumeCursor>({ lastSeq: 0 })
+  const { setWsConnected, setActiveAlarms, setDashboardStats } = useStore()
 
   useEffect(() => {
     onMessageRef.current = onMessage
@@ -17,7 +24,10 @@ export function useWebSocket(channel: string = 'all', onMessage?: MessageHandler
     const host = window.location.port === '3000'
       ? `${window.location.hostname}:8000`
       : window.location.host
-    const wsUrl = `${protocol}//${host}/ws/realtime`
+    // 重连时携带游标，服务端只补发缺失消息而非重新拉取全部接口
+    const cursor = cursorRef.current
+    const resume = cursor.epoch !== undefined ? `?epoch=${cursor.epoch}&lastSeq=${cursor.lastSeq}` : ''
+    const wsUrl = `${protocol}//${host}/ws/realtime${resume}`
 
     const ws = new WebSocket(wsUrl)
 
@@ -29,6 +39,18 @@ export function useWebSocket(channel: string = 'all', onMessage?: MessageHandler
     ws.onmessage = (event) => {
       try {
         const data = JSON.parse(event.data)
+
+        // 快照与补发可能与已处理的消息重叠，按 seq 去重
+        if (data.type === 'snapshot') {
+          cursorRef.current = { epoch: data.data.epoch, lastSeq: data.seq }
+          if (data.data.stats) {
+            setDashboardStats(data.data.stats)
+            setActiveAlarms(data.data.stats.activeAlarms)
+          }
+        } else if (typeof data.seq === 'number') {
+          if (data.seq <= cursorRef.current.lastSeq) return
+          cursorRef.current.lastSeq = data.seq
+        }
         
         // 更新活跃告警数
         if (data.type === 'dashboard_update' && data.data?.alarms?.active !== undefined) {
@@ -58,7 +80,7 @@ export function useWebSocket(channel: string = 'all', onMessage?: MessageHandler
     }
 
     wsRef.current = ws
-  }, [channel, setWsConnected, setActiveAlarms])
+  }, [channel, setWsConnected, setActiveAlarms, setDashboardStats])
 
   useEffect(() => {
     connect()
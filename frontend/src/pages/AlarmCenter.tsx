@@ -23,6 +23,9 @@ interface Alarm {
   source: string
   message: string
   status: string
+  occurrenceCount?: number
+  affectedCount?: number
+  incident?: boolean
   createdAt: string
 }
 
@@ -99,7 +102,7 @@ export default function AlarmCenter() {
 
   const parseSourceType = (source: string) => {
     const prefix = source?.split('-')[0]
-    return prefix === 'pit' ? '窖池' : prefix === 'device' ? '设备' : prefix
+    return prefix === 'pit' ? '窖池' : prefix === 'device' ? '设备' : prefix === 'zone' ? '区域' : prefix
   }
 
   const columns = [
@@ -133,6 +136,17 @@ export default function AlarmCenter() {
       key: 'message',
       ellipsis: true,
     },
+    {
+      title: '次数',
+      key: 'occurrenceCount',
+      width: 100,
+      render: (_: any, record: Alarm) => (
+        <Space>
+          <Text>{record.occurrenceCount ?? 1}</Text>
+          {record.incident && <Tag color="purple">{record.affectedCount} 个来源</Tag>}
+        </Space>
+      ),
+    },
     {
       title: '状态',
       dataIndex: 'status',
@@ -49,7 +49,10 @@ export default function Dashboard() {
 
   // WebSocket实时更新
   useWebSocket('dashboard', (data) => {
-    if (data.type === 'dashboard_update') {
+    if (data.type === 'snapshot') {
+      setStats(data.data.stats)
+      setAlarms((data.data.alarms || []).slice(0, 5))
+    } else if (data.type === 'dashboard_update') {
       // 更新部分数据
       setStats(prev => prev ? {
         ...prev,
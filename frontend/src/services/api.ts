@@ -55,8 +55,8 @@ export const pitsApi = {
   getStats: () => api.get('/pits/stats'),
   getHeatmap: () => api.get('/pits/heatmap'),
   getById: (id: number) => api.get(`/pits/${id}`),
-  getSensors: (id: number, hours?: number) => 
-    api.get(`/pits/${id}/sensors`, { params: { hours } }),
+  getSensors: (id: number, hours?: number, maxPoints = 1000) => 
+    api.get(`/pits/${id}/sensors`, { params: { hours, maxPoints } }),
   getLatestSensor: (id: number) => api.get(`/pits/${id}/sensors/latest`),
   updateStatus: (id: number, status: string, batchCode?: string) =>
     api.put(`/pits/${id}/status`, null, { params: { status, batch_code: batchCode } }),
@@ -68,8 +68,8 @@ export const devicesApi = {
   getStats: () => api.get('/devices/stats'),
   getTypes: () => api.get('/devices/types'),
   getById: (id: number) => api.get(`/devices/${id}`),
-  getData: (id: number, hours?: number) => 
-    api.get(`/devices/${id}/data`, { params: { hours } }),
+  getData: (id: number, hours?: number, maxPoints = 1000) => 
+    api.get(`/devices/${id}/data`, { params: { hours, maxPoints } }),
   getLatestData: (id: number) => api.get(`/devices/${id}/data/latest`),
   updateStatus: (id: number, status: string) =>
     api.put(`/devices/${id}/status`, null, { params: { status } }),